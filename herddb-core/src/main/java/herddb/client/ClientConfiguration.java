@@ -100,6 +100,39 @@ public class ClientConfiguration {
     public static final String PROPERTY_CLIENT_CONNECT_REMOTE_SERVER = "client.network.connect.remote";
     public static final boolean PROPERTY_CLIENT_CONNECT_REMOTE_SERVER_DEFAULT = true;
 
+    /**
+     * Maximum number of asynchronous requests waiting for a reply on each
+     * connection to a server, further requests are queued and sent as soon as
+     * a reply arrives
+     */
+    public static final String PROPERTY_MAX_INFLIGHT_REQUESTS = "client.network.max.inflight.requests";
+    public static final int PROPERTY_MAX_INFLIGHT_REQUESTS_DEFAULT = 1000;
+
+    /**
+     * Ask the server to send result sets column by column, with repeated
+     * strings encoded as a dictionary. Servers which do not support this
+     * format keep sending rows.
+     */
+    public static final String PROPERTY_COLUMNAR_RESULTSETS = "client.network.columnar.resultsets";
+    public static final boolean PROPERTY_COLUMNAR_RESULTSETS_DEFAULT = true;
+
+    /**
+     * Send queries which only read data, outside of transactions, to any
+     * replica of the tablespace, not only to the leader. Results may be
+     * stale. Replicas which refuse the query (because they are not
+     * configured to serve reads or because they are lagging behind) are
+     * skipped and the query is sent to the leader.
+     */
+    public static final String PROPERTY_READ_FROM_REPLICAS = "client.read.from.replicas";
+    public static final boolean PROPERTY_READ_FROM_REPLICAS_DEFAULT = false;
+
+    /**
+     * Max time, in milliseconds, since a replica last caught up with the log
+     * of the leader in order to serve a read. Zero means no bound.
+     */
+    public static final String PROPERTY_READ_FROM_REPLICAS_MAX_STALENESS = "client.read.from.replicas.max.staleness";
+    public static final long PROPERTY_READ_FROM_REPLICAS_MAX_STALENESS_DEFAULT = 0;
+
 
     public ClientConfiguration(Properties properties) {
         this.properties = new Properties();
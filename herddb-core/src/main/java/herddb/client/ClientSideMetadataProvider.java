@@ -21,6 +21,8 @@
 package herddb.client;
 
 import herddb.network.ServerHostData;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Provide Metadata to the client
@@ -38,6 +40,19 @@ public interface ClientSideMetadataProvider extends AutoCloseable {
      */
     String getTableSpaceLeader(String tableSpace) throws ClientSideMetadataProviderException;
 
+    /**
+     * Returns the nodes which hold a copy of the given tableSpace, leader
+     * included
+     *
+     * @param tableSpace
+     * @return
+     * @throws ClientSideMetadataProviderException
+     */
+    default List<String> getTableSpaceReplicas(String tableSpace) throws ClientSideMetadataProviderException {
+        String leader = getTableSpaceLeader(tableSpace);
+        return leader == null ? Collections.emptyList() : Collections.singletonList(leader);
+    }
+
     /**
      * Returns the actual address of a node
      *
@@ -37,7 +37,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -57,6 +59,7 @@ public class HDBClient implements AutoCloseable {
     private final Map<Long, HDBConnection> connections = new ConcurrentHashMap<>();
     private ClientSideMetadataProvider clientSideMetadataProvider;
     private final ExecutorService thredpool;
+    private final ScheduledExecutorService retryScheduler;
     private final MultithreadEventLoopGroup networkGroup;
     private final DefaultEventLoopGroup localEventsGroup;
     private final StatsLogger statsLogger;
@@ -83,6 +86,11 @@ public class HDBClient implements AutoCloseable {
                     t.setDaemon(true);
                     return t;
                 });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread t = new Thread(r, "hdb-client-retry");
+            t.setDaemon(true);
+            return t;
+        });
         this.networkGroup = connectRemoteServers ? (NetworkUtils.isEnableEpoolNative() ? new EpollEventLoopGroup() : new NioEventLoopGroup()) : null;
         this.localEventsGroup = new DefaultEventLoopGroup();
         String mode = configuration.getString(ClientConfiguration.PROPERTY_MODE, ClientConfiguration.PROPERTY_MODE_LOCAL);
@@ -127,6 +135,14 @@ public class HDBClient implements AutoCloseable {
         return configuration;
     }
 
+    /**
+     * Runs the retry of an asynchronous operation after a delay, without
+     * blocking the thread which received the error
+     */
+    void scheduleRetry(Runnable retry, long delay) {
+        retryScheduler.schedule(retry, delay, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void close() {
         List<HDBConnection> connectionsAtClose = new ArrayList<>(this.connections.values());
@@ -142,6 +158,8 @@ public class HDBClient implements AutoCloseable {
         if (thredpool != null) {
             thredpool.shutdown();
         }
+        // the retries already scheduled are executed anyway
+        retryScheduler.shutdown();
     }
 
     public HDBConnection openConnection() {
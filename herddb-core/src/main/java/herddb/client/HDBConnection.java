@@ -31,9 +31,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -52,6 +55,8 @@ public class HDBConnection implements AutoCloseable {
     private volatile boolean closed;
     private boolean discoverTablespaceFromSql = true;
     private Counter leaderChangedErrors;
+    private Counter replicaReadsRefused;
+    private final boolean readFromReplicas;
     private final int maxConnectionsPerServer;
     private final Random random = new Random();
     private Map<String, RoutedClientSideConnection[]> routes;
@@ -64,6 +69,11 @@ public class HDBConnection implements AutoCloseable {
         this.leaderChangedErrors = client
                 .getStatsLogger()
                 .getCounter("leaderChangedErrors");
+        this.replicaReadsRefused = client
+                .getStatsLogger()
+                .getCounter("replicaReadsRefused");
+        this.readFromReplicas = client.getConfiguration().getBoolean(ClientConfiguration.PROPERTY_READ_FROM_REPLICAS,
+                ClientConfiguration.PROPERTY_READ_FROM_REPLICAS_DEFAULT);
 
         this.maxConnectionsPerServer =
                 client.getConfiguration().getInt(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER_DEFAULT);
@@ -183,6 +193,18 @@ public class HDBConnection implements AutoCloseable {
         throw new HDBException("client is closed");
     }
 
+    public CompletableFuture<Long> beginTransactionAsync(String tableSpace) {
+        return executeAsync(tableSpace, "begin transaction", route -> route.beginTransactionAsync(tableSpace));
+    }
+
+    public CompletableFuture<Void> rollbackTransactionAsync(String tableSpace, long tx) {
+        return executeAsync(tableSpace, "rollback transaction " + tx, route -> route.rollbackTransactionAsync(tableSpace, tx));
+    }
+
+    public CompletableFuture<Void> commitTransactionAsync(String tableSpace, long tx) {
+        return executeAsync(tableSpace, "commit transaction " + tx, route -> route.commitTransactionAsync(tableSpace, tx));
+    }
+
     public DMLResult executeUpdate(String tableSpace, String query, long tx, boolean returnValues, boolean usePreparedStatement, List<Object> params) throws ClientSideMetadataProviderException, HDBException {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
@@ -204,47 +226,63 @@ public class HDBConnection implements AutoCloseable {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
         }
+        final String _tableSpace = tableSpace;
+        return executeAsync(tableSpace, query,
+                route -> route.executeUpdateAsync(_tableSpace, query, tx, returnValues, usePreparedStatement, params));
+    }
+
+    /**
+     * Executes an operation asynchronously, retrying it on a new route in case
+     * of temporary errors, like leader changes. A single thread can keep many
+     * operations in flight, see
+     * {@link ClientConfiguration#PROPERTY_MAX_INFLIGHT_REQUESTS}.
+     */
+    private <T> CompletableFuture<T> executeAsync(String tableSpace, String description, Function<RoutedClientSideConnection, CompletableFuture<T>> operation) {
         if (closed) {
             return FutureUtils.exception(new HDBException("client is closed"));
         }
-        CompletableFuture<DMLResult> res = new CompletableFuture<>();
-
-        AtomicInteger count = new AtomicInteger(0);
-        executeStatementAsyncInternal(tableSpace, res, query, tx, returnValues, usePreparedStatement, params, count);
+        CompletableFuture<T> res = new CompletableFuture<>();
+        executeAsyncInternal(tableSpace, description, operation, res, new AtomicInteger(0));
         return res;
     }
 
-    private void executeStatementAsyncInternal(String tableSpace, CompletableFuture<DMLResult> res, String query, long tx, boolean returnValues, boolean usePreparedStatement, List<Object> params, AtomicInteger count) {
-        RoutedClientSideConnection route;
+    /**
+     * Executes a read on a replica of the tableSpace, in case of any error the
+     * read is executed again on the leader
+     */
+    private <T> CompletableFuture<T> executeReadAsync(String tableSpace, long tx, String description, Function<RoutedClientSideConnection, CompletableFuture<T>> operation) {
+        RoutedClientSideConnection replica;
         try {
-            route = getRouteToTableSpace(tableSpace);
+            replica = getRouteToReplica(tableSpace, tx);
         } catch (ClientSideMetadataProviderException | HDBException err) {
-            res.completeExceptionally(err);
-            return;
+            LOGGER.log(Level.FINE, "cannot route " + description + " to a replica", err);
+            replica = null;
         }
-        route.executeUpdateAsync(tableSpace, query, tx, returnValues, usePreparedStatement, params)
-                .whenComplete((dmlresult, error) -> {
-                    if (error != null) {
-                        if (error instanceof RetryRequestException
-                                && !closed) {
-                            try {
-                                handleRetryError(error, count.getAndIncrement());
-                            } catch (ClientSideMetadataProviderException | HDBException err) {
-                                res.completeExceptionally(err);
-                                return;
-                            }
-                            LOGGER.log(Level.INFO, "retry #{0} {1}: {2}", new Object[]{count, query, error});
-                            executeStatementAsyncInternal(tableSpace, res, query, tx, returnValues, usePreparedStatement, params, count);
-                        } else {
-                            res.completeExceptionally(error);
-                        }
-                    } else {
-                        res.complete(dmlresult);
+        if (replica == null) {
+            return executeAsync(tableSpace, description, operation);
+        }
+        CompletableFuture<T> res = new CompletableFuture<>();
+        operation.apply(replica)
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        res.complete(result);
+                        return;
                     }
+                    replicaReadsRefused.inc();
+                    LOGGER.log(Level.FINE, "replica refused {0}: {1}", new Object[]{description, error});
+                    executeAsync(tableSpace, description, operation)
+                            .whenComplete((leaderResult, leaderError) -> {
+                                if (leaderError != null) {
+                                    res.completeExceptionally(leaderError);
+                                } else {
+                                    res.complete(leaderResult);
+                                }
+                            });
                 });
+        return res;
     }
 
-    private void executeStatementsAsyncInternal(String tableSpace, CompletableFuture<List<DMLResult>> res, String query, long tx, boolean returnValues, boolean usePreparedStatement, List<List<Object>> params, AtomicInteger count) {
+    private <T> void executeAsyncInternal(String tableSpace, String description, Function<RoutedClientSideConnection, CompletableFuture<T>> operation, CompletableFuture<T> res, AtomicInteger count) {
         RoutedClientSideConnection route;
         try {
             route = getRouteToTableSpace(tableSpace);
@@ -252,24 +290,37 @@ public class HDBConnection implements AutoCloseable {
             res.completeExceptionally(err);
             return;
         }
-        route.executeUpdatesAsync(tableSpace, query, tx, returnValues, usePreparedStatement, params)
-                .whenComplete((dmlresult, error) -> {
+        operation.apply(route)
+                .whenComplete((result, error) -> {
                     if (error != null) {
+                        if (error instanceof CompletionException && error.getCause() != null) {
+                            error = error.getCause();
+                        }
                         if (error instanceof RetryRequestException
                                 && !closed) {
+                            Throwable retry = error;
+                            int trialCount = count.getAndIncrement();
+                            Runnable retryOperation = () -> {
+                                try {
+                                    prepareRetry(retry, trialCount);
+                                } catch (ClientSideMetadataProviderException | HDBException err) {
+                                    res.completeExceptionally(err);
+                                    return;
+                                }
+                                LOGGER.log(Level.INFO, "retry #{0} {1}: {2}", new Object[]{count, description, retry});
+                                executeAsyncInternal(tableSpace, description, operation, res, count);
+                            };
+                            // errors are notified by network threads, which must not sleep
                             try {
-                                handleRetryError(error, count.getAndIncrement());
-                            } catch (ClientSideMetadataProviderException | HDBException err) {
-                                res.completeExceptionally(err);
-                                return;
+                                client.scheduleRetry(retryOperation, retryDelay(trialCount));
+                            } catch (RejectedExecutionException err) {
+                                res.completeExceptionally(new HDBException("client is closed"));
                             }
-                            LOGGER.log(Level.INFO, "retry #{0} {1}: {2}", new Object[]{count, query, error});
-                            executeStatementsAsyncInternal(tableSpace, res, query, tx, returnValues, usePreparedStatement, params, count);
                         } else {
                             res.completeExceptionally(error);
                         }
                     } else {
-                        res.complete(dmlresult);
+                        res.complete(result);
                     }
                 });
     }
@@ -307,20 +358,24 @@ public class HDBConnection implements AutoCloseable {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
         }
-        if (closed) {
-            return FutureUtils.exception(new HDBException("client is closed"));
-        }
-        CompletableFuture<List<DMLResult>> res = new CompletableFuture<>();
-
-        AtomicInteger count = new AtomicInteger(0);
-        executeStatementsAsyncInternal(tableSpace, res, query, tx, returnValues, usePreparedStatement, batch, count);
-        return res;
+        final String _tableSpace = tableSpace;
+        return executeAsync(tableSpace, query,
+                route -> route.executeUpdatesAsync(_tableSpace, query, tx, returnValues, usePreparedStatement, batch));
     }
 
     public GetResult executeGet(String tableSpace, String query, long tx, boolean usePreparedStatement, List<Object> params) throws ClientSideMetadataProviderException, HDBException {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
         }
+        RoutedClientSideConnection replica = getRouteToReplica(tableSpace, tx);
+        if (replica != null) {
+            try {
+                return replica.executeGet(tableSpace, query, tx, usePreparedStatement, params);
+            } catch (HDBException | ClientSideMetadataProviderException err) {
+                replicaReadsRefused.inc();
+                LOGGER.log(Level.FINE, "replica refused {0}: {1}", new Object[]{query, err});
+            }
+        }
         int trialCount = 0;
         while (!closed) {
             try {
@@ -334,10 +389,28 @@ public class HDBConnection implements AutoCloseable {
         throw new HDBException("client is closed");
     }
 
+    public CompletableFuture<GetResult> executeGetAsync(String tableSpace, String query, long tx, boolean usePreparedStatement, List<Object> params) {
+        if (discoverTablespaceFromSql) {
+            tableSpace = discoverTablespace(tableSpace, query);
+        }
+        final String _tableSpace = tableSpace;
+        return executeReadAsync(tableSpace, tx, query,
+                route -> route.executeGetAsync(_tableSpace, query, tx, usePreparedStatement, params));
+    }
+
     public ScanResultSet executeScan(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) throws ClientSideMetadataProviderException, HDBException, InterruptedException {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
         }
+        RoutedClientSideConnection replica = getRouteToReplica(tableSpace, tx);
+        if (replica != null) {
+            try {
+                return replica.executeScan(tableSpace, query, usePreparedStatement, params, tx, maxRows, fetchSize);
+            } catch (HDBException | ClientSideMetadataProviderException err) {
+                replicaReadsRefused.inc();
+                LOGGER.log(Level.FINE, "replica refused {0}: {1}", new Object[]{query, err});
+            }
+        }
         int trialCount = 0;
         while (!closed) {
             try {
@@ -352,9 +425,31 @@ public class HDBConnection implements AutoCloseable {
         throw new HDBException("client is closed");
     }
 
+    /**
+     * Opens a scanner asynchronously, the future completes when the first
+     * chunk of data is available
+     */
+    public CompletableFuture<ScanResultSet> executeScanAsync(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) {
+        if (discoverTablespaceFromSql) {
+            tableSpace = discoverTablespace(tableSpace, query);
+        }
+        final String _tableSpace = tableSpace;
+        return executeReadAsync(tableSpace, tx, query,
+                route -> route.executeScanAsync(_tableSpace, query, usePreparedStatement, params, tx, maxRows, fetchSize));
+    }
+
     private void handleRetryError(Throwable retry, int trialCount) throws HDBException, ClientSideMetadataProviderException {
+        prepareRetry(retry, trialCount);
+        try {
+            Thread.sleep(retryDelay(trialCount));
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new HDBException(err);
+        }
+    }
+
+    private void prepareRetry(Throwable retry, int trialCount) throws HDBException, ClientSideMetadataProviderException {
         LOGGER.log(Level.INFO, "retry #{0}:" + retry, trialCount); // no stracktrace
-        int sleepTimeout = client.getOperationRetryDelay();
         int maxTrials = client.getMaxOperationRetryCount();
         if (retry instanceof RetryRequestException) {
             RetryRequestException retryError = (RetryRequestException) retry;
@@ -373,13 +468,11 @@ public class HDBConnection implements AutoCloseable {
                 requestMetadataRefresh(retryError);
             }
         }
-        try {
-            // linear back-off
-            Thread.sleep((trialCount + 1) * sleepTimeout);
-        } catch (InterruptedException err) {
-            Thread.currentThread().interrupt();
-            throw new HDBException(err);
-        }
+    }
+
+    private long retryDelay(int trialCount) {
+        // linear back-off
+        return (long) (trialCount + 1) * client.getOperationRetryDelay();
     }
 
     public void dumpTableSpace(
@@ -433,6 +526,26 @@ public class HDBConnection implements AutoCloseable {
         return getRouteToServer(leaderId);
     }
 
+    /**
+     * Chooses a random replica of the tableSpace to execute a read
+     *
+     * @return null if the read must be executed by the leader
+     */
+    private RoutedClientSideConnection getRouteToReplica(String tableSpace, long tx) throws ClientSideMetadataProviderException, HDBException {
+        if (!readFromReplicas || tx != TransactionContext.NOTRANSACTION_ID || tableSpace == null || closed) {
+            return null;
+        }
+        List<String> replicas = client.getClientSideMetadataProvider().getTableSpaceReplicas(tableSpace);
+        if (replicas.size() <= 1) {
+            return null;
+        }
+        String nodeId = replicas.get(random.nextInt(replicas.size()));
+        if (nodeId.equals(client.getClientSideMetadataProvider().getTableSpaceLeader(tableSpace))) {
+            return null;
+        }
+        return getRouteToServer(nodeId);
+    }
+
     public boolean isClosed() {
         return closed;
     }
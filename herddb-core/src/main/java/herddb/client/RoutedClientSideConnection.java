@@ -49,19 +49,23 @@ import herddb.utils.RawString;
 import herddb.utils.RecordsBatch;
 import io.netty.buffer.ByteBuf;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
 
 /**
  * A real connection to a server
@@ -85,6 +89,39 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
     private final Map<String, TableSpaceDumpReceiver> dumpReceivers = new ConcurrentHashMap<>();
 
+    /**
+     * Window of asynchronous requests waiting for a reply, guarded by
+     * {@link #waitingRequests}
+     */
+    private final int maxInFlightRequests;
+    private int inFlightRequests;
+    private boolean sendingWaitingRequests;
+    private final ArrayDeque<Runnable> waitingRequests = new ArrayDeque<>();
+
+    /**
+     * Features declared to the server during the handshake
+     */
+    private final int clientFeatures;
+    private final long followerReadsMaxStaleness;
+
+    /**
+     * Decodes a successful reply
+     */
+    @FunctionalInterface
+    private interface ReplyReader<T> {
+
+        T read(Pdu reply, Channel channel) throws HDBException;
+    }
+
+    /**
+     * Builds a request for a statement
+     */
+    @FunctionalInterface
+    private interface StatementWriter {
+
+        ByteBuf write(long requestId, String query, long statementId);
+    }
+
     public RoutedClientSideConnection(HDBConnection connection, String nodeId, ServerHostData server) {
         this.connection = connection;
         this.nodeId = nodeId;
@@ -92,6 +129,16 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
         this.timeout = connection.getClient().getConfiguration().getLong(ClientConfiguration.PROPERTY_TIMEOUT, ClientConfiguration.PROPERTY_TIMEOUT_DEFAULT);
         this.clientId = connection.getClient().getConfiguration().getString(ClientConfiguration.PROPERTY_CLIENTID, ClientConfiguration.PROPERTY_CLIENTID_DEFAULT);
+        this.maxInFlightRequests = Math.max(1, connection.getClient().getConfiguration().getInt(ClientConfiguration.PROPERTY_MAX_INFLIGHT_REQUESTS,
+                ClientConfiguration.PROPERTY_MAX_INFLIGHT_REQUESTS_DEFAULT));
+        boolean columnarResultSets = connection.getClient().getConfiguration().getBoolean(ClientConfiguration.PROPERTY_COLUMNAR_RESULTSETS,
+                ClientConfiguration.PROPERTY_COLUMNAR_RESULTSETS_DEFAULT);
+        boolean readFromReplicas = connection.getClient().getConfiguration().getBoolean(ClientConfiguration.PROPERTY_READ_FROM_REPLICAS,
+                ClientConfiguration.PROPERTY_READ_FROM_REPLICAS_DEFAULT);
+        this.clientFeatures = (columnarResultSets ? PduCodec.CLIENT_FEATURE_COLUMNAR_RESULTSETS : 0)
+                | (readFromReplicas ? PduCodec.CLIENT_FEATURE_READ_FROM_FOLLOWERS : 0);
+        this.followerReadsMaxStaleness = connection.getClient().getConfiguration().getLong(ClientConfiguration.PROPERTY_READ_FROM_REPLICAS_MAX_STALENESS,
+                ClientConfiguration.PROPERTY_READ_FROM_REPLICAS_MAX_STALENESS_DEFAULT);
     }
 
     public String getNodeId() {
@@ -117,7 +164,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
         long requestId = channel.generateRequestId();
         Pdu saslResponse = channel.sendMessageWithPduReply(requestId,
-                PduCodec.SaslTokenMessageRequest.write(requestId, SaslUtils.AUTH_DIGEST_MD5, firstToken), timeout);
+                PduCodec.SaslTokenMessageRequest.write(requestId, SaslUtils.AUTH_DIGEST_MD5, firstToken, clientFeatures, followerReadsMaxStaleness), timeout);
         try {
             for (int i = 0; i < 100; i++) {
                 byte[] responseToSendToServer;
@@ -373,6 +420,218 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    CompletableFuture<Long> prepareQueryAsync(String tableSpace, String query) {
+        long existing = preparedStatements.getQueryId(tableSpace, query);
+        if (existing != 0) {
+            return CompletableFuture.completedFuture(existing);
+        }
+        Channel channel;
+        try {
+            channel = ensureOpen();
+        } catch (HDBException err) {
+            return FutureUtils.exception(err);
+        }
+        long requestId = channel.generateRequestId();
+        ByteBuf message = PduCodec.PrepareStatement.write(requestId, tableSpace, query);
+        return sendRequestAsync(channel, requestId, message, 0, Pdu.TYPE_PREPARE_STATEMENT_RESULT, true, (reply, c) -> {
+            long statementId = PduCodec.PrepareStatementResult.readStatementId(reply);
+            preparedStatements.registerQueryId(tableSpace, query, statementId);
+            return statementId;
+        });
+    }
+
+    /**
+     * Sends a request without waiting for the reply. At most
+     * {@link ClientConfiguration#PROPERTY_MAX_INFLIGHT_REQUESTS} requests wait
+     * for a reply, the others are queued and sent as soon as a reply arrives.
+     */
+    private void sendRequestWithAsyncReply(Channel channel, long requestId, ByteBuf message, Channel.PduCallback callback) {
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable send = () -> channel.sendRequestWithAsyncReply(requestId, message, timeout, (reply, error) -> {
+            if (!done.compareAndSet(false, true)) {
+                // the failure of a request may be notified more than once
+                if (reply != null) {
+                    reply.close();
+                }
+                return;
+            }
+            releaseInFlightRequest();
+            callback.responseReceived(reply, error);
+        });
+        synchronized (waitingRequests) {
+            if (inFlightRequests >= maxInFlightRequests) {
+                waitingRequests.add(send);
+                return;
+            }
+            inFlightRequests++;
+        }
+        send.run();
+    }
+
+    private void releaseInFlightRequest() {
+        synchronized (waitingRequests) {
+            inFlightRequests--;
+        }
+        sendWaitingRequests();
+    }
+
+    /**
+     * Sends the waiting requests while there are free slots. On a closed
+     * channel every request fails synchronously and releases its slot: the
+     * queue is drained by a loop on the first caller, not by recursion.
+     */
+    private void sendWaitingRequests() {
+        synchronized (waitingRequests) {
+            if (sendingWaitingRequests) {
+                return;
+            }
+            sendingWaitingRequests = true;
+        }
+        while (true) {
+            Runnable next;
+            synchronized (waitingRequests) {
+                next = inFlightRequests < maxInFlightRequests ? waitingRequests.poll() : null;
+                if (next == null) {
+                    sendingWaitingRequests = false;
+                    return;
+                }
+                inFlightRequests++;
+            }
+            next.run();
+        }
+    }
+
+    int getInFlightRequests() {
+        synchronized (waitingRequests) {
+            return inFlightRequests + waitingRequests.size();
+        }
+    }
+
+    /**
+     * Data may arrive row by row or column by column, depending on the
+     * features supported by the server
+     */
+    private static boolean isResultSetChunk(Pdu reply) {
+        return reply.type == Pdu.TYPE_RESULTSET_CHUNK || reply.type == Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR;
+    }
+
+    /**
+     * Sends a request and decodes the reply asynchronously.
+     *
+     * @param releaseReply if false the reader takes the ownership of the reply
+     */
+    private <T> CompletableFuture<T> sendRequestAsync(
+            Channel channel, long requestId, ByteBuf message, long statementId,
+            int replyType, boolean releaseReply, ReplyReader<T> reader
+    ) {
+        CompletableFuture<T> res = new CompletableFuture<>();
+        sendRequestWithAsyncReply(channel, requestId, message, (reply, error) -> {
+            if (error != null) {
+                res.completeExceptionally(error);
+                return;
+            }
+            boolean release = releaseReply;
+            try {
+                if (reply.type == Pdu.TYPE_ERROR) {
+                    handleGenericError(reply, statementId);
+                } else if (reply.type != replyType
+                        && !(replyType == Pdu.TYPE_RESULTSET_CHUNK && isResultSetChunk(reply))) {
+                    throw new HDBException(reply);
+                }
+                res.complete(reader.read(reply, channel));
+            } catch (HDBException | ClientSideMetadataProviderException | RuntimeException err) {
+                release = true;
+                res.completeExceptionally(err);
+            } finally {
+                if (release) {
+                    reply.close();
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Executes a statement asynchronously, preparing it if needed
+     */
+    private <T> CompletableFuture<T> executeStatementAsync(
+            String tableSpace, String query, boolean usePreparedStatement, StatementWriter writer,
+            int replyType, boolean releaseReply, ReplyReader<T> reader
+    ) {
+        CompletableFuture<Long> prepare = usePreparedStatement
+                ? prepareQueryAsync(tableSpace, query)
+                : CompletableFuture.completedFuture(0L);
+        return prepare.thenCompose(statementId -> {
+            Channel channel;
+            try {
+                channel = ensureOpen();
+            } catch (HDBException err) {
+                return FutureUtils.exception(err);
+            }
+            long requestId = channel.generateRequestId();
+            ByteBuf message = writer.write(requestId, statementId > 0 ? "" : query, statementId);
+            return sendRequestAsync(channel, requestId, message, statementId, replyType, releaseReply, reader);
+        });
+    }
+
+    private DMLResult readExecuteStatementResult(Pdu reply) {
+        long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
+        long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
+        boolean hasData = PduCodec.ExecuteStatementResult.hasRecord(reply);
+        Object key = null;
+        Map<RawString, Object> newvalue = null;
+        if (hasData) {
+            PduCodec.ObjectListReader parametersReader = PduCodec.ExecuteStatementResult.readRecord(reply);
+            newvalue = readParametersListAsMap(parametersReader);
+            key = newvalue.get(RAWSTRING_KEY);
+        }
+        return new DMLResult(updateCount, key, newvalue, transactionId);
+    }
+
+    private List<DMLResult> readExecuteStatementsResult(Pdu reply) {
+        long transactionId = PduCodec.ExecuteStatementsResult.readTx(reply);
+        List<Long> updateCounts = PduCodec.ExecuteStatementsResult.readUpdateCounts(reply);
+        int numResults = updateCounts.size();
+
+        List<DMLResult> results = new ArrayList<>(numResults);
+
+        PduCodec.ListOfListsReader resultRecords = PduCodec.ExecuteStatementsResult.startResultRecords(reply);
+        int numResultRecords = resultRecords.getNumLists();
+        for (int i = 0; i < numResults; i++) {
+            Map<RawString, Object> newvalue = null;
+            Object key = null;
+            if (numResultRecords > 0) {
+                PduCodec.ObjectListReader list = resultRecords.nextList();
+                newvalue = readParametersListAsMap(list);
+                if (newvalue != null) {
+                    key = newvalue.get(RAWSTRING_KEY);
+                }
+            }
+            long updateCount = updateCounts.get(i);
+            DMLResult res = new DMLResult(updateCount, key, newvalue, transactionId);
+            results.add(res);
+        }
+        return results;
+    }
+
+    private GetResult readGetResult(Pdu reply) {
+        long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
+        long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
+        boolean hasData = PduCodec.ExecuteStatementResult.hasRecord(reply);
+
+        Map<RawString, Object> data = null;
+        if (hasData) {
+            PduCodec.ObjectListReader parametersReader = PduCodec.ExecuteStatementResult.readRecord(reply);
+            data = readParametersListAsMap(parametersReader);
+        }
+
+        if (updateCount <= 0) {
+            return new GetResult(null, transactionId);
+        } else {
+            return new GetResult(data, transactionId);
+        }
+    }
+
     DMLResult executeUpdate(String tableSpace, String query, long tx, boolean returnValues, boolean usePreparedStatement, List<Object> params) throws HDBException, ClientSideMetadataProviderException {
         Channel channel = ensureOpen();
         try {
@@ -386,17 +645,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                 } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENT_RESULT) {
                     throw new HDBException(reply);
                 }
-                long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
-                long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
-                boolean hasData = PduCodec.ExecuteStatementResult.hasRecord(reply);
-                Object key = null;
-                Map<RawString, Object> newvalue = null;
-                if (hasData) {
-                    PduCodec.ObjectListReader parametersReader = PduCodec.ExecuteStatementResult.readRecord(reply);
-                    newvalue = readParametersListAsMap(parametersReader);
-                    key = newvalue.get(RAWSTRING_KEY);
-                }
-                return new DMLResult(updateCount, key, newvalue, transactionId);
+                return readExecuteStatementResult(reply);
             }
         } catch (InterruptedException err) {
             Thread.currentThread().interrupt();
@@ -407,46 +656,9 @@ public class RoutedClientSideConnection implements ChannelEventListener {
     }
 
     CompletableFuture<DMLResult> executeUpdateAsync(String tableSpace, String query, long tx, boolean returnValues, boolean usePreparedStatement, List<Object> params) {
-        CompletableFuture<DMLResult> res = new CompletableFuture<>();
-        try {
-            Channel channel = ensureOpen();
-            long requestId = channel.generateRequestId();
-            long statementId = usePreparedStatement ? prepareQuery(tableSpace, query) : 0;
-            query = statementId > 0 ? "" : query;
-            ByteBuf message = PduCodec.ExecuteStatement.write(requestId, tableSpace, query, tx, returnValues, statementId, params);
-            channel.sendRequestWithAsyncReply(requestId, message, timeout,
-                    (msg, error) -> {
-                        if (error != null) {
-                            res.completeExceptionally(error);
-                            return;
-                        }
-                        try (Pdu reply = msg) {
-                            if (reply.type == Pdu.TYPE_ERROR) {
-                                handleGenericError(reply, statementId);
-                                return;
-                            } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENT_RESULT) {
-                                throw new HDBException(reply);
-                            }
-                            long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
-                            long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
-                            boolean hasData = PduCodec.ExecuteStatementResult.hasRecord(reply);
-                            Object key = null;
-                            Map<RawString, Object> newvalue = null;
-                            if (hasData) {
-                                PduCodec.ObjectListReader parametersReader = PduCodec.ExecuteStatementResult.readRecord(reply);
-                                newvalue = readParametersListAsMap(parametersReader);
-                                key = newvalue.get(RAWSTRING_KEY);
-                            }
-                            res.complete(new DMLResult(updateCount, key, newvalue, transactionId));
-                        } catch (HDBException | ClientSideMetadataProviderException err) {
-                            res.completeExceptionally(err);
-                        }
-                    });
-
-        } catch (HDBException | ClientSideMetadataProviderException err) {
-            res.completeExceptionally(err);
-        }
-        return res;
+        return executeStatementAsync(tableSpace, query, usePreparedStatement,
+                (requestId, q, statementId) -> PduCodec.ExecuteStatement.write(requestId, tableSpace, q, tx, returnValues, statementId, params),
+                Pdu.TYPE_EXECUTE_STATEMENT_RESULT, true, (reply, channel) -> readExecuteStatementResult(reply));
     }
 
     List<DMLResult> executeUpdates(
@@ -466,30 +678,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                 } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENTS_RESULT) {
                     throw new HDBException(reply);
                 }
-
-                long transactionId = PduCodec.ExecuteStatementsResult.readTx(reply);
-                List<Long> updateCounts = PduCodec.ExecuteStatementsResult.readUpdateCounts(reply);
-                int numResults = updateCounts.size();
-
-                List<DMLResult> results = new ArrayList<>(numResults);
-
-                PduCodec.ListOfListsReader resultRecords = PduCodec.ExecuteStatementsResult.startResultRecords(reply);
-                int numResultRecords = resultRecords.getNumLists();
-                for (int i = 0; i < numResults; i++) {
-                    Map<RawString, Object> newvalue = null;
-                    Object key = null;
-                    if (numResultRecords > 0) {
-                        PduCodec.ObjectListReader list = resultRecords.nextList();
-                        newvalue = readParametersListAsMap(list);
-                        if (newvalue != null) {
-                            key = newvalue.get(RAWSTRING_KEY);
-                        }
-                    }
-                    long updateCount = updateCounts.get(i);
-                    DMLResult res = new DMLResult(updateCount, key, newvalue, transactionId);
-                    results.add(res);
-                }
-                return results;
+                return readExecuteStatementsResult(reply);
             }
         } catch (InterruptedException err) {
             Thread.currentThread().interrupt();
@@ -503,59 +692,9 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             String tableSpace, String query, long tx, boolean returnValues,
             boolean usePreparedStatement, List<List<Object>> batch
     ) {
-
-        CompletableFuture<List<DMLResult>> res = new CompletableFuture<>();
-        try {
-            Channel channel = ensureOpen();
-            long requestId = channel.generateRequestId();
-            long statementId = usePreparedStatement ? prepareQuery(tableSpace, query) : 0;
-            query = statementId > 0 ? "" : query;
-            ByteBuf message = PduCodec.ExecuteStatements.write(requestId, tableSpace, query, tx, returnValues, statementId, batch);
-            channel.sendRequestWithAsyncReply(requestId, message, timeout,
-                    (msg, error) -> {
-                        if (error != null) {
-                            res.completeExceptionally(error);
-                            return;
-                        }
-                        try (Pdu reply = msg) {
-                            if (reply.type == Pdu.TYPE_ERROR) {
-                                handleGenericError(reply, statementId);
-                                return;
-                            } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENTS_RESULT) {
-                                throw new HDBException(reply);
-                            }
-                            long transactionId = PduCodec.ExecuteStatementsResult.readTx(reply);
-                            List<Long> updateCounts = PduCodec.ExecuteStatementsResult.readUpdateCounts(reply);
-                            int numResults = updateCounts.size();
-
-                            List<DMLResult> results = new ArrayList<>(numResults);
-
-                            PduCodec.ListOfListsReader resultRecords = PduCodec.ExecuteStatementsResult.startResultRecords(reply);
-                            int numResultRecords = resultRecords.getNumLists();
-                            for (int i = 0; i < numResults; i++) {
-                                Map<RawString, Object> newvalue = null;
-                                Object key = null;
-                                if (numResultRecords > 0) {
-                                    PduCodec.ObjectListReader list = resultRecords.nextList();
-                                    newvalue = readParametersListAsMap(list);
-                                    if (newvalue != null) {
-                                        key = newvalue.get(RAWSTRING_KEY);
-                                    }
-                                }
-                                long updateCount = updateCounts.get(i);
-                                DMLResult _res = new DMLResult(updateCount, key, newvalue, transactionId);
-                                results.add(_res);
-                            }
-                            res.complete(results);
-                        } catch (HDBException | ClientSideMetadataProviderException err) {
-                            res.completeExceptionally(err);
-                        }
-                    });
-
-        } catch (HDBException | ClientSideMetadataProviderException err) {
-            res.completeExceptionally(err);
-        }
-        return res;
+        return executeStatementAsync(tableSpace, query, usePreparedStatement,
+                (requestId, q, statementId) -> PduCodec.ExecuteStatements.write(requestId, tableSpace, q, tx, returnValues, statementId, batch),
+                Pdu.TYPE_EXECUTE_STATEMENTS_RESULT, true, (reply, channel) -> readExecuteStatementsResult(reply));
     }
 
     GetResult executeGet(String tableSpace, String query, long tx, boolean usePreparedStatement, List<Object> params) throws HDBException, ClientSideMetadataProviderException {
@@ -571,21 +710,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                 } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENT_RESULT) {
                     throw new HDBException(reply);
                 }
-                long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
-                long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
-                boolean hasData = PduCodec.ExecuteStatementResult.hasRecord(reply);
-
-                Map<RawString, Object> data = null;
-                if (hasData) {
-                    PduCodec.ObjectListReader parametersReader = PduCodec.ExecuteStatementResult.readRecord(reply);
-                    data = readParametersListAsMap(parametersReader);
-                }
-
-                if (updateCount <= 0) {
-                    return new GetResult(null, transactionId);
-                } else {
-                    return new GetResult(data, transactionId);
-                }
+                return readGetResult(reply);
             }
 
         } catch (InterruptedException err) {
@@ -596,6 +721,12 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    CompletableFuture<GetResult> executeGetAsync(String tableSpace, String query, long tx, boolean usePreparedStatement, List<Object> params) {
+        return executeStatementAsync(tableSpace, query, usePreparedStatement,
+                (requestId, q, statementId) -> PduCodec.ExecuteStatement.write(requestId, tableSpace, q, tx, true, statementId, params),
+                Pdu.TYPE_EXECUTE_STATEMENT_RESULT, true, (reply, channel) -> readGetResult(reply));
+    }
+
     Map<RawString, Object> readParametersListAsMap(PduCodec.ObjectListReader parametersReader) {
         Map<RawString, Object> data = new HashMap<>();
         for (int i = 0; i < parametersReader.getNumParams(); i += 2) {
@@ -675,6 +806,36 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    CompletableFuture<Long> beginTransactionAsync(String tableSpace) {
+        return sendTxCommandAsync(tableSpace, PduCodec.TxCommand.TX_COMMAND_BEGIN_TRANSACTION, 0).thenApply(tx -> {
+            if (tx <= 0) {
+                throw new CompletionException(new HDBException("Server did not create a new transaction"));
+            }
+            return tx;
+        });
+    }
+
+    CompletableFuture<Void> commitTransactionAsync(String tableSpace, long tx) {
+        return sendTxCommandAsync(tableSpace, PduCodec.TxCommand.TX_COMMAND_COMMIT_TRANSACTION, tx).thenApply(t -> null);
+    }
+
+    CompletableFuture<Void> rollbackTransactionAsync(String tableSpace, long tx) {
+        return sendTxCommandAsync(tableSpace, PduCodec.TxCommand.TX_COMMAND_ROLLBACK_TRANSACTION, tx).thenApply(t -> null);
+    }
+
+    private CompletableFuture<Long> sendTxCommandAsync(String tableSpace, byte command, long tx) {
+        Channel channel;
+        try {
+            channel = ensureOpen();
+        } catch (HDBException err) {
+            return FutureUtils.exception(err);
+        }
+        long requestId = channel.generateRequestId();
+        ByteBuf message = PduCodec.TxCommand.write(requestId, command, tx, tableSpace);
+        return sendRequestAsync(channel, requestId, message, 0, Pdu.TYPE_TX_COMMAND_RESULT, true,
+                (reply, c) -> PduCodec.TxCommandResult.readTx(reply));
+    }
+
     void handleGenericError(final Pdu reply, final long statementId) throws HDBException, ClientSideMetadataProviderException {
         handleGenericError(reply, statementId, false);
     }
@@ -717,7 +878,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             if (reply.type == Pdu.TYPE_ERROR) {
                 handleGenericError(reply, statementId, true);
                 return null; // not possible
-            } else if (reply.type != Pdu.TYPE_RESULTSET_CHUNK) {
+            } else if (!isResultSetChunk(reply)) {
                 HDBException err = new HDBException(reply);
                 reply.close();
                 throw err;
@@ -743,6 +904,24 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    /**
+     * Opens a scanner asynchronously, the future completes with the first
+     * chunk of data, next chunks are fetched while iterating over the result
+     * set
+     */
+    CompletableFuture<ScanResultSet> executeScanAsync(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) {
+        long scannerId = scannerIdGenerator.incrementAndGet();
+        return executeStatementAsync(tableSpace, query, usePreparedStatement,
+                (requestId, q, statementId) -> PduCodec.OpenScanner.write(requestId, tableSpace, q, scannerId, tx, params, statementId,
+                        fetchSize, maxRows),
+                Pdu.TYPE_RESULTSET_CHUNK, false, (reply, channel) -> {
+                    boolean last = PduCodec.ResultSetChunk.readIsLast(reply);
+                    long transactionId = PduCodec.ResultSetChunk.readTx(reply);
+                    RecordsBatch data = PduCodec.ResultSetChunk.startReadingData(reply);
+                    return new ScanResultSetImpl(scannerId, data, fetchSize, last, transactionId, channel);
+                });
+    }
+
     void dumpTableSpace(String tableSpace, int fetchSize, boolean includeTransactionLog, TableSpaceDumpReceiver receiver) throws HDBException, ClientSideMetadataProviderException {
         Channel channel = ensureOpen();
         try {
@@ -953,7 +1132,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                         result.close();
                     }
                 }
-                if (result.type != Pdu.TYPE_RESULTSET_CHUNK) {
+                if (!isResultSetChunk(result)) {
                     finished = true;
                     try {
                         throw new HDBException("protocol error: " + result);
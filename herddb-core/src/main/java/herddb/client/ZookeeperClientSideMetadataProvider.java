@@ -24,7 +24,10 @@ import herddb.model.NodeMetadata;
 import herddb.model.TableSpace;
 import herddb.network.ServerHostData;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
@@ -98,14 +101,32 @@ public class ZookeeperClientSideMetadataProvider implements ClientSideMetadataPr
     }
 
     private final Map<String, String> tableSpaceLeaders = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> tableSpaceReplicas = new ConcurrentHashMap<>();
     private final Map<String, ServerHostData> servers = new ConcurrentHashMap<>();
 
     @Override
     public void requestMetadataRefresh(Exception error) {
         tableSpaceLeaders.clear();
+        tableSpaceReplicas.clear();
         servers.clear();
     }
 
+    @Override
+    public List<String> getTableSpaceReplicas(String tableSpace) throws ClientSideMetadataProviderException {
+        tableSpace = tableSpace.toLowerCase();
+        List<String> cached = tableSpaceReplicas.get(tableSpace);
+        if (cached != null) {
+            return cached;
+        }
+        // replicas are loaded together with the leader
+        getTableSpaceLeader(tableSpace);
+        cached = tableSpaceReplicas.get(tableSpace);
+        if (cached != null) {
+            return cached;
+        }
+        return ClientSideMetadataProvider.super.getTableSpaceReplicas(tableSpace);
+    }
+
     @Override
     public String getTableSpaceLeader(String tableSpace) throws ClientSideMetadataProviderException {
         tableSpace = tableSpace.toLowerCase();
@@ -156,7 +177,9 @@ public class ZookeeperClientSideMetadataProvider implements ClientSideMetadataPr
         tableSpace = tableSpace.toLowerCase();
         Stat stat = new Stat();
         byte[] result = zooKeeper.getData(basePath + "/tableSpaces/" + tableSpace, false, stat);
-        String leader = TableSpace.deserialize(result, stat.getVersion(), stat.getCtime()).leaderId;
+        TableSpace tableSpaceMetadata = TableSpace.deserialize(result, stat.getVersion(), stat.getCtime());
+        String leader = tableSpaceMetadata.leaderId;
+        tableSpaceReplicas.put(tableSpace, Collections.unmodifiableList(new ArrayList<>(tableSpaceMetadata.replicas)));
         tableSpaceLeaders.put(tableSpace, leader);
         return leader;
     }
@@ -167,6 +190,7 @@ public class ZookeeperClientSideMetadataProvider implements ClientSideMetadataPr
         byte[] result = zooKeeper.getData(basePath + "/nodes/" + tableSpace, false, stat);
         NodeMetadata md = NodeMetadata.deserialize(result, stat.getVersion());
         String leader = md.nodeId;
+        tableSpaceReplicas.put(tableSpace, Collections.singletonList(leader));
         tableSpaceLeaders.put(tableSpace, leader);
         return leader;
     }
@@ -941,6 +941,30 @@ public final class RecordSerializer {
         return result;
     }
 
+    /**
+     * Reads the values of the columns of an index key, serialized with
+     * {@link #serializePrimaryKey(herddb.utils.DataAccessor, herddb.model.ColumnsList, java.lang.String[])}
+     *
+     * @param key
+     * @param index
+     * @param res
+     */
+    public static void deserializeIndexKey(Bytes key, ColumnsList index, Map<String, Object> res) {
+        String[] columns = index.getPrimaryKey();
+        if (columns.length == 1) {
+            res.put(columns[0], deserialize(key, index.getColumn(columns[0]).type));
+            return;
+        }
+        try (ByteArrayCursor din = key.newCursor()) {
+            for (String column : columns) {
+                Bytes value = din.readBytesNoCopy();
+                res.put(column, deserialize(value, index.getColumn(column).type));
+            }
+        } catch (IOException err) {
+            throw new IllegalArgumentException("malformed index key", err);
+        }
+    }
+
     public static Bytes serializeValue(Map<String, Object> record, Table table) {
         return Bytes.from_array(serializeValueRaw(record, table, 0));
     }
@@ -35,6 +35,10 @@ import herddb.utils.Bytes;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Stream;
 
 /**
@@ -44,6 +48,8 @@ import java.util.stream.Stream;
  */
 public abstract class AbstractIndexManager implements AutoCloseable {
 
+    private static final int UPDATE_STAMPS_SIZE = 1024;
+
     protected final Index index;
     protected final AbstractTableManager tableManager;
     protected final DataStorageManager dataStorageManager;
@@ -54,6 +60,16 @@ public abstract class AbstractIndexManager implements AutoCloseable {
      */
     protected long createdInTransaction;
 
+    /**
+     * PKs of the records whose index key is being changed, see {@link #recordUpdateStarted(Bytes)}
+     */
+    private final Set<Bytes> keysUnderUpdate = ConcurrentHashMap.newKeySet();
+    private final AtomicLong updatesSequence = new AtomicLong();
+    /**
+     * Sequence number of the last update completed on the PKs which hash to each slot
+     */
+    private final AtomicLongArray updateStamps = new AtomicLongArray(UPDATE_STAMPS_SIZE);
+
     public AbstractIndexManager(Index index, AbstractTableManager tableManager, DataStorageManager dataStorageManager, String tableSpaceUUID, CommitLog log, long createdInTransaction) {
         this.index = index;
         this.createdInTransaction = createdInTransaction;
@@ -167,6 +183,132 @@ public abstract class AbstractIndexManager implements AutoCloseable {
         }).filter(p -> p != null);
     }
 
+    /**
+     * Tells whether the index is able to return the index key together with
+     * every PK, see {@link #indexEntriesScanner(IndexOperation, StatementEvaluationContext, TableContext)}
+     *
+     * @return true if index only scans are supported
+     */
+    public boolean supportsIndexOnlyScan() {
+        return false;
+    }
+
+    /**
+     * Like {@link #scanner(IndexOperation, StatementEvaluationContext, TableContext)} but the index key is returned
+     * together with each PK. This way queries which only need the columns of the index and of the PK can be answered
+     * without loading the records
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @return a stream of PK, index key pairs
+     * @throws StatementExecutionException
+     */
+    protected Stream<Map.Entry<Bytes, Bytes>> indexEntriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        throw new UnsupportedOperationException("index " + index.name + " does not support index only scans");
+    }
+
+    /**
+     * Like {@link #recordSetScanner(IndexOperation, StatementEvaluationContext, TableContext, KeyToPageIndex)} but
+     * every entry is an {@link IndexOnlyEntry} which carries the index key
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @param keyToPageIndex
+     * @return
+     * @throws DataStorageManagerException
+     * @throws StatementExecutionException
+     */
+    public Stream<Map.Entry<Bytes, Long>> indexOnlyRecordSetScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, KeyToPageIndex keyToPageIndex) throws DataStorageManagerException, StatementExecutionException {
+        // must be read before any entry of the index
+        final long scanStart = updatesSequence.get();
+        return indexEntriesScanner(operation, context, tableContext).map((e) -> {
+            Long idPage = keyToPageIndex.get(e.getKey());
+            if (idPage == null) {
+                return null;
+            }
+            boolean verifyRecord = isUpdatedSince(e.getKey(), scanStart);
+            return ((Map.Entry<Bytes, Long>) new IndexOnlyEntry(e.getKey(), idPage, e.getValue(), index, verifyRecord));
+        }).filter(p -> p != null);
+    }
+
+    /**
+     * Tells whether the index key of the record may have been changed after the given point of the sequence of
+     * updates: in this case an entry read from the index may be stale or a duplicate of another entry of the same
+     * record.
+     * <p>
+     * The data page is changed before {@link #recordUpdated(Bytes, Bytes, Bytes)} which is not atomic, so the old
+     * entry may be read while the record has already the new index key. Such update is either still registered in
+     * {@link #keysUnderUpdate} or, if completed, it has stamped a sequence number greater than the one read before
+     * the scan started. Unrelated PKs may share the same stamp, this only causes some useless checks.
+     * </p>
+     */
+    private boolean isUpdatedSince(Bytes key, long sequence) {
+        if (!keysUnderUpdate.isEmpty() && keysUnderUpdate.contains(key)) {
+            return true;
+        }
+        return updateStamps.get(updateStampSlot(key)) > sequence;
+    }
+
+    private static int updateStampSlot(Bytes key) {
+        return key.hashCode() & (UPDATE_STAMPS_SIZE - 1);
+    }
+
+    /**
+     * Called by the TableManager before writing the new version of a record whose index key changes. From now on
+     * index only scans check their entries for the record against the record itself.
+     *
+     * @param key
+     * @see #recordUpdateFinished(Bytes)
+     */
+    public void recordUpdateStarted(Bytes key) {
+        if (supportsIndexOnlyScan()) {
+            keysUnderUpdate.add(key);
+        }
+    }
+
+    /**
+     * Called by the TableManager after {@link #recordUpdated(Bytes, Bytes, Bytes)}
+     *
+     * @param key
+     * @see #recordUpdateStarted(Bytes)
+     */
+    public void recordUpdateFinished(Bytes key) {
+        if (supportsIndexOnlyScan()) {
+            // stamp before leaving keysUnderUpdate, scans look at them in the opposite order
+            long sequence = updatesSequence.incrementAndGet();
+            updateStamps.accumulateAndGet(updateStampSlot(key), sequence, Math::max);
+            keysUnderUpdate.remove(key);
+        }
+    }
+
+    /**
+     * Entry of an index only scan, the record can be built using the PK and
+     * the index key. If the record has been updated during the scan the
+     * entry must be checked against the record, see
+     * {@link #verifyRecord}
+     */
+    public static final class IndexOnlyEntry extends SimpleImmutableEntry<Bytes, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        public final transient Bytes indexKey;
+        public final transient Index index;
+        /**
+         * The record must be read and the entry must be discarded if the
+         * record does not have this index key anymore
+         */
+        public final transient boolean verifyRecord;
+
+        public IndexOnlyEntry(Bytes key, Long pageId, Bytes indexKey, Index index, boolean verifyRecord) {
+            super(key, pageId);
+            this.indexKey = indexKey;
+            this.index = index;
+            this.verifyRecord = verifyRecord;
+        }
+    }
+
     public abstract void recordUpdated(Bytes key, Bytes indexKeyRemoved, Bytes indexKeyAdded) throws DataStorageManagerException;
 
     public abstract void recordInserted(Bytes key, Bytes indexKey) throws DataStorageManagerException;
@@ -61,9 +61,14 @@ import herddb.model.commands.AlterTableSpaceStatement;
 import herddb.model.commands.CreateTableSpaceStatement;
 import herddb.model.commands.DropTableSpaceStatement;
 import herddb.model.commands.GetStatement;
+import herddb.model.commands.SQLPlannedOperationStatement;
 import herddb.model.commands.ScanStatement;
 import herddb.model.commands.TableConsistencyCheckStatement;
 import herddb.model.commands.TableSpaceConsistencyCheckStatement;
+import herddb.model.planner.DeleteOp;
+import herddb.model.planner.InsertOp;
+import herddb.model.planner.PlannerOp;
+import herddb.model.planner.UpdateOp;
 import herddb.network.Channel;
 import herddb.network.ServerHostData;
 import herddb.proto.Pdu;
@@ -96,6 +101,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -131,6 +138,9 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
     private final Activator activatorJ;
     private final AtomicBoolean stopped = new AtomicBoolean();
     private final ExecutorService callbacksExecutor;
+    private final ForkJoinPool parallelScanPool;
+    private final ExecutorService readAheadPool;
+    private final ForkJoinPool checkpointPool;
     private final AbstractSQLPlanner planner;
     private final ServerSidePreparedStatementCache preparedStatementsCache;
     private final Path tmpDirectory;
@@ -165,6 +175,38 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             return new FastThreadLocalThread(r, "db-dmlcall-" + count.incrementAndGet());
         }
     };
+    private static final ThreadFactory READ_AHEAD_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new FastThreadLocalThread(r, "db-readahead-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory PARALLEL_SCAN_THREAD_FACTORY =
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("db-scan-" + count.incrementAndGet());
+            return thread;
+        }
+    };
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory CHECKPOINT_THREAD_FACTORY =
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("db-checkpoint-" + count.incrementAndGet());
+            return thread;
+        }
+    };
     private final ExecutorService followersThreadPool = Executors.newCachedThreadPool((Runnable r) -> {
         Thread t = new FastThreadLocalThread(r, r + "");
         t.setDaemon(true);
@@ -196,6 +238,27 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         } else {
             this.callbacksExecutor = Executors.newFixedThreadPool(asyncWorkerThreads, ASYNC_WORKERS_THREAD_FACTORY);
         }
+        int parallelScanThreads = configuration.getInt(ServerConfiguration.PROPERTY_PARALLEL_SCAN_THREADS,
+                ServerConfiguration.PROPERTY_PARALLEL_SCAN_THREADS_DEFAULT);
+        if (parallelScanThreads <= 0) {
+            this.parallelScanPool = null;
+        } else {
+            this.parallelScanPool = new ForkJoinPool(parallelScanThreads, PARALLEL_SCAN_THREAD_FACTORY, null, false);
+        }
+        int readAheadThreads = configuration.getInt(ServerConfiguration.PROPERTY_SCAN_READAHEAD_THREADS,
+                ServerConfiguration.PROPERTY_SCAN_READAHEAD_THREADS_DEFAULT);
+        if (readAheadThreads <= 0) {
+            this.readAheadPool = null;
+        } else {
+            this.readAheadPool = Executors.newFixedThreadPool(readAheadThreads, READ_AHEAD_THREAD_FACTORY);
+        }
+        int checkpointParallelism = configuration.getInt(ServerConfiguration.PROPERTY_CHECKPOINT_PARALLELISM,
+                ServerConfiguration.PROPERTY_CHECKPOINT_PARALLELISM_DEFAULT);
+        if (checkpointParallelism <= 1) {
+            this.checkpointPool = null;
+        } else {
+            this.checkpointPool = new ForkJoinPool(checkpointParallelism, CHECKPOINT_THREAD_FACTORY, null, false);
+        }
         this.recordSetFactory = dataStorageManager.createRecordSetFactory();
         this.metadataStorageManager = metadataStorageManager;
         this.dataStorageManager = dataStorageManager;
@@ -410,7 +473,14 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             maxPKUsedMemory = pk;
         }
 
-        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize);
+        Map<String, MemoryManager.Quota> dataQuotas = new HashMap<>();
+        for (String key : serverConfiguration.keys()) {
+            if (key.startsWith(ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX)) {
+                dataQuotas.put(key.substring(ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX.length()),
+                        MemoryManager.Quota.parse(serverConfiguration.getString(key, "")));
+            }
+        }
+        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, dataQuotas);
 
         metadataStorageManager.start();
 
@@ -658,7 +728,8 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             return FutureUtils.exception(new NotLeaderException("No such tableSpace " + tableSpace + " here. "
                     + "Maybe the server is starting "));
         }
-        if (errorIfNotLeader && !manager.isLeader()) {
+        if (errorIfNotLeader && !manager.isLeader()
+                && !isFollowerReadAllowed(manager, statement, context, transactionContext)) {
             return FutureUtils.exception(new NotLeaderException("node " + nodeId + " is not leader for tableSpace " + tableSpace));
         }
         CompletableFuture<StatementExecutionResult> res = manager.executeStatementAsync(statement, context, transactionContext);
@@ -742,13 +813,43 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             throw new NotLeaderException("No such tableSpace " + tableSpace + " here (at " + nodeId + "). "
                     + "Maybe the server is starting ");
         }
-        boolean allowExecutionFromFollower = statement.getAllowExecutionFromFollower();
+        boolean allowExecutionFromFollower = statement.getAllowExecutionFromFollower()
+                || isFollowerReadAllowed(manager, statement, context, transactionContext);
         if (errorIfNotLeader && !manager.isLeader() && !allowExecutionFromFollower) {
             throw new NotLeaderException("node " + nodeId + " is not leader for tableSpace " + tableSpace);
         }
         return manager.scan(statement, context, transactionContext, false, false);
     }
 
+    /**
+     * Checks if a follower can execute the statement, that is the client
+     * asked for reads from followers, the statement only reads data outside of
+     * transactions and the follower is recent enough
+     */
+    private static boolean isFollowerReadAllowed(
+            TableSpaceManager manager, Statement statement,
+            StatementEvaluationContext context, TransactionContext transactionContext
+    ) {
+        return context.isFollowerReadsAllowed()
+                && transactionContext.transactionId == TransactionContext.NOTRANSACTION_ID
+                && isReadOnlyStatement(statement)
+                && manager.canServeFollowerReads(context.getFollowerReadsMaxStaleness());
+    }
+
+    private static boolean isReadOnlyStatement(Statement statement) {
+        if (statement instanceof ScanStatement || statement instanceof GetStatement) {
+            return true;
+        }
+        if (statement instanceof SQLPlannedOperationStatement) {
+            PlannerOp rootOp = ((SQLPlannedOperationStatement) statement).getRootOp();
+            return rootOp.unwrap(DMLStatement.class) == null
+                    && rootOp.unwrap(InsertOp.class) == null
+                    && rootOp.unwrap(UpdateOp.class) == null
+                    && rootOp.unwrap(DeleteOp.class) == null;
+        }
+        return false;
+    }
+
     /**
      * Utility method for DML/DDL statements
      *
@@ -833,6 +934,15 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             JMXUtils.unregisterDBManagerStatsMXBean();
         }
         callbacksExecutor.shutdown();
+        if (parallelScanPool != null) {
+            parallelScanPool.shutdown();
+        }
+        if (readAheadPool != null) {
+            readAheadPool.shutdown();
+        }
+        if (checkpointPool != null) {
+            checkpointPool.shutdown();
+        }
     }
 
     public void checkpoint() throws DataStorageManagerException, LogNotAvailableException {
@@ -1380,6 +1490,36 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         return callbacksExecutor;
     }
 
+    /**
+     * Pool used to scan large tables in parallel
+     *
+     * @return the pool, or null if parallel scans are disabled
+     * @see ServerConfiguration#PROPERTY_PARALLEL_SCAN_THREADS
+     */
+    public ForkJoinPool getParallelScanPool() {
+        return parallelScanPool;
+    }
+
+    /**
+     * Pool used to read data pages ahead of scans
+     *
+     * @return the pool, or null if read-ahead is disabled
+     * @see ServerConfiguration#PROPERTY_SCAN_READAHEAD_THREADS
+     */
+    public ExecutorService getReadAheadPool() {
+        return readAheadPool;
+    }
+
+    /**
+     * Pool used to checkpoint tables and indexes in parallel
+     *
+     * @return the pool, or null if checkpoints are sequential
+     * @see ServerConfiguration#PROPERTY_CHECKPOINT_PARALLELISM
+     */
+    public ForkJoinPool getCheckpointPool() {
+        return checkpointPool;
+    }
+
     public ServerSidePreparedStatementCache getPreparedStatementsCache() {
         return preparedStatementsCache;
     }
@@ -22,7 +22,9 @@ package herddb.core;
 
 import herddb.model.Record;
 import herddb.utils.Bytes;
+import herddb.utils.SystemProperties;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -47,6 +49,13 @@ public final class DataPage extends Page<TableManager> {
      */
     public static final long CONSTANT_ENTRY_BYTE_SIZE = 32;
 
+    /**
+     * Keep immutable pages packed in a single buffer (see {@link ImmutablePageData})
+     * instead of a map of records
+     */
+    static final boolean PACK_IMMUTABLE_PAGES = SystemProperties.getBooleanSystemProperty(
+            "herddb.datapage.packimmutable", true);
+
     public static long estimateEntrySize(Bytes key, byte[] value) {
         return Record.estimateSize(key, value) + DataPage.CONSTANT_ENTRY_BYTE_SIZE;
     }
@@ -60,6 +69,11 @@ public final class DataPage extends Page<TableManager> {
 
     private final Map<Bytes, Record> data;
 
+    /**
+     * Packed records of immutable pages, when present {@link #data} is {@code null}
+     */
+    private final ImmutablePageData packed;
+
     private final AtomicLong usedMemory;
 
     /**
@@ -80,11 +94,33 @@ public final class DataPage extends Page<TableManager> {
         this.writable = !immutable;
 
         this.data = data;
+        this.packed = null;
         this.usedMemory = new AtomicLong(estimatedSize);
 
         pageLock = immutable ? null : new ReentrantReadWriteLock(false);
     }
 
+    /**
+     * Builds an immutable page backed by packed records.
+     * <p>
+     * Used memory is still the estimated size of the records as they would be
+     * held by a mutable page, it is the logical size of the page used to fill
+     * and compact pages, not its actual heap footprint.
+     * </p>
+     */
+    DataPage(TableManager owner, long pageId, long maxSize, long estimatedSize, ImmutablePageData packed) {
+        super(owner, pageId);
+        this.maxSize = maxSize;
+        this.immutable = true;
+        this.writable = false;
+
+        this.data = null;
+        this.packed = packed;
+        this.usedMemory = new AtomicLong(estimatedSize);
+
+        pageLock = null;
+    }
+
     /**
      * Convert a {@link DataPage} to immutable.
      * <p>
@@ -107,6 +143,9 @@ public final class DataPage extends Page<TableManager> {
             throw new IllegalStateException("page " + pageId + " cannot be converted to immutable because still writable!");
         }
 
+        if (PACK_IMMUTABLE_PAGES) {
+            return new DataPage(owner, pageId, maxSize, usedMemory.get(), ImmutablePageData.build(data.values()));
+        }
         return new DataPage(owner, pageId, maxSize, usedMemory.get(), data, true);
 
     }
@@ -126,6 +165,9 @@ public final class DataPage extends Page<TableManager> {
     }
 
     Record get(Bytes key) {
+        if (packed != null) {
+            return packed.get(key);
+        }
         return data.get(key);
     }
 
@@ -174,18 +216,31 @@ public final class DataPage extends Page<TableManager> {
     }
 
     boolean isEmpty() {
-        return data.isEmpty();
+        return size() == 0;
     }
 
     int size() {
+        if (packed != null) {
+            return packed.size();
+        }
         return data.size();
     }
 
     Collection<Record> getRecordsForFlush() {
+        if (packed != null) {
+            return packed.records();
+        }
         return data.values();
     }
 
     Set<Bytes> getKeysForDebug() {
+        if (packed != null) {
+            Set<Bytes> keys = new HashSet<>();
+            for (Record record : packed.records()) {
+                keys.add(record.key);
+            }
+            return keys;
+        }
         return data.keySet();
     }
 
@@ -213,7 +268,7 @@ public final class DataPage extends Page<TableManager> {
 
     @Override
     public String toString() {
-        return "DataPage{" + "pageId=" + pageId + ", immutable=" + immutable + ", writable=" + writable + ", usedMemory=" + usedMemory + '}';
+        return "DataPage{" + "pageId=" + pageId + ", immutable=" + immutable + ", packed=" + (packed != null) + ", writable=" + writable + ", usedMemory=" + usedMemory + '}';
     }
 
     @Override
@@ -244,10 +299,22 @@ public final class DataPage extends Page<TableManager> {
         if (!equals(other)) {
             return false;
         }
-        return data.equals(other.data);
+        if (size() != other.size()) {
+            return false;
+        }
+        for (Record record : getRecordsForFlush()) {
+            if (!record.equals(other.get(record.key))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     void flushRecordsCache() {
+        if (packed != null) {
+            // records are decoded on access, there is no cache to flush
+            return;
+        }
         data.values().forEach(r -> r.clearCache());
     }
 
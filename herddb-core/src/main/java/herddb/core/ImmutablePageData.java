@@ -0,0 +1,165 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.model.Record;
+import herddb.utils.Bytes;
+import herddb.utils.CompareBytesUtils;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records of an immutable {@link DataPage}, packed in a single byte array.
+ * <p>
+ * Keys and values are stored one after the other in a slotted buffer and
+ * looked up with an open addressing hash directory made of int arrays, so a
+ * page is made of a handful of objects whatever the number of records.
+ * {@link Record} instances are created on access and share the page buffer.
+ */
+final class ImmutablePageData {
+
+    private final byte[] data;
+
+    /**
+     * Start of every entry (key followed by value), with an additional element
+     * pointing to the end of the last entry
+     */
+    private final int[] offsets;
+    private final int[] keyLengths;
+    private final int[] hashes;
+
+    /**
+     * Hash directory, contains entry index + 1, 0 means a free slot
+     */
+    private final int[] slots;
+    private final int mask;
+
+    private ImmutablePageData(byte[] data, int[] offsets, int[] keyLengths, int[] hashes, int[] slots) {
+        this.data = data;
+        this.offsets = offsets;
+        this.keyLengths = keyLengths;
+        this.hashes = hashes;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+    }
+
+    static ImmutablePageData build(Collection<Record> records) {
+        final int size = records.size();
+        long total = 0;
+        for (Record record : records) {
+            total += record.key.getLength() + record.value.getLength();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("page too big to be packed, " + total + " bytes");
+        }
+
+        final byte[] data = new byte[(int) total];
+        final int[] offsets = new int[size + 1];
+        final int[] keyLengths = new int[size];
+        final int[] hashes = new int[size];
+
+        /* Keep load factor under 0.5 */
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        final int[] slots = new int[capacity];
+        final int mask = capacity - 1;
+
+        int position = 0;
+        int index = 0;
+        for (Record record : records) {
+            final Bytes key = record.key;
+            final Bytes value = record.value;
+            offsets[index] = position;
+            keyLengths[index] = key.getLength();
+            System.arraycopy(key.getBuffer(), key.getOffset(), data, position, key.getLength());
+            position += key.getLength();
+            System.arraycopy(value.getBuffer(), value.getOffset(), data, position, value.getLength());
+            position += value.getLength();
+
+            final int hash = key.hashCode();
+            hashes[index] = hash;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+            index++;
+        }
+        offsets[size] = position;
+
+        return new ImmutablePageData(data, offsets, keyLengths, hashes, slots);
+    }
+
+    Record get(Bytes key) {
+        final int hash = key.hashCode();
+        final byte[] keyBuffer = key.getBuffer();
+        final int keyOffset = key.getOffset();
+        final int keyLength = key.getLength();
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final int entry = slots[slot] - 1;
+            if (entry < 0) {
+                return null;
+            }
+            if (hashes[entry] == hash) {
+                final int start = offsets[entry];
+                if (CompareBytesUtils.arraysEquals(data, start, start + keyLengths[entry],
+                        keyBuffer, keyOffset, keyOffset + keyLength)) {
+                    return record(entry);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return keyLengths.length;
+    }
+
+    /**
+     * Decodes all the records of the page, in storage order
+     *
+     * @return a view of the records
+     */
+    List<Record> records() {
+        return new AbstractList<Record>() {
+            @Override
+            public Record get(int index) {
+                return record(index);
+            }
+
+            @Override
+            public int size() {
+                return keyLengths.length;
+            }
+        };
+    }
+
+    private Record record(int entry) {
+        final int start = offsets[entry];
+        final int keyLength = keyLengths[entry];
+        return new Record(
+                Bytes.from_array(data, start, keyLength),
+                Bytes.from_array(data, start + keyLength, offsets[entry + 1] - start - keyLength));
+    }
+
+}
@@ -22,6 +22,9 @@ package herddb.core;
 
 /**
  * Local cache to temporary scan, used not to swapin/swap-out pages from core Table Buffer
+ * <p>
+ * Large scans use a small ring of pages and never promote pages in the core
+ * Table Buffer, in order not to evict the working set of other queries.
  *
  * @author enrico.olivelli
  */
@@ -30,4 +33,58 @@ public final class LocalScanPageCache {
     public DataPage value;
     public long pageId;
 
+    /**
+     * Read-ahead of the pages of the scan, null if disabled
+     */
+    PageReadAhead readAhead;
+
+    /**
+     * Pages of a large scan, null for other scans
+     */
+    private final DataPage[] ring;
+    private int ringPosition;
+
+    public LocalScanPageCache() {
+        this.ring = null;
+    }
+
+    /**
+     * Cache for a large scan
+     *
+     * @param ringSize number of pages kept by the scan
+     */
+    LocalScanPageCache(int ringSize) {
+        this.ring = new DataPage[Math.max(1, ringSize)];
+    }
+
+    /**
+     * @return true if the scan must not load pages in the core Table Buffer
+     */
+    boolean isBypassSharedCache() {
+        return ring != null;
+    }
+
+    DataPage get(long pageId) {
+        if (value != null && this.pageId == pageId) {
+            return value;
+        }
+        if (ring != null) {
+            for (DataPage page : ring) {
+                if (page != null && page.pageId == pageId) {
+                    return page;
+                }
+            }
+        }
+        return null;
+    }
+
+    void put(DataPage page) {
+        value = page;
+        pageId = page.pageId;
+        if (ring != null) {
+            ring[ringPosition] = page;
+            ringPosition = (ringPosition + 1) % ring.length;
+        }
+    }
+
 }
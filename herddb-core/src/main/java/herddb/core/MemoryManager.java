@@ -21,7 +21,10 @@
 package herddb.core;
 
 import herddb.utils.SystemProperties;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +40,12 @@ public class MemoryManager {
     private static final String PAGE_REPLACEMENT_POLICY = SystemProperties.getStringSystemProperty(
             MemoryManager.class.getName() + ".pageReplacementPolicy", "cp").toLowerCase(Locale.US);
 
+    /**
+     * Number of shards of the "sharded" policy
+     */
+    private static final int PAGE_REPLACEMENT_POLICY_SHARDS = SystemProperties.getIntSystemProperty(
+            MemoryManager.class.getName() + ".pageReplacementPolicyShards", Runtime.getRuntime().availableProcessors());
+
     private final long maxDataUsedMemory;
     private final long maxPKUsedMemory;
     private final long maxLogicalPageSize;
@@ -44,7 +53,21 @@ public class MemoryManager {
     private final PageReplacementPolicy dataPageReplacementPolicy;
     private final PageReplacementPolicy pkPageReplacementPolicy;
 
+    /**
+     * Partitions of data pages memory, by tablespace name or by tablespace
+     * name and table name (separated by a dot)
+     */
+    private final Map<String, QuotaPageReplacementPolicy> dataPartitions;
+
     public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize) {
+        this(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, Collections.emptyMap());
+    }
+
+    /**
+     * @param dataQuotas quotas of data pages memory, by tablespace name or by
+     *                   tablespace name and table name (separated by a dot)
+     */
+    public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize, Map<String, Quota> dataQuotas) {
 
         this.maxDataUsedMemory = maxDataUsedMemory;
         this.maxPKUsedMemory = maxPKUsedMemory;
@@ -63,6 +86,16 @@ public class MemoryManager {
         final int dataPages = (int) (maxDataUsedMemory / maxLogicalPageSize);
         final int pkPages = (int) (maxPKUsedMemory / maxLogicalPageSize);
 
+        int reservedDataPages = 0;
+        for (Quota quota : dataQuotas.values()) {
+            reservedDataPages += quota.getReservedPages(maxLogicalPageSize);
+        }
+        if (reservedDataPages >= dataPages) {
+            throw new IllegalArgumentException("Memory reserved for data pages by quotas (" + reservedDataPages * maxLogicalPageSize
+                    + ") must be lower than max memory for data pages (" + maxDataUsedMemory + ")");
+        }
+        final int sharedDataPages = dataPages - reservedDataPages;
+
         LOGGER.log(Level.INFO, "Maximum amount of memory for data and indexes {0}", (maxDataUsedMemory / (1024 * 1024)) + " MB");
         LOGGER.log(Level.INFO, "Maximum amount of memory for primary key indexes {0}", (maxPKUsedMemory / (1024 * 1024)) + " MB");
 
@@ -70,21 +103,35 @@ public class MemoryManager {
                 + ", maximum number of loadedd pages for primary key indexes {1}", new Object[]{dataPages, pkPages});
         switch (PAGE_REPLACEMENT_POLICY) {
             case "random":
-                dataPageReplacementPolicy = new RandomPageReplacementPolicy(dataPages);
+                dataPageReplacementPolicy = new RandomPageReplacementPolicy(sharedDataPages);
                 pkPageReplacementPolicy = new RandomPageReplacementPolicy(pkPages);
                 break;
 
+            case "sharded":
+                dataPageReplacementPolicy = new ShardedPageReplacementPolicy(sharedDataPages, PAGE_REPLACEMENT_POLICY_SHARDS, ClockProPolicy::new);
+                pkPageReplacementPolicy = new ShardedPageReplacementPolicy(pkPages, PAGE_REPLACEMENT_POLICY_SHARDS, ClockProPolicy::new);
+                break;
+
             case "cp":
-                dataPageReplacementPolicy = new ClockProPolicy(dataPages);
+                dataPageReplacementPolicy = new ClockProPolicy(sharedDataPages);
                 pkPageReplacementPolicy = new ClockProPolicy(pkPages);
                 break;
 
             case "car":
             default:
-                dataPageReplacementPolicy = new ClockAdaptiveReplacement(dataPages);
+                dataPageReplacementPolicy = new ClockAdaptiveReplacement(sharedDataPages);
                 pkPageReplacementPolicy = new ClockAdaptiveReplacement(pkPages);
         }
 
+        dataPartitions = new HashMap<>();
+        dataQuotas.forEach((name, quota) -> {
+            int reserved = quota.getReservedPages(maxLogicalPageSize);
+            int max = Math.min(dataPages, Math.max(reserved, quota.getMaxPages(maxLogicalPageSize)));
+            LOGGER.log(Level.INFO, "Data pages memory quota for {0}: reserved pages {1}, maximum pages {2}",
+                    new Object[]{name, reserved, max});
+            dataPartitions.put(name, new QuotaPageReplacementPolicy(name, reserved, max, dataPageReplacementPolicy));
+        });
+
     }
 
     public long getMaxDataUsedMemory() {
@@ -103,8 +150,86 @@ public class MemoryManager {
         return dataPageReplacementPolicy;
     }
 
+    /**
+     * Lookup the policy for the data pages of a table: a quota of the table
+     * wins over a quota of the tablespace, which is shared by all the tables of
+     * the tablespace.
+     *
+     * @param tableSpaceName
+     * @param tableName
+     * @return the policy of the partition of the table, or the shared policy
+     */
+    public PageReplacementPolicy getDataPageReplacementPolicy(String tableSpaceName, String tableName) {
+        QuotaPageReplacementPolicy partition = dataPartitions.get(tableSpaceName + "." + tableName);
+        if (partition == null) {
+            partition = dataPartitions.get(tableSpaceName);
+        }
+        return partition != null ? partition : dataPageReplacementPolicy;
+    }
+
     public PageReplacementPolicy getPKPageReplacementPolicy() {
         return pkPageReplacementPolicy;
     }
 
+    /**
+     * Reserved and maximum memory for the data pages of a tablespace or a
+     * table
+     */
+    public static final class Quota {
+
+        private final long reservedMemory;
+        private final long maxMemory;
+
+        public Quota(long reservedMemory, long maxMemory) {
+            if (reservedMemory < 0 || maxMemory < reservedMemory) {
+                throw new IllegalArgumentException("Invalid memory quota: reserved " + reservedMemory + ", max " + maxMemory);
+            }
+            this.reservedMemory = reservedMemory;
+            this.maxMemory = maxMemory;
+        }
+
+        /**
+         * Parses a quota in the form {@code reserved[,max]}, in bytes. If the
+         * maximum is not given it is equal to the reserved memory.
+         *
+         * @param value
+         * @return the quota
+         * @throws IllegalArgumentException if the value is not valid
+         */
+        public static Quota parse(String value) {
+            String[] split = value.split(",");
+            if (split.length > 2) {
+                throw new IllegalArgumentException("Invalid memory quota " + value);
+            }
+            try {
+                long reserved = Long.parseLong(split[0].trim());
+                long max = split.length > 1 ? Long.parseLong(split[1].trim()) : reserved;
+                return new Quota(reserved, max);
+            } catch (NumberFormatException err) {
+                throw new IllegalArgumentException("Invalid memory quota " + value, err);
+            }
+        }
+
+        public long getReservedMemory() {
+            return reservedMemory;
+        }
+
+        public long getMaxMemory() {
+            return maxMemory;
+        }
+
+        int getReservedPages(long pageSize) {
+            return (int) (reservedMemory / pageSize);
+        }
+
+        int getMaxPages(long pageSize) {
+            return (int) (maxMemory / pageSize);
+        }
+
+        @Override
+        public String toString() {
+            return "Quota{" + "reservedMemory=" + reservedMemory + ", maxMemory=" + maxMemory + '}';
+        }
+    }
+
 }
@@ -0,0 +1,174 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.storage.DataStorageManagerException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous read-ahead of data pages during a scan.
+ * <p>
+ * Scans access pages in increasing page id order inside each window of the
+ * key-to-page stream. Once two ascending page accesses are detected the next
+ * pages are read and decoded on an I/O pool, so that the scan finds them ready
+ * when it reaches them. Pages which are never reached are just dropped, a
+ * failed read is retried synchronously by the scan.
+ * <p>
+ * An instance is used by a single scan thread.
+ */
+final class PageReadAhead {
+
+    private static final Logger LOGGER = Logger.getLogger(PageReadAhead.class.getName());
+
+    /**
+     * Loads a page without putting it in the page buffer
+     */
+    interface PageLoader {
+
+        DataPage load(long pageId) throws DataStorageManagerException;
+    }
+
+    private final PageLoader loader;
+    private final LongPredicate needsRead;
+    private final Executor executor;
+    private final int maxPages;
+
+    private final TreeMap<Long, CompletableFuture<DataPage>> requests = new TreeMap<>();
+    private long lastPageId = -1;
+    private long lastRequestedPageId = -1;
+    private boolean sequential;
+    private int prefetchedPages;
+
+    /**
+     * @param loader    reads and decodes a page
+     * @param needsRead tells whether a page exists on disk and is not already
+     *                  in memory
+     * @param executor  I/O pool
+     * @param maxPages  max number of pages read ahead of the scan
+     */
+    PageReadAhead(PageLoader loader, LongPredicate needsRead, Executor executor, int maxPages) {
+        this.loader = loader;
+        this.needsRead = needsRead;
+        this.executor = executor;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Notifies that the scan is accessing a page
+     *
+     * @param pageId
+     * @return the page if it has been read ahead, null if the scan must load
+     * it
+     */
+    DataPage access(long pageId) {
+        if (pageId == lastPageId) {
+            return null;
+        }
+        sequential = lastPageId >= 0 && pageId > lastPageId && pageId - lastPageId <= maxPages;
+        lastPageId = pageId;
+
+        CompletableFuture<DataPage> request = requests.remove(pageId);
+        // pages behind the scan will not be accessed, at least in this window
+        dropAll(requests.headMap(pageId));
+        if (!sequential) {
+            dropAll(requests);
+            lastRequestedPageId = -1;
+        } else {
+            schedule(pageId);
+        }
+        if (request == null) {
+            return null;
+        }
+        try {
+            DataPage page = request.get();
+            if (page != null) {
+                prefetchedPages++;
+            }
+            return page;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException err) {
+            LOGGER.log(Level.FINE, "read-ahead of page " + pageId + " failed", err.getCause());
+            return null;
+        }
+    }
+
+    private void schedule(long pageId) {
+        long next = Math.max(pageId, lastRequestedPageId) + 1;
+        long last = pageId + maxPages;
+        for (; next <= last; next++) {
+            if (needsRead.test(next)) {
+                final long id = next;
+                CompletableFuture<DataPage> request;
+                try {
+                    request = CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return loader.load(id);
+                        } catch (DataStorageManagerException err) {
+                            throw new HerdDBInternalException(err);
+                        }
+                    }, executor);
+                } catch (RejectedExecutionException err) {
+                    // shutting down
+                    return;
+                }
+                requests.put(id, request);
+            }
+            lastRequestedPageId = next;
+        }
+    }
+
+    private static void dropAll(Map<Long, CompletableFuture<DataPage>> toDrop) {
+        for (Iterator<CompletableFuture<DataPage>> it = toDrop.values().iterator(); it.hasNext(); ) {
+            it.next().cancel(false);
+            it.remove();
+        }
+    }
+
+    /**
+     * @return number of pages served to the scan
+     */
+    int getPrefetchedPages() {
+        return prefetchedPages;
+    }
+
+    boolean isSequential() {
+        return sequential;
+    }
+
+    /**
+     * Cancels pending reads, called at the end of the scan
+     */
+    void close() {
+        dropAll(requests);
+    }
+
+}
@@ -98,6 +98,10 @@ public final class PageSet {
         return new HashMap<>(activePages);
     }
 
+    boolean isActive(long pageId) {
+        return activePages.containsKey(pageId);
+    }
+
     int getActivePagesCount() {
         return activePages.size();
     }
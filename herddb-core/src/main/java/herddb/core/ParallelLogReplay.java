@@ -0,0 +1,169 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.utils.SystemProperties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies entries of the transaction log using a pool of threads.
+ * <p>
+ * Every table is bound to a single worker, so that the entries of a table are
+ * applied in log order, while different tables are recovered in parallel. The
+ * thread which reads the log must call {@link #barrier()} before applying any
+ * entry which is not local to a single table (transaction boundaries, DDL).
+ */
+final class ParallelLogReplay implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelLogReplay.class.getName());
+
+    private static final int QUEUE_SIZE = SystemProperties.getIntSystemProperty(
+            "herddb.recovery.queuesize", 10_000);
+
+    @FunctionalInterface
+    interface Task {
+
+        void run() throws Exception;
+    }
+
+    private static final Task STOP = () -> {
+    };
+
+    private final Worker[] workers;
+    private final Object pendingLock = new Object();
+    private long pending;
+    private volatile Throwable error;
+
+    ParallelLogReplay(String name, int parallelism) {
+        workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(name + "-recovery-" + i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Schedules a task which touches only the given table
+     *
+     * @param tableName
+     * @param task
+     * @throws InterruptedException
+     */
+    void dispatch(String tableName, Task task) throws InterruptedException {
+        checkError();
+        synchronized (pendingLock) {
+            pending++;
+        }
+        Worker worker = workers[Math.floorMod(tableName.hashCode(), workers.length)];
+        worker.queue.put(task);
+    }
+
+    /**
+     * Waits for every scheduled task to be applied
+     *
+     * @throws InterruptedException
+     */
+    void barrier() throws InterruptedException {
+        synchronized (pendingLock) {
+            while (pending > 0) {
+                pendingLock.wait();
+            }
+        }
+        checkError();
+    }
+
+    long getPending() {
+        synchronized (pendingLock) {
+            return pending;
+        }
+    }
+
+    private void checkError() {
+        Throwable err = error;
+        if (err != null) {
+            throw new RuntimeException("recovery failed: " + err, err);
+        }
+    }
+
+    private void taskDone() {
+        synchronized (pendingLock) {
+            if (--pending == 0) {
+                pendingLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            worker.queue.clear();
+            worker.queue.offer(STOP);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        private final BlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+        Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException err) {
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    // after an error we only drain the queue
+                    if (error == null) {
+                        task.run();
+                    }
+                } catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, "error while applying log entry on " + getName(), t);
+                    error = t;
+                } finally {
+                    taskDone();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link PageReplacementPolicy} for a memory partition with a quota.
+ * <p>
+ * The partition always keeps up to {@code reservedPages} pages, which are not
+ * accounted in the shared policy. Pages over the reserved ones borrow slots
+ * from the shared policy, up to {@code maxPages}: for each borrowed slot a
+ * token page is added to the shared policy and when the shared policy evicts
+ * the token a page of the partition is unloaded. Pages inside the partition
+ * are choosen with a CLOCK algorithm.
+ */
+public class QuotaPageReplacementPolicy implements PageReplacementPolicy, Page.Owner {
+
+    private final String name;
+    private final int reservedPages;
+    private final int maxPages;
+    private final PageReplacementPolicy shared;
+
+    /**
+     * Pages in clock order, the value is the reference bit. Pages are keyed by
+     * owner and id, as pages of different tables share the same quota
+     */
+    private final LinkedHashMap<PageKey, Boolean> pages = new LinkedHashMap<>();
+
+    /**
+     * Slots borrowed from the shared policy
+     */
+    private final LinkedHashMap<Long, Token> tokens = new LinkedHashMap<>();
+    private long nextTokenId;
+
+    public QuotaPageReplacementPolicy(String name, int reservedPages, int maxPages, PageReplacementPolicy shared) {
+        if (reservedPages < 0 || maxPages < reservedPages) {
+            throw new IllegalArgumentException("Invalid quota for " + name + ": reserved pages " + reservedPages
+                    + ", max pages " + maxPages);
+        }
+        this.name = name;
+        this.reservedPages = reservedPages;
+        this.maxPages = maxPages;
+        this.shared = shared;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getReservedPages() {
+        return reservedPages;
+    }
+
+    /**
+     * @return number of pages borrowed from the shared policy
+     */
+    public synchronized int getBorrowedPages() {
+        return tokens.size();
+    }
+
+    @Override
+    public Page.Metadata add(Page<?> page) {
+        Token token = null;
+        PageKey victim = null;
+        synchronized (this) {
+            PageKey key = new PageKey(page);
+            if (pages.containsKey(key)) {
+                return null;
+            }
+            pages.put(key, Boolean.FALSE);
+            if (pages.size() > maxPages) {
+                victim = evict();
+            } else if (pages.size() > reservedPages) {
+                token = new Token(this, nextTokenId++);
+                tokens.put(token.pageId, token);
+            }
+        }
+        if (victim != null) {
+            return new Page.Metadata(victim.owner, victim.pageId);
+        }
+        if (token != null) {
+            return shared.add(token);
+        }
+        return null;
+    }
+
+    @Override
+    public void pageHit(Page<?> page) {
+        synchronized (this) {
+            pages.replace(new PageKey(page), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public boolean remove(Page<?> page) {
+        Token token;
+        synchronized (this) {
+            if (pages.remove(new PageKey(page)) == null) {
+                return false;
+            }
+            token = releaseToken();
+        }
+        if (token != null) {
+            shared.remove(token);
+        }
+        return true;
+    }
+
+    @Override
+    public <P extends Page<?>> void remove(Collection<P> pages) {
+        for (Page<?> page : pages) {
+            remove(page);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    @Override
+    public int capacity() {
+        return maxPages;
+    }
+
+    @Override
+    public void clear() {
+        List<Token> released;
+        synchronized (this) {
+            pages.clear();
+            released = new ArrayList<>(tokens.values());
+            tokens.clear();
+        }
+        shared.remove(released);
+    }
+
+    /**
+     * Invoked by the shared policy when a borrowed slot is taken back
+     */
+    @Override
+    public void unload(long tokenId) {
+        PageKey victim;
+        synchronized (this) {
+            if (tokens.remove(tokenId) == null) {
+                // already released
+                return;
+            }
+            victim = evict();
+        }
+        if (victim != null) {
+            victim.owner.unload(victim.pageId);
+        }
+    }
+
+    /**
+     * Choose and remove a page with the CLOCK algorithm
+     */
+    private PageKey evict() {
+        while (!pages.isEmpty()) {
+            Iterator<Map.Entry<PageKey, Boolean>> it = pages.entrySet().iterator();
+            Map.Entry<PageKey, Boolean> hand = it.next();
+            PageKey page = hand.getKey();
+            it.remove();
+            if (!hand.getValue()) {
+                return page;
+            }
+            // second chance
+            pages.put(page, Boolean.FALSE);
+        }
+        return null;
+    }
+
+    private Token releaseToken() {
+        if (tokens.size() <= Math.max(0, pages.size() - reservedPages)) {
+            return null;
+        }
+        Iterator<Token> it = tokens.values().iterator();
+        Token token = it.next();
+        it.remove();
+        return token;
+    }
+
+    @Override
+    public String toString() {
+        return "QuotaPageReplacementPolicy{" + "name=" + name + ", reservedPages=" + reservedPages
+                + ", maxPages=" + maxPages + '}';
+    }
+
+    private static final class PageKey {
+
+        private final Page.Owner owner;
+        private final long pageId;
+        private final int hashcode;
+
+        PageKey(Page<?> page) {
+            this.owner = page.owner;
+            this.pageId = page.pageId;
+            this.hashcode = Objects.hash(owner, pageId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return pageId == other.pageId && owner == other.owner;
+        }
+    }
+
+    private static final class Token extends Page<QuotaPageReplacementPolicy> {
+
+        Token(QuotaPageReplacementPolicy owner, long pageId) {
+            super(owner, pageId);
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import herddb.core.stats.TableManagerStats;
 import herddb.index.IndexOperation;
 import herddb.index.KeyToPageIndex;
 import herddb.index.PrimaryIndexSeek;
+import herddb.index.SecondaryIndexSeek;
 import herddb.log.CommitLog;
 import herddb.log.CommitLogResult;
 import herddb.log.LogEntry;
@@ -58,6 +59,7 @@ import herddb.model.Table;
 import herddb.model.TableContext;
 import herddb.model.Transaction;
 import herddb.model.TupleComparator;
+import herddb.model.commands.BulkInsertStatement;
 import herddb.model.commands.DeleteStatement;
 import herddb.model.commands.GetStatement;
 import herddb.model.commands.InsertStatement;
@@ -93,10 +95,16 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -179,6 +187,16 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
      * Counts how many pages had been loaded
      */
     private final LongAdder unloadedPagesCount = new LongAdder();
+
+    /**
+     * Counts accesses to pages found in the page buffer
+     */
+    private final LongAdder pageCacheHits = new LongAdder();
+
+    /**
+     * Counts accesses to pages which had to be read from the storage
+     */
+    private final LongAdder pageCacheMisses = new LongAdder();
     /**
      * Local locks
      */
@@ -262,6 +280,37 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     private final boolean keyToPageSortedAscending;
 
+    /**
+     * Pool used to fetch and filter pages during large scans, null if parallel
+     * scans are disabled
+     */
+    private final ForkJoinPool parallelScanPool;
+
+    /**
+     * Minimum number of records in order to scan the table in parallel
+     */
+    private final long parallelScanMinTableSize;
+
+    /**
+     * Pool used to read pages ahead of scans, null if read-ahead is disabled
+     */
+    private final ExecutorService readAheadPool;
+    private final int readAheadPages;
+    private final Counter readAheadPagesCounter;
+
+    /**
+     * Max size of the records carried by a single batched log entry, 0 means
+     * one entry per record
+     */
+    private final int maxBatchEntryBytes;
+
+    /**
+     * Full scans of tables with at least this number of pages do not use the
+     * page buffer, 0 if disabled
+     */
+    private final long scanCacheBypassMinPages;
+    private final int scanCacheBypassRingPages;
+
     void prepareForRestore(LogSequenceNumber dumpLogSequenceNumber) {
         LOGGER.log(Level.INFO, "Table " + table.name + ", receiving dump,"
                 + "done at external logPosition " + dumpLogSequenceNumber);
@@ -337,6 +386,32 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             return keyToPage.getUsedMemory();
         }
 
+        @Override
+        public long getPageCacheHits() {
+            return pageCacheHits.sum();
+        }
+
+        @Override
+        public long getPageCacheMisses() {
+            return pageCacheMisses.sum();
+        }
+
+        @Override
+        public long getCacheReservedMemory() {
+            if (pageReplacementPolicy instanceof QuotaPageReplacementPolicy) {
+                return ((QuotaPageReplacementPolicy) pageReplacementPolicy).getReservedPages() * maxLogicalPageSize;
+            }
+            return 0;
+        }
+
+        @Override
+        public long getCacheMaxMemory() {
+            if (pageReplacementPolicy instanceof QuotaPageReplacementPolicy) {
+                return pageReplacementPolicy.capacity() * maxLogicalPageSize;
+            }
+            return 0;
+        }
+
     }
 
     TableManager(
@@ -358,7 +433,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         this.maxLogicalPageSize = memoryManager.getMaxLogicalPageSize();
         this.keyToPage = dataStorageManager.createKeyToPageMap(tableSpaceUUID, table.uuid, memoryManager);
 
-        this.pageReplacementPolicy = memoryManager.getDataPageReplacementPolicy();
+        this.pageReplacementPolicy = memoryManager.getDataPageReplacementPolicy(tableSpaceManager.getTableSpaceName(), table.name);
         this.pages = new ConcurrentHashMap<>();
         this.newPages = new ConcurrentHashMap<>();
 
@@ -388,9 +463,29 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         this.compactionTargetTime = compactionTargetTime < 0 ? Long.MAX_VALUE : compactionTargetTime;
 
+        this.parallelScanPool = tableSpaceManager.getDbmanager().getParallelScanPool();
+        this.parallelScanMinTableSize = tableSpaceManager.getDbmanager().getServerConfiguration().getLong(
+                ServerConfiguration.PROPERTY_PARALLEL_SCAN_MIN_TABLE_SIZE,
+                ServerConfiguration.PROPERTY_PARALLEL_SCAN_MIN_TABLE_SIZE_DEFAULT);
+        this.readAheadPool = tableSpaceManager.getDbmanager().getReadAheadPool();
+        double scanCacheBypassRatio = tableSpaceManager.getDbmanager().getServerConfiguration().getDouble(
+                ServerConfiguration.PROPERTY_SCAN_CACHE_BYPASS_RATIO,
+                ServerConfiguration.PROPERTY_SCAN_CACHE_BYPASS_RATIO_DEFAULT);
+        this.scanCacheBypassMinPages = scanCacheBypassRatio <= 0 ? 0
+                : Math.max(1, (long) (scanCacheBypassRatio * memoryManager.getMaxDataUsedMemory() / maxLogicalPageSize));
+        this.scanCacheBypassRingPages = tableSpaceManager.getDbmanager().getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_SCAN_CACHE_BYPASS_RING_PAGES,
+                ServerConfiguration.PROPERTY_SCAN_CACHE_BYPASS_RING_PAGES_DEFAULT);
+        this.readAheadPages = tableSpaceManager.getDbmanager().getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_SCAN_READAHEAD_PAGES,
+                ServerConfiguration.PROPERTY_SCAN_READAHEAD_PAGES_DEFAULT);
+        this.maxBatchEntryBytes = tableSpaceManager.getDbmanager().getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_TXLOG_MAX_BATCH_ENTRY_BYTES,
+                ServerConfiguration.PROPERTY_TXLOG_MAX_BATCH_ENTRY_BYTES_DEFAULT);
 
         StatsLogger tableMetrics = tableSpaceManager.tablespaceStasLogger.scope("table_" + table.name);
         this.checkpointProcessedDirtyRecords = tableMetrics.getCounter("checkpoint_processed_dirty_records");
+        this.readAheadPagesCounter = tableMetrics.getCounter("readahead_pages");
         int[] pkTypes = new int[table.primaryKey.length];
         for (int i = 0; i < table.primaryKey.length; i++) {
             Column col = table.getColumn(table.primaryKey[i]);
@@ -568,6 +663,9 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         } else if (statement instanceof InsertStatement) {
             InsertStatement insert = (InsertStatement) statement;
             res = executeInsertAsync(insert, transaction, context);
+        } else if (statement instanceof BulkInsertStatement) {
+            BulkInsertStatement bulk = (BulkInsertStatement) statement;
+            res = executeBulkInsertAsync(bulk, transaction, context);
         } else if (statement instanceof GetStatement) {
             GetStatement get = (GetStatement) statement;
             res = executeGetAsync(get, transaction, context);
@@ -1163,6 +1261,157 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return res;
     }
 
+    private CompletableFuture<StatementExecutionResult> executeBulkInsertAsync(BulkInsertStatement bulk, Transaction transaction, StatementEvaluationContext context) {
+        /*
+         every record is checked like in executeInsertAsync, but the whole batch is validated in a single pass,
+         the records are written to the log in batched entries asking for a sync only on the last one,
+         and they are applied all together when the log acknowledges the batch.
+         On the first failure the records which precede the bad one are applied anyway,
+         as it happens when the inserts are executed one by one
+         */
+        InsertStatement insert = bulk.getInsert();
+        Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
+        List<StatementEvaluationContext> rows = bulk.getRows();
+        List<Bytes> keys = new ArrayList<>(rows.size());
+        List<byte[]> values = new ArrayList<>(rows.size());
+        StatementExecutionException failure = null;
+        for (StatementEvaluationContext row : rows) {
+            Bytes key;
+            byte[] value;
+            try {
+                key = Bytes.from_array(insert.getKeyFunction().computeNewValue(null, row, tableContext));
+                value = insert.getValuesFunction().computeNewValue(new Record(key, null), row, tableContext);
+                if (indexes != null) {
+                    DataAccessor recordValues = new Record(key, Bytes.from_array(value)).getDataAccessor(table);
+                    for (AbstractIndexManager index : indexes.values()) {
+                        RecordSerializer.validateIndexableValue(recordValues, index.getIndex(), index.getColumnNames());
+                    }
+                }
+            } catch (IllegalArgumentException err) {
+                failure = new StatementExecutionException(err.getMessage(), err);
+                break;
+            } catch (StatementExecutionException err) {
+                failure = err;
+                break;
+            }
+            final long size = DataPage.estimateEntrySize(key, value);
+            if (size > maxLogicalPageSize) {
+                failure = new RecordTooBigException("New record " + key + " is to big to be inserted: size " + size + ", max size " + maxLogicalPageSize);
+                break;
+            }
+            keys.add(key);
+            values.add(value);
+        }
+
+        int validRows = keys.size();
+        List<LockHandle> locks = new ArrayList<>();
+        if (transaction == null) {
+            // every lock is held up to the end of the batch: they are acquired in key order,
+            // otherwise concurrent batches which share some keys would deadlock
+            for (Bytes key : new TreeSet<>(keys)) {
+                try {
+                    locks.add(lockForWrite(key, null));
+                } catch (StatementExecutionException err) {
+                    // the records preceding the first one whose key is not locked are applied anyway
+                    failure = err;
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (keys.get(i).compareTo(key) >= 0) {
+                            validRows = i;
+                            break;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        List<CompletableFuture<PendingLogEntryWork>> writes = new ArrayList<>();
+        // locks are not handed to the batcher, they are released here as a key may appear more than once in the batch
+        LogEntryBatcher batcher = new LogEntryBatcher(transaction, writes, true);
+        int updateCount = 0;
+        Bytes lastKey = null;
+        // keys already seen in this batch -> true if the record has been logged as an INSERT
+        Map<Bytes, Boolean> batchKeys = new HashMap<>();
+        for (int i = 0; i < validRows; i++) {
+            Bytes key = keys.get(i);
+            byte[] value = values.get(i);
+            boolean fallbackToUpsert = false;
+            Boolean insertedInBatch = batchKeys.get(key);
+            if (insertedInBatch != null) {
+                // the lock has already been acquired for a previous record of the batch
+                if (insert.isUpsert() && !(transaction != null && insertedInBatch)) {
+                    fallbackToUpsert = true;
+                } else {
+                    failure = new DuplicatePrimaryKeyException(key, "key " + key + ", decoded as " + RecordSerializer.deserializePrimaryKey(key, table) + ", already exists in table " + table.name + " in the same batch");
+                    break;
+                }
+            } else {
+                if (transaction != null) {
+                    try {
+                        lockForWrite(key, transaction);
+                    } catch (StatementExecutionException err) {
+                        failure = err;
+                        break;
+                    }
+                }
+                if (transaction != null && transaction.recordDeleted(table.name, key)) {
+                    // OK, INSERT on a DELETED record inside this transaction
+                } else if (transaction != null && transaction.recordInserted(table.name, key) != null) {
+                    failure = new DuplicatePrimaryKeyException(key, "key " + key + ", decoded as " + RecordSerializer.deserializePrimaryKey(key, table) + ", already exists in table " + table.name + " inside transaction " + transaction.transactionId);
+                    break;
+                } else if (keyToPage.containsKey(key)) {
+                    if (insert.isUpsert()) {
+                        fallbackToUpsert = true;
+                    } else {
+                        failure = new DuplicatePrimaryKeyException(key, "key " + key + ", decoded as " + RecordSerializer.deserializePrimaryKey(key, table) + ", already exists in table " + table.name);
+                        break;
+                    }
+                }
+            }
+            batchKeys.put(key, !fallbackToUpsert);
+            try {
+                batcher.add(fallbackToUpsert ? LogEntryType.UPDATE : LogEntryType.INSERT, key, Bytes.from_array(value), null);
+            } catch (LogNotAvailableException err) {
+                writes.add(FutureUtils.exception(err));
+                break;
+            }
+            updateCount++;
+            lastKey = key;
+        }
+        try {
+            batcher.flush();
+        } catch (LogNotAvailableException err) {
+            writes.add(FutureUtils.exception(err));
+        }
+
+        long transactionId = transaction != null ? transaction.transactionId : 0;
+        final int finalUpdateCount = updateCount;
+        final Bytes finalLastKey = lastKey;
+        CompletableFuture<StatementExecutionResult> res = FutureUtils
+                .collect(writes)
+                .whenCompleteAsync((pendings, error) -> {
+                    try {
+                        if (error == null) {
+                            for (PendingLogEntryWork pending : pendings) {
+                                apply(pending.pos, pending.entry, false);
+                            }
+                        }
+                    } finally {
+                        for (LockHandle lock : locks) {
+                            locksManager.releaseWriteLock(lock);
+                        }
+                    }
+                }, tableSpaceManager.getCallbacksExecutor())
+                .thenApply((pendings) -> {
+                    return new DMLStatementExecutionResult(transactionId, finalUpdateCount, finalLastKey, null);
+                });
+        if (failure != null) {
+            final StatementExecutionException error = failure;
+            res = res.thenCompose((r) -> FutureUtils.exception(error));
+        }
+        return res;
+    }
+
     private CompletableFuture<StatementExecutionResult> releaseWriteLock(
             CompletableFuture<StatementExecutionResult> promise, LockHandle lock
     ) {
@@ -1230,6 +1479,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
         ScanStatement scan = new ScanStatement(table.tablespace, table, predicate);
         List<CompletableFuture<PendingLogEntryWork>> writes = new ArrayList<>();
+        LogEntryBatcher batcher = new LogEntryBatcher(transaction, writes, false);
         try {
             accessTableData(scan, context, new ScanResultOperation() {
                 @Override
@@ -1258,16 +1508,16 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         return;
                     }
 
-                    LogEntry entry = LogEntryFactory.update(table, actual.key, Bytes.from_array(newValue), transaction);
-                    CommitLogResult pos = log.log(entry, entry.transactionId <= 0);
-                    writes.add(pos.logSequenceNumber.thenApply(lsn -> new PendingLogEntryWork(entry, pos, lockHandle)));
+                    batcher.add(LogEntryType.UPDATE, actual.key, Bytes.from_array(newValue), lockHandle);
                     lastKey.value = actual.key;
                     lastValue.value = newValue;
                     updateCount.incrementAndGet();
                 }
             }, transaction, true, true);
+            batcher.flush();
         } catch (HerdDBInternalException err) {
             LOGGER.log(Level.SEVERE, "bad error during an update", err);
+            batcher.discard();
             return FutureUtils.exception(err);
         }
 
@@ -1284,8 +1534,8 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                                 apply(pending.pos, pending.entry, false);
                             }
                         } finally {
-                            if (pending != null && pending.lockHandle != null) {
-                                locksManager.releaseLock(pending.lockHandle);
+                            if (pending != null) {
+                                releaseLocks(pending);
                             }
                         }
                     }, tableSpaceManager.getCallbacksExecutor())
@@ -1306,9 +1556,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         } finally {
                             if (pendings != null) {
                                 for (PendingLogEntryWork pending : pendings) {
-                                    if (pending.lockHandle != null) {
-                                        locksManager.releaseLock(pending.lockHandle);
-                                    }
+                                    releaseLocks(pending);
                                 }
                             }
                         }
@@ -1324,13 +1572,132 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     private static class PendingLogEntryWork {
         final LogEntry entry;
         final CommitLogResult pos;
-        final LockHandle lockHandle;
+        final List<LockHandle> lockHandles;
 
-        public PendingLogEntryWork(LogEntry entry, CommitLogResult pos, LockHandle lockHandle) {
+        public PendingLogEntryWork(LogEntry entry, CommitLogResult pos, List<LockHandle> lockHandles) {
             super();
             this.entry = entry;
             this.pos = pos;
-            this.lockHandle = lockHandle;
+            this.lockHandles = lockHandles;
+        }
+    }
+
+    private void releaseLocks(PendingLogEntryWork pending) {
+        for (LockHandle lockHandle : pending.lockHandles) {
+            if (lockHandle != null) {
+                locksManager.releaseLock(lockHandle);
+            }
+        }
+    }
+
+    /**
+     * Writes the records modified by a statement to the log, packing
+     * consecutive records of the same type in batched entries of at most
+     * maxBatchEntryBytes
+     */
+    private class LogEntryBatcher {
+
+        private final Transaction transaction;
+        private final List<CompletableFuture<PendingLogEntryWork>> writes;
+        private final boolean syncOnlyLastEntry;
+        private short type;
+        private List<Bytes> keys = new ArrayList<>();
+        private List<Bytes> values = new ArrayList<>();
+        private List<LockHandle> lockHandles = new ArrayList<>();
+        private long bytes;
+
+        /**
+         * @param transaction
+         * @param writes receives the pending writes, in log order
+         * @param syncOnlyLastEntry if true only the entry written by
+         * {@link #flush()} asks for a sync, which covers all the previous
+         * entries
+         */
+        LogEntryBatcher(Transaction transaction, List<CompletableFuture<PendingLogEntryWork>> writes, boolean syncOnlyLastEntry) {
+            this.transaction = transaction;
+            this.writes = writes;
+            this.syncOnlyLastEntry = syncOnlyLastEntry;
+        }
+
+        /**
+         * Adds a record
+         *
+         * @param type one of {@link LogEntryType#INSERT}, {@link LogEntryType#UPDATE}, {@link LogEntryType#DELETE}
+         * @param key
+         * @param value
+         * @param lockHandle the lock to be released after applying the entry, maybe null
+         * @throws LogNotAvailableException
+         */
+        void add(short type, Bytes key, Bytes value, LockHandle lockHandle) throws LogNotAvailableException {
+            long size = key.getLength() + (value != null ? value.getLength() : 0);
+            if (!keys.isEmpty()
+                    && (type != this.type || maxBatchEntryBytes <= 0 || bytes + size > maxBatchEntryBytes)) {
+                logPendingRecords(false);
+            }
+            this.type = type;
+            keys.add(key);
+            values.add(value);
+            lockHandles.add(lockHandle);
+            bytes += size;
+        }
+
+        void flush() throws LogNotAvailableException {
+            logPendingRecords(true);
+        }
+
+        /**
+         * Releases the locks of the records which have not been written to
+         * the log
+         */
+        void discard() {
+            for (LockHandle lockHandle : lockHandles) {
+                if (lockHandle != null) {
+                    locksManager.releaseLock(lockHandle);
+                }
+            }
+            keys.clear();
+            values.clear();
+            lockHandles.clear();
+        }
+
+        private void logPendingRecords(boolean last) throws LogNotAvailableException {
+            if (keys.isEmpty()) {
+                return;
+            }
+            LogEntry entry;
+            if (keys.size() == 1) {
+                switch (type) {
+                    case LogEntryType.INSERT:
+                        entry = LogEntryFactory.insert(table, keys.get(0), values.get(0), transaction);
+                        break;
+                    case LogEntryType.UPDATE:
+                        entry = LogEntryFactory.update(table, keys.get(0), values.get(0), transaction);
+                        break;
+                    default:
+                        entry = LogEntryFactory.delete(table, keys.get(0), transaction);
+                        break;
+                }
+            } else {
+                switch (type) {
+                    case LogEntryType.INSERT:
+                        entry = LogEntryFactory.insertBatch(table, keys, values, transaction);
+                        break;
+                    case LogEntryType.UPDATE:
+                        entry = LogEntryFactory.updateBatch(table, keys, values, transaction);
+                        break;
+                    default:
+                        entry = LogEntryFactory.deleteBatch(table, keys, transaction);
+                        break;
+                }
+            }
+            boolean sync = entry.transactionId <= 0 && (last || !syncOnlyLastEntry);
+            CommitLogResult pos = log.log(entry, sync);
+            List<LockHandle> entryLockHandles = lockHandles;
+            writes.add(pos.logSequenceNumber.thenApply(lsn -> new PendingLogEntryWork(entry, pos, entryLockHandles)));
+            keys = new ArrayList<>();
+            values = new ArrayList<>();
+            lockHandles = new ArrayList<>();
+            bytes = 0;
         }
     }
 
@@ -1343,22 +1710,23 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         long transactionId = transaction != null ? transaction.transactionId : 0;
         Predicate predicate = delete.getPredicate();
         List<CompletableFuture<PendingLogEntryWork>> writes = new ArrayList<>();
+        LogEntryBatcher batcher = new LogEntryBatcher(transaction, writes, false);
 
         ScanStatement scan = new ScanStatement(table.tablespace, table, predicate);
         try {
             accessTableData(scan, context, new ScanResultOperation() {
                 @Override
                 public void accept(Record actual, LockHandle lockHandle) throws StatementExecutionException, LogNotAvailableException, DataStorageManagerException {
-                    LogEntry entry = LogEntryFactory.delete(table, actual.key, transaction);
-                    CommitLogResult pos = log.log(entry, entry.transactionId <= 0);
-                    writes.add(pos.logSequenceNumber.thenApply(lsn -> new PendingLogEntryWork(entry, pos, lockHandle)));
+                    batcher.add(LogEntryType.DELETE, actual.key, null, lockHandle);
                     lastKey.value = actual.key;
                     lastValue.value = actual.value;
                     updateCount.incrementAndGet();
                 }
             }, transaction, true, true);
+            batcher.flush();
         } catch (HerdDBInternalException err) {
             LOGGER.log(Level.SEVERE, "bad error during a delete", err);
+            batcher.discard();
             return FutureUtils.exception(err);
         }
         if (writes.isEmpty()) {
@@ -1374,8 +1742,8 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                                 apply(pending.pos, pending.entry, false);
                             }
                         } finally {
-                            if (pending != null && pending.lockHandle != null) {
-                                locksManager.releaseLock(pending.lockHandle);
+                            if (pending != null) {
+                                releaseLocks(pending);
                             }
                         }
                     }, tableSpaceManager.getCallbacksExecutor())
@@ -1396,9 +1764,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         } finally {
                             if (pendings != null) {
                                 for (PendingLogEntryWork pending : pendings) {
-                                    if (pending.lockHandle != null) {
-                                        locksManager.releaseLock(pending.lockHandle);
-                                    }
+                                    releaseLocks(pending);
                                 }
                             }
                         }
@@ -1655,6 +2021,48 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 }
                 break;
             }
+            case LogEntryType.INSERT_BATCH:
+            case LogEntryType.UPDATE_BATCH:
+            case LogEntryType.DELETE_BATCH: {
+                LogEntry.BatchRecords records = entry.readBatch();
+                Transaction transaction = null;
+                if (entry.transactionId > 0) {
+                    transaction = tableSpaceManager.getTransaction(entry.transactionId);
+                    if (transaction == null) {
+                        /* Ignore missing transaction only if during recovery and ignore property is active */
+                        if (recovery && ignoreMissingTransactionsOnRecovery) {
+                            LOGGER.log(Level.WARNING, "Ignoring batch of {0} records (type {1}) due to missing transaction {2}",
+                                    new Object[]{records.keys.length, entry.type, entry.transactionId});
+                            break;
+                        } else {
+                            throw new DataStorageManagerException("no such transaction " + entry.transactionId);
+                        }
+                    }
+                }
+                for (int i = 0; i < records.keys.length; i++) {
+                    Bytes key = records.keys[i];
+                    if (entry.type == LogEntryType.DELETE_BATCH) {
+                        if (transaction != null) {
+                            transaction.registerDeleteOnTable(this.table.name, key, writeResult);
+                        } else {
+                            applyDelete(key);
+                        }
+                    } else if (entry.type == LogEntryType.UPDATE_BATCH) {
+                        if (transaction != null) {
+                            transaction.registerRecordUpdate(this.table.name, key, records.values[i], writeResult);
+                        } else {
+                            applyUpdate(key, records.values[i]);
+                        }
+                    } else {
+                        if (transaction != null) {
+                            transaction.registerInsertOnTable(table.name, key, records.values[i], writeResult);
+                        } else {
+                            applyInsert(key, records.values[i], false);
+                        }
+                    }
+                }
+                break;
+            }
             case LogEntryType.TRUNCATE_TABLE: {
                 applyTruncate();
             }
@@ -1805,6 +2213,26 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             }
         }
 
+        List<IndexKeyChange> indexKeyChanges = null;
+        if (indexes != null) {
+
+            /* If there are indexes e have already forced a page load and previous record has been loaded */
+            DataAccessor prevValues = previous.getDataAccessor(table);
+            DataAccessor newValues = record.getDataAccessor(table);
+            indexKeyChanges = new ArrayList<>(indexes.size());
+            for (AbstractIndexManager index : indexes.values()) {
+                Index indexDef = index.getIndex();
+                String[] indexColumnNames = index.getColumnNames();
+                Bytes indexKeyRemoved = RecordSerializer.serializePrimaryKey(prevValues, indexDef, indexColumnNames);
+                Bytes indexKeyAdded = RecordSerializer.serializePrimaryKey(newValues, indexDef, indexColumnNames);
+                if (!Objects.equals(indexKeyRemoved, indexKeyAdded)) {
+                    /* Index only scans must not trust the index entries of the record until the index is updated */
+                    index.recordUpdateStarted(key);
+                    indexKeyChanges.add(new IndexKeyChange(index, indexKeyRemoved, indexKeyAdded));
+                }
+            }
+        }
+
         if (prevPage == null || prevPage.immutable) {
             /* Unloaded or immutable, set it as dirty */
             pageSet.setPageDirty(prevPageId, previous);
@@ -1872,21 +2300,30 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                     + " on table " + table.tablespace + "." + table.name);
         }
 
-        if (indexes != null) {
-
-            /* If there are indexes e have already forced a page load and previous record has been loaded */
-            DataAccessor prevValues = previous.getDataAccessor(table);
-            DataAccessor newValues = record.getDataAccessor(table);
-            for (AbstractIndexManager index : indexes.values()) {
-                Index indexDef = index.getIndex();
-                String[] indexColumnNames = index.getColumnNames();
-                Bytes indexKeyRemoved = RecordSerializer.serializePrimaryKey(prevValues, indexDef, indexColumnNames);
-                Bytes indexKeyAdded = RecordSerializer.serializePrimaryKey(newValues, indexDef, indexColumnNames);
-                index.recordUpdated(key, indexKeyRemoved, indexKeyAdded);
+        if (indexKeyChanges != null) {
+            for (IndexKeyChange change : indexKeyChanges) {
+                try {
+                    change.index.recordUpdated(key, change.indexKeyRemoved, change.indexKeyAdded);
+                } finally {
+                    change.index.recordUpdateFinished(key);
+                }
             }
         }
     }
 
+    private static final class IndexKeyChange {
+
+        private final AbstractIndexManager index;
+        private final Bytes indexKeyRemoved;
+        private final Bytes indexKeyAdded;
+
+        private IndexKeyChange(AbstractIndexManager index, Bytes indexKeyRemoved, Bytes indexKeyAdded) {
+            this.index = index;
+            this.indexKeyRemoved = indexKeyRemoved;
+            this.indexKeyAdded = indexKeyAdded;
+        }
+    }
+
     @Override
     public void dropTableData() throws DataStorageManagerException {
         dataStorageManager.dropTable(tableSpaceUUID, table.uuid);
@@ -1902,7 +2339,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     @Override
     public void scanForIndexRebuild(Consumer<Record> records) throws DataStorageManagerException {
-        LocalScanPageCache localPageCache = new LocalScanPageCache();
+        LocalScanPageCache localPageCache = createScanPageCache(null);
         Consumer<Map.Entry<Bytes, Long>> scanExecutor = (Map.Entry<Bytes, Long> entry) -> {
             Bytes key = entry.getKey();
             LockHandle lock = lockForRead(key, null);
@@ -2173,6 +2610,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     private DataPage loadPageToMemory(Long pageId, boolean recovery) throws DataStorageManagerException {
         DataPage result = pages.get(pageId);
         if (result != null) {
+            pageCacheHits.increment();
             pageReplacementPolicy.pageHit(result);
             return result;
         }
@@ -2201,6 +2639,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 }
             });
             if (computed.value) {
+                pageCacheMisses.increment();
                 _ioAndLock = System.currentTimeMillis();
 
                 final Page.Metadata unload = pageReplacementPolicy.add(result);
@@ -2232,6 +2671,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     }
 
     private DataPage buildImmutableDataPage(long pageId, List<Record> page) {
+        if (DataPage.PACK_IMMUTABLE_PAGES) {
+            long estimatedPageSize = 0;
+            for (Record r : page) {
+                estimatedPageSize += DataPage.estimateEntrySize(r);
+            }
+            return new DataPage(this, pageId, maxLogicalPageSize, estimatedPageSize, ImmutablePageData.build(page));
+        }
         Map<Bytes, Record> newPageMap = new HashMap<>(page.size());
         long estimatedPageSize = 0;
         for (Record r : page) {
@@ -2569,6 +3015,44 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     }
 
+    /**
+     * Checkpoints the key to page index and the secondary indexes of the
+     * table at the same position, each one on its own task.
+     */
+    private List<PostCheckpointAction> checkpointIndexesInParallel(
+            ForkJoinPool checkpointPool, Collection<AbstractIndexManager> indexes,
+            LogSequenceNumber sequenceNumber, boolean pin
+    ) throws DataStorageManagerException {
+        List<ForkJoinTask<List<PostCheckpointAction>>> tasks = new ArrayList<>(indexes.size() + 1);
+        tasks.add(checkpointPool.submit(() -> keyToPage.checkpoint(sequenceNumber, pin)));
+        for (AbstractIndexManager indexManager : indexes) {
+            tasks.add(checkpointPool.submit(() -> indexManager.checkpoint(sequenceNumber, pin)));
+        }
+        // wait for every index even in case of failure, we are holding the checkpoint lock
+        List<PostCheckpointAction> actions = new ArrayList<>();
+        DataStorageManagerException error = null;
+        for (ForkJoinTask<List<PostCheckpointAction>> task : tasks) {
+            try {
+                actions.addAll(task.get());
+            } catch (ExecutionException err) {
+                if (error == null) {
+                    error = err.getCause() instanceof DataStorageManagerException
+                            ? (DataStorageManagerException) err.getCause()
+                            : new DataStorageManagerException(err.getCause());
+                }
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = new DataStorageManagerException(err);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return actions;
+    }
+
     /**
      * @param sequenceNumber
      * @param dirtyThreshold
@@ -2819,16 +3303,26 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         new Object[]{table.name, sequenceNumber, flushedPages.toString()});
             }
 
-            /* Checkpoint the key to page too */
-            actions.addAll(keyToPage.checkpoint(sequenceNumber, pin));
-            keytopagecheckpoint = System.currentTimeMillis();
-
-            /* Checkpoint secondary indexes too */
             final Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
-            if (indexes != null) {
-                for (AbstractIndexManager indexManager : indexes.values()) {
-                    // Checkpoint at the same position of current TableManager
-                    actions.addAll(indexManager.checkpoint(sequenceNumber, pin));
+            final ForkJoinPool checkpointPool = tableSpaceManager.getDbmanager().getCheckpointPool();
+            if (checkpointPool != null && indexes != null && !indexes.isEmpty()) {
+
+                /* Checkpoint the key to page and secondary indexes in parallel */
+                actions.addAll(checkpointIndexesInParallel(checkpointPool, indexes.values(), sequenceNumber, pin));
+                keytopagecheckpoint = System.currentTimeMillis();
+
+            } else {
+
+                /* Checkpoint the key to page too */
+                actions.addAll(keyToPage.checkpoint(sequenceNumber, pin));
+                keytopagecheckpoint = System.currentTimeMillis();
+
+                /* Checkpoint secondary indexes too */
+                if (indexes != null) {
+                    for (AbstractIndexManager indexManager : indexes.values()) {
+                        // Checkpoint at the same position of current TableManager
+                        actions.addAll(indexManager.checkpoint(sequenceNumber, pin));
+                    }
                 }
             }
 
@@ -2909,8 +3403,9 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         forWrite = forWrite || context.isForceAcquireWriteLock();
 
         TupleComparator comparator = statement.getComparator();
-        if (!ENABLE_STREAMING_DATA_SCANNER || (comparator != null
-                && this.stats.getTablesize() > HUGE_TABLE_SIZE_FORCE_MATERIALIZED_RESULTSET)) {
+        if (!ENABLE_STREAMING_DATA_SCANNER
+                || (comparator != null && this.stats.getTablesize() > HUGE_TABLE_SIZE_FORCE_MATERIALIZED_RESULTSET)
+                || isParallelScan(statement, transaction, lockRequired, forWrite)) {
             boolean sortedByClusteredIndex = comparator != null
                     && comparator.isOnlyPrimaryKeyAndAscending()
                     && keyToPageSortedAscending;
@@ -2921,6 +3416,26 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return scanWithStream(statement, context, transaction, lockRequired, forWrite);
     }
 
+    /**
+     * Pages can be fetched and filtered in parallel only if we do not need to
+     * acquire locks and the table is big enough to pay for the coordination
+     */
+    private boolean isParallelScan(
+            ScanStatement statement, Transaction transaction,
+            boolean lockRequired, boolean forWrite
+    ) {
+        if (parallelScanPool == null || transaction != null || lockRequired || forWrite) {
+            return false;
+        }
+        Predicate predicate = statement.getPredicate();
+        if (predicate != null && (predicate.getIndexOperation() instanceof PrimaryIndexSeek
+                || predicate.getIndexOperation() instanceof SecondaryIndexSeek)) {
+            // lookups usually access only a few records
+            return false;
+        }
+        return this.stats.getTablesize() >= parallelScanMinTableSize;
+    }
+
     private DataScanner scanNoStream(
             ScanStatement statement, StatementEvaluationContext context,
             Transaction transaction, boolean lockRequired, boolean forWrite
@@ -3212,7 +3727,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         Predicate predicate = statement.getPredicate();
         long _start = System.currentTimeMillis();
         boolean acquireLock = transaction != null || forWrite || lockRequired;
-        LocalScanPageCache lastPageRead = acquireLock ? null : new LocalScanPageCache();
+        LocalScanPageCache lastPageRead = acquireLock ? null : createScanPageCache(predicate);
+        boolean parallelScan = isParallelScan(statement, transaction, lockRequired, forWrite);
+        if (lastPageRead != null && !parallelScan) {
+            lastPageRead.readAhead = createReadAhead();
+        }
         AtomicInteger count = new AtomicInteger();
         try {
 
@@ -3225,6 +3744,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
                 @Override
                 public void execute(List<Map.Entry<Bytes, Long>> batch) throws HerdDBInternalException {
+                    if (parallelScan) {
+                        // no locks and no transaction, the consumer can take records directly
+                        for (Record record : fetchAndFilterInParallel(batch, predicate, context)) {
+                            consumer.accept(record, null);
+                        }
+                        return;
+                    }
                     batch.forEach((entry) -> {
                         accept(entry);
                     });
@@ -3270,7 +3796,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                                     pkFilterCompleteMatch = true;
                                 }
                             }
-                            Record record = fetchRecord(key, pageId, lastPageRead);
+                            Record record = loadRecord(entry, lastPageRead);
                             if (record != null && (pkFilterCompleteMatch || predicate == null || predicate.evaluate(record, context))) {
                                 // now the consumer is the owner of the lock on the record
                                 record_discarded = false;
@@ -3306,8 +3832,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         scanExecutor.accept(singleEntry);
                     }
                 } else {
-                    Stream<Map.Entry<Bytes, Long>> scanner = keyToPage.scanner(indexOperation, context, tableContext, useIndex);
-                    BatchOrderedExecutor<Map.Entry<Bytes, Long>> executor = new BatchOrderedExecutor<>(SORTED_PAGE_ACCESS_WINDOW_SIZE,
+                    Stream<Map.Entry<Bytes, Long>> scanner = indexOnlyScan(statement, useIndex, acquireLock)
+                            ? useIndex.indexOnlyRecordSetScanner(indexOperation, context, tableContext, keyToPage)
+                            : keyToPage.scanner(indexOperation, context, tableContext, useIndex);
+                    int windowSize = parallelScan
+                            ? SORTED_PAGE_ACCESS_WINDOW_SIZE * parallelScanPool.getParallelism()
+                            : SORTED_PAGE_ACCESS_WINDOW_SIZE;
+                    BatchOrderedExecutor<Map.Entry<Bytes, Long>> executor = new BatchOrderedExecutor<>(windowSize,
                             scanExecutor, SORTED_PAGE_ACCESS_COMPARATOR);
                     scanner.forEach(executor);
                     executor.finish();
@@ -3355,7 +3886,123 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         } catch (HerdDBInternalException err) {
             LOGGER.log(Level.SEVERE, "error during scan {0}, started at {1}: {2}", new Object[]{statement, new java.sql.Timestamp(_start), err.toString()});
             throw new StatementExecutionException(err);
+        } finally {
+            if (lastPageRead != null && lastPageRead.readAhead != null) {
+                closeReadAhead(lastPageRead.readAhead);
+            }
+        }
+    }
+
+    /**
+     * Full scans of large tables do not use the page buffer, the other scans
+     * only use the cache for pages which are not loaded in the buffer
+     *
+     * @param predicate predicate of the scan, null for full scans
+     */
+    private LocalScanPageCache createScanPageCache(Predicate predicate) {
+        boolean fullScan = predicate == null || predicate.getIndexOperation() == null;
+        if (fullScan && scanCacheBypassMinPages > 0 && pageSet.getActivePagesCount() >= scanCacheBypassMinPages) {
+            return new LocalScanPageCache(scanCacheBypassRingPages);
+        }
+        return new LocalScanPageCache();
+    }
+
+    /**
+     * Read-ahead for scans which do not acquire locks, pages read ahead are
+     * only used as temporary pages of the scan
+     *
+     * @return the read-ahead or null if disabled
+     */
+    private PageReadAhead createReadAhead() {
+        if (readAheadPool == null || readAheadPages <= 0) {
+            return null;
+        }
+        return new PageReadAhead(this::temporaryLoadPageToMemory,
+                pageId -> !pages.containsKey(pageId) && pageSet.isActive(pageId),
+                readAheadPool, readAheadPages);
+    }
+
+    private void closeReadAhead(PageReadAhead readAhead) {
+        readAhead.close();
+        readAheadPagesCounter.add(readAhead.getPrefetchedPages());
+    }
+
+    /**
+     * Fetches and filters the records of a batch sorted by page id using the
+     * parallel scan pool. The batch is split into chunks which never span
+     * across a page boundary, so that each page is loaded only by one worker.
+     *
+     * @return the records matching the predicate, in the same order of the
+     * batch
+     */
+    private List<Record> fetchAndFilterInParallel(
+            List<Map.Entry<Bytes, Long>> batch,
+            Predicate predicate, StatementEvaluationContext context
+    ) throws StatementExecutionException, DataStorageManagerException {
+        int size = batch.size();
+        int chunkSize = Math.max(1, size / parallelScanPool.getParallelism());
+        // make sure lazily initialized state is not computed concurrently
+        context.getCurrentTimestamp();
+        List<ForkJoinTask<List<Record>>> tasks = new ArrayList<>();
+        try {
+            int start = 0;
+            while (start < size) {
+                int end = Math.min(size, start + chunkSize);
+                while (end < size && batch.get(end).getValue().equals(batch.get(end - 1).getValue())) {
+                    end++;
+                }
+                List<Map.Entry<Bytes, Long>> chunk = batch.subList(start, end);
+                tasks.add(parallelScanPool.submit(() -> fetchAndFilter(chunk, predicate, context)));
+                start = end;
+            }
+            List<Record> result = new ArrayList<>();
+            for (ForkJoinTask<List<Record>> task : tasks) {
+                result.addAll(task.get());
+            }
+            return result;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new StatementExecutionException(err);
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause();
+            if (cause instanceof StatementExecutionException) {
+                throw (StatementExecutionException) cause;
+            } else if (cause instanceof DataStorageManagerException) {
+                throw (DataStorageManagerException) cause;
+            } else {
+                throw new StatementExecutionException(cause);
+            }
+        } finally {
+            for (ForkJoinTask<List<Record>> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private List<Record> fetchAndFilter(
+            List<Map.Entry<Bytes, Long>> entries,
+            Predicate predicate, StatementEvaluationContext context
+    ) throws StatementExecutionException, DataStorageManagerException {
+        List<Record> result = new ArrayList<>();
+        LocalScanPageCache lastPageRead = createScanPageCache(predicate);
+        for (Map.Entry<Bytes, Long> entry : entries) {
+            Bytes key = entry.getKey();
+            boolean pkFilterCompleteMatch = false;
+            if (predicate != null) {
+                Predicate.PrimaryKeyMatchOutcome outcome =
+                        predicate.matchesRawPrimaryKey(key, context);
+                if (outcome == Predicate.PrimaryKeyMatchOutcome.FAILED) {
+                    continue;
+                } else if (outcome == Predicate.PrimaryKeyMatchOutcome.FULL_CONDITION_VERIFIED) {
+                    pkFilterCompleteMatch = true;
+                }
+            }
+            Record record = loadRecord(entry, lastPageRead);
+            if (record != null && (pkFilterCompleteMatch || predicate == null || predicate.evaluate(record, context))) {
+                result.add(record);
+            }
         }
+        return result;
     }
 
     private Stream<Record> streamTableData(
@@ -3366,16 +4013,25 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         statement.validateContext(context);
         Predicate predicate = statement.getPredicate();
         boolean acquireLock = transaction != null || forWrite || lockRequired;
-        LocalScanPageCache lastPageRead = acquireLock ? null : new LocalScanPageCache();
+        LocalScanPageCache lastPageRead = acquireLock ? null : createScanPageCache(predicate);
         IndexOperation indexOperation = predicate != null ? predicate.getIndexOperation() : null;
         boolean primaryIndexSeek = indexOperation instanceof PrimaryIndexSeek;
+        if (lastPageRead != null && !primaryIndexSeek) {
+            lastPageRead.readAhead = createReadAhead();
+        }
         AbstractIndexManager useIndex = getIndexForTbleAccess(indexOperation);
-        Stream<Map.Entry<Bytes, Long>> scanner = keyToPage.scanner(indexOperation, context, tableContext, useIndex);
+        Stream<Map.Entry<Bytes, Long>> scanner = indexOnlyScan(statement, useIndex, acquireLock)
+                ? useIndex.indexOnlyRecordSetScanner(indexOperation, context, tableContext, keyToPage)
+                : keyToPage.scanner(indexOperation, context, tableContext, useIndex);
 
         Stream<Record> resultFromTable = scanner.map(entry -> {
             return accessRecord(entry, predicate, context,
                     transaction, lastPageRead, primaryIndexSeek, forWrite, acquireLock);
         }).filter(r -> r != null);
+        if (lastPageRead != null && lastPageRead.readAhead != null) {
+            PageReadAhead readAhead = lastPageRead.readAhead;
+            resultFromTable = resultFromTable.onClose(() -> closeReadAhead(readAhead));
+        }
         return resultFromTable;
     }
 
@@ -3450,7 +4106,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         pkFilterCompleteMatch = true;
                     }
                 }
-                Record record = fetchRecord(key, pageId, lastPageRead);
+                Record record = loadRecord(entry, lastPageRead);
                 if (record != null && (pkFilterCompleteMatch || predicate == null || predicate.evaluate(record, context))) {
 
                     keep_lock = true;
@@ -3499,6 +4155,38 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return keyToPage;
     }
 
+    /**
+     * Index only scans are used only for scans without locks: when locking
+     * records the index entry may be stale once the lock has been acquired,
+     * so the record must be read from the data pages
+     */
+    private static boolean indexOnlyScan(ScanStatement statement, AbstractIndexManager useIndex, boolean acquireLock) {
+        return statement.isIndexOnlyScan()
+                && !acquireLock
+                && useIndex != null
+                && useIndex.supportsIndexOnlyScan();
+    }
+
+    private Record loadRecord(Map.Entry<Bytes, Long> entry, LocalScanPageCache localScanPageCache) throws StatementExecutionException, DataStorageManagerException {
+        if (entry instanceof AbstractIndexManager.IndexOnlyEntry) {
+            // the index contains every column needed by the query, no need to read the data page
+            AbstractIndexManager.IndexOnlyEntry indexEntry = (AbstractIndexManager.IndexOnlyEntry) entry;
+            if (indexEntry.verifyRecord) {
+                // the record has been updated during the scan, the index entry may be stale
+                Record record = fetchRecord(entry.getKey(), entry.getValue(), localScanPageCache);
+                if (record == null) {
+                    return null;
+                }
+                Bytes currentIndexKey = RecordSerializer.serializePrimaryKey(record.getDataAccessor(table), indexEntry.index, indexEntry.index.columnNames);
+                return indexEntry.indexKey.equals(currentIndexKey) ? record : null;
+            }
+            Map<String, Object> values = new HashMap<>(RecordSerializer.deserializePrimaryKeyAsMap(indexEntry.getKey(), table));
+            RecordSerializer.deserializeIndexKey(indexEntry.indexKey, indexEntry.index, values);
+            return new Record(indexEntry.getKey(), RecordSerializer.serializeValue(values, table), values);
+        }
+        return fetchRecord(entry.getKey(), entry.getValue(), localScanPageCache);
+    }
+
     private Record fetchRecord(Bytes key, Long pageId, LocalScanPageCache localScanPageCache) throws StatementExecutionException, DataStorageManagerException {
         int maxTrials = 2;
         while (true) {
@@ -3556,9 +4244,31 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     private DataPage fetchDataPage(Long pageId, LocalScanPageCache localScanPageCache) throws DataStorageManagerException {
         DataPage dataPage;
+        DataPage prefetched = null;
+        if (localScanPageCache != null && localScanPageCache.readAhead != null) {
+            // every page switch must be notified in order to detect sequential access
+            prefetched = localScanPageCache.readAhead.access(pageId);
+        }
         if (localScanPageCache == null
-                || !ENABLE_LOCAL_SCAN_PAGE_CACHE
-                || pages.containsKey(pageId)) {
+                || !ENABLE_LOCAL_SCAN_PAGE_CACHE) {
+            dataPage = loadPageToMemory(pageId, false);
+        } else if (localScanPageCache.isBypassSharedCache()) {
+            // large scan, pages already loaded are used without touching
+            // the replacement policy and new pages stay in the scan ring
+            dataPage = pages.get(pageId);
+            if (dataPage != null) {
+                pageCacheHits.increment();
+            } else {
+                dataPage = localScanPageCache.get(pageId);
+                if (dataPage == null) {
+                    pageCacheMisses.increment();
+                    dataPage = prefetched != null ? prefetched : temporaryLoadPageToMemory(pageId);
+                    if (dataPage != null) {
+                        localScanPageCache.put(dataPage);
+                    }
+                }
+            }
+        } else if (pages.containsKey(pageId)) {
             dataPage = loadPageToMemory(pageId, false);
         } else {
             if (pageId.equals(localScanPageCache.pageId)) {
@@ -3568,17 +4278,25 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 // TODO: add good heuristics and choose whether to load
                 // the page in the main buffer
                 dataPage = pages.get(pageId);
-                if (dataPage == null) {
+                if (dataPage == null && prefetched != null) {
+                    // read ahead pages are kept only in the scan buffer
+                    pageCacheMisses.increment();
+                    dataPage = prefetched;
+                    localScanPageCache.value = dataPage;
+                    localScanPageCache.pageId = pageId;
+                } else if (dataPage == null) {
                     if (ThreadLocalRandom.current().nextInt(10) < 4) {
                         // 25% of pages will be loaded to main buffer
                         dataPage = loadPageToMemory(pageId, false);
                     } else {
                         // 75% of pages will be loaded only to current scan buffer
+                        pageCacheMisses.increment();
                         dataPage = temporaryLoadPageToMemory(pageId);
                         localScanPageCache.value = dataPage;
                         localScanPageCache.pageId = pageId;
                     }
                 } else {
+                    pageCacheHits.increment();
                     pageReplacementPolicy.pageHit(dataPage);
                 }
             }
@@ -48,6 +48,7 @@ import herddb.core.system.SystransactionsTableManager;
 import herddb.data.consistency.TableChecksum;
 import herddb.data.consistency.TableDataChecksum;
 import herddb.index.MemoryHashIndexManager;
+import herddb.index.blink.BLinkIndexManager;
 import herddb.index.brin.BRINIndexManager;
 import herddb.jmx.JMXUtils;
 import herddb.log.CommitLog;
@@ -118,6 +119,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -126,15 +128,19 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 
@@ -163,6 +169,22 @@ public class TableSpaceManager {
     private final ConcurrentHashMap<String, AbstractIndexManager> indexes = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Map<String, AbstractIndexManager>> indexesByTable = new ConcurrentHashMap<>();
     private final StampedLock generalLock = new StampedLock();
+    /**
+     * Fuzzy checkpoints do not hold the write lock on {@link #generalLock}
+     * while flushing tables, so we need to exclude each other.
+     */
+    private final ReentrantLock fuzzyCheckpointLock = new ReentrantLock();
+    /**
+     * Locks by table name. Commits hold the locks of the tables touched by
+     * the transaction in read mode from the write of the commit entry up to
+     * the application of the changes to the tables, a fuzzy checkpoint holds
+     * the lock of a table in write mode while it flushes the table: otherwise
+     * the table could be flushed at a log position after the commit without
+     * the changes of the transaction. Commits acquire the locks in table name
+     * order and a checkpoint holds one of them at a time.
+     */
+    private final ConcurrentHashMap<String, StampedLock> commitsLocks = new ConcurrentHashMap<>();
+    private final boolean fuzzyCheckpoints;
     private final AtomicLong newTransactionId = new AtomicLong();
     private final DBManager dbmanager;
     private volatile FollowerThread followerThread;
@@ -173,7 +195,18 @@ public class TableSpaceManager {
     private volatile boolean leader;
     private volatile boolean closed;
     private volatile boolean failed;
+    /**
+     * Time of the leader up to which the follower applied the log: the
+     * timestamp of the last applied entry, or the beginning of the last round
+     * of {@link CommitLog#followTheLeader} which found no new entries
+     */
+    private volatile long followerCaughtUpTimestamp;
     private LogSequenceNumber actualLogSequenceNumber;
+    private final AtomicLong recoveryReadEntries = new AtomicLong();
+    private final AtomicLong recoveryAppliedEntries = new AtomicLong();
+
+    private static final long RECOVERY_PROGRESS_LOG_PERIOD = SystemProperties.getLongSystemProperty(
+            "herddb.recovery.progresslogperiod", 10_000);
 
     // only for tests
     private Runnable afterTableCheckPointAction;
@@ -204,8 +237,26 @@ public class TableSpaceManager {
         this.tableSpaceName = tableSpaceName;
         this.tableSpaceUUID = tableSpaceUUID;
         this.virtual = virtual;
+        this.fuzzyCheckpoints = dbmanager.getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_CHECKPOINT_FUZZY,
+                ServerConfiguration.PROPERTY_CHECKPOINT_FUZZY_DEFAULT);
         this.tablespaceStasLogger = this.dbmanager.getStatsLogger().scope(this.tableSpaceName);
         this.checkpointTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointTime");
+        this.tablespaceStasLogger.registerGauge("recoveryReadEntries", counterGauge(recoveryReadEntries));
+        this.tablespaceStasLogger.registerGauge("recoveryAppliedEntries", counterGauge(recoveryAppliedEntries));
+    }
+
+    private static Gauge<Long> counterGauge(AtomicLong value) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return value.get();
+            }
+        };
     }
 
     private void bootSystemTables() {
@@ -236,6 +287,11 @@ public class TableSpaceManager {
 
         TableSpace tableSpaceInfo = metadataStorageManager.describeTableSpace(tableSpaceName);
 
+        ServerConfiguration configuration = dbmanager.getServerConfiguration();
+        dataStorageManager.setPageCodec(tableSpaceUUID, configuration.getString(
+                ServerConfiguration.PROPERTY_PAGE_CODEC + "." + tableSpaceName,
+                configuration.getString(ServerConfiguration.PROPERTY_PAGE_CODEC, ServerConfiguration.PROPERTY_PAGE_CODEC_DEFAULT)));
+
         bootSystemTables();
         if (virtual) {
             startAsLeader();
@@ -312,14 +368,14 @@ public class TableSpaceManager {
                 && dbmanager.getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT, ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT)) {
             LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is forced (" + ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT + "=true) for tableSpace " + tableSpaceName);
             downloadTableSpaceData();
-            log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+            replayLog(actualLogSequenceNumber, false);
         } else {
             try {
-                log.recovery(logSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLog(logSequenceNumber, false);
             } catch (FullRecoveryNeededException fullRecoveryNeeded) {
                 LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is needed for tableSpace " + tableSpaceName, fullRecoveryNeeded);
                 downloadTableSpaceData();
-                log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLog(actualLogSequenceNumber, false);
             }
         }
         recoveryInProgress = false;
@@ -337,11 +393,27 @@ public class TableSpaceManager {
         recoveryInProgress = true;
         actualLogSequenceNumber = log.getLastSequenceNumber();
         LOGGER.log(Level.INFO, "recovering tablespace {0} log from sequence number {1}, with fencing", new Object[]{tableSpaceName, actualLogSequenceNumber});
-        log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), true);
+        replayLog(actualLogSequenceNumber, true);
         LOGGER.log(Level.INFO, "Recovery (with fencing) finished for {0}", tableSpaceName);
         recoveryInProgress = false;
     }
 
+    private void replayLog(LogSequenceNumber from, boolean fencing) throws LogNotAvailableException {
+        int parallelism = dbmanager.getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_BOOT_RECOVERY_PARALLELISM,
+                ServerConfiguration.PROPERTY_BOOT_RECOVERY_PARALLELISM_DEFAULT);
+        recoveryReadEntries.set(0);
+        recoveryAppliedEntries.set(0);
+        long start = System.currentTimeMillis();
+        try (ApplyEntryOnRecovery applier = new ApplyEntryOnRecovery(parallelism)) {
+            log.recovery(from, applier, fencing);
+            applier.finish();
+        }
+        LOGGER.log(recoveryAppliedEntries.get() > 0 ? Level.INFO : Level.FINE, "{0} {1} replayed {2} log entries from {3} in {4} ms, parallelism {5}",
+                new Object[]{nodeId, tableSpaceName, recoveryAppliedEntries.get(), from,
+                        System.currentTimeMillis() - start, parallelism});
+    }
+
     void apply(CommitLogResult position, LogEntry entry, boolean recovery) throws DataStorageManagerException, DDLException {
         if (!position.deferred || position.sync) {
             // this will wait for the write to be acknowledged by the log
@@ -1106,14 +1178,21 @@ public class TableSpaceManager {
                 while (!isLeader() && !closed) {
                     long readLock = acquireReadLock("follow");
                     try {
+                        long roundStart = System.currentTimeMillis();
+                        LogSequenceNumber roundStartPosition = actualLogSequenceNumber;
                         log.followTheLeader(actualLogSequenceNumber, (LogSequenceNumber num, LogEntry u) -> {
                             try {
                                 apply(new CommitLogResult(num, false, true), u, false);
                             } catch (Throwable t) {
                                 throw new RuntimeException(t);
                             }
+                            followerCaughtUpTimestamp = u.timestamp;
                             return !isLeader() && !closed;
                         }, context);
+                        if (Objects.equals(roundStartPosition, actualLogSequenceNumber)) {
+                            // nothing new on the log
+                            followerCaughtUpTimestamp = roundStart;
+                        }
                     } finally {
                         releaseReadLock(readLock, "follow");
                     }
@@ -1679,6 +1758,9 @@ public class TableSpaceManager {
             case Index.TYPE_BRIN:
                 indexManager = new BRINIndexManager(index, dbmanager.getMemoryManager(), tableManager, log, dataStorageManager, this, tableSpaceUUID, transaction);
                 break;
+            case Index.TYPE_BTREE:
+                indexManager = new BLinkIndexManager(index, dbmanager.getMemoryManager(), tableManager, log, dataStorageManager, this, tableSpaceUUID, transaction);
+                break;
             default:
                 throw new DataStorageManagerException("invalid index type " + index.type);
         }
@@ -1845,12 +1927,20 @@ public class TableSpaceManager {
         LogSequenceNumber _logSequenceNumber = null;
         Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber = new HashMap<>();
 
+        // followers apply the log without locks on the tables, they need a
+        // consistent snapshot of the whole tablespace
+        boolean fuzzy = fuzzyCheckpoints && !alreadLocked && leader;
+        if (fuzzy) {
+            fuzzyCheckpointLock.lock();
+        }
         try {
             List<PostCheckpointAction> actions = new ArrayList<>();
 
             long lockStamp = 0;
+            boolean writeLocked = false;
             if (!alreadLocked) {
                 lockStamp = acquireWriteLock("checkpoint");
+                writeLocked = true;
             }
             try {
                 logSequenceNumber = log.getLastSequenceNumber();
@@ -1874,23 +1964,59 @@ public class TableSpaceManager {
                 actions.addAll(dataStorageManager.writeTransactionsAtCheckpoint(tableSpaceUUID, logSequenceNumber, currentTransactions));
                 actions.addAll(writeTablesOnDataStorageManager(new CommitLogResult(logSequenceNumber, false, true), true));
 
+                if (fuzzy) {
+                    // statements can run again, DDLs are still blocked by the read lock.
+                    // each TableManager blocks writes on its own table while it is flushing
+                    long readLockStamp = generalLock.tryConvertToReadLock(lockStamp);
+                    if (readLockStamp == 0) {
+                        throw new DataStorageManagerException("unable to downgrade lock");
+                    }
+                    lockStamp = readLockStamp;
+                    writeLocked = false;
+                }
+
                 // we checkpoint all data to disk and save the actual log sequence number
-                for (AbstractTableManager tableManager : tables.values()) {
-                    // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
-                    // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
-
-                    if (!tableManager.isSystemTable()) {
-                        TableCheckpoint checkpoint = full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin);
-
-                        if (checkpoint != null) {
-                            LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, tableManager.getTable().name, pin});
-                            actions.addAll(checkpoint.actions);
-                            checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
-                            if (afterTableCheckPointAction != null) {
-                                afterTableCheckPointAction.run();
+                List<AbstractTableManager> tablesToCheckpoint = tables.values().stream()
+                        .filter(tableManager -> !tableManager.isSystemTable())
+                        .collect(Collectors.toList());
+                ForkJoinPool checkpointPool = dbmanager.getCheckpointPool();
+                if (checkpointPool != null && tablesToCheckpoint.size() > 1) {
+                    List<TableCheckpoint> checkpoints = new ArrayList<>(tablesToCheckpoint.size());
+                    List<ForkJoinTask<TableCheckpoint>> tasks = new ArrayList<>(tablesToCheckpoint.size());
+                    for (AbstractTableManager tableManager : tablesToCheckpoint) {
+                        tasks.add(checkpointPool.submit(() -> checkpointTable(tableManager, full, pin, fuzzy)));
+                    }
+                    // wait for every table, even in case of failure
+                    DataStorageManagerException error = null;
+                    for (ForkJoinTask<TableCheckpoint> task : tasks) {
+                        try {
+                            checkpoints.add(task.get());
+                        } catch (ExecutionException err) {
+                            if (error == null) {
+                                error = err.getCause() instanceof DataStorageManagerException
+                                        ? (DataStorageManagerException) err.getCause()
+                                        : new DataStorageManagerException(err.getCause());
+                            }
+                        } catch (InterruptedException err) {
+                            Thread.currentThread().interrupt();
+                            if (error == null) {
+                                error = new DataStorageManagerException(err);
                             }
                         }
                     }
+                    if (error != null) {
+                        throw error;
+                    }
+                    for (TableCheckpoint checkpoint : checkpoints) {
+                        tableCheckpointDone(checkpoint, pin, actions, checkpointsTableNameSequenceNumber);
+                    }
+                } else {
+                    for (AbstractTableManager tableManager : tablesToCheckpoint) {
+                        // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
+                        // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
+                        TableCheckpoint checkpoint = checkpointTable(tableManager, full, pin, fuzzy);
+                        tableCheckpointDone(checkpoint, pin, actions, checkpointsTableNameSequenceNumber);
+                    }
                 }
 
                 // we are sure that all data as been flushed. upon recovery we will replay the log starting from this position
@@ -1903,8 +2029,10 @@ public class TableSpaceManager {
 
                 _logSequenceNumber = log.getLastSequenceNumber();
             } finally {
-                if (!alreadLocked) {
+                if (writeLocked) {
                     releaseWriteLock(lockStamp, "checkpoint");
+                } else if (!alreadLocked) {
+                    releaseReadLock(lockStamp, "checkpoint");
                 }
             }
 
@@ -1917,6 +2045,9 @@ public class TableSpaceManager {
             }
             return new TableSpaceCheckpoint(logSequenceNumber, checkpointsTableNameSequenceNumber);
         } finally {
+            if (fuzzy) {
+                fuzzyCheckpointLock.unlock();
+            }
             long _stop = System.currentTimeMillis();
             LOGGER.log(Level.INFO, "{0} checkpoint finish {1} started ad {2}, finished at {3}, total time {4} ms",
                     new Object[]{nodeId, tableSpaceName, logSequenceNumber, _logSequenceNumber, Long.toString(_stop - _start)});
@@ -1924,6 +2055,21 @@ public class TableSpaceManager {
         }
     }
 
+    private void tableCheckpointDone(
+            TableCheckpoint checkpoint, boolean pin, List<PostCheckpointAction> actions,
+            Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber
+    ) {
+        if (checkpoint == null) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, checkpoint.tableName, pin});
+        actions.addAll(checkpoint.actions);
+        checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
+        if (afterTableCheckPointAction != null) {
+            afterTableCheckPointAction.run();
+        }
+    }
+
     private CompletableFuture<StatementExecutionResult> beginTransactionAsync(StatementEvaluationContext context, boolean releaseLock) throws StatementExecutionException {
 
         long id = newTransactionId.incrementAndGet();
@@ -1989,7 +2135,16 @@ public class TableSpaceManager {
             context.setTableSpaceLock(lockStamp);
             lockAcquired = true;
         }
-        CommitLogResult pos = log.log(entry, true);
+        Runnable releaseCommitsLocks = fuzzyCheckpoints ? acquireCommitsLocks(transactions.get(txId)) : null;
+        CommitLogResult pos;
+        try {
+            pos = log.log(entry, true);
+        } catch (RuntimeException err) {
+            if (releaseCommitsLocks != null) {
+                releaseCommitsLocks.run();
+            }
+            throw err;
+        }
         CompletableFuture<StatementExecutionResult> res = pos.logSequenceNumber.handleAsync((lsn, error) -> {
             if (error == null) {
                 apply(pos, entry, false);
@@ -2003,6 +2158,9 @@ public class TableSpaceManager {
                 throw new CompletionException(error);
             }
         }, callbacksExecutor);
+        if (releaseCommitsLocks != null) {
+            res = res.whenComplete((r, error) -> releaseCommitsLocks.run());
+        }
         if (lockAcquired) {
             res = releaseReadLock(res, lockStamp, statement)
                     .thenApply(s -> {
@@ -2017,6 +2175,61 @@ public class TableSpaceManager {
         validateTransactionBeforeTxCommand(txId, true);
     }
 
+    StampedLock getCommitsLock(String tableName) {
+        return commitsLocks.computeIfAbsent(tableName, name -> new StampedLock());
+    }
+
+    /**
+     * Locks in read mode the commits locks of the tables touched by the transaction
+     *
+     * @return the function which releases the locks
+     */
+    private Runnable acquireCommitsLocks(Transaction transaction) {
+        if (transaction == null) {
+            return () -> {
+            };
+        }
+        Set<String> tableNames = new TreeSet<>();
+        tableNames.addAll(transaction.locks.keySet());
+        tableNames.addAll(transaction.changedRecords.keySet());
+        tableNames.addAll(transaction.newRecords.keySet());
+        tableNames.addAll(transaction.deletedRecords.keySet());
+        if (transaction.newTables != null) {
+            tableNames.addAll(transaction.newTables.keySet());
+        }
+        if (transaction.droppedTables != null) {
+            tableNames.addAll(transaction.droppedTables);
+        }
+        if (transaction.newIndexes != null) {
+            transaction.newIndexes.values().forEach(index -> tableNames.add(index.table));
+        }
+        List<StampedLock> locks = new ArrayList<>(tableNames.size());
+        long[] stamps = new long[tableNames.size()];
+        for (String tableName : tableNames) {
+            StampedLock lock = getCommitsLock(tableName);
+            stamps[locks.size()] = lock.readLock();
+            locks.add(lock);
+        }
+        return () -> {
+            for (int i = 0; i < locks.size(); i++) {
+                locks.get(i).unlockRead(stamps[i]);
+            }
+        };
+    }
+
+    private TableCheckpoint checkpointTable(AbstractTableManager tableManager, boolean full, boolean pin, boolean fuzzy) throws DataStorageManagerException {
+        // commits which touch the table wait for the end of the flush
+        StampedLock commitsLock = fuzzy ? getCommitsLock(tableManager.getTable().name) : null;
+        long commitsLockStamp = fuzzy ? commitsLock.writeLock() : 0;
+        try {
+            return full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin);
+        } finally {
+            if (commitsLock != null) {
+                commitsLock.unlockWrite(commitsLockStamp);
+            }
+        }
+    }
+
     private boolean validateTransactionBeforeTxCommand(long txId, boolean wait) throws StatementExecutionException {
         Transaction tc = transactions.get(txId);
         if (tc == null) {
@@ -2076,6 +2289,22 @@ public class TableSpaceManager {
         return tables.get(tableName);
     }
 
+    /**
+     * Checks if this replica can serve reads which accept data at most
+     * maxStaleness ms older than the data on the leader
+     *
+     * @param maxStaleness zero means no bound
+     */
+    public boolean canServeFollowerReads(long maxStaleness) {
+        if (isFailed() || closed || recoveryInProgress) {
+            return false;
+        }
+        if (leader || maxStaleness <= 0) {
+            return true;
+        }
+        return System.currentTimeMillis() - followerCaughtUpTimestamp <= maxStaleness;
+    }
+
     public Collection<Long> getOpenTransactions() {
         return new HashSet<>(this.transactions.keySet());
     }
@@ -2084,9 +2313,18 @@ public class TableSpaceManager {
         return new ArrayList<>(this.transactions.values());
     }
 
-    private class ApplyEntryOnRecovery implements BiConsumer<LogSequenceNumber, LogEntry> {
+    /**
+     * Applies the entries read from the log, non transactional entries which
+     * modify the data of a single table may be applied in parallel, any other
+     * entry waits for all the pending entries to be applied
+     */
+    private class ApplyEntryOnRecovery implements BiConsumer<LogSequenceNumber, LogEntry>, AutoCloseable {
 
-        public ApplyEntryOnRecovery() {
+        private final ParallelLogReplay parallelReplay;
+        private long lastProgressLog = System.currentTimeMillis();
+
+        public ApplyEntryOnRecovery(int parallelism) {
+            this.parallelReplay = parallelism > 1 ? new ParallelLogReplay(tableSpaceName, parallelism) : null;
         }
 
         @Override
@@ -2094,14 +2332,78 @@ public class TableSpaceManager {
             if (dbmanager.isStopped()) {
                 throw new RuntimeException("System was requested to stop, aborting recovery at " + t);
             }
+            recoveryReadEntries.incrementAndGet();
             try {
-                apply(new CommitLogResult(t, false, true), u, true);
+                AbstractTableManager tableManager = isTableDataEntry(u) ? tables.get(u.tableName) : null;
+                if (parallelReplay != null && tableManager != null) {
+                    actualLogSequenceNumber = t;
+                    parallelReplay.dispatch(u.tableName, () -> {
+                        tableManager.apply(new CommitLogResult(t, false, true), u, true);
+                        recoveryAppliedEntries.incrementAndGet();
+                    });
+                } else {
+                    if (parallelReplay != null) {
+                        parallelReplay.barrier();
+                    }
+                    apply(new CommitLogResult(t, false, true), u, true);
+                    recoveryAppliedEntries.incrementAndGet();
+                }
             } catch (DDLException | DataStorageManagerException err) {
                 throw new RuntimeException(err);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(err);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastProgressLog >= RECOVERY_PROGRESS_LOG_PERIOD) {
+                lastProgressLog = now;
+                LOGGER.log(Level.INFO, "{0} {1} recovery in progress at {2}, {3} entries read, {4} applied",
+                        new Object[]{nodeId, tableSpaceName, t, recoveryReadEntries.get(), recoveryAppliedEntries.get()});
+            }
+        }
+
+        void finish() {
+            if (parallelReplay != null) {
+                try {
+                    parallelReplay.barrier();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(err);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (parallelReplay != null) {
+                parallelReplay.close();
             }
         }
     }
 
+    /**
+     * Entries which modify only the data of the table, see {@link TableManager#apply}.
+     * Transactional entries are excluded: a {@link Transaction} ignores entries
+     * older than the last one it registered, so they must be applied in log order
+     */
+    private static boolean isTableDataEntry(LogEntry entry) {
+        if (entry.transactionId > 0) {
+            return false;
+        }
+        switch (entry.type) {
+            case LogEntryType.INSERT:
+            case LogEntryType.UPDATE:
+            case LogEntryType.DELETE:
+            case LogEntryType.INSERT_BATCH:
+            case LogEntryType.UPDATE_BATCH:
+            case LogEntryType.DELETE_BATCH:
+            case LogEntryType.TRUNCATE_TABLE:
+                return entry.tableName != null;
+            default:
+                return false;
+        }
+    }
+
     public DBManager getDbmanager() {
         return dbmanager;
     }
@@ -133,6 +133,26 @@ public abstract class AbstractSystemTableManager implements AbstractTableManager
                 return 0;
             }
 
+            @Override
+            public long getPageCacheHits() {
+                return 0;
+            }
+
+            @Override
+            public long getPageCacheMisses() {
+                return 0;
+            }
+
+            @Override
+            public long getCacheReservedMemory() {
+                return 0;
+            }
+
+            @Override
+            public long getCacheMaxMemory() {
+                return 0;
+            }
+
         };
     }
 
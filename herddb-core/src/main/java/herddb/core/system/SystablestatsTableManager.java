@@ -53,6 +53,10 @@ public class SystablestatsTableManager extends AbstractSystemTableManager {
             .column("keysmemory", ColumnTypes.LONG)
             .column("buffersmemory", ColumnTypes.LONG)
             .column("dirtymemory", ColumnTypes.LONG)
+            .column("pagecachehits", ColumnTypes.LONG)
+            .column("pagecachemisses", ColumnTypes.LONG)
+            .column("cachereservedmemory", ColumnTypes.LONG)
+            .column("cachemaxmemory", ColumnTypes.LONG)
             .primaryKey("tablespace", false)
             .primaryKey("table_name", false)
             .build();
@@ -82,7 +86,11 @@ public class SystablestatsTableManager extends AbstractSystemTableManager {
                         "dirtyrecords", stats.getDirtyrecords(),
                         "maxlogicalpagesize", stats.getMaxLogicalPageSize(),
                         "keysmemory", stats.getKeysUsedMemory(),
-                        "buffersmemory", stats.getBuffersUsedMemory()
+                        "buffersmemory", stats.getBuffersUsedMemory(),
+                        "pagecachehits", stats.getPageCacheHits(),
+                        "pagecachemisses", stats.getPageCacheMisses(),
+                        "cachereservedmemory", stats.getCacheReservedMemory(),
+                        "cachemaxmemory", stats.getCacheMaxMemory()
                 ));
             }
         }
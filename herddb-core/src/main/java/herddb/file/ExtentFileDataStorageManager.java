@@ -0,0 +1,225 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import herddb.core.PostCheckpointAction;
+import herddb.storage.DataStorageManagerException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Data Storage on local filesystem, the pages of each table and index are
+ * stored in a single file made of preallocated extents (see
+ * {@link PageExtentFile}) instead of a file per page.
+ * <p>
+ * Page writes are positioned writes inside the file and dropping old pages
+ * after a checkpoint only updates the free space map. Metadata and checkpoint
+ * files are handled as in {@link FileDataStorageManager}. O_DIRECT is not
+ * supported for pages.
+ * <p>
+ * Extent files can be enabled on an existing data directory: pages already
+ * stored in their own files are read from them until they are released, new
+ * pages are written into the extent files. The opposite switch is not
+ * supported.
+ */
+public class ExtentFileDataStorageManager extends FileDataStorageManager {
+
+    private static final Logger LOGGER = Logger.getLogger(ExtentFileDataStorageManager.class.getName());
+
+    private final long extentSize;
+    private final boolean requirefsync;
+    private final Map<Path, PageExtentFile> files = new ConcurrentHashMap<>();
+
+    public ExtentFileDataStorageManager(
+            Path baseDirectory, Path tmpDirectory, int swapThreshold,
+            boolean requirefsync, boolean hashChecksEnabled, boolean hashWritesEnabled,
+            long extentSize, StatsLogger logger
+    ) {
+        super(baseDirectory, tmpDirectory, swapThreshold, requirefsync, false, false,
+                hashChecksEnabled, hashWritesEnabled, logger);
+        this.extentSize = extentSize;
+        this.requirefsync = requirefsync;
+        StatsLogger scope = logger.scope("filedatastore");
+        scope.registerGauge("extents_bytes", sumGauge(PageExtentFile::getFileSize));
+        scope.registerGauge("extents_free_bytes", sumGauge(PageExtentFile::getFreeBytes));
+    }
+
+    private Gauge<Long> sumGauge(ToLongFunction<PageExtentFile> value) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return files.values().stream().mapToLong(value).sum();
+            }
+        };
+    }
+
+    private PageExtentFile getFile(Path directory) throws IOException {
+        try {
+            return files.computeIfAbsent(directory, d -> {
+                try {
+                    return PageExtentFile.open(d.resolve(PageExtentFile.FILENAME), extentSize, requirefsync);
+                } catch (IOException err) {
+                    throw new UncheckedIOException(err);
+                }
+            });
+        } catch (UncheckedIOException err) {
+            throw err.getCause();
+        }
+    }
+
+    @Override
+    protected byte[] readPageData(Path directory, long pageId, boolean odirect) throws IOException {
+        PageExtentFile file = getFile(directory);
+        if (!file.contains(pageId)) {
+            // written before extent files were enabled
+            return super.readPageData(directory, pageId, odirect);
+        }
+        return file.read(pageId);
+    }
+
+    @Override
+    protected void writePageData(Path directory, long pageId, byte[] data, int length, boolean odirect) throws IOException {
+        getFile(directory).write(pageId, data, length);
+    }
+
+    @Override
+    protected List<PostCheckpointAction> releasePages(String owner, Path directory, LongPredicate unused, boolean immediate)
+            throws DataStorageManagerException {
+        PageExtentFile file;
+        try {
+            file = getFile(directory);
+        } catch (IOException err) {
+            throw new DataStorageManagerException(err);
+        }
+        // page files written before extent files were enabled
+        List<PostCheckpointAction> result = super.releasePages(owner, directory, unused, immediate);
+        if (immediate) {
+            try {
+                List<Long> released = file.release(unused);
+                if (!released.isEmpty()) {
+                    LOGGER.log(Level.INFO, "released pages {0} from {1}", new Object[]{released, file});
+                }
+            } catch (IOException err) {
+                throw new DataStorageManagerException(err);
+            }
+            return result;
+        }
+        Set<Long> candidates = new HashSet<>(file.getPageIds(unused));
+        if (candidates.isEmpty()) {
+            return result;
+        }
+        result.add(new ReleasePagesAction(owner, "release " + candidates.size() + " pages from " + file, file, candidates));
+        return result;
+    }
+
+    private void closeFiles(Path directory) {
+        for (Path path : new ArrayList<>(files.keySet())) {
+            if (path.startsWith(directory)) {
+                PageExtentFile file = files.remove(path);
+                if (file != null) {
+                    try {
+                        file.close();
+                    } catch (IOException err) {
+                        LOGGER.log(Level.SEVERE, "Could not close " + file, err);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dropTable(String tablespace, String tableName) throws DataStorageManagerException {
+        closeFiles(getTableDirectory(tablespace, tableName));
+        super.dropTable(tablespace, tableName);
+    }
+
+    @Override
+    public void truncateIndex(String tablespace, String name) throws DataStorageManagerException {
+        closeFiles(getIndexDirectory(tablespace, name));
+        super.truncateIndex(tablespace, name);
+    }
+
+    @Override
+    public void dropIndex(String tablespace, String name) throws DataStorageManagerException {
+        closeFiles(getIndexDirectory(tablespace, name));
+        super.dropIndex(tablespace, name);
+    }
+
+    @Override
+    public void eraseTablespaceData(String tableSpace) throws DataStorageManagerException {
+        closeFiles(getTablespaceDirectory(tableSpace));
+        super.eraseTablespaceData(tableSpace);
+    }
+
+    @Override
+    public void close() throws DataStorageManagerException {
+        super.close();
+        for (PageExtentFile file : files.values()) {
+            try {
+                file.close();
+            } catch (IOException err) {
+                LOGGER.log(Level.SEVERE, "Could not close " + file, err);
+            }
+        }
+        files.clear();
+    }
+
+    private static class ReleasePagesAction extends PostCheckpointAction {
+
+        private final PageExtentFile file;
+        private final Set<Long> pages;
+
+        ReleasePagesAction(String tableName, String description, PageExtentFile file, Set<Long> pages) {
+            super(tableName, description);
+            this.file = file;
+            this.pages = pages;
+        }
+
+        @Override
+        public void run() {
+            try {
+                LOGGER.log(Level.FINE, description);
+                file.release(pages::contains);
+            } catch (IOException err) {
+                LOGGER.log(Level.SEVERE, "Could not " + description + ":" + err, err);
+            }
+        }
+    }
+
+}
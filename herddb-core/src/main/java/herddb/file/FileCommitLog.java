@@ -101,6 +101,8 @@ public class FileCommitLog extends CommitLog {
     private final int maxUnsyncedBatchSize;
     private final int maxUnsyncedBatchBytes;
     private final long maxSyncTime;
+    private final GroupCommitWindow groupCommitWindow;
+    private final LogSegmentPool segmentPool;
     private final boolean requireSync;
     // CHECKSTYLE.OFF: MemberName
     private final boolean enableO_DIRECT;
@@ -115,6 +117,16 @@ public class FileCommitLog extends CommitLog {
     static final byte ZERO_PADDING = 0;
     static final byte ENTRY_START = 13;
     static final byte ENTRY_END = 25;
+    static final byte SEGMENT_HEADER = 27;
+
+    /**
+     * Preallocated segments are larger than the max file size, the entry which
+     * exceeds the limit must not make the file grow
+     */
+    private static final long SEGMENT_SLACK = SystemProperties.getLongSystemProperty(
+            "herddb.file.segmentslack", 1024 * 1024);
+    private static final int MAX_FREE_SEGMENTS = SystemProperties.getIntSystemProperty(
+            "herddb.file.maxfreesegments", 2);
 
     void backgroundSync() {
         if (needsSync) {
@@ -157,6 +169,12 @@ public class FileCommitLog extends CommitLog {
                 ODirectFileOutputStream oo = new ODirectFileOutputStream(filename);
                 this.channel = oo.getFc();
                 this.out = new ExtendedDataOutputStream(oo);
+            } else if (segmentPool != null) {
+                LOGGER.log(Level.FINE, "opening preallocated segment {0} for tablespace {1}", new Object[]{filename, tableSpaceName});
+                segmentPool.acquire(filename);
+                // the file already has its final size, we are overwriting zeros
+                this.channel = FileChannel.open(filename, StandardOpenOption.WRITE);
+                this.out = new ExtendedDataOutputStream(new SimpleBufferedOutputStream(Channels.newOutputStream(this.channel)));
             } else {
                 LOGGER.log(Level.FINE, "opening (no O_DIRECT) new file {0} for tablespace {1}", new Object[]{filename, tableSpaceName});
                 this.channel = FileChannel.open(filename,
@@ -165,6 +183,11 @@ public class FileCommitLog extends CommitLog {
                 this.out = new ExtendedDataOutputStream(new SimpleBufferedOutputStream(Channels.newOutputStream(this.channel)));
             }
             writtenBytes = 0;
+            if (segmentPool != null) {
+                // tells to the reader that the file may contain a torn write before the zeroed area
+                this.out.writeByte(SEGMENT_HEADER);
+                writtenBytes++;
+            }
         }
 
         private int writeEntry(long seqnumber, LogEntry entry) throws IOException {
@@ -206,6 +229,9 @@ public class FileCommitLog extends CommitLog {
             }
             final long time = System.nanoTime() - now;
             statsFsyncTime.registerSuccessfulEvent(time, TimeUnit.NANOSECONDS);
+            if (groupCommitWindow != null) {
+                groupCommitWindow.fsyncCompleted(time);
+            }
         }
 
         @Override
@@ -254,12 +280,20 @@ public class FileCommitLog extends CommitLog {
 
     public static class CommitFileReader implements AutoCloseable {
 
+        private boolean firstEntry = true;
+        private boolean preallocatedSegment;
+
         final ExtendedDataInputStream in;
         final long ledgerId;
+        /**
+         * Only the last ledger may end with a torn write
+         */
+        final boolean lastLedger;
 
         private CommitFileReader(ExtendedDataInputStream in, long ledgerId) {
             this.in = in;
             this.ledgerId = ledgerId;
+            this.lastLedger = true;
         }
 
         public static CommitFileReader openForDescribeRawfile(Path filename) throws IOException {
@@ -275,8 +309,9 @@ public class FileCommitLog extends CommitLog {
             return new CommitFileReader(in, ledgerId);
         }
 
-        private CommitFileReader(Path logDirectory, long ledgerId) throws IOException {
+        private CommitFileReader(Path logDirectory, long ledgerId, boolean lastLedger) throws IOException {
             this.ledgerId = ledgerId;
+            this.lastLedger = lastLedger;
             Path filename = logDirectory.resolve(String.format("%016x", ledgerId) + LOGFILEEXTENSION);
             // in case of IOException the stream is not opened, not need to close it
             this.in = new ExtendedDataInputStream(new BufferedInputStream(Files.newInputStream(filename, StandardOpenOption.READ), 64 * 1024));
@@ -287,10 +322,21 @@ public class FileCommitLog extends CommitLog {
             try {
                 try {
                     entryStart = in.readByte();
+                    if (firstEntry) {
+                        firstEntry = false;
+                        if (entryStart == SEGMENT_HEADER) {
+                            preallocatedSegment = true;
+                            entryStart = in.readByte();
+                        }
+                    }
                 } catch (EOFException completeFileFinished) {
                     return null;
                 }
-                // skip zeros due to padding if using pre-allocation or O_DIRECT
+                if (preallocatedSegment && entryStart == ZERO_PADDING) {
+                    // beginning of the zeroed area, there are no more entries
+                    return null;
+                }
+                // skip zeros due to padding if using O_DIRECT
                 while (entryStart == ZERO_PADDING) {
                     try {
                         entryStart = in.readByte();
@@ -313,7 +359,28 @@ public class FileCommitLog extends CommitLog {
                 // it is important that this is the last file in the set
                 LOGGER.log(Level.SEVERE, "found unfinished entry in file " + this.ledgerId + ". entry was not acked. ignoring " + truncatedLog);
                 return null;
+            } catch (IOException | RuntimeException tornWrite) {
+                // the file does not grow, so a write which was not fsync'd may be partially on disk, followed by zeros,
+                // anything else is a corruption
+                if (!preallocatedSegment || !lastLedger || !onlyZerosUntilEnd()) {
+                    throw tornWrite;
+                }
+                LOGGER.log(Level.SEVERE, "found unfinished entry in preallocated segment " + this.ledgerId + ". entry was not acked. ignoring " + tornWrite);
+                return null;
+            }
+        }
+
+        private boolean onlyZerosUntilEnd() throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != ZERO_PADDING) {
+                        return false;
+                    }
+                }
             }
+            return true;
         }
 
         @Override
@@ -347,16 +414,44 @@ public class FileCommitLog extends CommitLog {
             int maxSyncTime,
             boolean requireSync,
             boolean enableO_DIRECT
+    ) {
+        this(logDirectory, tableSpaceName, maxLogFileSize, fsyncThreadPool, statslogger, onClose,
+                maxUnsynchedBatchSize, maxUnsynchedBatchBytes, maxSyncTime, requireSync, enableO_DIRECT, false, false);
+    }
+
+    /**
+     * @param adaptiveGroupCommit size the batch window using the observed
+     * fsync latency and arrival rate, in this case maxSyncTime is the maximum
+     * time to wait for a batch to fill up
+     * @param preallocateSegments write to preallocated segment files, which
+     * are recycled when old ledgers are dropped, O_DIRECT is not used in this
+     * case
+     */
+    public FileCommitLog(
+            Path logDirectory, String tableSpaceName,
+            long maxLogFileSize, ExecutorService fsyncThreadPool, StatsLogger statslogger,
+            Consumer<FileCommitLog> onClose,
+            int maxUnsynchedBatchSize,
+            int maxUnsynchedBatchBytes,
+            int maxSyncTime,
+            boolean requireSync,
+            boolean enableO_DIRECT,
+            boolean adaptiveGroupCommit,
+            boolean preallocateSegments
     ) {
         this.maxUnsyncedBatchSize = maxUnsynchedBatchSize;
         this.maxUnsyncedBatchBytes = maxUnsynchedBatchBytes;
         this.maxSyncTime = TimeUnit.MILLISECONDS.toNanos(maxSyncTime);
+        this.groupCommitWindow = adaptiveGroupCommit ? new GroupCommitWindow(this.maxSyncTime) : null;
         this.requireSync = requireSync;
-        this.enableO_DIRECT = enableO_DIRECT && OpenFileUtils.isO_DIRECT_Supported();
+        this.enableO_DIRECT = enableO_DIRECT && !preallocateSegments && OpenFileUtils.isO_DIRECT_Supported();
         this.onClose = onClose;
         this.maxLogFileSize = maxLogFileSize;
         this.tableSpaceName = tableSpaceName;
         this.logDirectory = logDirectory.toAbsolutePath();
+        this.segmentPool = preallocateSegments
+                ? new LogSegmentPool(this.logDirectory, maxLogFileSize + Math.min(maxLogFileSize, SEGMENT_SLACK), MAX_FREE_SEGMENTS, fsyncThreadPool)
+                : null;
         this.spool = new Thread(new SpoolTask(), "commitlog-" + tableSpaceName);
         this.spool.setDaemon(true);
         this.statsFsyncTime = statslogger.getOpStatsLogger("fsync");
@@ -389,6 +484,30 @@ public class FileCommitLog extends CommitLog {
                 return pendingEntries.get();
             }
 
+        });
+        statslogger.registerGauge("groupcommitwindow", new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return groupCommitWindow != null ? TimeUnit.NANOSECONDS.toMicros(groupCommitWindow.getWindowNanos()) : 0L;
+            }
+
+        });
+        statslogger.registerGauge("freesegments", new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return getFreeSegments();
+            }
+
         });
 
         this.fsyncThreadPool = fsyncThreadPool;
@@ -444,8 +563,16 @@ public class FileCommitLog extends CommitLog {
                 List<LogEntryHolderFuture> syncNeeded = new ArrayList<>();
                 long unsyncedBytes = 0;
                 int unsyncedCount = 0;
+                long batchStart = 0;
                 while (!closed || !writeQueue.isEmpty()) {
-                    LogEntryHolderFuture entry = writeQueue.poll(maxSyncTime, TimeUnit.NANOSECONDS);
+                    LogEntryHolderFuture entry;
+                    if (groupCommitWindow != null && unsyncedCount > 0) {
+                        // wait for other entries only if the batch window is still open
+                        long wait = batchStart + groupCommitWindow.getWindowNanos() - System.nanoTime();
+                        entry = wait > 0 ? writeQueue.poll(wait, TimeUnit.NANOSECONDS) : writeQueue.poll();
+                    } else {
+                        entry = writeQueue.poll(maxSyncTime, TimeUnit.NANOSECONDS);
+                    }
                     boolean timedOut = false;
                     if (entry != null) {
                         if (entry.entry == null) {
@@ -454,6 +581,13 @@ public class FileCommitLog extends CommitLog {
                         }
 
                         queueSize.decrementAndGet();
+                        if (groupCommitWindow != null) {
+                            long now = System.nanoTime();
+                            groupCommitWindow.entryArrived(now);
+                            if (unsyncedCount == 0) {
+                                batchStart = now;
+                            }
+                        }
                         int size = writeEntry(entry);
 
                         ++unsyncedCount;
@@ -653,6 +787,7 @@ public class FileCommitLog extends CommitLog {
             }
             names.sort(Comparator.comparing(Path::toString));
 
+            final Path last = names.isEmpty() ? null : names.get(names.size() - 1);
             long offset = -1;
             for (Path p : names) {
                 LOGGER.log(Level.INFO, "tablespace {1}, logfile is {0}", new Object[]{p.toAbsolutePath(), tableSpaceName});
@@ -663,7 +798,7 @@ public class FileCommitLog extends CommitLog {
                 currentLedgerId = Math.max(currentLedgerId, ledgerId);
                 offset = -1;
 
-                try (CommitFileReader reader = new CommitFileReader(logDirectory, ledgerId)) {
+                try (CommitFileReader reader = new CommitFileReader(logDirectory, ledgerId, p.equals(last))) {
                     LogEntryWithSequenceNumber n = reader.nextEntry();
                     while (n != null) {
                         offset = n.logSequenceNumber.offset;
@@ -720,7 +855,11 @@ public class FileCommitLog extends CommitLog {
                     if (!lastFile && ledgerId < ledgerLimit) {
                         LOGGER.log(Level.SEVERE, "deleting logfile {0} for ledger {1}", new Object[]{path.toAbsolutePath(), ledgerId});
                         try {
-                            Files.delete(path);
+                            if (segmentPool != null) {
+                                segmentPool.release(path);
+                            } else {
+                                Files.delete(path);
+                            }
                         } catch (IOException errorDelete) {
                             LOGGER.log(Level.SEVERE, "fatal error while deleting file " + path, errorDelete);
                             throw new LogNotAvailableException(errorDelete);
@@ -741,6 +880,14 @@ public class FileCommitLog extends CommitLog {
     @Override
     public void startWriting() throws LogNotAvailableException {
         ensureDirectories();
+        if (segmentPool != null) {
+            try {
+                segmentPool.start();
+            } catch (IOException err) {
+                failed = true;
+                throw new LogNotAvailableException(err);
+            }
+        }
         this.spool.start();
     }
 
@@ -798,6 +945,10 @@ public class FileCommitLog extends CommitLog {
         return writer;
     }
 
+    int getFreeSegments() {
+        return segmentPool != null ? segmentPool.getFreeSegments() : 0;
+    }
+
     @Override
     public LogSequenceNumber getLastSequenceNumber() {
         final CommitFileWriter _writer = this.writer;
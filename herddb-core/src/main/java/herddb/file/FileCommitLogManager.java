@@ -68,6 +68,8 @@ public class FileCommitLogManager extends CommitLogManager {
     private final StatsLogger statsLogger;
     private ScheduledExecutorService fsyncThreadPool;
     private final List<FileCommitLog> activeLogs = new CopyOnWriteArrayList<>();
+    private boolean adaptiveGroupCommit;
+    private boolean preallocateSegments;
 
     public FileCommitLogManager(Path baseDirectory) {
         this(baseDirectory, ServerConfiguration.PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT,
@@ -116,7 +118,9 @@ public class FileCommitLogManager extends CommitLogManager {
                     maxUnsynchedBatchBytes,
                     maxSyncTime,
                     requireSync,
-                    enableO_DIRECT
+                    enableO_DIRECT,
+                    adaptiveGroupCommit,
+                    preallocateSegments
             );
             activeLogs.add(res);
             return res;
@@ -125,6 +129,35 @@ public class FileCommitLogManager extends CommitLogManager {
         }
     }
 
+    public boolean isAdaptiveGroupCommit() {
+        return adaptiveGroupCommit;
+    }
+
+    /**
+     * Size the fsync batches using the observed fsync latency and arrival
+     * rate of the entries, instead of waiting always for the configured sync
+     * timeout.
+     *
+     * @param adaptiveGroupCommit
+     */
+    public void setAdaptiveGroupCommit(boolean adaptiveGroupCommit) {
+        this.adaptiveGroupCommit = adaptiveGroupCommit;
+    }
+
+    public boolean isPreallocateSegments() {
+        return preallocateSegments;
+    }
+
+    /**
+     * Write the txlog to preallocated segment files, which are recycled after
+     * checkpoints, so that a fsync never has to update file metadata.
+     *
+     * @param preallocateSegments
+     */
+    public void setPreallocateSegments(boolean preallocateSegments) {
+        this.preallocateSegments = preallocateSegments;
+    }
+
     @Override
     public void close() {
         ExecutorService _fsyncThreadPool = fsyncThreadPool;
@@ -20,6 +20,7 @@
 
 package herddb.file;
 
+import com.google.common.util.concurrent.RateLimiter;
 import herddb.core.HerdDBInternalException;
 import herddb.core.MemoryManager;
 import herddb.core.PostCheckpointAction;
@@ -60,7 +61,6 @@ import java.io.BufferedInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -76,10 +76,13 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -105,6 +108,22 @@ public class FileDataStorageManager extends DataStorageManager {
     private final OpStatsLogger dataPageWrites;
     private final OpStatsLogger indexPageReads;
     private final OpStatsLogger indexPageWrites;
+    private final OpStatsLogger pageCompressions;
+    private final OpStatsLogger pageDecompressions;
+    private final Counter pageUncompressedBytes;
+    private final Counter pageCompressedBytes;
+
+    /**
+     * Codec of the pages of each tablespace, pages of tablespaces not in this
+     * map are not compressed
+     */
+    private final Map<String, PageCodec> pageCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * Throttle for page writes (data and index pages are written only during
+     * checkpoints), null means unlimited
+     */
+    private volatile RateLimiter writeRateLimiter;
 
     public static final String FILEEXTENSION_PAGE = ".page";
 
@@ -153,6 +172,49 @@ public class FileDataStorageManager extends DataStorageManager {
         this.dataPageWrites = scope.getOpStatsLogger("data_pagewrites");
         this.indexPageReads = scope.getOpStatsLogger("index_pagereads");
         this.indexPageWrites = scope.getOpStatsLogger("index_pagewrites");
+        this.pageCompressions = scope.getOpStatsLogger("page_compressions");
+        this.pageDecompressions = scope.getOpStatsLogger("page_decompressions");
+        this.pageUncompressedBytes = scope.getCounter("page_uncompressed_bytes");
+        this.pageCompressedBytes = scope.getCounter("page_compressed_bytes");
+    }
+
+    /**
+     * Limits the rate of page writes, in order to let checkpoints not saturate
+     * the disk shared with the transaction log.
+     *
+     * @param maxWriteBytesPerSecond max number of bytes per second, zero or
+     * less means unlimited
+     */
+    public void setMaxWriteBytesPerSecond(long maxWriteBytesPerSecond) {
+        if (maxWriteBytesPerSecond > 0) {
+            LOGGER.log(Level.INFO, "page writes will be throttled at {0} bytes/s", maxWriteBytesPerSecond);
+            this.writeRateLimiter = RateLimiter.create(maxWriteBytesPerSecond);
+        } else {
+            this.writeRateLimiter = null;
+        }
+    }
+
+    private void throttleWrite(long size) {
+        RateLimiter limiter = writeRateLimiter;
+        if (limiter != null && size > 0) {
+            limiter.acquire((int) Math.min(size, Integer.MAX_VALUE));
+        }
+    }
+
+    @Override
+    public void setPageCodec(String tableSpace, String codec) throws DataStorageManagerException {
+        PageCodec pageCodec;
+        try {
+            pageCodec = PageCodec.forName(codec);
+        } catch (IllegalArgumentException err) {
+            throw new DataStorageManagerException(err);
+        }
+        if (pageCodec == null) {
+            pageCodecs.remove(tableSpace);
+        } else {
+            LOGGER.log(Level.INFO, "pages of tablespace {0} will be compressed with {1}", new Object[]{tableSpace, pageCodec});
+            pageCodecs.put(tableSpace, pageCodec);
+        }
     }
 
     @Override
@@ -191,7 +253,7 @@ public class FileDataStorageManager extends DataStorageManager {
         }
     }
 
-    private Path getTablespaceDirectory(String tablespace) {
+    protected Path getTablespaceDirectory(String tablespace) {
         return baseDirectory.resolve(tablespace + ".tablespace");
     }
 
@@ -243,15 +305,15 @@ public class FileDataStorageManager extends DataStorageManager {
                 && filename.toString().endsWith(".tx");
     }
 
-    private Path getTableDirectory(String tableSpace, String tablename) {
+    protected Path getTableDirectory(String tableSpace, String tablename) {
         return getTablespaceDirectory(tableSpace).resolve(tablename + ".table");
     }
 
-    private Path getIndexDirectory(String tableSpace, String indexname) {
+    protected Path getIndexDirectory(String tableSpace, String indexname) {
         return getTablespaceDirectory(tableSpace).resolve(indexname + ".index");
     }
 
-    private static Path getPageFile(Path tableDirectory, Long pageId) {
+    static Path getPageFile(Path tableDirectory, Long pageId) {
         return tableDirectory.resolve(pageId + FILEEXTENSION_PAGE);
     }
 
@@ -291,19 +353,10 @@ public class FileDataStorageManager extends DataStorageManager {
     public List<Record> readPage(String tableSpace, String tableName, Long pageId) throws DataStorageManagerException {
         long _start = System.currentTimeMillis();
         Path tableDir = getTableDirectory(tableSpace, tableName);
-        Path pageFile = getPageFile(tableDir, pageId);
         List<Record> result;
         try {
-            if (pageodirect) {
-                try (ODirectFileInputStream odirect = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH)) {
-                    result = rawReadDataPage(pageFile, odirect);
-                }
-            } else {
-                try (InputStream input = Files.newInputStream(pageFile);
-                     BufferedInputStream buffer = new BufferedInputStream(input, COPY_BUFFERS_SIZE)) {
-                    result = rawReadDataPage(pageFile, buffer);
-                }
-            }
+            byte[] dataPage = readPageData(tableDir, pageId, pageodirect);
+            result = rawReadDataPage(tableDir, pageId, dataPage);
         } catch (NoSuchFileException nsfe) {
             throw new DataPageDoesNotExistException("No such page: " + tableSpace + "_" + tableName + "." + pageId, nsfe);
         } catch (IOException err) {
@@ -316,26 +369,114 @@ public class FileDataStorageManager extends DataStorageManager {
         return result;
     }
 
-    private List<Record> rawReadDataPage(Path pageFile, InputStream stream) throws IOException, DataStorageManagerException {
+    /**
+     * Reads the whole content of a page
+     *
+     * @param directory table or index directory
+     * @param pageId
+     * @param odirect   read using O_DIRECT
+     * @return page content, it may be followed by zero padding
+     * @throws NoSuchFileException if the page does not exist
+     * @throws IOException
+     */
+    protected byte[] readPageData(Path directory, long pageId, boolean odirect) throws IOException {
+        Path pageFile = getPageFile(directory, pageId);
         int size = (int) Files.size(pageFile);
         byte[] dataPage = new byte[size];
-        int read = stream.read(dataPage);
+        int read;
+        if (odirect) {
+            try (ODirectFileInputStream stream = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH)) {
+                read = stream.read(dataPage);
+            }
+        } else {
+            try (InputStream input = Files.newInputStream(pageFile);
+                 BufferedInputStream stream = new BufferedInputStream(input, COPY_BUFFERS_SIZE)) {
+                read = stream.read(dataPage);
+            }
+        }
         if (read != size) {
             throw new IOException("short read, read " + read + " instead of " + size + " bytes from " + pageFile);
         }
+        return dataPage;
+    }
+
+    /**
+     * Writes the whole content of a page, replacing any previous version
+     *
+     * @param directory table or index directory
+     * @param pageId
+     * @param data      page content
+     * @param length    number of bytes of data to write
+     * @param odirect   write using O_DIRECT
+     * @throws IOException
+     */
+    protected void writePageData(Path directory, long pageId, byte[] data, int length, boolean odirect) throws IOException {
+        Path pageFile = getPageFile(directory, pageId);
+        if (odirect) {
+            try (ODirectFileOutputStream stream = new ODirectFileOutputStream(pageFile, O_DIRECT_BLOCK_BATCH,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // O_DIRECT does not need fsync
+                stream.write(data, 0, length);
+            }
+        } else {
+            try (ManagedFile file = ManagedFile.open(pageFile, requirefsync,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                 SimpleBufferedOutputStream stream = new SimpleBufferedOutputStream(file.getOutputStream(), COPY_BUFFERS_SIZE)) {
+                stream.write(data, 0, length);
+                stream.flush();
+                file.sync();
+            }
+        }
+    }
+
+    /**
+     * Releases the pages of a table or index which are no more needed
+     *
+     * @param owner     table or index name
+     * @param directory table or index directory
+     * @param unused    tells which pages can be released
+     * @param immediate release pages now, otherwise the actions to be executed
+     *                  at the end of the checkpoint are returned
+     * @return actions to be executed at the end of the checkpoint, a mutable list
+     * @throws DataStorageManagerException
+     */
+    protected List<PostCheckpointAction> releasePages(String owner, Path directory, LongPredicate unused, boolean immediate)
+            throws DataStorageManagerException {
+        List<PostCheckpointAction> result = new ArrayList<>();
+        for (Path p : getPageFiles(directory)) {
+            long pageId = getPageId(p);
+            LOGGER.log(Level.FINEST, "checkpoint file {0} pageId {1}", new Object[]{p.toAbsolutePath(), pageId});
+            if (unused.test(pageId)) {
+                if (immediate) {
+                    LOGGER.log(Level.INFO, "file " + p.toAbsolutePath() + " pageId " + pageId + ". will be deleted");
+                    try {
+                        Files.deleteIfExists(p);
+                    } catch (IOException err) {
+                        throw new DataStorageManagerException(err);
+                    }
+                } else {
+                    LOGGER.log(Level.FINEST, "checkpoint file " + p.toAbsolutePath() + " pageId " + pageId + ". will be deleted after checkpoint end");
+                    result.add(new DeleteFileAction(owner, "delete page " + pageId + " file " + p.toAbsolutePath(), p));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Record> rawReadDataPage(Path directory, long pageId, byte[] dataPage) throws IOException, DataStorageManagerException {
         try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(dataPage)) {
             long version = dataIn.readVLong(); // version
-            long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
-                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+            long flags = dataIn.readVLong(); // codec
+            if (version != 1) {
+                throw new DataStorageManagerException("corrupted data page " + pageId + " in " + directory.toAbsolutePath());
             }
-            int numRecords = dataIn.readInt();
-            List<Record> result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytesNoCopy();
-                Bytes value = dataIn.readBytesNoCopy();
-                result.add(new Record(key, value));
+            if (flags != 0) {
+                byte[] body = decompressPage(flags, dataIn, dataPage, "data page " + pageId + " in " + directory);
+                try (ByteArrayCursor bodyIn = ByteArrayCursor.wrap(body)) {
+                    return readRecords(bodyIn);
+                }
             }
+            List<Record> result = readRecords(dataIn);
             int pos = dataIn.getPosition();
             long hashFromFile = dataIn.readLong();
             if (hashChecksEnabled && hashFromFile != NO_HASH_PRESENT) {
@@ -343,13 +484,67 @@ public class FileDataStorageManager extends DataStorageManager {
                 // the hash is not at the end of file, but after data
                 long hashFromDigest = XXHash64Utils.hash(dataPage, 0, pos);
                 if (hashFromDigest != hashFromFile) {
-                    throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+                    throw new DataStorageManagerException("Corrupted data page " + pageId + " in " + directory + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
                 }
             }
             return result;
         }
     }
 
+    private static List<Record> readRecords(ByteArrayCursor dataIn) throws IOException {
+        int numRecords = dataIn.readInt();
+        List<Record> result = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            Bytes key = dataIn.readBytesNoCopy();
+            Bytes value = dataIn.readBytesNoCopy();
+            result.add(new Record(key, value));
+        }
+        return result;
+    }
+
+    /**
+     * Decompresses the body of a page written with a {@link PageCodec}.
+     * <p>
+     * The header (version and flags) has already been read, the hash is
+     * verified on the compressed data.
+     *
+     * @return the uncompressed body of the page
+     */
+    private byte[] decompressPage(long flags, ByteArrayCursor dataIn, byte[] page, String description)
+            throws IOException, DataStorageManagerException {
+        long _start = System.nanoTime();
+        byte[] body = decompressPage(flags, dataIn, page, description, hashChecksEnabled);
+        pageDecompressions.registerSuccessfulEvent(System.nanoTime() - _start, TimeUnit.NANOSECONDS);
+        return body;
+    }
+
+    private static byte[] decompressPage(long flags, ByteArrayCursor dataIn, byte[] page, String description, boolean hashChecksEnabled)
+            throws IOException, DataStorageManagerException {
+        PageCodec codec = PageCodec.forFlags(flags);
+        if (codec == null) {
+            throw new DataStorageManagerException("corrupted " + description + ", unknown flags " + flags);
+        }
+        int length = dataIn.readVInt();
+        int compressedLength = dataIn.readVInt();
+        int start = dataIn.getPosition();
+        dataIn.skip(compressedLength);
+        int pos = dataIn.getPosition();
+        long hashFromFile = dataIn.readLong();
+        if (hashChecksEnabled && hashFromFile != NO_HASH_PRESENT) {
+            long hashFromDigest = XXHash64Utils.hash(page, 0, pos);
+            if (hashFromDigest != hashFromFile) {
+                throw new DataStorageManagerException("Corrupted " + description + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+            }
+        }
+        byte[] body = new byte[length];
+        try {
+            codec.decompress(page, start, body, 0, length);
+        } catch (RuntimeException err) {
+            throw new DataStorageManagerException("Corrupted " + description + ", cannot decompress with " + codec, err);
+        }
+        return body;
+    }
+
     public static List<Record> rawReadDataPage(Path pageFile) throws DataStorageManagerException,
             IOException {
         List<Record> result;
@@ -360,9 +555,20 @@ public class FileDataStorageManager extends DataStorageManager {
              ExtendedDataInputStream dataIn = new ExtendedDataInputStream(hash)) {
             long version = dataIn.readVLong(); // version
             long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
+            if (version != 1) {
                 throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
             }
+            if (flags != 0) {
+                byte[] page = Files.readAllBytes(pageFile);
+                try (ByteArrayCursor pageIn = ByteArrayCursor.wrap(page)) {
+                    pageIn.readVLong();
+                    pageIn.readVLong();
+                    byte[] body = decompressPage(flags, pageIn, page, "data file " + pageFile, true);
+                    try (ByteArrayCursor bodyIn = ByteArrayCursor.wrap(body)) {
+                        return readRecords(bodyIn);
+                    }
+                }
+            }
             int numRecords = dataIn.readInt();
             result = new ArrayList<>(numRecords);
             for (int i = 0; i < numRecords; i++) {
@@ -379,13 +585,7 @@ public class FileDataStorageManager extends DataStorageManager {
         return result;
     }
 
-    private <X> X readIndexPage(DataReader<X> reader, Path pageFile, InputStream stream) throws IOException, DataStorageManagerException {
-        int size = (int) Files.size(pageFile);
-        byte[] dataPage = new byte[size];
-        int read = stream.read(dataPage);
-        if (read != size) {
-            throw new IOException("short read, read " + read + " instead of " + size + " bytes from " + pageFile);
-        }
+    private <X> X readIndexPage(DataReader<X> reader, Path directory, long pageId, byte[] dataPage) throws IOException, DataStorageManagerException {
         try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(dataPage)) {
             /*
              * When writing with O_DIRECT this stream will be zero padded at the end. It isn't a problem: reader
@@ -393,9 +593,15 @@ public class FileDataStorageManager extends DataStorageManager {
              * hash after data end that must not be read by the reader.
              */
             long version = dataIn.readVLong(); // version
-            long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
-                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+            long flags = dataIn.readVLong(); // codec
+            if (version != 1) {
+                throw new DataStorageManagerException("corrupted index page " + pageId + " in " + directory.toAbsolutePath());
+            }
+            if (flags != 0) {
+                byte[] body = decompressPage(flags, dataIn, dataPage, "index page " + pageId + " in " + directory);
+                try (ByteArrayCursor bodyIn = ByteArrayCursor.wrap(body)) {
+                    return reader.read(bodyIn);
+                }
             }
             X result = reader.read(dataIn);
             int pos = dataIn.getPosition();
@@ -405,7 +611,7 @@ public class FileDataStorageManager extends DataStorageManager {
                 // the hash is not at the end of file, but after data
                 long hashFromDigest = XXHash64Utils.hash(dataPage, 0, pos);
                 if (hashFromDigest != hashFromFile) {
-                    throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+                    throw new DataStorageManagerException("Corrupted index page " + pageId + " in " + directory + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
                 }
             }
             return result;
@@ -415,20 +621,11 @@ public class FileDataStorageManager extends DataStorageManager {
     @Override
     public <X> X readIndexPage(String tableSpace, String indexName, Long pageId, DataReader<X> reader) throws DataStorageManagerException {
         Path tableDir = getIndexDirectory(tableSpace, indexName);
-        Path pageFile = getPageFile(tableDir, pageId);
         long _start = System.currentTimeMillis();
         X result;
         try {
-            if (indexodirect) {
-                try (ODirectFileInputStream odirect = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH)) {
-                    result = readIndexPage(reader, pageFile, odirect);
-                }
-            } else {
-                try (InputStream input = Files.newInputStream(pageFile);
-                     BufferedInputStream buffer = new BufferedInputStream(input, COPY_BUFFERS_SIZE)) {
-                    result = readIndexPage(reader, pageFile, buffer);
-                }
-            }
+            byte[] dataPage = readPageData(tableDir, pageId, indexodirect);
+            result = readIndexPage(reader, tableDir, pageId, dataPage);
         } catch (IOException err) {
             throw new DataStorageManagerException(err);
         }
@@ -638,20 +835,11 @@ public class FileDataStorageManager extends DataStorageManager {
         final Set<LogSequenceNumber> checkpoints = pinTableAndGetCheckpoints(tableSpace, tableName, tableStatus, pin);
 
         long maxPageId = tableStatus.activePages.keySet().stream().max(Comparator.naturalOrder()).orElse(Long.MAX_VALUE);
-        List<PostCheckpointAction> result = new ArrayList<>();
         // we can drop old page files now
-        List<Path> pageFiles = getTablePageFiles(tableSpace, tableName);
-        for (Path p : pageFiles) {
-            long pageId = getPageId(p);
-            LOGGER.log(Level.FINEST, "checkpoint file {0} pageId {1}", new Object[]{p.toAbsolutePath(), pageId});
-            if (pageId > 0
-                    && !pins.containsKey(pageId)
-                    && !tableStatus.activePages.containsKey(pageId)
-                    && pageId < maxPageId) {
-                LOGGER.log(Level.FINEST, "checkpoint file " + p.toAbsolutePath() + " pageId " + pageId + ". will be deleted after checkpoint end");
-                result.add(new DeleteFileAction(tableName, "delete page " + pageId + " file " + p.toAbsolutePath(), p));
-            }
-        }
+        List<PostCheckpointAction> result = releasePages(tableName, dir, pageId -> pageId > 0
+                && !pins.containsKey(pageId)
+                && !tableStatus.activePages.containsKey(pageId)
+                && pageId < maxPageId, false);
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
             for (Path p : stream) {
@@ -716,20 +904,11 @@ public class FileDataStorageManager extends DataStorageManager {
         final Set<LogSequenceNumber> checkpoints = pinIndexAndGetCheckpoints(tableSpace, indexName, indexStatus, pin);
 
         long maxPageId = indexStatus.activePages.stream().max(Comparator.naturalOrder()).orElse(Long.MAX_VALUE);
-        List<PostCheckpointAction> result = new ArrayList<>();
         // we can drop old page files now
-        List<Path> pageFiles = getIndexPageFiles(tableSpace, indexName);
-        for (Path p : pageFiles) {
-            long pageId = getPageId(p);
-            LOGGER.log(Level.FINEST, "checkpoint file {0} pageId {1}", new Object[]{p.toAbsolutePath(), pageId});
-            if (pageId > 0
-                    && !pins.containsKey(pageId)
-                    && !indexStatus.activePages.contains(pageId)
-                    && pageId < maxPageId) {
-                LOGGER.log(Level.FINEST, "checkpoint file " + p.toAbsolutePath() + " pageId " + pageId + ". will be deleted after checkpoint end");
-                result.add(new DeleteFileAction(indexName, "delete page " + pageId + " file " + p.toAbsolutePath(), p));
-            }
-        }
+        List<PostCheckpointAction> result = releasePages(indexName, dir, pageId -> pageId > 0
+                && !pins.containsKey(pageId)
+                && !indexStatus.activePages.contains(pageId)
+                && pageId < maxPageId, false);
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
             for (Path p : stream) {
@@ -797,27 +976,15 @@ public class FileDataStorageManager extends DataStorageManager {
     }
 
     public List<Path> getTablePageFiles(String tableSpace, String tableName) throws DataStorageManagerException {
-        Path tableDir = getTableDirectory(tableSpace, tableName);
-
-        try (DirectoryStream<Path> files = Files.newDirectoryStream(tableDir, new DirectoryStream.Filter<Path>() {
-            @Override
-            public boolean accept(Path entry) throws IOException {
-                return isPageFile(entry);
-            }
-
-        })) {
-            List<Path> result = new ArrayList<>();
-            files.forEach(result::add);
-            return result;
-        } catch (IOException err) {
-            throw new DataStorageManagerException(err);
-        }
+        return getPageFiles(getTableDirectory(tableSpace, tableName));
     }
 
     public List<Path> getIndexPageFiles(String tableSpace, String indexName) throws DataStorageManagerException {
-        Path indexDir = getIndexDirectory(tableSpace, indexName);
+        return getPageFiles(getIndexDirectory(tableSpace, indexName));
+    }
 
-        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDir, new DirectoryStream.Filter<Path>() {
+    private static List<Path> getPageFiles(Path directory) throws DataStorageManagerException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, new DirectoryStream.Filter<Path>() {
             @Override
             public boolean accept(Path entry) throws IOException {
                 return isPageFile(entry);
@@ -835,19 +1002,8 @@ public class FileDataStorageManager extends DataStorageManager {
     @Override
     public void cleanupAfterTableBoot(String tableSpace, String tableName, Set<Long> activePagesAtBoot) throws DataStorageManagerException {
         // we have to drop old page files or page files partially written by checkpoint interrupted at JVM crash/reboot
-        List<Path> pageFiles = getTablePageFiles(tableSpace, tableName);
-        for (Path p : pageFiles) {
-            long pageId = getPageId(p);
-            LOGGER.log(Level.FINER, "cleanupAfterBoot file " + p.toAbsolutePath() + " pageId " + pageId);
-            if (pageId > 0 && !activePagesAtBoot.contains(pageId)) {
-                LOGGER.log(Level.INFO, "cleanupAfterBoot file " + p.toAbsolutePath() + " pageId " + pageId + ". will be deleted");
-                try {
-                    Files.deleteIfExists(p);
-                } catch (IOException err) {
-                    throw new DataStorageManagerException(err);
-                }
-            }
-        }
+        releasePages(tableName, getTableDirectory(tableSpace, tableName),
+                pageId -> pageId > 0 && !activePagesAtBoot.contains(pageId), true);
     }
 
     /**
@@ -860,29 +1016,73 @@ public class FileDataStorageManager extends DataStorageManager {
      * @return
      * @throws IOException
      */
-    private long writePage(Collection<Record> newPage, ManagedFile file, OutputStream stream) throws IOException {
+    private long writePage(Collection<Record> newPage, PageCodec codec, Path directory, long pageId) throws IOException {
 
         try (RecyclableByteArrayOutputStream oo = getWriteBuffer();
              ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
 
             dataOutput.writeVLong(1); // version
-            dataOutput.writeVLong(0); // flags for future implementations
+            dataOutput.writeVLong(0); // flags, the codec of compressed pages
+            dataOutput.flush();
+            int bodyStart = oo.size();
             dataOutput.writeInt(newPage.size());
             for (Record record : newPage) {
                 dataOutput.writeArray(record.key);
                 dataOutput.writeArray(record.value);
             }
-            dataOutput.flush();
-            long hash = hashWritesEnabled ? XXHash64Utils.hash(oo.getBuffer(), 0, oo.size()) : NO_HASH_PRESENT;
-            dataOutput.writeLong(hash);
-            dataOutput.flush();
-            stream.write(oo.getBuffer(), 0, oo.size());
-            if (file != null) { // O_DIRECT does not need fsync
-                file.sync();
+            return completeAndWritePage(oo, dataOutput, bodyStart, codec, directory, pageId, pageodirect);
+        }
+
+    }
+
+    /**
+     * Completes a page and writes it, compressing the body of the page if the
+     * tablespace has a codec.
+     * <p>
+     * A compressed page is made of version, codec flag, uncompressed length,
+     * compressed length, compressed body and hash. The page is written
+     * uncompressed if compression does not save space.
+     *
+     * @return the size of the written page
+     */
+    private long completeAndWritePage(
+            RecyclableByteArrayOutputStream oo, ExtendedDataOutputStream dataOutput, int bodyStart,
+            PageCodec codec, Path directory, long pageId, boolean odirect
+    ) throws IOException {
+        dataOutput.flush();
+        if (codec != null) {
+            long _start = System.nanoTime();
+            int length = oo.size() - bodyStart;
+            byte[] compressed = new byte[codec.maxCompressedLength(length)];
+            int compressedLength = codec.compress(oo.getBuffer(), bodyStart, length, compressed, 0);
+            pageCompressions.registerSuccessfulEvent(System.nanoTime() - _start, TimeUnit.NANOSECONDS);
+            pageUncompressedBytes.add((long) length);
+            pageCompressedBytes.add((long) Math.min(length, compressedLength));
+            if (compressedLength < length) {
+                try (RecyclableByteArrayOutputStream co = getWriteBuffer();
+                     ExtendedDataOutputStream compressedOutput = new ExtendedDataOutputStream(co)) {
+                    compressedOutput.writeVLong(1); // version
+                    compressedOutput.writeVLong(codec.getFlag());
+                    compressedOutput.writeVInt(length);
+                    compressedOutput.writeVInt(compressedLength);
+                    compressedOutput.write(compressed, 0, compressedLength);
+                    return writePageWithHash(co, compressedOutput, directory, pageId, odirect);
+                }
             }
-            return oo.size();
         }
+        return writePageWithHash(oo, dataOutput, directory, pageId, odirect);
+    }
 
+    private long writePageWithHash(
+            RecyclableByteArrayOutputStream oo, ExtendedDataOutputStream dataOutput,
+            Path directory, long pageId, boolean odirect
+    ) throws IOException {
+        dataOutput.flush();
+        long hash = hashWritesEnabled ? XXHash64Utils.hash(oo.getBuffer(), 0, oo.size()) : NO_HASH_PRESENT;
+        dataOutput.writeLong(hash);
+        dataOutput.flush();
+        writePageData(directory, pageId, oo.getBuffer(), oo.size(), odirect);
+        return oo.size();
     }
 
     @Override
@@ -890,28 +1090,14 @@ public class FileDataStorageManager extends DataStorageManager {
         // synch on table is done by the TableManager
         long _start = System.currentTimeMillis();
         Path tableDir = getTableDirectory(tableSpace, tableName);
-        Path pageFile = getPageFile(tableDir, pageId);
         long size;
 
         try {
-            if (pageodirect) {
-                try (ODirectFileOutputStream odirect = new ODirectFileOutputStream(pageFile, O_DIRECT_BLOCK_BATCH,
-                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                    size = writePage(newPage, null, odirect);
-                }
-
-            } else {
-                try (ManagedFile file = ManagedFile.open(pageFile, requirefsync,
-                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                     SimpleBufferedOutputStream buffer = new SimpleBufferedOutputStream(file.getOutputStream(), COPY_BUFFERS_SIZE)) {
-
-                    size = writePage(newPage, file, buffer);
-                }
-
-            }
+            size = writePage(newPage, pageCodecs.get(tableSpace), tableDir, pageId);
         } catch (IOException err) {
             throw new DataStorageManagerException(err);
         }
+        throttleWrite(size);
 
         long now = System.currentTimeMillis();
         long delta = (now - _start);
@@ -922,21 +1108,15 @@ public class FileDataStorageManager extends DataStorageManager {
         dataPageWrites.registerSuccessfulEvent(delta, TimeUnit.MILLISECONDS);
     }
 
-    private long writeIndexPage(DataWriter writer, ManagedFile file, OutputStream stream) throws IOException {
+    private long writeIndexPage(DataWriter writer, PageCodec codec, Path directory, long pageId) throws IOException {
         try (RecyclableByteArrayOutputStream oo = getWriteBuffer();
              ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
             dataOutput.writeVLong(1); // version
-            dataOutput.writeVLong(0); // flags for future implementations
-            writer.write(dataOutput);
+            dataOutput.writeVLong(0); // flags, the codec of compressed pages
             dataOutput.flush();
-            long hash = hashWritesEnabled ? XXHash64Utils.hash(oo.getBuffer(), 0, oo.size()) : NO_HASH_PRESENT;
-            dataOutput.writeLong(hash);
-            dataOutput.flush();
-            stream.write(oo.getBuffer(), 0, oo.size());
-            if (file != null) { // O_DIRECT does not need fsync
-                file.sync();
-            }
-            return oo.size();
+            int bodyStart = oo.size();
+            writer.write(dataOutput);
+            return completeAndWritePage(oo, dataOutput, bodyStart, codec, directory, pageId, indexodirect);
         }
     }
 
@@ -948,27 +1128,13 @@ public class FileDataStorageManager extends DataStorageManager {
         long _start = System.currentTimeMillis();
         Path tableDir = getIndexDirectory(tableSpace, indexName);
 
-        Path pageFile = getPageFile(tableDir, pageId);
         long size;
         try {
-            if (indexodirect) {
-                try (ODirectFileOutputStream odirect = new ODirectFileOutputStream(pageFile, O_DIRECT_BLOCK_BATCH,
-                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                    size = writeIndexPage(writer, null, odirect);
-                }
-
-            } else {
-                try (ManagedFile file = ManagedFile.open(pageFile, requirefsync,
-                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                     SimpleBufferedOutputStream buffer = new SimpleBufferedOutputStream(file.getOutputStream(), COPY_BUFFERS_SIZE)) {
-
-                    size = writeIndexPage(writer, file, buffer);
-                }
-            }
-
+            size = writeIndexPage(writer, pageCodecs.get(tableSpace), tableDir, pageId);
         } catch (IOException err) {
-            LOGGER.log(Level.SEVERE, "Failed to write on path: {0}", pageFile);
-            Path path = pageFile;
+            // the layout of the pages inside the directory depends on the storage
+            LOGGER.log(Level.SEVERE, "Failed to write page {0} in directory: {1}", new Object[]{pageId, tableDir});
+            Path path = tableDir;
             boolean exists;
             do {
                 exists = Files.exists(path);
@@ -989,6 +1155,8 @@ public class FileDataStorageManager extends DataStorageManager {
             throw new DataStorageManagerException(err);
         }
 
+        throttleWrite(size);
+
         long now = System.currentTimeMillis();
         long delta = (now - _start);
         if (LOGGER.isLoggable(Level.FINER)) {
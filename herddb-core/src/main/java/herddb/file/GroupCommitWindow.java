@@ -0,0 +1,102 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the group commit window of the {@link FileCommitLog}, using the
+ * observed fsync latency and the arrival rate of log entries.
+ * <p>
+ * If less than one entry is expected to arrive during a fsync then waiting for
+ * other entries only adds latency: the batch is flushed as soon as the write
+ * queue is empty. Otherwise the batch is kept open for about the duration of a
+ * fsync, up to the configured maximum wait time, so that under heavy load each
+ * fsync covers as many entries as possible.
+ */
+final class GroupCommitWindow {
+
+    /**
+     * Weight of a new sample in the moving averages, as a shift (1/8)
+     */
+    private static final int SMOOTHING_SHIFT = 3;
+
+    /**
+     * Idle periods do not tell anything about the arrival rate during a burst
+     */
+    private static final long MAX_INTERARRIVAL_SAMPLE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long maxWindowNanos;
+    private volatile long avgFsyncNanos = -1;
+    private volatile long avgInterArrivalNanos = MAX_INTERARRIVAL_SAMPLE;
+    private long lastArrival = -1;
+
+    GroupCommitWindow(long maxWindowNanos) {
+        this.maxWindowNanos = maxWindowNanos;
+    }
+
+    /**
+     * Records the duration of a fsync, called by the fsync threads
+     *
+     * @param nanos
+     */
+    synchronized void fsyncCompleted(long nanos) {
+        long avg = avgFsyncNanos;
+        avgFsyncNanos = avg < 0 ? nanos : avg + ((nanos - avg) >> SMOOTHING_SHIFT);
+    }
+
+    /**
+     * Records the arrival of an entry, called only by the spool thread
+     *
+     * @param now current value of {@link System#nanoTime()}
+     */
+    void entryArrived(long now) {
+        if (lastArrival >= 0) {
+            long sample = Math.min(now - lastArrival, MAX_INTERARRIVAL_SAMPLE);
+            long avg = avgInterArrivalNanos;
+            avgInterArrivalNanos = avg + ((sample - avg) >> SMOOTHING_SHIFT);
+        }
+        lastArrival = now;
+    }
+
+    /**
+     * Maximum time to wait for other entries, since the first entry of the
+     * batch has been written
+     *
+     * @return the window, in nanoseconds
+     */
+    long getWindowNanos() {
+        long fsync = avgFsyncNanos;
+        if (fsync <= 0 || avgInterArrivalNanos >= fsync) {
+            return 0;
+        }
+        return Math.min(fsync, maxWindowNanos);
+    }
+
+    long getAvgFsyncNanos() {
+        return avgFsyncNanos;
+    }
+
+    long getAvgInterArrivalNanos() {
+        return avgInterArrivalNanos;
+    }
+
+}
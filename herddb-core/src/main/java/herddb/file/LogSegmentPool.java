@@ -0,0 +1,219 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of preallocated txlog segment files.
+ * <p>
+ * Segments are fully written with zeros before being used, so that appending
+ * to the txlog never changes the size of the file nor allocates new blocks and
+ * a fsync does not need to update file metadata. Segments of ledgers dropped
+ * after a checkpoint are zeroed and reused instead of being deleted.
+ * <p>
+ * Free segments are kept in the txlog directory, with a different extension,
+ * so they are never read during recovery.
+ */
+final class LogSegmentPool {
+
+    private static final Logger LOGGER = Logger.getLogger(LogSegmentPool.class.getName());
+
+    static final String FREE_SEGMENT_EXTENSION = ".txlogfree";
+    static final String RECYCLING_SEGMENT_EXTENSION = ".txlogrecycling";
+
+    private static final int ZERO_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxFreeSegments;
+    private final ExecutorService executor;
+
+    private final Deque<Path> freeSegments = new ArrayDeque<>();
+    private int pendingSegments;
+
+    LogSegmentPool(Path directory, long segmentSize, int maxFreeSegments, ExecutorService executor) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxFreeSegments = maxFreeSegments;
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the free segments left by a previous execution, segments which
+     * were not completely zeroed are discarded
+     *
+     * @throws IOException
+     */
+    synchronized void start() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName() + "";
+                if (name.endsWith(RECYCLING_SEGMENT_EXTENSION)) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(FREE_SEGMENT_EXTENSION)) {
+                    if (Files.size(path) == segmentSize && freeSegments.size() < maxFreeSegments) {
+                        freeSegments.add(path);
+                    } else {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        }
+        LOGGER.log(Level.FINE, "{0} free txlog segments in {1}", new Object[]{freeSegments.size(), directory});
+        ensureSpareSegment();
+    }
+
+    /**
+     * Moves a preallocated segment to the given path, if no free segment is
+     * available a new one is created
+     *
+     * @param target
+     * @throws IOException
+     */
+    void acquire(Path target) throws IOException {
+        Path free;
+        synchronized (this) {
+            free = freeSegments.pollFirst();
+        }
+        if (free != null) {
+            Files.move(free, target, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            LOGGER.log(Level.INFO, "no free txlog segment in {0}, allocating {1}", new Object[]{directory, target});
+            Path tmp = newSegmentPath(RECYCLING_SEGMENT_EXTENSION);
+            zeroFill(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        ensureSpareSegment();
+    }
+
+    /**
+     * Releases the segment of a ledger which is no more needed
+     *
+     * @param ledgerFile
+     * @throws IOException
+     */
+    void release(Path ledgerFile) throws IOException {
+        synchronized (this) {
+            if (freeSegments.size() + pendingSegments >= maxFreeSegments) {
+                Files.delete(ledgerFile);
+                return;
+            }
+            pendingSegments++;
+        }
+        // the segment is no more a ledger as soon as it is renamed
+        Path recycling = newSegmentPath(RECYCLING_SEGMENT_EXTENSION);
+        try {
+            Files.move(ledgerFile, recycling, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException err) {
+            synchronized (this) {
+                pendingSegments--;
+            }
+            throw err;
+        }
+        submitPrepareSegment(recycling);
+    }
+
+    synchronized int getFreeSegments() {
+        return freeSegments.size();
+    }
+
+    private void ensureSpareSegment() {
+        synchronized (this) {
+            if (!freeSegments.isEmpty() || pendingSegments > 0) {
+                return;
+            }
+            pendingSegments++;
+        }
+        submitPrepareSegment(newSegmentPath(RECYCLING_SEGMENT_EXTENSION));
+    }
+
+    private void submitPrepareSegment(Path segment) {
+        try {
+            executor.submit(() -> prepareSegment(segment));
+        } catch (RejectedExecutionException shuttingDown) {
+            synchronized (this) {
+                pendingSegments--;
+            }
+        }
+    }
+
+    private void prepareSegment(Path segment) {
+        try {
+            zeroFill(segment);
+            Path free = newSegmentPath(FREE_SEGMENT_EXTENSION);
+            Files.move(segment, free, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                freeSegments.add(free);
+            }
+        } catch (IOException err) {
+            LOGGER.log(Level.SEVERE, "cannot prepare txlog segment " + segment, err);
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException ignore) {
+            }
+        } finally {
+            synchronized (this) {
+                pendingSegments--;
+            }
+        }
+    }
+
+    private void zeroFill(Path segment) throws IOException {
+        // recycled segments are overwritten in place, keeping the blocks allocated
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() > segmentSize) {
+                channel.truncate(segmentSize);
+            }
+            ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_BUFFER_SIZE);
+            long position = 0;
+            while (position < segmentSize) {
+                zeros.clear();
+                zeros.limit((int) Math.min(ZERO_BUFFER_SIZE, segmentSize - position));
+                while (zeros.hasRemaining()) {
+                    position += channel.write(zeros, position);
+                }
+            }
+            // this is the only time we need to persist file metadata
+            channel.force(true);
+        }
+    }
+
+    private Path newSegmentPath(String extension) {
+        return directory.resolve("segment-" + UUID.randomUUID() + extension);
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Compression codec for data and index pages.
+ * <p>
+ * The codec used to write a page is recorded in the flags of the page header,
+ * so every page can be read whatever codec is currently configured.
+ */
+public abstract class PageCodec {
+
+    public static final String NONE = "none";
+    public static final String LZ4 = "lz4";
+
+    private static final PageCodec LZ4_CODEC = new LZ4PageCodec();
+
+    private final String name;
+    private final long flag;
+
+    protected PageCodec(String name, long flag) {
+        this.name = name;
+        this.flag = flag;
+    }
+
+    /**
+     * Lookup a codec by name
+     *
+     * @param name
+     * @return the codec, null for {@link #NONE}
+     * @throws IllegalArgumentException if the codec is unknown
+     */
+    public static PageCodec forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case NONE:
+            case "":
+                return null;
+            case LZ4:
+                return LZ4_CODEC;
+            default:
+                throw new IllegalArgumentException("unknown page codec " + name);
+        }
+    }
+
+    /**
+     * Lookup the codec of a page
+     *
+     * @param flags flags read from the page header
+     * @return the codec, null if the flags do not match any codec
+     */
+    static PageCodec forFlags(long flags) {
+        if (flags == LZ4_CODEC.flag) {
+            return LZ4_CODEC;
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    long getFlag() {
+        return flag;
+    }
+
+    abstract int maxCompressedLength(int length);
+
+    /**
+     * @return the length of the compressed data
+     */
+    abstract int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset);
+
+    abstract void decompress(byte[] src, int srcOffset, byte[] dest, int destOffset, int destLength);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static final class LZ4PageCodec extends PageCodec {
+
+        private final LZ4Compressor compressor;
+        private final LZ4FastDecompressor decompressor;
+
+        LZ4PageCodec() {
+            super(LZ4, 1);
+            LZ4Factory factory = LZ4Factory.fastestInstance();
+            this.compressor = factory.fastCompressor();
+            this.decompressor = factory.fastDecompressor();
+        }
+
+        @Override
+        int maxCompressedLength(int length) {
+            return compressor.maxCompressedLength(length);
+        }
+
+        @Override
+        int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset) {
+            return compressor.compress(src, srcOffset, srcLength, dest, destOffset);
+        }
+
+        @Override
+        void decompress(byte[] src, int srcOffset, byte[] dest, int destOffset, int destLength) {
+            decompressor.decompress(src, srcOffset, dest, destOffset, destLength);
+        }
+    }
+
+}
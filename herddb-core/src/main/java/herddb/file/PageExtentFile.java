@@ -0,0 +1,442 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import herddb.utils.XXHash64Utils;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores all the pages of a table (or of an index) in a single file.
+ * <p>
+ * The file grows by extents and is divided in blocks, every page
+ * is written at the beginning of a run of free blocks, preceded by a header
+ * which contains the id of the page, so that the page directory can be rebuilt
+ * by scanning the file. Blocks of released pages are tracked by an in memory
+ * free space map and reused by next writes.
+ * <p>
+ * The first extent is small, the following ones double the size of the file
+ * up to the configured extent size. Extents are not zero filled, the file is
+ * only made longer: blocks never written read as zeros, which are free blocks.
+ * <p>
+ * A page may be written more than once with the same id (pages written after
+ * the last checkpoint are written again during recovery), every header carries
+ * a write sequence number and the most recent version wins.
+ */
+final class PageExtentFile implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(PageExtentFile.class.getName());
+
+    static final String FILENAME = "pages.extents";
+
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * magic (int), data length (int), page id (long), write sequence (long),
+     * hash of the previous fields (long)
+     */
+    static final int HEADER_SIZE = 32;
+
+    private static final int MAGIC = 0x48444250;
+
+    /**
+     * Size of the first extent, capped by the configured extent size
+     */
+    static final long INITIAL_EXTENT_SIZE = 1024 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    private static final class PageLocation {
+
+        final long position;
+        final int length;
+        final long sequence;
+
+        PageLocation(long position, int length, long sequence) {
+            this.position = position;
+            this.length = length;
+            this.sequence = sequence;
+        }
+
+        long blocksSize() {
+            return roundToBlocks(HEADER_SIZE + (long) length);
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long extentSize;
+    private final boolean requirefsync;
+
+    private final Map<Long, PageLocation> pages = new HashMap<>();
+
+    /**
+     * Serializes the extensions of the file, which are performed without
+     * holding the monitor of the file
+     */
+    private final Object extendLock = new Object();
+
+    /**
+     * Free space map, start of each run of free blocks to its size in bytes.
+     * Adjacent runs are always merged.
+     */
+    private final TreeMap<Long, Long> freeSpace = new TreeMap<>();
+    private long fileSize;
+    private long freeBytes;
+    private long writeSequence;
+
+    private PageExtentFile(Path file, FileChannel channel, long extentSize, boolean requirefsync) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.extentSize = roundToBlocks(Math.max(extentSize, BLOCK_SIZE));
+        this.requirefsync = requirefsync;
+        this.fileSize = channel.size() / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    static PageExtentFile open(Path file, long extentSize, boolean requirefsync) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            PageExtentFile result = new PageExtentFile(file, channel, extentSize, requirefsync);
+            result.scan();
+            return result;
+        } catch (IOException | RuntimeException err) {
+            channel.close();
+            throw err;
+        }
+    }
+
+    private static long roundToBlocks(long size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    private static long headerHash(ByteBuffer header) {
+        return XXHash64Utils.hash(header.array(), header.arrayOffset(), HEADER_SIZE - 8);
+    }
+
+    /**
+     * Rebuilds the page directory and the free space map
+     */
+    private void scan() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long bufferStart = 0;
+        buffer.limit(0);
+        long position = 0;
+        int stalePages = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            if (position < bufferStart || position + HEADER_SIZE > bufferStart + buffer.limit()) {
+                buffer.clear();
+                bufferStart = position;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+            }
+            int offset = (int) (position - bufferStart);
+            ByteBuffer header = ByteBuffer.wrap(buffer.array(), offset, HEADER_SIZE).slice();
+            PageLocation location = null;
+            long pageId = 0;
+            if (header.getInt(0) == MAGIC && header.getLong(24) == headerHash(header)) {
+                int length = header.getInt(4);
+                pageId = header.getLong(8);
+                long sequence = header.getLong(16);
+                PageLocation candidate = new PageLocation(position, length, sequence);
+                if (length >= 0 && position + candidate.blocksSize() <= fileSize) {
+                    location = candidate;
+                }
+            }
+            if (location == null) {
+                addFreeSpace(position, BLOCK_SIZE);
+                position += BLOCK_SIZE;
+            } else {
+                writeSequence = Math.max(writeSequence, location.sequence);
+                PageLocation other = pages.get(pageId);
+                if (other == null || other.sequence < location.sequence) {
+                    pages.put(pageId, location);
+                    if (other != null) {
+                        addFreeSpace(other.position, other.blocksSize());
+                        stalePages++;
+                    }
+                } else {
+                    addFreeSpace(location.position, location.blocksSize());
+                    stalePages++;
+                }
+                position += location.blocksSize();
+            }
+        }
+        LOGGER.log(Level.FINE, "opened {0}: {1} pages, {2} stale pages, {3} bytes, {4} free bytes",
+                new Object[]{file, pages.size(), stalePages, fileSize, freeBytes});
+    }
+
+    /**
+     * Reads a page
+     *
+     * @param pageId
+     * @return the data of the page
+     * @throws NoSuchFileException if the page does not exist
+     * @throws IOException
+     */
+    byte[] read(long pageId) throws IOException {
+        PageLocation location;
+        synchronized (this) {
+            location = pages.get(pageId);
+        }
+        if (location == null) {
+            throw new NoSuchFileException(file + " does not contain page " + pageId);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + location.length);
+        readFully(buffer, location.position);
+        buffer.flip();
+        if (buffer.getInt(0) != MAGIC || buffer.getLong(8) != pageId || buffer.getLong(16) != location.sequence) {
+            // the page has been released (and maybe overwritten) while we were reading
+            throw new NoSuchFileException(file + " does not contain page " + pageId + " any more");
+        }
+        byte[] result = new byte[location.length];
+        buffer.position(HEADER_SIZE);
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Writes a page, replacing the previous version of the page, if any
+     *
+     * @param pageId
+     * @param data
+     * @param length
+     * @throws IOException
+     */
+    void write(long pageId, byte[] data, int length) throws IOException {
+        long size = roundToBlocks(HEADER_SIZE + (long) length);
+        PageLocation location;
+        while (true) {
+            synchronized (this) {
+                long position = allocate(size);
+                if (position >= 0) {
+                    location = new PageLocation(position, length, ++writeSequence);
+                    break;
+                }
+            }
+            extend(size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(length);
+        buffer.putLong(pageId);
+        buffer.putLong(location.sequence);
+        buffer.putLong(headerHash(buffer));
+        buffer.put(data, 0, length);
+        buffer.flip();
+        try {
+            writeFully(buffer, location.position);
+            if (requirefsync) {
+                channel.force(false);
+            }
+        } catch (IOException err) {
+            synchronized (this) {
+                addFreeSpace(location.position, location.blocksSize());
+            }
+            throw err;
+        }
+        PageLocation previous;
+        synchronized (this) {
+            previous = pages.put(pageId, location);
+        }
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * Releases the pages which are no more needed
+     *
+     * @param unused
+     * @return ids of the released pages
+     * @throws IOException
+     */
+    List<Long> release(LongPredicate unused) throws IOException {
+        List<PageLocation> released = new ArrayList<>();
+        List<Long> result = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<Long, PageLocation>> it = pages.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, PageLocation> entry = it.next();
+                if (unused.test(entry.getKey())) {
+                    released.add(entry.getValue());
+                    result.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        for (PageLocation location : released) {
+            release(location);
+        }
+        return result;
+    }
+
+    private void release(PageLocation location) throws IOException {
+        // the header is cleared so that the page is not found at next boot,
+        // without fsync: a stale page is released again after recovery
+        writeFully(ByteBuffer.allocate(HEADER_SIZE), location.position);
+        synchronized (this) {
+            addFreeSpace(location.position, location.blocksSize());
+        }
+    }
+
+    synchronized List<Long> getPageIds(LongPredicate filter) {
+        List<Long> result = new ArrayList<>();
+        for (Long pageId : pages.keySet()) {
+            if (filter.test(pageId)) {
+                result.add(pageId);
+            }
+        }
+        return result;
+    }
+
+    synchronized boolean contains(long pageId) {
+        return pages.containsKey(pageId);
+    }
+
+    synchronized int getNumPages() {
+        return pages.size();
+    }
+
+    synchronized long getFileSize() {
+        return fileSize;
+    }
+
+    synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    /**
+     * First fit allocation
+     *
+     * @return the position of the allocated blocks, -1 if there is no run of
+     * free blocks large enough
+     */
+    private long allocate(long size) {
+        for (Map.Entry<Long, Long> run : freeSpace.entrySet()) {
+            if (run.getValue() >= size) {
+                long position = run.getKey();
+                freeSpace.remove(position);
+                if (run.getValue() > size) {
+                    freeSpace.put(position + size, run.getValue() - size);
+                }
+                freeBytes -= size;
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized boolean hasFreeRun(long size) {
+        for (long runSize : freeSpace.values()) {
+            if (runSize >= size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a run of free blocks of at least the given size. Reads, and
+     * writes which find free blocks, are not blocked meanwhile.
+     */
+    private void extend(long needed) throws IOException {
+        synchronized (extendLock) {
+            if (hasFreeRun(needed)) {
+                // extended by another writer, or pages have been released
+                return;
+            }
+            long start;
+            synchronized (this) {
+                start = fileSize;
+            }
+            long size = Math.max(Math.min(Math.max(start, INITIAL_EXTENT_SIZE), extentSize), roundToBlocks(needed));
+            // nobody writes beyond fileSize, writing the last byte is enough
+            writeFully(ByteBuffer.allocate(1), start + size - 1);
+            if (requirefsync) {
+                // file size is metadata
+                channel.force(true);
+            }
+            synchronized (this) {
+                fileSize = start + size;
+                addFreeSpace(start, size);
+            }
+            LOGGER.log(Level.FINE, "extended {0} to {1} bytes", new Object[]{file, start + size});
+        }
+    }
+
+    private void addFreeSpace(long position, long size) {
+        freeBytes += size;
+        Map.Entry<Long, Long> before = freeSpace.floorEntry(position);
+        if (before != null && before.getKey() + before.getValue() == position) {
+            position = before.getKey();
+            size += before.getValue();
+        }
+        Long after = freeSpace.remove(position + size);
+        if (after != null) {
+            size += after;
+        }
+        freeSpace.put(position, size);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("short read at " + position + " on " + file);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "PageExtentFile{" + "file=" + file + '}';
+    }
+
+}
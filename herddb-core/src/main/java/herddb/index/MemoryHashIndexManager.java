@@ -28,6 +28,7 @@ import herddb.core.TableSpaceManager;
 import herddb.log.CommitLog;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
+import herddb.model.RecordFunction;
 import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
@@ -39,6 +40,7 @@ import herddb.storage.IndexStatus;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
 import herddb.utils.Holder;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -147,13 +149,33 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
 
     @Override
     public Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        return matchingEntries(operation, context, tableContext)
+                .map(entry -> entry.getValue())
+                .flatMap(l -> l.stream());
+    }
+
+    @Override
+    public boolean supportsIndexOnlyScan() {
+        return true;
+    }
+
+    @Override
+    protected Stream<Map.Entry<Bytes, Bytes>> indexEntriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        return matchingEntries(operation, context, tableContext)
+                .flatMap(entry -> entry.getValue()
+                        .stream()
+                        .map(key -> new AbstractMap.SimpleImmutableEntry<>(key, entry.getKey())));
+    }
+
+    private Stream<Map.Entry<Bytes, List<Bytes>>> matchingEntries(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
         if (operation instanceof SecondaryIndexSeek) {
             SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
-            SQLRecordKeyFunction value = sis.value;
+            RecordFunction value = sis.value;
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
-            List<Bytes> result = data.get(Bytes.from_array(refvalue));
+            Bytes indexKey = Bytes.from_array(refvalue);
+            List<Bytes> result = data.get(indexKey);
             if (result != null) {
-                return result.stream();
+                return Stream.of(new AbstractMap.SimpleImmutableEntry<>(indexKey, result));
             } else {
                 return Stream.empty();
             }
@@ -168,9 +190,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
             return data
                     .entrySet()
                     .stream()
-                    .filter(predicate)
-                    .map(entry -> entry.getValue())
-                    .flatMap(l -> l.stream());
+                    .filter(predicate);
 
         } else if (operation instanceof SecondaryIndexRangeScan) {
             Bytes refminvalue;
@@ -215,9 +235,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
             return data
                     .entrySet()
                     .stream()
-                    .filter(predicate)
-                    .map(entry -> entry.getValue())
-                    .flatMap(l -> l.stream());
+                    .filter(predicate);
         } else {
             throw new UnsupportedOperationException("unsuppported index access type " + operation);
         }
@@ -312,7 +330,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
         if (Objects.equals(indexKeyRemoved, indexKeyAdded)) {
             return;
         }
-        // BEWARE that this operation is not atomic
+        // BEWARE that this operation is not atomic, index only scans check the records updated in the meantime
         if (indexKeyAdded != null) {
             addValueToIndex(indexKeyAdded, key);
         }
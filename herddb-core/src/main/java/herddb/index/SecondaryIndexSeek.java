@@ -21,7 +21,7 @@
 package herddb.index;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import herddb.sql.SQLRecordKeyFunction;
+import herddb.model.RecordFunction;
 
 /**
  * Seek on secondary index
@@ -33,9 +33,9 @@ public class SecondaryIndexSeek implements IndexOperation {
 
     public final String indexName;
     public final String[] columnsToMatch;
-    public final SQLRecordKeyFunction value;
+    public final RecordFunction value;
 
-    public SecondaryIndexSeek(String indexName, String[] columnsToMatch, SQLRecordKeyFunction value) {
+    public SecondaryIndexSeek(String indexName, String[] columnsToMatch, RecordFunction value) {
         this.indexName = indexName;
         this.columnsToMatch = columnsToMatch;
         this.value = value;
@@ -0,0 +1,699 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index.blink;
+
+import herddb.codec.RecordSerializer;
+import herddb.core.AbstractIndexManager;
+import herddb.core.AbstractTableManager;
+import herddb.core.HerdDBInternalException;
+import herddb.core.MemoryManager;
+import herddb.core.PostCheckpointAction;
+import herddb.core.TableSpaceManager;
+import herddb.index.IndexOperation;
+import herddb.index.SecondaryIndexPrefixScan;
+import herddb.index.SecondaryIndexRangeScan;
+import herddb.index.SecondaryIndexSeek;
+import herddb.index.blink.BLink.SizeEvaluator;
+import herddb.log.CommitLog;
+import herddb.log.LogSequenceNumber;
+import herddb.model.ColumnTypes;
+import herddb.model.Index;
+import herddb.model.InvalidNullValueForKeyException;
+import herddb.model.RecordFunction;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.Table;
+import herddb.model.TableContext;
+import herddb.storage.DataStorageManager;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.IndexStatus;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Ordered secondary index backed by a {@link BLink}, paged under the control of the {@link MemoryManager} and
+ * stored to the {@link DataStorageManager}.
+ * <p>
+ * Index keys are not unique, so every entry of the tree is a composite key made of the serialized index key
+ * followed by the primary key of the record. The index key part is escaped in order to preserve the ordering of
+ * the index keys: every 0x00 byte is written as 0x00 0xFF and the part is terminated by 0x00 0x00. The value of
+ * each entry is the primary key part of the composite key, so leaf pages only store the keys.
+ * </p>
+ * <p>
+ * Signed numeric columns are serialized big-endian in two's complement, so before escaping they are rewritten in
+ * a byte-wise sortable form, otherwise range scans across zero would miss the negative values.
+ * </p>
+ */
+public class BLinkIndexManager extends AbstractIndexManager {
+
+    private static final Logger LOGGER = Logger.getLogger(BLinkIndexManager.class.getName());
+
+    private static final byte ESCAPE = 0;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final byte TERMINATOR = 0;
+
+    private final MemoryManager memoryManager;
+    private final int[] keyColumnTypes;
+    private final boolean sortableKeyRewrite;
+    private final AtomicLong newPageId = new AtomicLong(1);
+    private final BLinkIndexDataStorage<Bytes, Bytes> indexDataStorage = new BLinkIndexDataStorageImpl();
+
+    private volatile BLink<Bytes, Bytes> tree;
+
+    public BLinkIndexManager(Index index, MemoryManager memoryManager, AbstractTableManager tableManager, CommitLog log, DataStorageManager dataStorageManager, TableSpaceManager tableSpaceManager, String tableSpaceUUID, long transaction) {
+        super(index, tableManager, dataStorageManager, tableSpaceManager.getTableSpaceUUID(), log, transaction);
+        this.memoryManager = memoryManager;
+        this.keyColumnTypes = new int[index.columnNames.length];
+        boolean signedColumns = false;
+        for (int i = 0; i < keyColumnTypes.length; i++) {
+            keyColumnTypes[i] = index.getColumn(index.columnNames[i]).type;
+            signedColumns |= isSignedNumeric(keyColumnTypes[i]);
+        }
+        this.sortableKeyRewrite = signedColumns;
+    }
+
+    @Override
+    protected boolean doStart(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        LOGGER.log(Level.FINE, " start BTREE index {0} uuid {1}", new Object[]{index.name, index.uuid});
+
+        dataStorageManager.initIndex(tableSpaceUUID, index.uuid);
+
+        if (LogSequenceNumber.START_OF_TIME.equals(sequenceNumber)) {
+            /* Empty index (booting from the start) */
+            tree = newTree(null);
+            LOGGER.log(Level.FINE, "loaded empty index {0}", new Object[]{index.name});
+            return true;
+        }
+
+        IndexStatus status;
+        try {
+            status = dataStorageManager.getIndexStatus(tableSpaceUUID, index.uuid, sequenceNumber);
+        } catch (DataStorageManagerException e) {
+            LOGGER.log(Level.SEVERE, "cannot load index {0} due to {1}, it will be rebuilt", new Object[]{index.name, e});
+            return false;
+        }
+
+        try {
+            BLinkMetadata<Bytes> metadata = BLinkKeyToPageIndex.MetadataSerializer.INSTANCE.read(status.indexData);
+            tree = newTree(metadata);
+        } catch (IOException e) {
+            throw new DataStorageManagerException(e);
+        }
+        newPageId.set(status.newPageId);
+        LOGGER.log(Level.INFO, "loaded index {0}: {1} keys", new Object[]{index.name, tree.size()});
+        return true;
+    }
+
+    private BLink<Bytes, Bytes> newTree(BLinkMetadata<Bytes> metadata) {
+        final long pageSize = memoryManager.getMaxLogicalPageSize();
+        if (metadata == null) {
+            return new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
+                    memoryManager.getPKPageReplacementPolicy(), indexDataStorage);
+        }
+        return new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
+                memoryManager.getPKPageReplacementPolicy(), indexDataStorage, metadata);
+    }
+
+    @Override
+    public void rebuild() throws DataStorageManagerException {
+        long _start = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "building index {0}", index.name);
+        dataStorageManager.initIndex(tableSpaceUUID, index.uuid);
+        BLink<Bytes, Bytes> oldTree = tree;
+        tree = newTree(null);
+        if (oldTree != null) {
+            oldTree.close();
+        }
+        Table table = tableManager.getTable();
+        AtomicLong count = new AtomicLong();
+        tableManager.scanForIndexRebuild(r -> {
+            DataAccessor values = r.getDataAccessor(table);
+            Bytes key = RecordSerializer.serializePrimaryKey(values, table, table.primaryKey);
+            Bytes indexKey = RecordSerializer.serializePrimaryKey(values, index, index.columnNames);
+            recordInserted(key, indexKey);
+            count.incrementAndGet();
+        });
+        long _stop = System.currentTimeMillis();
+        if (count.intValue() > 0) {
+            LOGGER.log(Level.INFO, "building index {0} took {1}, scanned {2} records", new Object[]{index.name, (_stop - _start) + " ms", count});
+        }
+    }
+
+    @Override
+    public List<PostCheckpointAction> checkpoint(LogSequenceNumber sequenceNumber, boolean pin) throws DataStorageManagerException {
+        final BLink<Bytes, Bytes> tree = this.tree;
+        if (tree == null) {
+            return Collections.emptyList();
+        }
+        try {
+            BLinkMetadata<Bytes> metadata = tree.checkpoint();
+            byte[] metaPage = BLinkKeyToPageIndex.MetadataSerializer.INSTANCE.write(metadata);
+
+            Set<Long> activePages = new HashSet<>();
+            metadata.nodes.forEach(node -> activePages.add(node.storeId));
+
+            IndexStatus indexStatus = new IndexStatus(index.name, sequenceNumber, newPageId.get(), activePages, metaPage);
+            List<PostCheckpointAction> result = new ArrayList<>();
+            result.addAll(dataStorageManager.indexCheckpoint(tableSpaceUUID, index.uuid, indexStatus, pin));
+
+            LOGGER.log(Level.INFO, "checkpoint index {0} finished: logpos {1}, {2} pages",
+                    new Object[]{index.name, sequenceNumber, Integer.toString(metadata.nodes.size())});
+            LOGGER.log(Level.FINE, "checkpoint index {0} finished: logpos {1}, pages {2}",
+                    new Object[]{index.name, sequenceNumber, activePages});
+            return result;
+        } catch (IOException err) {
+            throw new DataStorageManagerException(err);
+        }
+    }
+
+    @Override
+    public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        dataStorageManager.unPinIndexCheckpoint(tableSpaceUUID, index.uuid, sequenceNumber);
+    }
+
+    @Override
+    protected Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        return scanTree(operation, context, tableContext).map(Map.Entry::getValue);
+    }
+
+    @Override
+    public boolean supportsIndexOnlyScan() {
+        return true;
+    }
+
+    @Override
+    protected Stream<Map.Entry<Bytes, Bytes>> indexEntriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        return scanTree(operation, context, tableContext)
+                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getValue(), decodeIndexKey(indexKeyPart(entry.getKey()))));
+    }
+
+    private Stream<Map.Entry<Bytes, Bytes>> scanTree(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        Bytes from;
+        Bytes to;
+        if (operation instanceof SecondaryIndexSeek) {
+            SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
+            byte[] refvalue = computeKeyValue(sis.value, context, tableContext);
+            if (refvalue == null) {
+                return Stream.empty();
+            }
+            refvalue = encodeIndexKey(refvalue);
+            from = lowerBound(refvalue);
+            to = upperBound(refvalue);
+        } else if (operation instanceof SecondaryIndexPrefixScan) {
+            SecondaryIndexPrefixScan sis = (SecondaryIndexPrefixScan) operation;
+            byte[] refvalue = computeKeyValue(sis.value, context, tableContext);
+            if (refvalue == null) {
+                return Stream.empty();
+            }
+            from = Bytes.from_array(escape(encodeIndexKey(refvalue), 0));
+            to = prefixUpperBound(from);
+        } else if (operation instanceof SecondaryIndexRangeScan) {
+            SecondaryIndexRangeScan sis = (SecondaryIndexRangeScan) operation;
+            from = null;
+            to = null;
+            if (sis.minValue != null) {
+                byte[] refminvalue = computeKeyValue(sis.minValue, context, tableContext);
+                if (refminvalue == null) {
+                    return Stream.empty();
+                }
+                from = lowerBound(encodeIndexKey(refminvalue));
+            }
+            if (sis.maxValue != null) {
+                byte[] refmaxvalue = computeKeyValue(sis.maxValue, context, tableContext);
+                if (refmaxvalue == null) {
+                    return Stream.empty();
+                }
+                to = upperBound(encodeIndexKey(refmaxvalue));
+            }
+            LOGGER.log(Level.FINE, "range scan on {0}.{1}, from {2} to {3}", new Object[]{index.table, index.name, from, to});
+        } else {
+            throw new UnsupportedOperationException("unsuppported index access type " + operation);
+        }
+        try {
+            return getTree().scan(from, to);
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    private static byte[] computeKeyValue(RecordFunction keyFun, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        try {
+            return keyFun.computeNewValue(null, context, tableContext);
+        } catch (InvalidNullValueForKeyException invalidKeyValueException) {
+            // NULL values are not indexed
+            return null;
+        }
+    }
+
+    @Override
+    public void recordDeleted(Bytes key, Bytes indexKey) {
+        if (indexKey == null) {
+            return;
+        }
+        try {
+            getTree().delete(compositeKey(encodeIndexKey(indexKey.to_array()), key));
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    @Override
+    public void recordInserted(Bytes key, Bytes indexKey) {
+        if (indexKey == null) {
+            return;
+        }
+        Bytes compositeKey = compositeKey(encodeIndexKey(indexKey.to_array()), key);
+        try {
+            getTree().insert(compositeKey, primaryKeyPart(compositeKey));
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    @Override
+    public void recordUpdated(Bytes key, Bytes indexKeyRemoved, Bytes indexKeyAdded) {
+        if (Objects.equals(indexKeyRemoved, indexKeyAdded)) {
+            return;
+        }
+        // BEWARE that this operation is not atomic, index only scans check the records updated in the meantime
+        recordInserted(key, indexKeyAdded);
+        recordDeleted(key, indexKeyRemoved);
+    }
+
+    @Override
+    public void truncate() throws DataStorageManagerException {
+        getTree().truncate();
+        truncateIndexData();
+    }
+
+    @Override
+    public void close() {
+        final BLink<Bytes, Bytes> tree = this.tree;
+        this.tree = null;
+        if (tree != null) {
+            tree.close();
+        }
+    }
+
+    public long size() {
+        return getTree().size();
+    }
+
+    public int getNumNodes() {
+        return getTree().nodes();
+    }
+
+    private BLink<Bytes, Bytes> getTree() {
+        final BLink<Bytes, Bytes> tree = this.tree;
+        if (tree == null) {
+            throw new DataStorageManagerException("Index " + index.name + " not started or already closed");
+        }
+        return tree;
+    }
+
+    /**
+     * Escapes the index key, reserving some space at the end of the result
+     */
+    private static byte[] escape(byte[] indexKey, int reserved) {
+        int zeros = 0;
+        for (byte b : indexKey) {
+            if (b == ESCAPE) {
+                zeros++;
+            }
+        }
+        byte[] result = new byte[indexKey.length + zeros + reserved];
+        int pos = 0;
+        for (byte b : indexKey) {
+            result[pos++] = b;
+            if (b == ESCAPE) {
+                result[pos++] = ESCAPED_ZERO;
+            }
+        }
+        return result;
+    }
+
+    static Bytes compositeKey(byte[] indexKey, Bytes primaryKey) {
+        int pkLength = primaryKey.getLength();
+        byte[] result = escape(indexKey, 2 + pkLength);
+        int pos = result.length - pkLength - 2;
+        result[pos++] = ESCAPE;
+        result[pos++] = TERMINATOR;
+        System.arraycopy(primaryKey.getBuffer(), primaryKey.getOffset(), result, pos, pkLength);
+        return Bytes.from_array(result);
+    }
+
+    /**
+     * The primary key part of a composite key, the result shares the buffer of the composite key
+     */
+    static Bytes primaryKeyPart(Bytes compositeKey) {
+        byte[] buffer = compositeKey.getBuffer();
+        int end = compositeKey.getOffset() + compositeKey.getLength();
+        for (int pos = compositeKey.getOffset(); pos < end - 1; pos++) {
+            if (buffer[pos] == ESCAPE) {
+                if (buffer[pos + 1] == TERMINATOR) {
+                    return Bytes.from_array(buffer, pos + 2, end - pos - 2);
+                }
+                pos++;
+            }
+        }
+        throw new IllegalArgumentException("invalid composite key " + compositeKey);
+    }
+
+    /**
+     * The index key part of a composite key, without escaping
+     */
+    static Bytes indexKeyPart(Bytes compositeKey) {
+        byte[] buffer = compositeKey.getBuffer();
+        int end = compositeKey.getOffset() + compositeKey.getLength();
+        byte[] result = new byte[compositeKey.getLength()];
+        int size = 0;
+        for (int pos = compositeKey.getOffset(); pos < end - 1; pos++) {
+            if (buffer[pos] == ESCAPE) {
+                if (buffer[pos + 1] == TERMINATOR) {
+                    return Bytes.from_array(result, 0, size);
+                }
+                // escaped zero
+                pos++;
+                result[size++] = 0;
+            } else {
+                result[size++] = buffer[pos];
+            }
+        }
+        throw new IllegalArgumentException("invalid composite key " + compositeKey);
+    }
+
+    /**
+     * Index key in the sortable form used by the tree, the given array is not modified
+     */
+    private byte[] encodeIndexKey(byte[] indexKey) {
+        if (!sortableKeyRewrite) {
+            return indexKey;
+        }
+        byte[] result = indexKey.clone();
+        toSortableKey(result, 0, result.length, false);
+        return result;
+    }
+
+    /**
+     * Index key as serialized by the {@link RecordSerializer}, the given key is decoded in place
+     */
+    private Bytes decodeIndexKey(Bytes indexKey) {
+        if (sortableKeyRewrite) {
+            toSortableKey(indexKey.getBuffer(), indexKey.getOffset(), indexKey.getLength(), true);
+        }
+        return indexKey;
+    }
+
+    /**
+     * Rewrites in place every signed numeric column of the index key so that unsigned byte-wise comparison follows
+     * the numeric order: the sign bit of integers, longs and timestamps is flipped, negative doubles are complemented
+     * and positive doubles get the sign bit set. Column lengths do not change, so the rewrite works on the length
+     * prefixed columns of multi column keys as well, even if only the first columns are present (prefix scans).
+     */
+    private void toSortableKey(byte[] buffer, int offset, int length, boolean decode) {
+        if (keyColumnTypes.length == 1) {
+            toSortableColumn(buffer, offset, length, keyColumnTypes[0], decode);
+            return;
+        }
+        int pos = offset;
+        int end = offset + length;
+        for (int i = 0; i < keyColumnTypes.length && pos < end; i++) {
+            // same format of ExtendedDataOutputStream#writeVInt
+            byte b = buffer[pos++];
+            int columnLength = b & 0x7F;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                b = buffer[pos++];
+                columnLength |= (b & 0x7F) << shift;
+            }
+            toSortableColumn(buffer, pos, columnLength, keyColumnTypes[i], decode);
+            pos += columnLength;
+        }
+    }
+
+    private static void toSortableColumn(byte[] buffer, int offset, int length, int type, boolean decode) {
+        if (length == 0 || !isSignedNumeric(type)) {
+            return;
+        }
+        if (type == ColumnTypes.DOUBLE || type == ColumnTypes.NOTNULL_DOUBLE) {
+            boolean signBit = (buffer[offset] & 0x80) != 0;
+            // encoded positive values have the sign bit set
+            if (signBit != decode) {
+                for (int i = offset; i < offset + length; i++) {
+                    buffer[i] = (byte) ~buffer[i];
+                }
+                return;
+            }
+        }
+        buffer[offset] ^= (byte) 0x80;
+    }
+
+    private static boolean isSignedNumeric(int type) {
+        switch (type) {
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_INTEGER:
+            case ColumnTypes.LONG:
+            case ColumnTypes.NOTNULL_LONG:
+            case ColumnTypes.TIMESTAMP:
+            case ColumnTypes.NOTNULL_TIMESTAMP:
+            case ColumnTypes.DOUBLE:
+            case ColumnTypes.NOTNULL_DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Smallest composite key with the given index key (inclusive)
+     */
+    private static Bytes lowerBound(byte[] indexKey) {
+        byte[] result = escape(indexKey, 2);
+        result[result.length - 2] = ESCAPE;
+        result[result.length - 1] = TERMINATOR;
+        return Bytes.from_array(result);
+    }
+
+    /**
+     * First composite key after every key with the given index key (exclusive)
+     */
+    private static Bytes upperBound(byte[] indexKey) {
+        byte[] result = escape(indexKey, 2);
+        result[result.length - 2] = ESCAPE;
+        result[result.length - 1] = TERMINATOR + 1;
+        return Bytes.from_array(result);
+    }
+
+    private static Bytes prefixUpperBound(Bytes prefix) {
+        try {
+            return prefix.next();
+        } catch (IllegalStateException noNextValue) {
+            // every byte is 0xFF, scan up to the end of the index
+            return null;
+        }
+    }
+
+    private static class SizeEvaluatorImpl implements SizeEvaluator<Bytes, Bytes> {
+
+        /**
+         * Values share the buffer of the key, only the {@link Bytes} instance is accounted
+         */
+        private static final long VALUE_SIZE = Bytes.estimateSize(new byte[0]);
+
+        /**
+         * Singleton INSTANCE
+         */
+        public static final SizeEvaluator<Bytes, Bytes> INSTANCE = new SizeEvaluatorImpl();
+
+        /**
+         * Private constructor, use Singleton instance {@link #INSTANCE}
+         */
+        private SizeEvaluatorImpl() {
+        }
+
+        @Override
+        public long evaluateKey(Bytes key) {
+            return key.getEstimatedSize();
+        }
+
+        @Override
+        public boolean isValueSizeConstant() {
+            return true;
+        }
+
+        @Override
+        public long constantValueSize() throws UnsupportedOperationException {
+            return VALUE_SIZE;
+        }
+
+        @Override
+        public long evaluateValue(Bytes value) {
+            return VALUE_SIZE;
+        }
+
+        @Override
+        public long evaluateAll(Bytes key, Bytes value) {
+            return key.getEstimatedSize() + VALUE_SIZE;
+        }
+
+        @Override
+        public Bytes getPosiviveInfinityKey() {
+            return Bytes.POSITIVE_INFINITY;
+        }
+
+    }
+
+    private final class BLinkIndexDataStorageImpl implements BLinkIndexDataStorage<Bytes, Bytes> {
+
+        private static final byte NODE_PAGE_END_BLOCK = 0;
+        private static final byte NODE_PAGE_KEY_VALUE_BLOCK = 1;
+        private static final byte NODE_PAGE_INF_BLOCK = 2;
+
+        @Override
+        public void loadNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            dataStorageManager.readIndexPage(tableSpaceUUID, index.uuid, pageId, in -> {
+                readHeader(pageId, BLinkKeyToPageIndex.INNER_NODE_PAGE, in.readVLong(), in.readVLong(), in.readByte());
+                byte block;
+                while ((block = in.readByte()) != NODE_PAGE_END_BLOCK) {
+                    switch (block) {
+                        case NODE_PAGE_KEY_VALUE_BLOCK:
+                            data.put(in.readBytes(), in.readVLong());
+                            break;
+                        case NODE_PAGE_INF_BLOCK:
+                            data.put(Bytes.POSITIVE_INFINITY, in.readVLong());
+                            break;
+                        default:
+                            throw new IOException("Wrong node block type " + block);
+                    }
+                }
+                return data;
+            });
+        }
+
+        @Override
+        public void loadLeafPage(long pageId, Map<Bytes, Bytes> data) throws IOException {
+            dataStorageManager.readIndexPage(tableSpaceUUID, index.uuid, pageId, in -> {
+                readHeader(pageId, BLinkKeyToPageIndex.LEAF_NODE_PAGE, in.readVLong(), in.readVLong(), in.readByte());
+                byte block;
+                while ((block = in.readByte()) != NODE_PAGE_END_BLOCK) {
+                    if (block != NODE_PAGE_KEY_VALUE_BLOCK) {
+                        throw new IOException("Wrong leaf block type " + block);
+                    }
+                    Bytes key = in.readBytes();
+                    data.put(key, primaryKeyPart(key));
+                }
+                return data;
+            });
+        }
+
+        private void readHeader(long pageId, byte expectedType, long version, long flags, byte type) throws IOException {
+            if (version != 1 || flags != 0) {
+                throw new IOException("Corrupted index page " + pageId);
+            }
+            if (type != expectedType) {
+                throw new IOException("Wrong page type " + type + " expected " + expectedType);
+            }
+        }
+
+        @Override
+        public long createNodePage(Map<Bytes, Long> data) throws IOException {
+            return writeNodePage(NEW_PAGE, data);
+        }
+
+        @Override
+        public long createLeafPage(Map<Bytes, Bytes> data) throws IOException {
+            return writeLeafPage(NEW_PAGE, data);
+        }
+
+        @Override
+        public void overwriteNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            writeNodePage(pageId, data);
+        }
+
+        @Override
+        public void overwriteLeafPage(long pageId, Map<Bytes, Bytes> data) throws IOException {
+            writeLeafPage(pageId, data);
+        }
+
+        private long writeNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            if (pageId == NEW_PAGE) {
+                pageId = newPageId.getAndIncrement();
+            }
+            dataStorageManager.writeIndexPage(tableSpaceUUID, index.uuid, pageId, out -> {
+                /* Data version */
+                out.writeVLong(1);
+                /* flags for future implementations, actually unused */
+                out.writeVLong(0);
+                out.writeByte(BLinkKeyToPageIndex.INNER_NODE_PAGE);
+                data.forEach((x, y) -> {
+                    try {
+                        if (x == Bytes.POSITIVE_INFINITY) {
+                            out.writeByte(NODE_PAGE_INF_BLOCK);
+                            out.writeVLong(y);
+                        } else {
+                            out.writeByte(NODE_PAGE_KEY_VALUE_BLOCK);
+                            out.writeArray(x.to_array());
+                            out.writeVLong(y);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unexpected IOException during node page write preparation", e);
+                    }
+                });
+                out.writeByte(NODE_PAGE_END_BLOCK);
+            });
+            return pageId;
+        }
+
+        private long writeLeafPage(long pageId, Map<Bytes, Bytes> data) throws IOException {
+            if (pageId == NEW_PAGE) {
+                pageId = newPageId.getAndIncrement();
+            }
+            dataStorageManager.writeIndexPage(tableSpaceUUID, index.uuid, pageId, out -> {
+                /* Data version */
+                out.writeVLong(1);
+                /* flags for future implementations, actually unused */
+                out.writeVLong(0);
+                out.writeByte(BLinkKeyToPageIndex.LEAF_NODE_PAGE);
+                /* values are not written, they are a part of the keys */
+                for (Bytes key : data.keySet()) {
+                    out.writeByte(NODE_PAGE_KEY_VALUE_BLOCK);
+                    out.writeArray(key.to_array());
+                }
+                out.writeByte(NODE_PAGE_END_BLOCK);
+            });
+            return pageId;
+        }
+    }
+
+}
@@ -36,6 +36,7 @@ import herddb.index.brin.BlockRangeIndexMetadata.BlockMetadata;
 import herddb.log.CommitLog;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
+import herddb.model.RecordFunction;
 import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
@@ -383,7 +384,7 @@ public class BRINIndexManager extends AbstractIndexManager {
     protected Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
         if (operation instanceof SecondaryIndexSeek) {
             SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
-            SQLRecordKeyFunction value = sis.value;
+            RecordFunction value = sis.value;
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
             return data.query(Bytes.from_array(refvalue));
 
@@ -49,4 +49,27 @@ public interface TableManagerStatsMXBean {
     long getBuffersUsedMemory();
 
     long getKeysUsedMemory();
+
+    /**
+     * @return number of accesses to pages found in the page buffer
+     */
+    long getPageCacheHits();
+
+    /**
+     * @return number of accesses to pages which had to be read from the
+     * storage
+     */
+    long getPageCacheMisses();
+
+    /**
+     * @return memory for data pages reserved by the quota of the table or of
+     * its tablespace, 0 if there is no quota
+     */
+    long getCacheReservedMemory();
+
+    /**
+     * @return max memory for data pages allowed by the quota of the table or of
+     * its tablespace, 0 if there is no quota
+     */
+    long getCacheMaxMemory();
 }
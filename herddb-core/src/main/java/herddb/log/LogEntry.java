@@ -32,6 +32,7 @@ import io.netty.buffer.PooledByteBufAllocator;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * An entry on the log
@@ -153,6 +154,13 @@ public class LogEntry {
                 //value contains checksum and query
                 doo.writeArray(value);
                 break;
+            case LogEntryType.INSERT_BATCH:
+            case LogEntryType.UPDATE_BATCH:
+            case LogEntryType.DELETE_BATCH:
+                // value contains all the records
+                doo.writeUTF(tableName);
+                doo.writeArray(value);
+                break;
             default:
                 throw new IllegalArgumentException("unsupported type " + type);
         }
@@ -214,6 +222,9 @@ public class LogEntry {
                 case LogEntryType.NOOP:
                     break;
                 case LogEntryType.TABLE_CONSISTENCY_CHECK:
+                case LogEntryType.INSERT_BATCH:
+                case LogEntryType.UPDATE_BATCH:
+                case LogEntryType.DELETE_BATCH:
                     tableName = dis.readUTF();
                     value = dis.readBytes();
                     break;
@@ -230,6 +241,73 @@ public class LogEntry {
         }
     }
 
+    /**
+     * Records of a batched entry, values are null for
+     * {@link LogEntryType#DELETE_BATCH}
+     */
+    public static final class BatchRecords {
+
+        public final Bytes[] keys;
+        public final Bytes[] values;
+
+        private BatchRecords(Bytes[] keys, Bytes[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    static Bytes serializeBatch(List<Bytes> keys, List<Bytes> values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(out)) {
+            doo.writeVInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                doo.writeArray(keys.get(i));
+                if (values != null) {
+                    doo.writeArray(values.get(i));
+                }
+            }
+        } catch (IOException err) {
+            throw new RuntimeException(err);
+        }
+        return Bytes.from_array(out.toByteArray());
+    }
+
+    /**
+     * Decodes the records of an entry of type
+     * {@link LogEntryType#INSERT_BATCH}, {@link LogEntryType#UPDATE_BATCH} or
+     * {@link LogEntryType#DELETE_BATCH}
+     *
+     * @return the records, in the order they have been logged
+     */
+    public BatchRecords readBatch() {
+        boolean withValues;
+        switch (type) {
+            case LogEntryType.INSERT_BATCH:
+            case LogEntryType.UPDATE_BATCH:
+                withValues = true;
+                break;
+            case LogEntryType.DELETE_BATCH:
+                withValues = false;
+                break;
+            default:
+                throw new IllegalStateException("not a batch entry " + this);
+        }
+        try (ExtendedDataInputStream dis = new ExtendedDataInputStream(new SimpleByteArrayInputStream(value.to_array()))) {
+            int size = dis.readVInt();
+            Bytes[] keys = new Bytes[size];
+            Bytes[] values = withValues ? new Bytes[size] : null;
+            for (int i = 0; i < size; i++) {
+                keys[i] = dis.readBytes();
+                if (withValues) {
+                    values[i] = dis.readBytes();
+                }
+            }
+            return new BatchRecords(keys, values);
+        } catch (IOException err) {
+            throw new RuntimeException(err);
+        }
+    }
+
     @Override
     public String toString() {
         // this string is printed on logs during debug...better to save space
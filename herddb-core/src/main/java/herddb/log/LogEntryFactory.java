@@ -24,6 +24,7 @@ import herddb.model.Index;
 import herddb.model.Table;
 import herddb.model.Transaction;
 import herddb.utils.Bytes;
+import java.util.List;
 
 /**
  * Factory for entries
@@ -78,6 +79,18 @@ public class LogEntryFactory {
         return new LogEntry(System.currentTimeMillis(), LogEntryType.DELETE, transaction != null ? transaction.transactionId : 0, table.name, key, null);
     }
 
+    public static LogEntry insertBatch(Table table, List<Bytes> keys, List<Bytes> values, Transaction transaction) {
+        return new LogEntry(System.currentTimeMillis(), LogEntryType.INSERT_BATCH, transaction != null ? transaction.transactionId : 0, table.name, null, LogEntry.serializeBatch(keys, values));
+    }
+
+    public static LogEntry updateBatch(Table table, List<Bytes> keys, List<Bytes> values, Transaction transaction) {
+        return new LogEntry(System.currentTimeMillis(), LogEntryType.UPDATE_BATCH, transaction != null ? transaction.transactionId : 0, table.name, null, LogEntry.serializeBatch(keys, values));
+    }
+
+    public static LogEntry deleteBatch(Table table, List<Bytes> keys, Transaction transaction) {
+        return new LogEntry(System.currentTimeMillis(), LogEntryType.DELETE_BATCH, transaction != null ? transaction.transactionId : 0, table.name, null, LogEntry.serializeBatch(keys, null));
+    }
+
     public static LogEntry createIndex(Index index, Transaction transaction) {
         byte[] payload = index.serialize();
         return new LogEntry(System.currentTimeMillis(), LogEntryType.CREATE_INDEX, transaction != null ? transaction.transactionId : 0, index.table, null, Bytes.from_array(payload))
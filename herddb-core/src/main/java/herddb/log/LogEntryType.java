@@ -41,5 +41,12 @@ public class LogEntryType {
     public static final short TRUNCATE_TABLE = 12;
     public static final short NOOP = 13;
     public static final short TABLE_CONSISTENCY_CHECK = 14;
+    /**
+     * Many records of the same table in the same transaction, see
+     * {@link LogEntry#readBatch()}
+     */
+    public static final short INSERT_BATCH = 15;
+    public static final short UPDATE_BATCH = 16;
+    public static final short DELETE_BATCH = 17;
 
 }
@@ -44,6 +44,7 @@ public class Index implements ColumnsList {
 
     public static final String TYPE_HASH = "hash";
     public static final String TYPE_BRIN = "brin";
+    public static final String TYPE_BTREE = "btree";
 
     public final String name;
     public final String uuid;
@@ -218,8 +219,8 @@ public class Index implements ColumnsList {
             if (table == null || table.isEmpty()) {
                 throw new IllegalArgumentException("table is not defined");
             }
-            if (!TYPE_HASH.equals(type) && !TYPE_BRIN.equals(type)) {
-                throw new IllegalArgumentException("only index type " + TYPE_HASH + "," + TYPE_BRIN + " are supported");
+            if (!TYPE_HASH.equals(type) && !TYPE_BRIN.equals(type) && !TYPE_BTREE.equals(type)) {
+                throw new IllegalArgumentException("only index type " + TYPE_HASH + "," + TYPE_BRIN + "," + TYPE_BTREE + " are supported");
             }
             if (columns.isEmpty()) {
                 throw new IllegalArgumentException("specify at least one column to index");
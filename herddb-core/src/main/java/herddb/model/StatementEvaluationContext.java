@@ -43,6 +43,13 @@ public class StatementEvaluationContext {
     private volatile long tableSpaceLock;
     private static final ZoneId timezone = ZoneId.systemDefault();
     private final boolean forceAcquireWriteLock;
+    /**
+     * Read-only statements may be executed by a follower, which applied the
+     * log of the leader at most {@link #followerReadsMaxStaleness} ms ago
+     * (zero means no bound)
+     */
+    private boolean followerReadsAllowed;
+    private long followerReadsMaxStaleness;
 
     // CHECKSTYLE.OFF: MethodName
     public static StatementEvaluationContext DEFAULT_EVALUATION_CONTEXT() {
@@ -117,4 +124,17 @@ public class StatementEvaluationContext {
         return forceAcquireWriteLock;
     }
 
+    public boolean isFollowerReadsAllowed() {
+        return followerReadsAllowed;
+    }
+
+    public long getFollowerReadsMaxStaleness() {
+        return followerReadsMaxStaleness;
+    }
+
+    public void allowFollowerReads(long maxStaleness) {
+        this.followerReadsAllowed = true;
+        this.followerReadsMaxStaleness = maxStaleness;
+    }
+
 }
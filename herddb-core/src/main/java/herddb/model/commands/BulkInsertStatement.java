@@ -0,0 +1,56 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.commands;
+
+import herddb.model.DMLStatement;
+import herddb.model.StatementEvaluationContext;
+import java.util.List;
+
+/**
+ * Insert a batch of records on the same table, every record is computed by
+ * applying the same {@link InsertStatement} to its own evaluation context (the
+ * one which holds the parameters of the row). This statement is built for a
+ * single execution and it is never cached.
+ */
+public final class BulkInsertStatement extends DMLStatement {
+
+    private final InsertStatement insert;
+    private final List<StatementEvaluationContext> rows;
+
+    public BulkInsertStatement(InsertStatement insert, List<StatementEvaluationContext> rows) {
+        super(insert.getTable(), insert.getTableSpace());
+        this.insert = insert;
+        this.rows = rows;
+    }
+
+    public InsertStatement getInsert() {
+        return insert;
+    }
+
+    public List<StatementEvaluationContext> getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkInsertStatement{" + "insert=" + insert + ", rows=" + rows.size() + '}';
+    }
+}
@@ -42,6 +42,7 @@ public class ScanStatement extends TableAwareStatement {
     private ScanLimits limits;
     private Table tableDef;
     private boolean allowExecutionFromFollower = false;
+    private boolean indexOnlyScan = false;
 
     public ScanStatement(String tableSpace, Table table, Predicate predicate) {
         this(tableSpace, table, Projection.IDENTITY(table.columnNames, table.columns), predicate);
@@ -87,6 +88,20 @@ public class ScanStatement extends TableAwareStatement {
         this.allowExecutionFromFollower = allowExecutionFromFollower;
     }
 
+    /**
+     * The index chosen by the predicate contains every column needed by the
+     * statement, records can be built from the index without loading them
+     *
+     * @return true if the scan can be answered using the index only
+     */
+    public boolean isIndexOnlyScan() {
+        return indexOnlyScan;
+    }
+
+    public void setIndexOnlyScan(boolean indexOnlyScan) {
+        this.indexOnlyScan = indexOnlyScan;
+    }
+
     public void setPredicate(Predicate predicate) {
         this.predicate = predicate;
     }
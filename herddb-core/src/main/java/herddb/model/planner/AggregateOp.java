@@ -34,16 +34,20 @@ import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.TransactionContext;
 import herddb.model.Tuple;
+import herddb.server.ServerConfiguration;
 import herddb.sql.AggregatedColumnCalculator;
 import herddb.sql.expressions.AccessCurrentRowExpression;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.sql.functions.BuiltinFunctions;
 import herddb.utils.DataAccessor;
+import herddb.utils.SystemProperties;
 import herddb.utils.Wrapper;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Generic aggregation
@@ -53,12 +57,37 @@ import java.util.Map;
 @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
 public class AggregateOp implements PlannerOp {
 
+    private static final Logger LOGGER = Logger.getLogger(AggregateOp.class.getName());
+
+    /**
+     * Number of partitions used to spill groups which do not fit in memory
+     */
+    private static final int SPILL_PARTITIONS = SystemProperties.
+            getIntSystemProperty("herddb.planner.aggregate.spillPartitions", 16);
+
+    /**
+     * Partitions are split again at most this number of times, then groups
+     * are computed in memory anyway
+     */
+    private static final int MAX_SPILL_LEVEL = 3;
+
+    /**
+     * Estimated overhead of each group: map entry, key, values array, group
+     * and calculators array
+     */
+    private static final long GROUP_CONSTANT_BYTE_SIZE = 112;
+    private static final long CALCULATOR_CONSTANT_BYTE_SIZE = 40;
+
+    private static final boolean ENABLE_PRIMITIVE_AGGREGATION = SystemProperties.
+            getBooleanSystemProperty("herddb.planner.aggregate.enablePrimitiveAggregation", true);
+
     private final PlannerOp input;
     private final String[] fieldnames;
     private final Column[] columns;
     private final String[] aggtypes;
     private final List<Integer> groupedFiledsIndexes;
     private final List<List<Integer>> argLists;
+    private final boolean primitiveAggregation;
 
     public AggregateOp(
             PlannerOp input,
@@ -74,6 +103,8 @@ public class AggregateOp implements PlannerOp {
         this.aggtypes = aggtypes;
         this.groupedFiledsIndexes = groupedFiledsIndexes;
         this.argLists = argLists;
+        this.primitiveAggregation = ENABLE_PRIMITIVE_AGGREGATION
+                && PrimitiveHashAggregator.isSupported(aggtypes, argLists, groupedFiledsIndexes, columns);
     }
 
     @Override
@@ -92,8 +123,11 @@ public class AggregateOp implements PlannerOp {
         StatementExecutionResult input = this.input.execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
         ScanResult downstreamScanResult = (ScanResult) input;
         final DataScanner inputScanner = downstreamScanResult.dataScanner;
+        long maxMemory = tableSpaceManager.getDbmanager().getServerConfiguration().getLong(
+                ServerConfiguration.PROPERTY_AGGREGATE_MAX_MEMORY,
+                ServerConfiguration.PROPERTY_AGGREGATE_MAX_MEMORY_DEFAULT);
         AggregatedDataScanner filtered = new AggregatedDataScanner(inputScanner, context,
-                tableSpaceManager.getDbmanager().getRecordSetFactory());
+                tableSpaceManager.getDbmanager().getRecordSetFactory(), maxMemory);
         return new ScanResult(downstreamScanResult.transactionId, filtered);
 
     }
@@ -114,16 +148,19 @@ public class AggregateOp implements PlannerOp {
         private DataScanner aggregatedScanner;
         private final StatementEvaluationContext context;
         private final RecordSetFactory recordSetFactory;
+        private final long maxMemory;
 
         public AggregatedDataScanner(
                 DataScanner wrapped,
                 StatementEvaluationContext context,
-                RecordSetFactory recordSetFactory
+                RecordSetFactory recordSetFactory,
+                long maxMemory
         ) throws StatementExecutionException {
             super(wrapped.getTransaction(), fieldnames, columns);
             this.wrapped = wrapped;
             this.context = context;
             this.recordSetFactory = recordSetFactory;
+            this.maxMemory = maxMemory <= 0 ? Long.MAX_VALUE : maxMemory;
         }
 
         private class Key {
@@ -171,22 +208,86 @@ public class AggregateOp implements PlannerOp {
         private void compute() throws DataScannerException {
             try {
                 if (!groupedFiledsIndexes.isEmpty()) {
-                    Map<Key, Group> groups = new HashMap<>();
+                    MaterializedRecordSet results = recordSetFactory
+                            .createRecordSet(getFieldNames(), getSchema());
+                    try {
+                        aggregateGroups(wrapped, 0, results);
+                    } catch (DataScannerException | StatementExecutionException err) {
+                        results.close();
+                        throw err;
+                    }
+                    results.writeFinished();
+                    aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
+                } else if (primitiveAggregation) {
+                    PrimitiveHashAggregator aggregator = new PrimitiveHashAggregator(aggtypes, argLists,
+                            groupedFiledsIndexes, columns, Long.MAX_VALUE, null);
+                    aggregator.consume(wrapped);
+                    MaterializedRecordSet results = recordSetFactory
+                            .createFixedSizeRecordSet(1, getFieldNames(), getSchema());
+                    aggregator.writeResults(fieldnames, results);
+                    results.writeFinished();
+                    aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
+                } else {
+                    Group group = createGroup();
+                    AggregatedColumnCalculator[] columns = group.columns;
                     while (wrapped.hasNext()) {
                         DataAccessor tuple = wrapped.next();
+                        for (AggregatedColumnCalculator cc : columns) {
+                            cc.consume(tuple);
+                        }
+                    }
+                    Object[] values = new Object[fieldnames.length];
+                    int k = 0;
+                    for (AggregatedColumnCalculator cc : columns) {
+                        values[k++] = cc.getValue();
+                    }
+                    Tuple tuple = new Tuple(fieldnames, values);
+                    MaterializedRecordSet results = recordSetFactory
+                            .createFixedSizeRecordSet(1, getFieldNames(), getSchema());
+                    results.add(tuple);
+                    results.writeFinished();
+                    aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
+                }
+            } catch (StatementExecutionException err) {
+                throw new DataScannerException(err);
+            }
+        }
+
+        /**
+         * Hybrid hash aggregation: groups are computed in memory until the
+         * memory limit is reached, then tuples which belong to groups not
+         * already in memory are spilled to partitions, which are aggregated one
+         * at a time.
+         */
+        private void aggregateGroups(DataScanner input, int level, MaterializedRecordSet results)
+                throws DataScannerException, StatementExecutionException {
+            long memoryLimit = level < MAX_SPILL_LEVEL ? maxMemory : Long.MAX_VALUE;
+            try (SpillPartitions spill = new SpillPartitions(level, input.getFieldNames().length)) {
+                if (primitiveAggregation) {
+                    PrimitiveHashAggregator aggregator = new PrimitiveHashAggregator(aggtypes, argLists,
+                            groupedFiledsIndexes, columns, memoryLimit, spill::add);
+                    aggregator.consume(input);
+                    aggregator.writeResults(fieldnames, results);
+                } else {
+                    Map<Key, Group> groups = new HashMap<>();
+                    long usedMemory = 0;
+                    while (input.hasNext()) {
+                        DataAccessor tuple = input.next();
                         Key key = key(tuple);
                         Group group = groups.get(key);
                         if (group == null) {
+                            if (usedMemory >= memoryLimit) {
+                                spill.add(tuple);
+                                continue;
+                            }
                             group = createGroup();
                             groups.put(key, group);
+                            usedMemory += estimateGroupSize(key);
                         }
                         for (AggregatedColumnCalculator cc : group.columns) {
                             cc.consume(tuple);
                         }
                     }
-                    MaterializedRecordSet results = recordSetFactory
-                            .createFixedSizeRecordSet(groups.values().size(),
-                                    getFieldNames(), getSchema());
                     for (Map.Entry<Key, Group> cell : groups.entrySet()) {
                         Key key = cell.getKey();
                         Group group = cell.getValue();
@@ -202,31 +303,85 @@ public class AggregateOp implements PlannerOp {
                         Tuple tuple = new Tuple(fieldnames, values);
                         results.add(tuple);
                     }
-                    results.writeFinished();
-                    aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
-                } else {
-                    Group group = createGroup();
-                    AggregatedColumnCalculator[] columns = group.columns;
-                    while (wrapped.hasNext()) {
-                        DataAccessor tuple = wrapped.next();
-                        for (AggregatedColumnCalculator cc : columns) {
-                            cc.consume(tuple);
+                }
+                spill.aggregatePartitions(results);
+            }
+        }
+
+        private long estimateGroupSize(Key key) {
+            long size = GROUP_CONSTANT_BYTE_SIZE + aggtypes.length * CALCULATOR_CONSTANT_BYTE_SIZE;
+            for (Object value : key.values) {
+                size += SpillSupport.estimateValueSize(value);
+            }
+            return size;
+        }
+
+        /**
+         * Spilled tuples, partitioned by the hash of the group key. Tuples are
+         * stored using the swap facilities of {@link RecordSetFactory}
+         */
+        private final class SpillPartitions implements AutoCloseable {
+
+            private final int level;
+            private final String[] spillFieldNames;
+            private final Column[] spillColumns;
+            private final MaterializedRecordSet[] partitions = new MaterializedRecordSet[SPILL_PARTITIONS];
+            private long spilledTuples;
+
+            SpillPartitions(int level, int numFields) {
+                this.level = level;
+                this.spillFieldNames = SpillSupport.spillFieldNames(numFields);
+                this.spillColumns = SpillSupport.spillColumns(spillFieldNames);
+            }
+
+            void add(DataAccessor tuple) {
+                if (spilledTuples++ == 0) {
+                    LOGGER.log(level == 0 ? Level.INFO : Level.FINE, "aggregation {0} exceeded memory limit of {1} bytes at level {2}, "
+                            + "spilling to {3} partitions", new Object[]{AggregateOp.this, maxMemory, level, SPILL_PARTITIONS});
+                }
+                int partition = partition(tuple);
+                MaterializedRecordSet recordSet = partitions[partition];
+                if (recordSet == null) {
+                    recordSet = recordSetFactory.createRecordSet(spillFieldNames, spillColumns);
+                    partitions[partition] = recordSet;
+                }
+                Object[] values = new Object[spillFieldNames.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = tuple.get(i);
+                }
+                recordSet.add(new Tuple(spillFieldNames, values));
+            }
+
+            private int partition(DataAccessor tuple) {
+                int hash = 7;
+                for (int posInUpstreamRow : groupedFiledsIndexes) {
+                    hash = 31 * hash + SpillSupport.valueHashCode(tuple.get(posInUpstreamRow));
+                }
+                return SpillSupport.partition(hash, level, SPILL_PARTITIONS);
+            }
+
+            void aggregatePartitions(MaterializedRecordSet results)
+                    throws DataScannerException, StatementExecutionException {
+                for (int i = 0; i < partitions.length; i++) {
+                    MaterializedRecordSet partition = partitions[i];
+                    if (partition != null) {
+                        partitions[i] = null;
+                        partition.writeFinished();
+                        try (SimpleDataScanner scanner = new SimpleDataScanner(null, partition)) {
+                            aggregateGroups(scanner, level + 1, results);
                         }
                     }
-                    Object[] values = new Object[fieldnames.length];
-                    int k = 0;
-                    for (AggregatedColumnCalculator cc : columns) {
-                        values[k++] = cc.getValue();
+                }
+            }
+
+            @Override
+            public void close() {
+                for (int i = 0; i < partitions.length; i++) {
+                    if (partitions[i] != null) {
+                        partitions[i].close();
+                        partitions[i] = null;
                     }
-                    Tuple tuple = new Tuple(fieldnames, values);
-                    MaterializedRecordSet results = recordSetFactory
-                            .createFixedSizeRecordSet(1, getFieldNames(), getSchema());
-                    results.add(tuple);
-                    results.writeFinished();
-                    aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
                 }
-            } catch (StatementExecutionException err) {
-                throw new DataScannerException(err);
             }
         }
 
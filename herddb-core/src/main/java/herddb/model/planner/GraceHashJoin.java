@@ -0,0 +1,328 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
+import herddb.model.Column;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.Tuple;
+import herddb.utils.DataAccessor;
+import herddb.utils.SystemProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.calcite.linq4j.function.Function2;
+
+/**
+ * Hash join which builds the hash table on the smaller input. When the build
+ * input does not fit in the memory budget both of the inputs are partitioned
+ * on disk using the hash of the join key, then the partitions are joined one
+ * pair at a time.
+ * <p>
+ * Rows with a NULL value in the join key never match.
+ */
+final class GraceHashJoin {
+
+    private static final Logger LOGGER = Logger.getLogger(GraceHashJoin.class.getName());
+
+    /**
+     * Number of partitions used to spill inputs which do not fit in memory
+     */
+    private static final int SPILL_PARTITIONS = SystemProperties.
+            getIntSystemProperty("herddb.planner.join.spillPartitions", 16);
+
+    /**
+     * Partitions are split again at most this number of times, then they are
+     * joined in memory anyway
+     */
+    private static final int MAX_SPILL_LEVEL = 3;
+
+    /**
+     * Estimated overhead of each row in the hash table: row reference, map
+     * entry, key and list of matching rows
+     */
+    private static final long ROW_CONSTANT_BYTE_SIZE = 96;
+
+    private final Object operator;
+    private final RecordSetFactory recordSetFactory;
+    private final long maxMemory;
+    private final String[] fieldNames;
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection;
+    private final Predicate<DataAccessor> predicate;
+    private final boolean emitUnmatchedLeft;
+    private final boolean emitUnmatchedRight;
+
+    /**
+     * @param operator the operator, for logging
+     * @param recordSetFactory
+     * @param maxMemory memory budget for the hash table, 0 means no limit
+     * @param fieldNames names of the fields of the joined rows
+     * @param leftKeys
+     * @param rightKeys
+     * @param resultProjection builds the joined row, a NULL side means that
+     * the row did not match
+     * @param predicate additional condition on the joined row, it may be null
+     * @param emitUnmatchedLeft emit left rows without a match
+     * @param emitUnmatchedRight emit right rows without a match
+     */
+    GraceHashJoin(Object operator, RecordSetFactory recordSetFactory, long maxMemory,
+            String[] fieldNames, int[] leftKeys, int[] rightKeys,
+            Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection,
+            Predicate<DataAccessor> predicate,
+            boolean emitUnmatchedLeft, boolean emitUnmatchedRight) {
+        this.operator = operator;
+        this.recordSetFactory = recordSetFactory;
+        this.maxMemory = maxMemory <= 0 ? Long.MAX_VALUE : maxMemory;
+        this.fieldNames = fieldNames;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.resultProjection = resultProjection;
+        this.predicate = predicate;
+        this.emitUnmatchedLeft = emitUnmatchedLeft;
+        this.emitUnmatchedRight = emitUnmatchedRight;
+    }
+
+    /**
+     * Rows of one side of the join, stored using the swap facilities of
+     * {@link RecordSetFactory}
+     */
+    final class Input implements AutoCloseable {
+
+        private final String[] inputFieldNames;
+        private final Column[] inputColumns;
+        private MaterializedRecordSet records;
+        private long estimatedSize;
+
+        Input(String[] inputFieldNames, Column[] inputColumns) {
+            this.inputFieldNames = inputFieldNames;
+            this.inputColumns = inputColumns;
+        }
+
+        void add(DataAccessor row) {
+            if (records == null) {
+                records = recordSetFactory.createRecordSet(inputFieldNames, inputColumns);
+            }
+            records.add(row);
+            long size = ROW_CONSTANT_BYTE_SIZE;
+            int numFields = row.getNumFields();
+            for (int i = 0; i < numFields; i++) {
+                size += SpillSupport.estimateValueSize(row.get(i));
+            }
+            estimatedSize += size;
+        }
+
+        void writeFinished() {
+            if (records != null) {
+                records.writeFinished();
+            }
+        }
+
+        Iterable<DataAccessor> rows() {
+            return records != null ? records : Collections.emptyList();
+        }
+
+        boolean isEmpty() {
+            return records == null;
+        }
+
+        @Override
+        public void close() {
+            if (records != null) {
+                records.close();
+                records = null;
+            }
+        }
+    }
+
+    /**
+     * Consumes a scanner
+     *
+     * @param scanner
+     * @return the materialized input
+     * @throws DataScannerException
+     */
+    Input materialize(DataScanner scanner) throws DataScannerException {
+        Input input = new Input(scanner.getFieldNames(), scanner.getSchema());
+        try {
+            scanner.forEach(input::add);
+            input.writeFinished();
+        } catch (DataScannerException | RuntimeException err) {
+            input.close();
+            throw err;
+        }
+        return input;
+    }
+
+    /**
+     * Joins two inputs, the inputs are consumed and closed
+     *
+     * @param left
+     * @param right
+     * @param level number of times the inputs have been partitioned
+     * @param results
+     */
+    void join(Input left, Input right, int level, MaterializedRecordSet results) {
+        try {
+            long buildSize = Math.min(left.estimatedSize, right.estimatedSize);
+            if (buildSize <= maxMemory || level >= MAX_SPILL_LEVEL) {
+                joinInMemory(left, right, results);
+                return;
+            }
+            LOGGER.log(level == 0 ? Level.INFO : Level.FINE, "join {0} build input of {1} bytes exceeds memory limit of {2} bytes"
+                    + " at level {3}, spilling to {4} partitions",
+                    new Object[]{operator, buildSize, maxMemory, level, SPILL_PARTITIONS});
+            Input[] leftPartitions = partition(left, leftKeys, level);
+            Input[] rightPartitions = partition(right, rightKeys, level);
+            left.close();
+            right.close();
+            try {
+                for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                    join(leftPartitions[i], rightPartitions[i], level + 1, results);
+                }
+            } finally {
+                for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                    leftPartitions[i].close();
+                    rightPartitions[i].close();
+                }
+            }
+        } finally {
+            left.close();
+            right.close();
+        }
+    }
+
+    private Input[] partition(Input input, int[] keys, int level) {
+        Input[] partitions = new Input[SPILL_PARTITIONS];
+        for (int i = 0; i < SPILL_PARTITIONS; i++) {
+            partitions[i] = new Input(input.inputFieldNames, input.inputColumns);
+        }
+        try {
+            for (DataAccessor row : input.rows()) {
+                int partition = SpillSupport.partition(keyHashCode(row, keys), level, SPILL_PARTITIONS);
+                partitions[partition].add(row);
+            }
+            for (Input partition : partitions) {
+                partition.writeFinished();
+            }
+        } catch (RuntimeException err) {
+            for (Input partition : partitions) {
+                partition.close();
+            }
+            throw err;
+        }
+        return partitions;
+    }
+
+    private void joinInMemory(Input left, Input right, MaterializedRecordSet results) {
+        // same as Calcite, on a tie build the hash table on the right side
+        boolean buildOnLeft = left.estimatedSize < right.estimatedSize;
+        Input build = buildOnLeft ? left : right;
+        Input probe = buildOnLeft ? right : left;
+        int[] buildKeys = buildOnLeft ? leftKeys : rightKeys;
+        int[] probeKeys = buildOnLeft ? rightKeys : leftKeys;
+        boolean emitUnmatchedBuild = buildOnLeft ? emitUnmatchedLeft : emitUnmatchedRight;
+        boolean emitUnmatchedProbe = buildOnLeft ? emitUnmatchedRight : emitUnmatchedLeft;
+        if (build.isEmpty() && !emitUnmatchedProbe) {
+            return;
+        }
+
+        List<DataAccessor> buildRows = new ArrayList<>();
+        Map<JoinKey, List<Integer>> hashTable = new HashMap<>();
+        for (DataAccessor row : build.rows()) {
+            int index = buildRows.size();
+            buildRows.add(row);
+            if (!hasNullKey(row, buildKeys)) {
+                hashTable.computeIfAbsent(new JoinKey(row, buildKeys), k -> new ArrayList<>(1)).add(index);
+            }
+        }
+        boolean[] matched = emitUnmatchedBuild ? new boolean[buildRows.size()] : null;
+
+        for (DataAccessor row : probe.rows()) {
+            boolean found = false;
+            if (!hasNullKey(row, probeKeys)) {
+                List<Integer> candidates = hashTable.get(new JoinKey(row, probeKeys));
+                if (candidates != null) {
+                    for (int index : candidates) {
+                        DataAccessor other = buildRows.get(index);
+                        DataAccessor joined = buildOnLeft
+                                ? resultProjection.apply(other, row)
+                                : resultProjection.apply(row, other);
+                        if (predicate == null || predicate.test(joined)) {
+                            emit(joined, results);
+                            found = true;
+                            if (matched != null) {
+                                matched[index] = true;
+                            }
+                        }
+                    }
+                }
+            }
+            if (!found && emitUnmatchedProbe) {
+                emit(buildOnLeft ? resultProjection.apply(null, row) : resultProjection.apply(row, null), results);
+            }
+        }
+
+        if (matched != null) {
+            for (int i = 0; i < matched.length; i++) {
+                if (!matched[i]) {
+                    DataAccessor row = buildRows.get(i);
+                    emit(buildOnLeft ? resultProjection.apply(row, null) : resultProjection.apply(null, row), results);
+                }
+            }
+        }
+    }
+
+    private void emit(DataAccessor joined, MaterializedRecordSet results) {
+        // detach the result from the input rows, the output schema may
+        // not contain all of the fields of the inputs
+        Object[] values = new Object[fieldNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = joined.get(i);
+        }
+        results.add(new Tuple(fieldNames, values));
+    }
+
+    private static boolean hasNullKey(DataAccessor row, int[] keys) {
+        for (int key : keys) {
+            if (row.get(key) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int keyHashCode(DataAccessor row, int[] keys) {
+        int hash = 7;
+        for (int key : keys) {
+            hash = 31 * hash + SpillSupport.valueHashCode(row.get(key));
+        }
+        return hash;
+    }
+}
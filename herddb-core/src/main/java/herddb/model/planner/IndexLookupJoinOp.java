@@ -0,0 +1,274 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.codec.RecordSerializer;
+import herddb.core.AbstractIndexManager;
+import herddb.core.MaterializedRecordSet;
+import herddb.core.SimpleDataScanner;
+import herddb.core.TableSpaceManager;
+import herddb.index.IndexOperation;
+import herddb.index.PrimaryIndexSeek;
+import herddb.index.SecondaryIndexSeek;
+import herddb.model.Column;
+import herddb.model.ColumnsList;
+import herddb.model.ConstValueRecordFunction;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.Predicate;
+import herddb.model.Record;
+import herddb.model.ScanResult;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.StatementExecutionResult;
+import herddb.model.Table;
+import herddb.model.TransactionContext;
+import herddb.model.Tuple;
+import herddb.model.commands.ScanStatement;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.utils.DataAccessor;
+import herddb.utils.SQLRecordPredicateFunctions;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index nested loop join: for each row of the outer input the matching rows of
+ * the inner table are looked up using the primary key or a secondary index,
+ * instead of scanning the whole inner table.
+ * <p>
+ * Rows with a NULL value in the join key never match.
+ */
+@SuppressFBWarnings(value = "EI_EXPOSE_REP2")
+public class IndexLookupJoinOp implements PlannerOp {
+
+    private final String[] fieldNames;
+    private final Column[] columns;
+    private final PlannerOp outer;
+    private final int[] outerKeys;
+    private final ScanStatement inner;
+    private final String[] innerKeyColumns;
+    private final String indexName;
+    private final boolean outerOnLeft;
+    private final boolean generateNullsOnInner;
+    private final List<CompiledSQLExpression> nonEquiConditions;
+
+    /**
+     * @param fieldNames
+     * @param columns
+     * @param outer the outer input
+     * @param outerKeys join keys on the outer input
+     * @param inner scan on the inner table, with the projection and the
+     * filters to apply to the inner rows
+     * @param innerKeyColumns columns of the inner table which must be equal
+     * to the outer keys
+     * @param indexName the secondary index to use, null in order to use the
+     * primary key
+     * @param outerOnLeft the outer input is the left side of the join
+     * @param generateNullsOnInner emit outer rows without a match (outer join)
+     * @param nonEquiConditions additional conditions on the joined row
+     */
+    public IndexLookupJoinOp(
+            String[] fieldNames, Column[] columns,
+            PlannerOp outer, int[] outerKeys,
+            ScanStatement inner, String[] innerKeyColumns, String indexName,
+            boolean outerOnLeft, boolean generateNullsOnInner,
+            List<CompiledSQLExpression> nonEquiConditions
+    ) {
+        this.fieldNames = fieldNames;
+        this.columns = columns;
+        this.outer = outer.optimize();
+        this.outerKeys = outerKeys;
+        this.inner = inner;
+        this.innerKeyColumns = innerKeyColumns;
+        this.indexName = indexName;
+        this.outerOnLeft = outerOnLeft;
+        this.generateNullsOnInner = generateNullsOnInner;
+        this.nonEquiConditions = nonEquiConditions;
+    }
+
+    @Override
+    public String getTablespace() {
+        return outer.getTablespace();
+    }
+
+    @Override
+    public StatementExecutionResult execute(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context,
+            boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        Table table = inner.getTableDef();
+        ColumnsList keyColumns = table;
+        if (indexName != null) {
+            Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
+            AbstractIndexManager index = indexes != null ? indexes.get(indexName) : null;
+            if (index == null || !index.isAvailable()) {
+                throw new StatementExecutionException("index " + indexName + " on table " + table.name + " is not available");
+            }
+            keyColumns = index.getIndex();
+        }
+
+        // the inner table may never be accessed, check the parameters anyway
+        inner.validateContext(context);
+
+        ScanResult outerResult = (ScanResult) outer.execute(tableSpaceManager, transactionContext,
+                context, lockRequired, forWrite);
+        transactionContext = new TransactionContext(outerResult.transactionId);
+        String[] innerFieldNames = inner.getProjection().getFieldNames();
+        DataAccessor nullsOnInner = DataAccessor.ALL_NULLS(innerFieldNames);
+        MaterializedRecordSet results = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                .createRecordSet(fieldNames, columns);
+        SimpleDataScanner joinedScanner;
+        try (DataScanner outerScanner = outerResult.dataScanner) {
+            Object[] keyValues = new Object[outerKeys.length];
+            while (outerScanner.hasNext()) {
+                DataAccessor outerRow = outerScanner.next();
+                boolean found = false;
+                if (extractKey(outerRow, keyValues)) {
+                    ScanStatement lookup = new ScanStatement(inner.getTableSpace(), table.name,
+                            inner.getProjection(), buildLookupPredicate(table, keyColumns, keyValues), null, null);
+                    lookup.setTableDef(table);
+                    try (DataScanner innerScanner = tableSpaceManager.scan(lookup, context, transactionContext, lockRequired, forWrite)) {
+                        while (innerScanner.hasNext()) {
+                            DataAccessor joined = join(outerRow, innerScanner.next());
+                            if (matchesNonEquiConditions(joined, context)) {
+                                emit(joined, results);
+                                found = true;
+                            }
+                        }
+                    }
+                }
+                if (!found && generateNullsOnInner) {
+                    emit(join(outerRow, nullsOnInner), results);
+                }
+            }
+            results.writeFinished();
+            // create the scanner before releasing the transaction
+            joinedScanner = new SimpleDataScanner(outerScanner.getTransaction(), results);
+        } catch (DataScannerException err) {
+            results.close();
+            throw new StatementExecutionException(err);
+        } catch (RuntimeException err) {
+            results.close();
+            throw err;
+        }
+        return new ScanResult(outerResult.transactionId, joinedScanner);
+    }
+
+    private boolean extractKey(DataAccessor outerRow, Object[] keyValues) {
+        for (int i = 0; i < outerKeys.length; i++) {
+            Object value = outerRow.get(outerKeys[i]);
+            if (value == null) {
+                return false;
+            }
+            keyValues[i] = value;
+        }
+        return true;
+    }
+
+    private Predicate buildLookupPredicate(Table table, ColumnsList keyColumns, Object[] keyValues) {
+        Object[] converted = new Object[keyValues.length];
+        Map<String, Object> key = new HashMap<>();
+        for (int i = 0; i < innerKeyColumns.length; i++) {
+            Column column = table.getColumn(innerKeyColumns[i]);
+            converted[i] = RecordSerializer.convert(column.type, keyValues[i]);
+            key.put(column.name, converted[i]);
+        }
+        byte[] serializedKey = RecordSerializer.serializePrimaryKeyRaw(key, keyColumns, keyColumns.getPrimaryKey());
+        IndexOperation indexOperation = indexName == null
+                ? new PrimaryIndexSeek(new ConstValueRecordFunction(serializedKey))
+                : new SecondaryIndexSeek(indexName, keyColumns.getPrimaryKey(), new ConstValueRecordFunction(serializedKey));
+        return new LookupPredicate(table, converted, inner.getPredicate(), indexOperation);
+    }
+
+    private DataAccessor join(DataAccessor outerRow, DataAccessor innerRow) {
+        return outerOnLeft
+                ? new ConcatenatedDataAccessor(fieldNames, outerRow, innerRow)
+                : new ConcatenatedDataAccessor(fieldNames, innerRow, outerRow);
+    }
+
+    private boolean matchesNonEquiConditions(DataAccessor joined, StatementEvaluationContext context) {
+        for (CompiledSQLExpression exp : nonEquiConditions) {
+            if (!SQLRecordPredicateFunctions.toBoolean(exp.evaluate(joined, context))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emit(DataAccessor joined, MaterializedRecordSet results) {
+        Object[] values = new Object[fieldNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = joined.get(i);
+        }
+        results.add(new Tuple(fieldNames, values));
+    }
+
+    /**
+     * Matches the join key on the inner record, the index may return records
+     * which are not visible in the current transaction, then applies the
+     * filters of the inner scan
+     */
+    private final class LookupPredicate extends Predicate {
+
+        private final Table table;
+        private final Object[] keyValues;
+        private final Predicate filter;
+
+        LookupPredicate(Table table, Object[] keyValues, Predicate filter, IndexOperation indexOperation) {
+            this.table = table;
+            this.keyValues = keyValues;
+            this.filter = filter;
+            setIndexOperation(indexOperation);
+        }
+
+        @Override
+        public boolean evaluate(Record record, StatementEvaluationContext context) throws StatementExecutionException {
+            DataAccessor row = record.getDataAccessor(table);
+            for (int i = 0; i < innerKeyColumns.length; i++) {
+                if (!SQLRecordPredicateFunctions.objectEquals(row.get(innerKeyColumns[i]), keyValues[i])) {
+                    return false;
+                }
+            }
+            return filter == null || filter.evaluate(record, context);
+        }
+
+        @Override
+        public void validateContext(StatementEvaluationContext context) throws StatementExecutionException {
+            if (filter != null) {
+                filter.validateContext(context);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IndexLookupJoinOp{" + "outer=" + outer + ", outerKeys=" + Arrays.toString(outerKeys)
+                + ", inner=" + inner + ", innerKeyColumns=" + Arrays.toString(innerKeyColumns)
+                + ", index=" + (indexName != null ? indexName : "PRIMARY KEY")
+                + ", outerOnLeft=" + outerOnLeft + ", generateNullsOnInner=" + generateNullsOnInner + '}';
+    }
+
+}
@@ -24,7 +24,6 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import herddb.utils.DataAccessor;
 import herddb.utils.SQLRecordPredicateFunctions;
 import java.util.Arrays;
-import java.util.Objects;
 import org.apache.calcite.linq4j.function.Function1;
 
 /**
@@ -77,7 +76,7 @@ class JoinKey implements Comparable<JoinKey> {
             int res = 0;
             // leverage zero-copy and to not create temporary arrays
             for (int i = 0; i < size; i++) {
-                res += Objects.hashCode(get(i));
+                res += SpillSupport.valueHashCode(get(i));
             }
             hashcode = res;
         }
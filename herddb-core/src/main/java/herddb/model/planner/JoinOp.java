@@ -21,6 +21,7 @@ package herddb.model.planner;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
 import herddb.core.SimpleDataScanner;
 import herddb.core.TableSpaceManager;
 import herddb.model.Column;
@@ -31,18 +32,20 @@ import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.TransactionContext;
+import herddb.server.ServerConfiguration;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.utils.DataAccessor;
 import herddb.utils.SQLRecordPredicateFunctions;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.function.Function2;
-import org.apache.calcite.linq4j.function.Predicate2;
 
 /**
- * basic join operation
+ * basic join operation. Equi joins are executed using a {@link GraceHashJoin}
+ * unless the inputs are already sorted on the join keys
  *
  * @author eolivelli
  */
@@ -98,17 +101,27 @@ public class JoinOp implements PlannerOp {
         final String[] fieldNamesFromLeft = leftScanner.getFieldNames();
         final String[] fieldNamesFromRight = resRight.dataScanner.getFieldNames();
         Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection = resultProjection(fieldNamesFromLeft, fieldNamesFromRight);
-        final Predicate2 predicate;
         DataScanner rightScanner = resRight.dataScanner;
-        if (nonEquiConditions != null && !nonEquiConditions.isEmpty()) {
-            if (mergeJoin) {
+        if (mergeJoin) {
+            if (nonEquiConditions != null && !nonEquiConditions.isEmpty()) {
                 throw new IllegalStateException("Unspected nonEquiConditions " + nonEquiConditions + ""
                         + "for merge join");
             }
-            predicate = (Predicate2) (Object t0, Object t1) -> {
-                DataAccessor da0 = (DataAccessor) t0;
-                DataAccessor da1 = (DataAccessor) t1;
-                DataAccessor currentRow = resultProjection.apply(da0, da1);
+            Enumerable<DataAccessor> result = EnumerableDefaults.mergeJoin(leftScanner.createNonRewindableEnumerable(),
+                    rightScanner.createNonRewindableEnumerable(),
+                    JoinKey.keyExtractor(leftKeys),
+                    JoinKey.keyExtractor(rightKeys),
+                    resultProjection,
+                    generateNullsOnLeft,
+                    generateNullsOnRight
+            );
+            EnumerableDataScanner joinedScanner = new EnumerableDataScanner(rightScanner.getTransaction(), fieldNames, columns, result, leftScanner, rightScanner);
+            return new ScanResult(resTransactionId, joinedScanner);
+        }
+
+        final Predicate<DataAccessor> predicate;
+        if (nonEquiConditions != null && !nonEquiConditions.isEmpty()) {
+            predicate = (DataAccessor currentRow) -> {
                 for (CompiledSQLExpression exp : nonEquiConditions) {
                     Object result = exp.evaluate(currentRow, context);
                     boolean asBoolean = SQLRecordPredicateFunctions.toBoolean(result);
@@ -121,61 +134,39 @@ public class JoinOp implements PlannerOp {
         } else {
             predicate = null;
         }
-        if (!mergeJoin && !leftScanner.isRewindSupported()) {
-            try {
-                MaterializedRecordSet recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
-                        .createRecordSet(leftScanner.getFieldNames(),
-                                leftScanner.getSchema());
-                leftScanner.forEach(d -> {
-                    recordSet.add(d);
-                });
-                recordSet.writeFinished();
-                SimpleDataScanner materialized = new SimpleDataScanner(leftScanner.getTransaction(), recordSet);
-                leftScanner.close();
-                leftScanner = materialized;
-            } catch (DataScannerException err) {
-                throw new StatementExecutionException(err);
-            }
-        }
-        if (!mergeJoin && !rightScanner.isRewindSupported()) {
-            try {
-                MaterializedRecordSet recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
-                        .createRecordSet(rightScanner.getFieldNames(),
-                                rightScanner.getSchema());
-                rightScanner.forEach(d -> {
-                    recordSet.add(d);
-                });
-                recordSet.writeFinished();
-                SimpleDataScanner materialized = new SimpleDataScanner(rightScanner.getTransaction(), recordSet);
-                rightScanner.close();
-                rightScanner = materialized;
-            } catch (DataScannerException err) {
-                throw new StatementExecutionException(err);
+        RecordSetFactory recordSetFactory = tableSpaceManager.getDbmanager().getRecordSetFactory();
+        long maxMemory = tableSpaceManager.getDbmanager().getServerConfiguration().getLong(
+                ServerConfiguration.PROPERTY_JOIN_MAX_MEMORY,
+                ServerConfiguration.PROPERTY_JOIN_MAX_MEMORY_DEFAULT);
+        GraceHashJoin hashJoin = new GraceHashJoin(this, recordSetFactory, maxMemory,
+                fieldNames, leftKeys, rightKeys, resultProjection, predicate,
+                generateNullsOnRight, generateNullsOnLeft);
+        MaterializedRecordSet results = recordSetFactory.createRecordSet(fieldNames, columns);
+        SimpleDataScanner joinedScanner;
+        try {
+            try (DataScanner leftInputScanner = leftScanner;
+                    DataScanner rightInputScanner = rightScanner) {
+                GraceHashJoin.Input leftInput = hashJoin.materialize(leftInputScanner);
+                GraceHashJoin.Input rightInput;
+                try {
+                    rightInput = hashJoin.materialize(rightInputScanner);
+                } catch (DataScannerException | RuntimeException err) {
+                    leftInput.close();
+                    throw err;
+                }
+                hashJoin.join(leftInput, rightInput, 0, results);
+                results.writeFinished();
+                // create the scanner before releasing the transaction
+                joinedScanner = new SimpleDataScanner(rightScanner.getTransaction(), results);
             }
+        } catch (DataScannerException err) {
+            results.close();
+            throw new StatementExecutionException(err);
+        } catch (RuntimeException err) {
+            results.close();
+            throw err;
         }
-
-        Enumerable<DataAccessor> result = mergeJoin
-                ? EnumerableDefaults.mergeJoin(leftScanner.createNonRewindableEnumerable(),
-                        rightScanner.createNonRewindableEnumerable(),
-                        JoinKey.keyExtractor(leftKeys),
-                        JoinKey.keyExtractor(rightKeys),
-                        resultProjection,
-                        generateNullsOnLeft,
-                        generateNullsOnRight
-                )
-                : EnumerableDefaults.hashJoin(leftScanner.createRewindOnCloseEnumerable(),
-                        rightScanner.createRewindOnCloseEnumerable(),
-                        JoinKey.keyExtractor(leftKeys),
-                        JoinKey.keyExtractor(rightKeys),
-                        resultProjection,
-                        null,
-                        generateNullsOnLeft,
-                        generateNullsOnRight,
-                        predicate
-                );
-        EnumerableDataScanner joinedScanner = new EnumerableDataScanner(rightScanner.getTransaction(), fieldNames, columns, result, leftScanner, rightScanner);
         return new ScanResult(resTransactionId, joinedScanner);
-
     }
 
     private Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection(
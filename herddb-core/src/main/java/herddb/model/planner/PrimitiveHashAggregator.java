@@ -0,0 +1,397 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import herddb.core.MaterializedRecordSet;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.Tuple;
+import herddb.sql.functions.BuiltinFunctions;
+import herddb.utils.DataAccessor;
+import herddb.utils.LongIntOpenHashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hash aggregation over integral values, which keeps the state of every group
+ * in primitive arrays instead of one {@link herddb.sql.AggregatedColumnCalculator}
+ * per group. Tuples are consumed in blocks: first the group key and the
+ * arguments of the aggregations are extracted to primitive arrays, then every
+ * aggregation is applied to the whole block.
+ * <p>
+ * It supports at most one grouping column of type INTEGER or LONG and
+ * COUNT/SUM/MIN/MAX aggregations over INTEGER or LONG values, it produces the
+ * same values of the generic implementation of {@link AggregateOp}.
+ * <p>
+ * When the estimated memory reaches the given limit no more groups are
+ * created, and the tuples which belong to new groups are passed to the
+ * overflow consumer.
+ */
+final class PrimitiveHashAggregator {
+
+    static final int BLOCK_SIZE = 1024;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int AGG_COUNT = 0;
+    private static final int AGG_SUM = 1;
+    private static final int AGG_MIN = 2;
+    private static final int AGG_MAX = 3;
+
+    private final int keyIndex;
+    private final boolean keyIsInteger;
+    private final int[] kinds;
+    private final int[] argIndexes;
+    private final boolean[] resultIsInteger;
+    private final int maxGroups;
+    private final Consumer<DataAccessor> overflow;
+
+    private final LongIntOpenHashMap groupsByKey = new LongIntOpenHashMap(INITIAL_CAPACITY);
+    private int nullKeyGroup = -1;
+    private int numGroups;
+    private long[] groupKeys = new long[INITIAL_CAPACITY];
+    private final long[][] accumulators;
+    private final boolean[][] hasValue;
+
+    // block buffers
+    private final DataAccessor[] blockTuples = new DataAccessor[BLOCK_SIZE];
+    private final long[] blockKeys = new long[BLOCK_SIZE];
+    private final boolean[] blockKeyNulls = new boolean[BLOCK_SIZE];
+    private final int[] blockGroups = new int[BLOCK_SIZE];
+    private final long[][] blockArgs;
+    private final boolean[][] blockArgNulls;
+
+    /**
+     * Checks whether an aggregation can be computed using primitive values
+     *
+     * @param aggtypes aggregation functions
+     * @param argLists arguments of each aggregation
+     * @param groupedFieldsIndexes grouping columns
+     * @param columns output columns, grouping columns first
+     * @return true if {@link PrimitiveHashAggregator} can be used
+     */
+    static boolean isSupported(
+            String[] aggtypes, List<List<Integer>> argLists,
+            List<Integer> groupedFieldsIndexes, Column[] columns
+    ) {
+        if (groupedFieldsIndexes.size() > 1) {
+            return false;
+        }
+        int numKeys = groupedFieldsIndexes.size();
+        if (numKeys == 1 && !isIntegral(columns[0].type)) {
+            return false;
+        }
+        for (int i = 0; i < aggtypes.length; i++) {
+            int kind = kind(aggtypes[i]);
+            if (kind < 0) {
+                return false;
+            }
+            if (kind != AGG_COUNT) {
+                if (argLists.get(i).size() != 1 || !isIntegral(columns[numKeys + i].type)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(int type) {
+        switch (type) {
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_INTEGER:
+            case ColumnTypes.LONG:
+            case ColumnTypes.NOTNULL_LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isInteger(int type) {
+        return type == ColumnTypes.INTEGER || type == ColumnTypes.NOTNULL_INTEGER;
+    }
+
+    private static int kind(String aggtype) {
+        switch (aggtype.toLowerCase()) {
+            case BuiltinFunctions.COUNT:
+                return AGG_COUNT;
+            case BuiltinFunctions.SUM:
+            case BuiltinFunctions.SUM0:
+                return AGG_SUM;
+            case BuiltinFunctions.MIN:
+                return AGG_MIN;
+            case BuiltinFunctions.MAX:
+                return AGG_MAX;
+            default:
+                return -1;
+        }
+    }
+
+    PrimitiveHashAggregator(
+            String[] aggtypes, List<List<Integer>> argLists,
+            List<Integer> groupedFieldsIndexes, Column[] columns,
+            long maxMemory, Consumer<DataAccessor> overflow
+    ) {
+        int numKeys = groupedFieldsIndexes.size();
+        this.keyIndex = numKeys == 0 ? -1 : groupedFieldsIndexes.get(0);
+        this.keyIsInteger = numKeys == 1 && isInteger(columns[0].type);
+        int numAggs = aggtypes.length;
+        this.kinds = new int[numAggs];
+        this.argIndexes = new int[numAggs];
+        this.resultIsInteger = new boolean[numAggs];
+        this.accumulators = new long[numAggs][];
+        this.hasValue = new boolean[numAggs][];
+        this.blockArgs = new long[numAggs][];
+        this.blockArgNulls = new boolean[numAggs][];
+        for (int i = 0; i < numAggs; i++) {
+            kinds[i] = kind(aggtypes[i]);
+            accumulators[i] = new long[INITIAL_CAPACITY];
+            if (kinds[i] == AGG_COUNT) {
+                argIndexes[i] = -1;
+            } else {
+                argIndexes[i] = argLists.get(i).get(0);
+                blockArgs[i] = new long[BLOCK_SIZE];
+                blockArgNulls[i] = new boolean[BLOCK_SIZE];
+                // SUM always returns a long, like SumColumnCalculator
+                resultIsInteger[i] = kinds[i] != AGG_SUM && isInteger(columns[numKeys + i].type);
+                if (kinds[i] == AGG_MIN || kinds[i] == AGG_MAX) {
+                    hasValue[i] = new boolean[INITIAL_CAPACITY];
+                }
+            }
+        }
+        // open addressing table (at worst 4 slots per key), key and accumulators
+        long bytesPerGroup = 4 * (Long.BYTES + Integer.BYTES) + Long.BYTES + numAggs * (Long.BYTES + 1);
+        this.maxGroups = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, maxMemory / bytesPerGroup));
+        this.overflow = overflow;
+        if (numKeys == 0) {
+            // only one group, even with no input
+            newGroup(0);
+        }
+    }
+
+    /**
+     * Consumes all of the input
+     *
+     * @param input
+     * @throws DataScannerException
+     */
+    void consume(DataScanner input) throws DataScannerException {
+        while (true) {
+            int size = 0;
+            while (size < BLOCK_SIZE && input.hasNext()) {
+                DataAccessor tuple = input.next();
+                extract(tuple, size++);
+            }
+            if (size == 0) {
+                return;
+            }
+            applyBlock(size);
+            if (size < BLOCK_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void extract(DataAccessor tuple, int pos) {
+        blockTuples[pos] = tuple;
+        if (keyIndex >= 0) {
+            Object key = tuple.get(keyIndex);
+            if (key == null) {
+                blockKeyNulls[pos] = true;
+            } else {
+                blockKeyNulls[pos] = false;
+                blockKeys[pos] = ((Number) key).longValue();
+            }
+        }
+        for (int i = 0; i < argIndexes.length; i++) {
+            int argIndex = argIndexes[i];
+            if (argIndex >= 0) {
+                Object value = tuple.get(argIndex);
+                if (value == null) {
+                    blockArgNulls[i][pos] = true;
+                } else {
+                    blockArgNulls[i][pos] = false;
+                    blockArgs[i][pos] = ((Number) value).longValue();
+                }
+            }
+        }
+    }
+
+    private void applyBlock(int blockSize) {
+        final int[] groups = blockGroups;
+        int size = blockSize;
+        int overflowCount = 0;
+        if (keyIndex < 0) {
+            Arrays.fill(groups, 0, size, 0);
+        } else {
+            for (int j = 0; j < size; j++) {
+                if (blockKeyNulls[j]) {
+                    if (nullKeyGroup < 0 && numGroups < maxGroups) {
+                        nullKeyGroup = newGroup(0);
+                    }
+                    groups[j] = nullKeyGroup;
+                } else {
+                    long key = blockKeys[j];
+                    int group = groupsByKey.get(key);
+                    if (group < 0 && numGroups < maxGroups) {
+                        group = groupsByKey.getOrPut(key, numGroups);
+                        newGroup(key);
+                    }
+                    groups[j] = group;
+                }
+                if (groups[j] < 0) {
+                    overflow.accept(blockTuples[j]);
+                    overflowCount++;
+                }
+            }
+        }
+        Arrays.fill(blockTuples, 0, size, null);
+        if (overflowCount > 0) {
+            // remove tuples passed to the overflow consumer from the block
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (groups[j] >= 0) {
+                    groups[kept] = groups[j];
+                    for (int i = 0; i < argIndexes.length; i++) {
+                        if (argIndexes[i] >= 0) {
+                            blockArgs[i][kept] = blockArgs[i][j];
+                            blockArgNulls[i][kept] = blockArgNulls[i][j];
+                        }
+                    }
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            final long[] acc = accumulators[i];
+            switch (kinds[i]) {
+                case AGG_COUNT:
+                    for (int j = 0; j < size; j++) {
+                        acc[groups[j]]++;
+                    }
+                    break;
+                case AGG_SUM: {
+                    final long[] args = blockArgs[i];
+                    final boolean[] nulls = blockArgNulls[i];
+                    for (int j = 0; j < size; j++) {
+                        if (!nulls[j]) {
+                            acc[groups[j]] += args[j];
+                        }
+                    }
+                    break;
+                }
+                case AGG_MIN: {
+                    final long[] args = blockArgs[i];
+                    final boolean[] nulls = blockArgNulls[i];
+                    final boolean[] present = hasValue[i];
+                    for (int j = 0; j < size; j++) {
+                        if (!nulls[j]) {
+                            int group = groups[j];
+                            if (!present[group] || args[j] < acc[group]) {
+                                acc[group] = args[j];
+                                present[group] = true;
+                            }
+                        }
+                    }
+                    break;
+                }
+                case AGG_MAX: {
+                    final long[] args = blockArgs[i];
+                    final boolean[] nulls = blockArgNulls[i];
+                    final boolean[] present = hasValue[i];
+                    for (int j = 0; j < size; j++) {
+                        if (!nulls[j]) {
+                            int group = groups[j];
+                            if (!present[group] || args[j] > acc[group]) {
+                                acc[group] = args[j];
+                                present[group] = true;
+                            }
+                        }
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    private int newGroup(long key) {
+        int group = numGroups++;
+        if (group == groupKeys.length) {
+            int newCapacity = groupKeys.length * 2;
+            groupKeys = Arrays.copyOf(groupKeys, newCapacity);
+            for (int i = 0; i < kinds.length; i++) {
+                accumulators[i] = Arrays.copyOf(accumulators[i], newCapacity);
+                if (hasValue[i] != null) {
+                    hasValue[i] = Arrays.copyOf(hasValue[i], newCapacity);
+                }
+            }
+        }
+        groupKeys[group] = key;
+        return group;
+    }
+
+    int getNumGroups() {
+        return numGroups;
+    }
+
+    /**
+     * Writes one tuple for each group
+     *
+     * @param fieldnames output field names, grouping column first
+     * @param results
+     */
+    void writeResults(String[] fieldnames, MaterializedRecordSet results) {
+        int numKeys = keyIndex >= 0 ? 1 : 0;
+        for (int group = 0; group < numGroups; group++) {
+            Object[] values = new Object[fieldnames.length];
+            int k = 0;
+            if (numKeys == 1) {
+                if (group == nullKeyGroup) {
+                    values[k++] = null;
+                } else {
+                    values[k++] = box(groupKeys[group], keyIsInteger);
+                }
+            }
+            for (int i = 0; i < kinds.length; i++) {
+                long value = accumulators[i][group];
+                if (hasValue[i] != null && !hasValue[i][group]) {
+                    values[k++] = null;
+                } else {
+                    values[k++] = box(value, resultIsInteger[i]);
+                }
+            }
+            results.add(new Tuple(fieldnames, values));
+        }
+    }
+
+    private static Object box(long value, boolean integer) {
+        if (integer) {
+            return (int) value;
+        }
+        return value;
+    }
+}
@@ -248,7 +248,7 @@ public class ProjectOp implements PlannerOp {
             return new RuntimeProjectedDataAccessor(tuple);
         }
 
-        int mapPosition(int field) {
+        public int mapPosition(int field) {
             return zeroCopyProjections[field];
         }
 
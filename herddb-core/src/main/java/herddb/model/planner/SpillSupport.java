@@ -0,0 +1,112 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.utils.RawString;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Utilities for operators which partition tuples on disk when they do not fit
+ * in memory
+ */
+final class SpillSupport {
+
+    private SpillSupport() {
+    }
+
+    /**
+     * Hash code of a value which is stable after a value has been swapped to
+     * disk and read back
+     *
+     * @param value
+     * @return the hash code
+     */
+    static int valueHashCode(Object value) {
+        if (value instanceof String) {
+            // spilled strings are read back as RawString
+            return RawString.of((String) value).hashCode();
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            // values of different integral types may be compared
+            return Long.hashCode(((Number) value).longValue());
+        } else {
+            return Objects.hashCode(value);
+        }
+    }
+
+    /**
+     * Estimate the heap used by a value
+     *
+     * @param value
+     * @return the size in bytes
+     */
+    static long estimateValueSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 8;
+        } else if (value instanceof RawString) {
+            return 48 + ((RawString) value).getLength();
+        } else if (value instanceof String) {
+            return 48 + ((String) value).length() * 2;
+        } else if (value instanceof byte[]) {
+            return 24 + ((byte[]) value).length;
+        } else {
+            return 32;
+        }
+    }
+
+    /**
+     * Map a hash code to a partition, using different bits at each level, in
+     * order to split again a partition which does not fit in memory
+     *
+     * @param hash
+     * @param level
+     * @param numPartitions
+     * @return the partition
+     */
+    static int partition(int hash, int level, int numPartitions) {
+        hash ^= (level + 1) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, numPartitions);
+    }
+
+    static String[] spillFieldNames(int numFields) {
+        String[] fieldNames = new String[numFields];
+        for (int i = 0; i < numFields; i++) {
+            fieldNames[i] = "c" + i;
+        }
+        return fieldNames;
+    }
+
+    static Column[] spillColumns(String[] fieldNames) {
+        Column[] columns = new Column[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            columns[i] = Column.column(fieldNames[i], ColumnTypes.ANYTYPE);
+        }
+        return columns;
+    }
+}
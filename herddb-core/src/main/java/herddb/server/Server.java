@@ -28,6 +28,7 @@ import herddb.cluster.ZookeeperMetadataStorageManager;
 import herddb.core.DBManager;
 import herddb.core.stats.ConnectionsInfo;
 import herddb.core.stats.ConnectionsInfoProvider;
+import herddb.file.ExtentFileDataStorageManager;
 import herddb.file.FileBasedUserManager;
 import herddb.file.FileCommitLogManager;
 import herddb.file.FileDataStorageManager;
@@ -50,6 +51,7 @@ import herddb.security.SimpleSingleUserManager;
 import herddb.security.UserManager;
 import herddb.storage.DataStorageManager;
 import herddb.utils.Version;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -57,6 +59,9 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -86,6 +91,7 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
     private String jdbcUrl;
     private UserManager userManager;
     private EmbeddedBookie embeddedBookie;
+    private final ExecutorService scannerPrefetchPool;
 
     public UserManager getUserManager() {
         return userManager;
@@ -107,6 +113,16 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
         return networkServer;
     }
 
+    /**
+     * Pool used to prepare the next chunk of data of scanners
+     *
+     * @return the pool, or null if prefetch is disabled
+     * @see ServerConfiguration#PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS
+     */
+    public ExecutorService getScannerPrefetchPool() {
+        return scannerPrefetchPool;
+    }
+
     public Server(ServerConfiguration configuration) {
         this(configuration, null);
     }
@@ -241,6 +257,19 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
         this.networkServer = buildChannelAcceptor();
         this.networkServer.setAcceptor(this);
 
+        int prefetchThreads = configuration.getInt(ServerConfiguration.PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS,
+                ServerConfiguration.PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS_DEFAULT);
+        if (prefetchThreads <= 0) {
+            this.scannerPrefetchPool = null;
+        } else {
+            AtomicLong count = new AtomicLong();
+            this.scannerPrefetchPool = Executors.newFixedThreadPool(prefetchThreads, (Runnable r) -> {
+                Thread thread = new FastThreadLocalThread(r, "scanner-prefetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
         switch (mode) {
             case ServerConfiguration.PROPERTY_MODE_LOCAL:
                 jdbcUrl = "jdbc:herddb:server:" + serverHostData.getHost() + ":" + serverHostData.getPort();
@@ -330,7 +359,16 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 boolean indexodirect = configuration.getBoolean(ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT, ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT_DEFAULT);
                 boolean hashChecksEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED, ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED_DEFAULT);
                 boolean hashWritesEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED, ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED_DEFAULT);
-                return new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
+                long maxWriteRate = configuration.getLong(ServerConfiguration.PROPERTY_CHECKPOINT_MAX_WRITE_RATE, ServerConfiguration.PROPERTY_CHECKPOINT_MAX_WRITE_RATE_DEFAULT);
+                FileDataStorageManager fileDataStorageManager;
+                if (configuration.getBoolean(ServerConfiguration.PROPERTY_PAGE_EXTENT_FILES, ServerConfiguration.PROPERTY_PAGE_EXTENT_FILES_DEFAULT)) {
+                    long extentSize = configuration.getLong(ServerConfiguration.PROPERTY_PAGE_EXTENT_SIZE, ServerConfiguration.PROPERTY_PAGE_EXTENT_SIZE_DEFAULT);
+                    fileDataStorageManager = new ExtentFileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, hashChecksEnabled, hashWritesEnabled, extentSize, statsLogger);
+                } else {
+                    fileDataStorageManager = new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
+                }
+                fileDataStorageManager.setMaxWriteBytesPerSecond(maxWriteRate);
+                return fileDataStorageManager;
             }
             case ServerConfiguration.PROPERTY_MODE_DISKLESSCLUSTER: {
                 int diskswapThreshold = configuration.getInt(ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS, ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT);
@@ -349,7 +387,7 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 return new MemoryCommitLogManager(false);
             case ServerConfiguration.PROPERTY_MODE_STANDALONE:
                 Path logDirectory = this.baseDirectory.resolve(configuration.getString(ServerConfiguration.PROPERTY_LOGDIR, ServerConfiguration.PROPERTY_LOGDIR_DEFAULT));
-                return new FileCommitLogManager(logDirectory,
+                FileCommitLogManager fileCommitLogManager = new FileCommitLogManager(logDirectory,
                         configuration.getLong(ServerConfiguration.PROPERTY_MAX_LOG_FILE_SIZE, ServerConfiguration.PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT),
                         configuration.getInt(ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH, ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_DEFAULT),
                         configuration.getInt(ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES, ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES_DEFAULT),
@@ -359,6 +397,9 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                         configuration.getInt(ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD, ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT),
                         statsLogger.scope("txlog")
                 );
+                fileCommitLogManager.setAdaptiveGroupCommit(configuration.getBoolean(ServerConfiguration.PROPERTY_ADAPTIVE_GROUP_COMMIT, ServerConfiguration.PROPERTY_ADAPTIVE_GROUP_COMMIT_DEFAULT));
+                fileCommitLogManager.setPreallocateSegments(configuration.getBoolean(ServerConfiguration.PROPERTY_TXLOG_PREALLOCATE_SEGMENTS, ServerConfiguration.PROPERTY_TXLOG_PREALLOCATE_SEGMENTS_DEFAULT));
+                return fileCommitLogManager;
             case ServerConfiguration.PROPERTY_MODE_CLUSTER:
             case ServerConfiguration.PROPERTY_MODE_DISKLESSCLUSTER:
                 BookkeeperCommitLogManager bkmanager = new BookkeeperCommitLogManager((ZookeeperMetadataStorageManager) this.metadataStorageManager, configuration, statsLogger);
@@ -440,6 +481,9 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
         } catch (Throwable error) {
             LOGGER.log(Level.SEVERE, "error while stopping embedded DBManager " + error, error);
         }
+        if (scannerPrefetchPool != null) {
+            scannerPrefetchPool.shutdown();
+        }
 
         if (embeddedBookie != null) {
             try {
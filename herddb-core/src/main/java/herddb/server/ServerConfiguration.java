@@ -72,6 +72,12 @@ public final class ServerConfiguration {
     public static final String PROPERTY_MAX_SYNC_TIME = "txlog.synctimeout";
     public static final int PROPERTY_MAX_SYNC_TIME_DEFAULT = 1;
 
+    public static final String PROPERTY_ADAPTIVE_GROUP_COMMIT = "txlog.adaptivegroupcommit";
+    public static final boolean PROPERTY_ADAPTIVE_GROUP_COMMIT_DEFAULT = false;
+
+    public static final String PROPERTY_TXLOG_PREALLOCATE_SEGMENTS = "txlog.preallocatesegments";
+    public static final boolean PROPERTY_TXLOG_PREALLOCATE_SEGMENTS_DEFAULT = false;
+
     public static final String PROPERTY_DEFERRED_SYNC_PERIOD = "txlog.deferredsyncperiod";
     public static final int PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT = 0;  /* disabled */
 
@@ -84,6 +90,16 @@ public final class ServerConfiguration {
     public static final String PROPERTY_MAX_LOG_FILE_SIZE = "txlog.maxfilesize";
     public static final long PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT = 64L * 1024L * 1024L;
 
+    /**
+     * Max size of the records carried by a single batched log entry (written
+     * by DML statements which touch many records of a table). Batched entries
+     * are disabled by default (0, every record is written in its own log
+     * entry) because nodes running older versions are not able to read them:
+     * enable them only when every node of the cluster has been upgraded.
+     */
+    public static final String PROPERTY_TXLOG_MAX_BATCH_ENTRY_BYTES = "txlog.maxbatchentrybytes";
+    public static final int PROPERTY_TXLOG_MAX_BATCH_ENTRY_BYTES_DEFAULT = 0;
+
     public static final String PROPERTY_REQUIRE_FSYNC = "requirefsync";
     public static final boolean PROPERTY_REQUIRE_FSYNC_DEFAULT = SystemProperties.getBooleanSystemProperty(
             "herddb.file.requirefsync", true);
@@ -102,6 +118,32 @@ public final class ServerConfiguration {
     public static final String PROPERTY_HASH_WRITES_ENABLED = "server.filedatastorage.writehash";
     public static final boolean PROPERTY_HASH_WRITES_ENABLED_DEFAULT = true;
 
+    /**
+     * Store the pages of each table and index in a single file made of
+     * preallocated extents, instead of a file per page. It can be enabled on an
+     * existing data directory, pages already stored in their own files are
+     * still read from them until they are released. It cannot be disabled
+     * once the server has written pages in extent files.
+     */
+    public static final String PROPERTY_PAGE_EXTENT_FILES = "server.filedatastorage.extentfiles";
+    public static final boolean PROPERTY_PAGE_EXTENT_FILES_DEFAULT = false;
+
+    /**
+     * Maximum size of the extents by which page files grow: the first extent
+     * is small and the following ones double the size of the file, up to this
+     * size
+     */
+    public static final String PROPERTY_PAGE_EXTENT_SIZE = "server.filedatastorage.extentsize";
+    public static final long PROPERTY_PAGE_EXTENT_SIZE_DEFAULT = 64L * 1024 * 1024;
+
+    /**
+     * Codec used to compress data and index pages ("none" or "lz4"), it can be
+     * overridden for a single tablespace by appending "." and the name of the
+     * tablespace to this property
+     */
+    public static final String PROPERTY_PAGE_CODEC = "server.filedatastorage.pagecodec";
+    public static final String PROPERTY_PAGE_CODEC_DEFAULT = "none";
+
     public static final String PROPERTY_TMPDIR = "server.tmp.dir";
     public static final String PROPERTY_TMPDIR_DEFAULT = "tmp";
     public static final String PROPERTY_METADATADIR = "server.metadata.dir";
@@ -123,6 +165,50 @@ public final class ServerConfiguration {
     public static final String PROPERTY_NETWORK_WORKER_THREADS = "server.network.thread.workers";
     public static final int PROPERTY_NETWORK_WORKER_THREADS_DEFAULT = 16;
 
+    /**
+     * Send result sets column by column to clients which support it
+     */
+    public static final String PROPERTY_NETWORK_COLUMNAR_RESULTSETS = "server.network.columnar.resultsets";
+    public static final boolean PROPERTY_NETWORK_COLUMNAR_RESULTSETS_DEFAULT = true;
+
+    /**
+     * Let followers execute queries which only read data, outside of
+     * transactions, for clients which ask for it. Data is read at the
+     * position of the log applied by the follower.
+     */
+    public static final String PROPERTY_READ_FROM_FOLLOWERS = "server.read.from.followers";
+    public static final boolean PROPERTY_READ_FROM_FOLLOWERS_DEFAULT = false;
+
+    /**
+     * Grow the size of the chunks of data sent to scanners while the client
+     * keeps asking for more data quickly. The fetch size requested by the
+     * client is used as the minimum size.
+     */
+    public static final String PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE = "server.network.scanner.adaptive.fetchsize";
+    public static final boolean PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE_DEFAULT = true;
+
+    /**
+     * Max number of records in a chunk in adaptive mode, see
+     * {@link #PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE}.
+     */
+    public static final String PROPERTY_NETWORK_SCANNER_MAX_FETCHSIZE = "server.network.scanner.max.fetchsize";
+    public static final int PROPERTY_NETWORK_SCANNER_MAX_FETCHSIZE_DEFAULT = 10000;
+
+    /**
+     * Max size in bytes of a chunk in adaptive mode, estimated from the size
+     * of the records already sent.
+     */
+    public static final String PROPERTY_NETWORK_SCANNER_MAX_CHUNK_BYTES = "server.network.scanner.max.chunk.bytes";
+    public static final long PROPERTY_NETWORK_SCANNER_MAX_CHUNK_BYTES_DEFAULT = 1024L * 1024;
+
+    /**
+     * Number of threads used to prepare the next chunk of data of scanners
+     * while the current chunk is sent to the client. If set to 0 prefetch is
+     * disabled.
+     */
+    public static final String PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS = "server.network.scanner.prefetch.threads";
+    public static final int PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS_DEFAULT = 4;
+
     public static final String PROPERTY_ASYNC_WORKER_THREADS = "server.async.thread.workers";
     public static final int PROPERTY_ASYNC_WORKER_THREADS_DEFAULT = 64;
 
@@ -157,9 +243,41 @@ public final class ServerConfiguration {
     public static final String PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT = "server.boot.force.download.snapshot";
     public static final boolean PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT = false;
 
+    /**
+     * Number of threads which apply the transaction log during recovery, 1 means sequential replay
+     */
+    public static final String PROPERTY_BOOT_RECOVERY_PARALLELISM = "server.boot.recovery.parallelism";
+    public static final int PROPERTY_BOOT_RECOVERY_PARALLELISM_DEFAULT = 1;
+
     public static final String PROPERTY_CHECKPOINT_PERIOD = "server.checkpoint.period";
     public static final long PROPERTY_CHECKPOINT_PERIOD_DEFAULT = 1000L * 60 * 15;
 
+    /**
+     * Hold the write lock on the tablespace only while capturing the log
+     * position and the transactions at the beginning of the checkpoint, then
+     * flush the tables while statements keep running. Each table is blocked
+     * only while it is being flushed: commits of transactions which touched
+     * that table wait for the end of its flush, other commits do not wait.
+     * Followers always use blocking checkpoints.
+     */
+    public static final String PROPERTY_CHECKPOINT_FUZZY = "server.checkpoint.fuzzy";
+    public static final boolean PROPERTY_CHECKPOINT_FUZZY_DEFAULT = false;
+
+    /**
+     * Number of threads used to checkpoint the tables of a tablespace, and the
+     * indexes of a table, in parallel. If set to 1 tables are checkpointed one
+     * after the other.
+     */
+    public static final String PROPERTY_CHECKPOINT_PARALLELISM = "server.checkpoint.parallelism";
+    public static final int PROPERTY_CHECKPOINT_PARALLELISM_DEFAULT = 1;
+
+    /**
+     * Max bytes per second written to data and index pages, which are written
+     * only by checkpoints. If set to 0 writes are not throttled.
+     */
+    public static final String PROPERTY_CHECKPOINT_MAX_WRITE_RATE = "server.checkpoint.max.write.rate";
+    public static final long PROPERTY_CHECKPOINT_MAX_WRITE_RATE_DEFAULT = 0;
+
     public static final String PROPERTY_DEFAULT_REPLICA_COUNT = "tablespace.default.replica.count";
     public static final int PROPERTY_DEFAULT_REPLICA_COUNT_DEFAULT = 1;
 
@@ -235,6 +353,52 @@ public final class ServerConfiguration {
     public static final String PROPERTY_READLOCK_TIMEOUT = "server.tablemanager.readlocktimeout";
     public static final int PROPERTY_READLOCK_TIMEOUT_DEFAULT = 60 * 30;
 
+    /**
+     * Number of threads used to fetch and filter data pages while scanning
+     * large tables without locks. If set to 0 scans are always executed on the
+     * calling thread. By default, the value is 0.
+     */
+    public static final String PROPERTY_PARALLEL_SCAN_THREADS = "server.scan.parallel.threads";
+    public static final int PROPERTY_PARALLEL_SCAN_THREADS_DEFAULT = 0;
+
+    /**
+     * Minimum number of records a table must contain in order to be scanned in
+     * parallel, see {@link #PROPERTY_PARALLEL_SCAN_THREADS}.
+     */
+    public static final String PROPERTY_PARALLEL_SCAN_MIN_TABLE_SIZE = "server.scan.parallel.min.table.size";
+    public static final long PROPERTY_PARALLEL_SCAN_MIN_TABLE_SIZE_DEFAULT = 100_000L;
+
+    /**
+     * Number of threads used to read data pages ahead of scans which walk
+     * pages sequentially. If set to 0 read-ahead is disabled.
+     */
+    public static final String PROPERTY_SCAN_READAHEAD_THREADS = "server.scan.readahead.threads";
+    public static final int PROPERTY_SCAN_READAHEAD_THREADS_DEFAULT = 4;
+
+    /**
+     * Max number of data pages read ahead of each scan, see
+     * {@link #PROPERTY_SCAN_READAHEAD_THREADS}.
+     */
+    public static final String PROPERTY_SCAN_READAHEAD_PAGES = "server.scan.readahead.pages";
+    public static final int PROPERTY_SCAN_READAHEAD_PAGES_DEFAULT = 4;
+
+    /**
+     * Full scans of tables with more pages than this fraction of the pages
+     * which fit in the memory for data do not load pages in the shared page
+     * buffer, and do not change the state of pages already loaded. Such scans
+     * use a private ring of pages. If set to 0 scans always use the shared
+     * buffer.
+     */
+    public static final String PROPERTY_SCAN_CACHE_BYPASS_RATIO = "server.scan.cachebypass.ratio";
+    public static final double PROPERTY_SCAN_CACHE_BYPASS_RATIO_DEFAULT = 0.25;
+
+    /**
+     * Number of pages in the private ring of large scans, see
+     * {@link #PROPERTY_SCAN_CACHE_BYPASS_RATIO}.
+     */
+    public static final String PROPERTY_SCAN_CACHE_BYPASS_RING_PAGES = "server.scan.cachebypass.ringpages";
+    public static final int PROPERTY_SCAN_CACHE_BYPASS_RING_PAGES_DEFAULT = 4;
+
     public static final String PROPERTY_USERS_FILE = "server.users.file";
     public static final String PROPERTY_USERS_FILE_DEFAULT = "";
 
@@ -280,6 +444,33 @@ public final class ServerConfiguration {
     public static final String PROPERTY_MAX_PK_MEMORY = "server.memory.pk.limit";
     public static final long PROPERTY_MAX_PK_MEMORY_DEFAULT = 0L;
 
+    /**
+     * Prefix of the quotas of memory for data pages:
+     * {@code server.memory.data.quota.<tablespace>} is shared by the tables of
+     * the tablespace, {@code server.memory.data.quota.<tablespace>.<table>} is
+     * for a single table. The value is {@code reserved[,max]} in bytes, pages
+     * within the reserved memory are never evicted in favour of other tables.
+     */
+    public static final String PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX = "server.memory.data.quota.";
+
+    /**
+     * Maximum estimated amount of memory used to compute the groups of each
+     * GROUP BY, when the limit is reached the remaining groups are spilled to
+     * the temporary directory and computed partition by partition. If 0 there
+     * is no limit.
+     */
+    public static final String PROPERTY_AGGREGATE_MAX_MEMORY = "server.memory.aggregate.limit";
+    public static final long PROPERTY_AGGREGATE_MAX_MEMORY_DEFAULT = 64 * 1024 * 1024L;
+
+    /**
+     * Maximum estimated amount of memory used to build the hash table of each
+     * hash join, when the smaller side of the join does not fit both sides are
+     * partitioned in the temporary directory and joined partition by
+     * partition. If 0 there is no limit.
+     */
+    public static final String PROPERTY_JOIN_MAX_MEMORY = "server.memory.join.limit";
+    public static final long PROPERTY_JOIN_MAX_MEMORY_DEFAULT = 64 * 1024 * 1024L;
+
     public static final String PROPERTY_JMX_ENABLE = "server.jmx.enable";
     public static final boolean PROPERTY_JMX_ENABLE_DEFAULT = true;
 
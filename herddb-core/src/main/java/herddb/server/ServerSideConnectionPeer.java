@@ -53,7 +53,9 @@ import herddb.model.Transaction;
 import herddb.model.TransactionContext;
 import herddb.model.TransactionResult;
 import herddb.model.commands.BeginTransactionStatement;
+import herddb.model.commands.BulkInsertStatement;
 import herddb.model.commands.CommitTransactionStatement;
+import herddb.model.commands.InsertStatement;
 import herddb.model.commands.RollbackTransactionStatement;
 import herddb.model.commands.SQLPlannedOperationStatement;
 import herddb.model.commands.ScanStatement;
@@ -108,6 +110,16 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
     private volatile SaslNettyServer saslNettyServer;
     private final String address;
     private volatile String username = "";
+    /**
+     * Send result sets column by column, negotiated during the handshake
+     */
+    private volatile boolean columnarResultSets;
+    /**
+     * Let followers serve the reads of this client, negotiated during the
+     * handshake
+     */
+    private volatile boolean followerReads;
+    private volatile long followerReadsMaxStaleness;
     private final long connectionTs = System.currentTimeMillis();
 
     public ServerSideConnectionPeer(Channel channel, Server server) {
@@ -446,6 +458,9 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                     .getManager()
                     .getPlanner().translate(tableSpace,
                             query, parameters, true, true, false, maxRows);
+            if (followerReads) {
+                translatedQuery.context.allowFollowerReads(followerReadsMaxStaleness);
+            }
 
             if (LOGGER.isLoggable(Level.FINEST)) {
                 LOGGER.log(Level.FINEST, "{0} -> {1}", new Object[]{query, translatedQuery.plan.mainStatement});
@@ -458,24 +473,29 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                 ScanResult scanResult = (ScanResult) server.getManager().executePlan(translatedQuery.plan, translatedQuery.context, transactionContext);
                 DataScanner dataScanner = scanResult.dataScanner;
 
-                ServerSideScannerPeer scanner = new ServerSideScannerPeer(dataScanner);
+                ServerSideScannerPeer scanner = buildScannerPeer(dataScanner);
 
                 String[] columns = dataScanner.getFieldNames();
-                List<DataAccessor> records = dataScanner.consume(fetchSize);
+                List<DataAccessor> records = scanner.nextChunk(fetchSize);
                 TuplesList tuplesList = new TuplesList(columns, records);
-                boolean last = dataScanner.isFinished();
+                boolean last = scanner.isFinished();
                 if (LOGGER.isLoggable(Level.FINEST)) {
                     LOGGER.log(Level.FINEST, "sending first {0} records to scanner {1} query {2}", new Object[]{records.size(), scannerId, query});
                 }
                 if (!last) {
                     scanners.put(scannerId, scanner);
                 }
-                ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
-                channel.sendReplyMessage(message.messageId, result);
+                ByteBuf result = writeResultSetChunk(message.messageId, tuplesList, last, dataScanner.getTransactionId());
+                scanner.chunkSent(records.size(), result.readableBytes());
                 if (last) {
                     // no need to hold the scanner anymore
                     scanner.close();
+                } else {
+                    // the client may ask for the next chunk as soon as it receives
+                    // this one, the prefetch must be registered before
+                    scanner.prefetch(server.getScannerPrefetchPool(), fetchSize);
                 }
+                channel.sendReplyMessage(message.messageId, result);
             } else {
                 ByteBuf error = PduCodec.ErrorResponse.write(message.messageId, "unsupported query type for scan " + query + ": PLAN is " + translatedQuery.plan);
                 channel.sendReplyMessage(message.messageId, error);
@@ -495,6 +515,24 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
     }
 
+    private ServerSideScannerPeer buildScannerPeer(DataScanner dataScanner) {
+        ServerConfiguration configuration = server.getManager().getServerConfiguration();
+        boolean adaptive = configuration.getBoolean(ServerConfiguration.PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE,
+                ServerConfiguration.PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE_DEFAULT);
+        int maxFetchSize = configuration.getInt(ServerConfiguration.PROPERTY_NETWORK_SCANNER_MAX_FETCHSIZE,
+                ServerConfiguration.PROPERTY_NETWORK_SCANNER_MAX_FETCHSIZE_DEFAULT);
+        long maxChunkBytes = configuration.getLong(ServerConfiguration.PROPERTY_NETWORK_SCANNER_MAX_CHUNK_BYTES,
+                ServerConfiguration.PROPERTY_NETWORK_SCANNER_MAX_CHUNK_BYTES_DEFAULT);
+        return new ServerSideScannerPeer(dataScanner, adaptive, maxFetchSize, maxChunkBytes);
+    }
+
+    private ByteBuf writeResultSetChunk(long messageId, TuplesList tuplesList, boolean last, long tx) {
+        if (columnarResultSets) {
+            return PduCodec.ColumnarResultSetChunk.write(messageId, tuplesList, last, tx);
+        }
+        return PduCodec.ResultSetChunk.write(messageId, tuplesList, last, tx);
+    }
+
     private void handleFetchScannerData(Pdu message, Channel channel) {
         long scannerId = PduCodec.FetchScannerData.readScannerId(message);
         int fetchSize = PduCodec.FetchScannerData.readFetchSize(message);
@@ -505,22 +543,25 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         if (scanner != null) {
             try {
                 DataScanner dataScanner = scanner.getScanner();
-                List<DataAccessor> records = dataScanner.consume(fetchSize);
+                List<DataAccessor> records = scanner.nextChunk(fetchSize);
                 String[] columns = dataScanner.getFieldNames();
                 TuplesList tuplesList = new TuplesList(columns, records);
 
                 boolean last = false;
-                if (dataScanner.isFinished()) {
+                if (scanner.isFinished()) {
                     LOGGER.log(Level.FINEST, "unregistering scanner {0}, resultset is finished", scannerId);
                     scanners.remove(scannerId);
                     last = true;
                 }
 //                        LOGGER.log(Level.SEVERE, "sending " + converted.size() + " records to scanner " + scannerId);
-                ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
-                channel.sendReplyMessage(message.messageId, result);
+                ByteBuf result = writeResultSetChunk(message.messageId, tuplesList, last, dataScanner.getTransactionId());
+                scanner.chunkSent(records.size(), result.readableBytes());
                 if (last) {
-                    dataScanner.close();
+                    scanner.close();
+                } else {
+                    scanner.prefetch(server.getScannerPrefetchPool(), fetchSize);
                 }
+                channel.sendReplyMessage(message.messageId, result);
             } catch (DataScannerException err) {
                 ByteBuf error = composeErrorResponse(message.messageId, err);
                 channel.sendReplyMessage(message.messageId, error);
@@ -598,6 +639,27 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                 queries.add(translatedQuery);
             }
 
+            BulkInsertStatement bulkInsert = returnValues ? null : buildBulkInsert(queries);
+            if (bulkInsert != null) {
+                // inserts on the same table are logged and applied as a whole
+                TranslatedQuery firstTranslatedQuery = queries.get(0);
+                server.getManager().executeStatementAsync(bulkInsert, firstTranslatedQuery.context, new TransactionContext(transactionId))
+                        .whenComplete((result, error) -> {
+                            ByteBuf response;
+                            if (error != null) {
+                                response = composeErrorResponse(message.messageId, error);
+                            } else {
+                                List<Long> updateCounts = Collections.nCopies(numStatements, 1L);
+                                List<Map<String, Object>> otherDatas = Collections.nCopies(numStatements, Collections.<String, Object>emptyMap());
+                                response = PduCodec.ExecuteStatementsResult.write(message.messageId, updateCounts, otherDatas, result.transactionId);
+                            }
+                            channel.sendReplyMessage(message.messageId, response);
+                            message.close();
+                            runningStatements.unregisterRunningStatement(statementInfo);
+                        });
+                return;
+            }
+
             List<Long> updateCounts = new CopyOnWriteArrayList<>();
             List<Map<String, Object>> otherDatas = new CopyOnWriteArrayList<>();
 
@@ -682,6 +744,35 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
     }
 
+    /**
+     * Builds a single statement for a batch of plain INSERTs on the same table,
+     * which the TableManager can write and apply in one pass
+     *
+     * @param queries
+     * @return the statement or null if the batch cannot be executed as a whole
+     */
+    private static BulkInsertStatement buildBulkInsert(List<TranslatedQuery> queries) {
+        if (queries.size() < 2) {
+            return null;
+        }
+        InsertStatement first = null;
+        List<StatementEvaluationContext> rows = new ArrayList<>(queries.size());
+        for (TranslatedQuery query : queries) {
+            if (!(query.plan.mainStatement instanceof InsertStatement)) {
+                return null;
+            }
+            InsertStatement insert = (InsertStatement) query.plan.mainStatement;
+            if (first == null) {
+                first = insert;
+            } else if (!first.getTableSpace().equals(insert.getTableSpace())
+                    || !first.getTable().equals(insert.getTable())) {
+                return null;
+            }
+            rows.add(query.context);
+        }
+        return new BulkInsertStatement(first, rows);
+    }
+
     private void handleExecuteStatement(Pdu message, Channel channel) {
         long txId = PduCodec.ExecuteStatement.readTx(message);
         String tablespace = PduCodec.ExecuteStatement.readTablespace(message);
@@ -712,6 +803,9 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         try {
             translatedQuery = server.getManager().getPlanner().translate(tablespace,
                     query, parameters, false, true, returnValues, -1);
+            if (followerReads) {
+                translatedQuery.context.allowFollowerReads(followerReadsMaxStaleness);
+            }
         } catch (StatementExecutionException ex) {
             ByteBuf error = composeErrorResponse(message.messageId, ex);
             channel.sendReplyMessage(message.messageId, error);
@@ -927,6 +1021,14 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
             if (token == null) {
                 token = new byte[0];
             }
+            int clientFeatures = PduCodec.SaslTokenMessageRequest.readClientFeatures(message);
+            columnarResultSets = (clientFeatures & PduCodec.CLIENT_FEATURE_COLUMNAR_RESULTSETS) != 0
+                    && server.getManager().getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_NETWORK_COLUMNAR_RESULTSETS,
+                    ServerConfiguration.PROPERTY_NETWORK_COLUMNAR_RESULTSETS_DEFAULT);
+            followerReads = (clientFeatures & PduCodec.CLIENT_FEATURE_READ_FROM_FOLLOWERS) != 0
+                    && server.getManager().getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_READ_FROM_FOLLOWERS,
+                    ServerConfiguration.PROPERTY_READ_FROM_FOLLOWERS_DEFAULT);
+            followerReadsMaxStaleness = PduCodec.SaslTokenMessageRequest.readFollowerReadsMaxStaleness(message);
             if (saslNettyServer == null) {
                 saslNettyServer = new SaslNettyServer(server, mech);
             }
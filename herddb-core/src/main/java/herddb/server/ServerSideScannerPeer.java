@@ -22,42 +22,192 @@ package herddb.server;
 
 import herddb.model.DataScanner;
 import herddb.model.DataScannerException;
+import herddb.utils.DataAccessor;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Scanner on the server-side
+ * Scanner on the server-side.
+ * <p>
+ * In adaptive mode the size of the chunks grows while the client keeps
+ * asking for the next chunk quickly, up to a limit estimated from the size of
+ * the records already sent. The next chunk can be prepared in background
+ * while the current one is in flight.
  *
  * @author enrico.olivelli
  */
 public class ServerSideScannerPeer implements AutoCloseable {
 
+    /**
+     * A client which asks for the next chunk within this time is draining the
+     * result set, and it is waiting mostly for the network
+     */
+    private static final long FAST_CLIENT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
     private final DataScanner scanner;
+    private final boolean adaptive;
+    private final int maxFetchSize;
+    private final long maxChunkBytes;
+
+    // guarded by this
+    private int fetchSize;
+    private boolean fastClient;
+    private long avgRecordBytes;
+    private long lastChunkSentNanos;
+    private CompletableFuture<List<DataAccessor>> prefetched;
+
+    // guarded by scanner
+    private boolean closed;
 
     public ServerSideScannerPeer(DataScanner scanner) {
+        this(scanner, false, 0, 0);
+    }
+
+    public ServerSideScannerPeer(DataScanner scanner, boolean adaptive, int maxFetchSize, long maxChunkBytes) {
         this.scanner = scanner;
+        this.adaptive = adaptive;
+        this.maxFetchSize = maxFetchSize;
+        this.maxChunkBytes = maxChunkBytes;
     }
 
     public DataScanner getScanner() {
         return scanner;
     }
 
-    public void clientClose() {
+    /**
+     * Returns the next chunk of records, the prefetched one if available.
+     *
+     * @param requestedFetchSize fetch size requested by the client
+     */
+    public List<DataAccessor> nextChunk(int requestedFetchSize) throws DataScannerException {
+        CompletableFuture<List<DataAccessor>> pending;
+        int size;
+        synchronized (this) {
+            fastClient = lastChunkSentNanos > 0 && System.nanoTime() - lastChunkSentNanos <= FAST_CLIENT_NANOS;
+            pending = prefetched;
+            prefetched = null;
+            size = pending == null ? computeFetchSize(requestedFetchSize) : 0;
+        }
+        if (pending == null) {
+            return consume(size);
+        }
+        try {
+            return pending.get();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new DataScannerException(err);
+        } catch (ExecutionException err) {
+            if (err.getCause() instanceof DataScannerException) {
+                throw (DataScannerException) err.getCause();
+            }
+            throw new DataScannerException(err.getCause());
+        }
+    }
+
+    /**
+     * Records the size of a chunk just sent to the client
+     */
+    public synchronized void chunkSent(int numRecords, int bytes) {
+        lastChunkSentNanos = System.nanoTime();
+        if (numRecords > 0) {
+            long recordBytes = Math.max(1, bytes / numRecords);
+            avgRecordBytes = avgRecordBytes == 0 ? recordBytes : (avgRecordBytes + recordBytes) / 2;
+        }
+    }
+
+    /**
+     * Starts reading the next chunk in background.
+     *
+     * @param executor           the pool, null if prefetch is disabled
+     * @param requestedFetchSize fetch size requested by the client
+     */
+    public void prefetch(Executor executor, int requestedFetchSize) {
+        if (executor == null || scanner.getTransactionId() > 0) {
+            // the client may run other statements in the same transaction
+            // while it reads the results, and transactions are not thread safe
+            return;
+        }
+        CompletableFuture<List<DataAccessor>> result = new CompletableFuture<>();
+        int size;
+        synchronized (this) {
+            if (prefetched != null) {
+                return;
+            }
+            size = computeFetchSize(requestedFetchSize);
+            prefetched = result;
+        }
         try {
-            scanner.close();
-        } catch (DataScannerException ex) {
-            LOG.log(Level.SEVERE, "error con closing scanner " + ex, ex);
+            executor.execute(() -> {
+                try {
+                    result.complete(consume(size));
+                } catch (Throwable err) {
+                    result.completeExceptionally(err);
+                }
+            });
+        } catch (RejectedExecutionException err) {
+            // server is shutting down
+            result.completeExceptionally(new DataScannerException(err));
+        }
+    }
+
+    private int computeFetchSize(int requestedFetchSize) {
+        if (!adaptive) {
+            return requestedFetchSize;
+        }
+        int limit = maxFetchSize;
+        if (avgRecordBytes > 0) {
+            limit = (int) Math.min(limit, maxChunkBytes / avgRecordBytes);
+        }
+        if (fetchSize == 0) {
+            fetchSize = requestedFetchSize;
+        } else if (fastClient) {
+            fetchSize = Math.min(fetchSize * 2, limit);
+        } else {
+            fetchSize = Math.min(fetchSize, limit);
+        }
+        fetchSize = Math.max(fetchSize, requestedFetchSize);
+        return fetchSize;
+    }
+
+    private List<DataAccessor> consume(int size) throws DataScannerException {
+        synchronized (scanner) {
+            if (closed) {
+                throw new DataScannerException("scanner is closed");
+            }
+            return scanner.consume(size);
+        }
+    }
+
+    public boolean isFinished() throws DataScannerException {
+        synchronized (scanner) {
+            return closed || scanner.isFinished();
         }
     }
 
+    public void clientClose() {
+        close();
+    }
+
     private static final Logger LOG = Logger.getLogger(ServerSideScannerPeer.class.getName());
 
     @Override
     public void close() {
-        try {
-            scanner.close();
-        } catch (DataScannerException ex) {
-            LOG.log(Level.SEVERE, "error con closing scanner " + ex, ex);
+        synchronized (scanner) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                scanner.close();
+            } catch (DataScannerException ex) {
+                LOG.log(Level.SEVERE, "error con closing scanner " + ex, ex);
+            }
         }
     }
 
@@ -58,6 +58,7 @@ import herddb.model.planner.BindableTableScanOp;
 import herddb.model.planner.DeleteOp;
 import herddb.model.planner.FilterOp;
 import herddb.model.planner.FilteredTableScanOp;
+import herddb.model.planner.IndexLookupJoinOp;
 import herddb.model.planner.InsertOp;
 import herddb.model.planner.JoinOp;
 import herddb.model.planner.LimitOp;
@@ -66,6 +67,7 @@ import herddb.model.planner.PlannerOp;
 import herddb.model.planner.ProjectOp;
 import herddb.model.planner.SimpleDeleteOp;
 import herddb.model.planner.SimpleInsertOp;
+import herddb.model.planner.SimpleScanOp;
 import herddb.model.planner.SimpleUpdateOp;
 import herddb.model.planner.SortOp;
 import herddb.model.planner.TableScanOp;
@@ -88,10 +90,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.function.BiFunction;
 import java.util.logging.Level;
@@ -137,9 +141,11 @@ import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.AggregateCall;
 import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableModify;
 import org.apache.calcite.rel.logical.LogicalTableModify;
+import org.apache.calcite.rel.metadata.RelMdUtil;
 import org.apache.calcite.rel.rules.ReduceExpressionsRule;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
@@ -149,6 +155,7 @@ import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.runtime.CalciteContextException;
 import org.apache.calcite.schema.ColumnStrategy;
 import org.apache.calcite.schema.ModifiableTable;
@@ -192,6 +199,12 @@ public class CalcitePlanner implements AbstractSQLPlanner {
      * Time to wait for the requested tablespace to be up
      */
     private static final long WAIT_FOR_SCHEMA_UP_TIMEOUT = SystemProperties.getLongSystemProperty("herddb.planner.waitfortablespacetimeout", 60000);
+    /**
+     * An index nested loop join is used only if the estimated number of rows
+     * of the outer side, multiplied by this factor, is not greater than the
+     * size of the inner table
+     */
+    private static final int INDEX_LOOKUP_JOIN_COST_FACTOR = SystemProperties.getIntSystemProperty("herddb.planner.indexlookupjoincostfactor", 4);
     private static final Level DUMP_QUERY_LEVEL = Level.parse(SystemProperties.getStringSystemProperty("herddb.planner.dumpqueryloglevel", Level.FINE.toString()));
 
     private static final Pattern USE_DDL_PARSER = Pattern.compile("^[\\s]*(EXECUTE|CREATE|DROP|ALTER|TRUNCATE|BEGIN|COMMIT|ROLLBACK).*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
@@ -940,9 +953,38 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         Projection projection = buildProjection(projections, rowType, true, table.columns);
         ScanStatement scanStatement = new ScanStatement(tableSpace, table.name, projection, predicate, null, null);
         scanStatement.setTableDef(table);
+        scanStatement.setIndexOnlyScan(isCoveredByIndex(scan, table, tableSpace, predicate));
         return new BindableTableScanOp(scanStatement);
     }
 
+    /**
+     * Checks whether the secondary index used by the scan contains every column
+     * referenced by the filters and by the projection
+     */
+    private boolean isCoveredByIndex(BindableTableScan scan, Table table, String tableSpace, SQLRecordPredicate predicate) {
+        IndexOperation op = predicate != null ? predicate.getIndexOperation() : null;
+        if (!(op instanceof SecondaryIndexSeek
+                || op instanceof SecondaryIndexPrefixScan
+                || op instanceof SecondaryIndexRangeScan)) {
+            return false;
+        }
+        Map<String, AbstractIndexManager> indexes = manager.getTableSpaceManager(tableSpace).getIndexesOnTable(table.name);
+        AbstractIndexManager index = indexes != null ? indexes.get(op.getIndexName()) : null;
+        if (index == null || !index.supportsIndexOnlyScan()) {
+            return false;
+        }
+        Set<String> covered = new HashSet<>(Arrays.asList(table.primaryKey));
+        covered.addAll(Arrays.asList(index.getColumnNames()));
+        ImmutableBitSet used = RelOptUtil.InputFinder.bits(scan.filters, null)
+                .union(ImmutableBitSet.of(scan.projects));
+        for (int pos : used) {
+            if (!covered.contains(table.columns[pos].name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private CompiledSQLExpression findFiltersOnPrimaryKey(Table table, CompiledSQLExpression where) throws StatementExecutionException {
         List<CompiledSQLExpression> expressions = new ArrayList<>();
 
@@ -995,12 +1037,123 @@ public class CalcitePlanner implements AbstractSQLPlanner {
             fieldNames[i] = col.name;
             columns[i++] = col;
         }
+        PlannerOp indexLookupJoin = planIndexLookupJoin(op, left, right, leftKeys, rightKeys,
+                nonEquiConditions, fieldNames, columns);
+        if (indexLookupJoin != null) {
+            return indexLookupJoin;
+        }
         return new JoinOp(fieldNames, columns,
                 leftKeys, left, rightKeys, right,
                 generateNullsOnLeft, generateNullsOnRight, false,
                 nonEquiConditions);
     }
 
+    private PlannerOp planIndexLookupJoin(EnumerableHashJoin op,
+            PlannerOp left, PlannerOp right, int[] leftKeys, int[] rightKeys,
+            List<CompiledSQLExpression> nonEquiConditions, String[] fieldNames, Column[] columns) {
+        JoinRelType joinType = op.getJoinType();
+        PlannerOp result = null;
+        if (joinType == JoinRelType.INNER || joinType == JoinRelType.LEFT) {
+            result = planIndexLookupJoin(op.getLeft(), left, leftKeys, right, rightKeys, true,
+                    joinType == JoinRelType.LEFT, nonEquiConditions, fieldNames, columns);
+        }
+        if (result == null && (joinType == JoinRelType.INNER || joinType == JoinRelType.RIGHT)) {
+            result = planIndexLookupJoin(op.getRight(), right, rightKeys, left, leftKeys, false,
+                    joinType == JoinRelType.RIGHT, nonEquiConditions, fieldNames, columns);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the rows of the inner table by primary key or using a secondary
+     * index, if the inner side is a scan on a table with an index on the join
+     * keys and the outer side is expected to be small compared to the inner
+     * table.
+     */
+    private PlannerOp planIndexLookupJoin(RelNode outerNode, PlannerOp outer, int[] outerKeys,
+            PlannerOp inner, int[] innerKeys, boolean outerOnLeft, boolean generateNullsOnInner,
+            List<CompiledSQLExpression> nonEquiConditions, String[] fieldNames, Column[] columns) {
+        PlannerOp innerScan = inner.optimize();
+        if (!(innerScan instanceof TableScanOp) && !(innerScan instanceof BindableTableScanOp)) {
+            return null;
+        }
+        ScanStatement scan = ((SimpleScanOp) innerScan).getStatement();
+        Table table = scan.getTableDef();
+        if (table == null) {
+            return null;
+        }
+        Projection projection = scan.getProjection();
+        String[] innerKeyColumns = new String[innerKeys.length];
+        for (int i = 0; i < innerKeys.length; i++) {
+            int position;
+            if (projection == null || projection instanceof ProjectOp.IdentityProjection) {
+                position = innerKeys[i];
+            } else if (projection instanceof ProjectOp.ZeroCopyProjection) {
+                position = ((ProjectOp.ZeroCopyProjection) projection).mapPosition(innerKeys[i]);
+            } else {
+                // the join key is an expression
+                return null;
+            }
+            innerKeyColumns[i] = table.columns[position].name;
+        }
+        TableSpaceManager tableSpaceManager = manager.getTableSpaceManager(scan.getTableSpace());
+        if (tableSpaceManager == null) {
+            return null;
+        }
+        AbstractTableManager tableManager = tableSpaceManager.getTableManager(table.name);
+        if (tableManager == null || tableManager.isSystemTable()) {
+            return null;
+        }
+        Set<String> joinedColumns = new HashSet<>(Arrays.asList(innerKeyColumns));
+        String indexName = null;
+        if (!joinedColumns.containsAll(Arrays.asList(table.primaryKey))) {
+            Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
+            if (indexes == null) {
+                return null;
+            }
+            for (AbstractIndexManager index : indexes.values()) {
+                if (index.isAvailable() && joinedColumns.containsAll(Arrays.asList(index.getColumnNames()))) {
+                    indexName = index.getIndexName();
+                    break;
+                }
+            }
+            if (indexName == null) {
+                return null;
+            }
+        }
+        double outerRows = estimateRowCount(outerNode, outer);
+        long innerRows = tableManager.getStats().getTablesize();
+        if (outerRows * INDEX_LOOKUP_JOIN_COST_FACTOR > innerRows) {
+            return null;
+        }
+        return new IndexLookupJoinOp(fieldNames, columns, outer, outerKeys,
+                scan, innerKeyColumns, indexName, outerOnLeft, generateNullsOnInner,
+                nonEquiConditions);
+    }
+
+    private static double estimateRowCount(RelNode node, PlannerOp op) {
+        PlannerOp optimized = op.optimize();
+        if (optimized instanceof SimpleScanOp) {
+            Predicate predicate = ((SimpleScanOp) optimized).getStatement().getPredicate();
+            if (predicate != null && predicate.getIndexOperation() instanceof PrimaryIndexSeek) {
+                return 1;
+            }
+        }
+        while (node instanceof EnumerableInterpreter) {
+            node = ((EnumerableInterpreter) node).getInput();
+        }
+        Double rows = node.getCluster().getMetadataQuery().getRowCount(node);
+        if (rows == null) {
+            return Double.MAX_VALUE;
+        }
+        if (node instanceof BindableTableScan && !((BindableTableScan) node).filters.isEmpty()) {
+            // the selectivity of the filters pushed down to the scan is not
+            // taken into account
+            rows *= RelMdUtil.guessSelectivity(RexUtil.composeConjunction(REX_BUILDER, ((BindableTableScan) node).filters));
+        }
+        return rows;
+    }
+
     private List<CompiledSQLExpression> convertJoinNonEquiConditions(final JoinInfo analyzeCondition) throws IllegalStateException {
         List<CompiledSQLExpression> nonEquiConditions = new ArrayList<>();
         if (!analyzeCondition.isEqui()) {
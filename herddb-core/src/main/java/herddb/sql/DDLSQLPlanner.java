@@ -479,6 +479,7 @@ public class DDLSQLPlanner implements AbstractSQLPlanner {
         switch (indexType) {
             case herddb.model.Index.TYPE_HASH:
             case herddb.model.Index.TYPE_BRIN:
+            case herddb.model.Index.TYPE_BTREE:
                 break;
             default:
                 throw new StatementExecutionException("Invalid index type " + indexType);
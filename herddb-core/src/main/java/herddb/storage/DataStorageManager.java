@@ -185,6 +185,17 @@ public abstract class DataStorageManager implements AutoCloseable {
 
     public abstract void eraseTablespaceData(String tableSpace) throws DataStorageManagerException;
 
+    /**
+     * Configures the codec used to compress the pages of a tablespace. Storage
+     * managers which do not support compression ignore it.
+     *
+     * @param tableSpace
+     * @param codec      name of the codec, "none" disables compression
+     * @throws DataStorageManagerException if the codec is not supported
+     */
+    public void setPageCodec(String tableSpace, String codec) throws DataStorageManagerException {
+    }
+
     /**
      * Load tables metadata
      *
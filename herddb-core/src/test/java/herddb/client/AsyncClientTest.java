@@ -0,0 +1,197 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.client;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.model.TableSpace;
+import herddb.network.Channel;
+import herddb.server.Server;
+import herddb.server.ServerConfiguration;
+import herddb.server.StaticClientSideMetadataProvider;
+import herddb.utils.RawString;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Many requests in flight from a single thread
+ */
+public class AsyncClientTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            // a small window, most of the requests are queued on the client
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_INFLIGHT_REQUESTS, 4);
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true, Collections.emptyList());
+
+                int size = 500;
+                List<CompletableFuture<DMLResult>> inserts = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    inserts.add(connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable(id,s1) values(?,?)", 0, false, true, Arrays.asList(i, "v" + i)));
+                }
+                for (CompletableFuture<DMLResult> insert : inserts) {
+                    assertEquals(1, insert.get().updateCount);
+                }
+
+                List<CompletableFuture<GetResult>> gets = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    gets.add(connection.executeGetAsync(TableSpace.DEFAULT,
+                            "SELECT s1 FROM mytable WHERE id=?", 0, true, Arrays.asList(i)));
+                }
+                for (int i = 0; i < size; i++) {
+                    assertEquals(RawString.of("v" + i), gets.get(i).get().data.get(RawString.of("s1")));
+                }
+                assertNull(connection.executeGetAsync(TableSpace.DEFAULT,
+                        "SELECT s1 FROM mytable WHERE id=?", 0, true, Arrays.asList(-1)).get().data);
+
+                // transactions
+                long tx = connection.beginTransactionAsync(TableSpace.DEFAULT).get();
+                assertTrue(tx > 0);
+                CompletableFuture<DMLResult> update = connection.executeUpdateAsync(TableSpace.DEFAULT,
+                        "UPDATE mytable set s1=? WHERE id=?", tx, false, true, Arrays.asList("changed", 1));
+                CompletableFuture<DMLResult> delete = connection.executeUpdateAsync(TableSpace.DEFAULT,
+                        "DELETE FROM mytable WHERE id=?", tx, false, true, Arrays.asList(2));
+                assertEquals(1, update.get().updateCount);
+                assertEquals(1, delete.get().updateCount);
+                connection.rollbackTransactionAsync(TableSpace.DEFAULT, tx).get();
+
+                tx = connection.beginTransactionAsync(TableSpace.DEFAULT).get();
+                assertEquals(1, connection.executeUpdateAsync(TableSpace.DEFAULT,
+                        "DELETE FROM mytable WHERE id=?", tx, false, true, Arrays.asList(3)).get().updateCount);
+                connection.commitTransactionAsync(TableSpace.DEFAULT, tx).get();
+
+                // scans
+                try (ScanResultSet scan = connection.executeScanAsync(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable WHERE s1='changed' or id=2", true, Collections.emptyList(), 0, 0, 10).get()) {
+                    List<?> records = scan.consume();
+                    assertEquals(1, records.size());
+                }
+                try (ScanResultSet scan = connection.executeScanAsync(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable", true, Collections.emptyList(), 0, 0, 10).get()) {
+                    assertNotNull(scan.getMetadata());
+                    assertEquals(size - 1, scan.consume().size());
+                }
+
+                // errors
+                try {
+                    connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable(id,s1) values(?,?)", 0, false, true, Arrays.asList(1, "dup")).get();
+                    fail();
+                } catch (ExecutionException err) {
+                    assertThat(err.getCause(), instanceOf(HDBException.class));
+                }
+                try {
+                    connection.executeGetAsync(TableSpace.DEFAULT,
+                            "SELECT * FROM notexists WHERE id=?", 0, true, Arrays.asList(1)).get();
+                    fail();
+                } catch (ExecutionException err) {
+                    assertThat(err.getCause(), instanceOf(HDBException.class));
+                }
+
+                // the window is empty again
+                assertEquals(1, connection.executeUpdateAsync(TableSpace.DEFAULT,
+                        "INSERT INTO mytable(id,s1) values(?,?)", 0, false, true, Arrays.asList(size, "last")).get().updateCount);
+            }
+        }
+    }
+
+    @Test
+    public void testCloseWithQueuedRequests() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_INFLIGHT_REQUESTS, 2);
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true, Collections.emptyList());
+
+                RoutedClientSideConnection route = connection.getRouteToTableSpace(TableSpace.DEFAULT);
+                Channel channel = route.getChannel();
+                // the waiting requests fail one after the other, without recursion
+                int size = 10000;
+                List<CompletableFuture<DMLResult>> inserts = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    inserts.add(connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable(id,s1) values(?,?)", 0, false, true, Arrays.asList(i, "v" + i)));
+                }
+                channel.close();
+                for (CompletableFuture<DMLResult> insert : inserts) {
+                    try {
+                        insert.get(1, TimeUnit.MINUTES);
+                    } catch (ExecutionException err) {
+                        // failed because of the close of the channel
+                    }
+                }
+                // every slot is released once
+                assertEquals(0, route.getInFlightRequests());
+
+                // the connection is usable again
+                inserts.clear();
+                for (int i = size; i < size + 100; i++) {
+                    inserts.add(connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable(id,s1) values(?,?)", 0, false, true, Arrays.asList(i, "v" + i)));
+                }
+                for (CompletableFuture<DMLResult> insert : inserts) {
+                    assertEquals(1, insert.get(1, TimeUnit.MINUTES).updateCount);
+                }
+                assertEquals(0, route.getInFlightRequests());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.model.DuplicatePrimaryKeyException;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.server.Server;
+import herddb.server.ServerConfiguration;
+import herddb.server.StaticClientSideMetadataProvider;
+import herddb.utils.RawString;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Batches of INSERTs on the same table are applied as a whole by the server
+ */
+public class BulkInsertTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String INSERT = "INSERT INTO mytable (id,n1,n2) values(?,?,?)";
+
+    private static long count(HDBConnection connection) throws Exception {
+        try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT COUNT(*) as cc FROM mytable", true,
+                Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 10)) {
+            return ((Number) scan.consume().get(0).get("cc")).longValue();
+        }
+    }
+
+    private static Map<RawString, Object> get(HDBConnection connection, String id) throws Exception {
+        return connection.executeGet(TableSpace.DEFAULT, "SELECT * FROM mytable WHERE id=?",
+                TransactionContext.NOTRANSACTION_ID, true, Arrays.asList(id)).data;
+    }
+
+    @Test
+    public void test() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id string primary key, n1 long, n2 integer)", 0, false, true,
+                        Collections.emptyList());
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE INDEX mytable_n1 ON mytable(n1)", 0, false, true,
+                        Collections.emptyList());
+
+                List<List<Object>> batch = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    batch.add(Arrays.asList("k" + i, i, i % 10));
+                }
+                List<DMLResult> results = connection.executeUpdates(TableSpace.DEFAULT, INSERT,
+                        TransactionContext.NOTRANSACTION_ID, false, true, batch);
+                assertEquals(1000, results.size());
+                for (DMLResult result : results) {
+                    assertEquals(1, result.updateCount);
+                }
+                assertEquals(1000, count(connection));
+                assertEquals(Long.valueOf(5), get(connection, "k5").get(RawString.of("n1")));
+
+                // duplicate key inside the batch, the records which precede it are applied
+                try {
+                    connection.executeUpdates(TableSpace.DEFAULT, INSERT,
+                            TransactionContext.NOTRANSACTION_ID, false, true, Arrays.asList(
+                                    Arrays.asList("a", 1, 1),
+                                    Arrays.asList("b", 2, 2),
+                                    Arrays.asList("a", 3, 3),
+                                    Arrays.asList("c", 4, 4)));
+                    fail();
+                } catch (HDBException ok) {
+                    assertTrue(ok.getMessage().contains(DuplicatePrimaryKeyException.class.getName()));
+                }
+                assertEquals(Long.valueOf(1), get(connection, "a").get(RawString.of("n1")));
+                assertEquals(Long.valueOf(2), get(connection, "b").get(RawString.of("n1")));
+                assertNull(get(connection, "c"));
+
+                // duplicate of an existing key inside a transaction, nothing is applied after rollback
+                long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                try {
+                    connection.executeUpdates(TableSpace.DEFAULT, INSERT,
+                            tx, false, true, Arrays.asList(
+                                    Arrays.asList("d", 1, 1),
+                                    Arrays.asList("k1", 2, 2)));
+                    fail();
+                } catch (HDBException ok) {
+                    assertTrue(ok.getMessage().contains(DuplicatePrimaryKeyException.class.getName()));
+                }
+                connection.rollbackTransaction(TableSpace.DEFAULT, tx);
+                assertNull(get(connection, "d"));
+
+                // batch inside a transaction
+                tx = connection.beginTransaction(TableSpace.DEFAULT);
+                results = connection.executeUpdates(TableSpace.DEFAULT, INSERT,
+                        tx, false, true, Arrays.asList(
+                                Arrays.asList("d", 1, 1),
+                                Arrays.asList("e", 2, 2)));
+                assertEquals(tx, results.get(1).transactionId);
+                connection.commitTransaction(TableSpace.DEFAULT, tx);
+                assertEquals(1005, count(connection));
+
+                // upsert of the same key inside the batch, the last value wins
+                results = connection.executeUpdates(TableSpace.DEFAULT, "UPSERT INTO mytable (id,n1,n2) values(?,?,?)",
+                        TransactionContext.NOTRANSACTION_ID, false, true, Arrays.asList(
+                                Arrays.asList("f", 1, 1),
+                                Arrays.asList("f", 2, 2),
+                                Arrays.asList("k0", 3, 3)));
+                assertEquals(3, results.size());
+                assertEquals(Long.valueOf(2), get(connection, "f").get(RawString.of("n1")));
+                assertEquals(Long.valueOf(3), get(connection, "k0").get(RawString.of("n1")));
+                assertEquals(1006, count(connection));
+            }
+        }
+
+        // recovery from the log
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+                assertEquals(1006, count(connection));
+                assertEquals(Long.valueOf(2), get(connection, "f").get(RawString.of("n1")));
+                try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id FROM mytable WHERE n1=?", true,
+                        Arrays.asList(999), TransactionContext.NOTRANSACTION_ID, 0, 10)) {
+                    assertEquals(RawString.of("k999"), scan.consume().get(0).get("id"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void concurrentBatchesWithSharedKeys() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection1 = client.openConnection();
+                 HDBConnection connection2 = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection1.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection1.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id string primary key, n1 long, n2 integer)", 0, false, true,
+                        Collections.emptyList());
+
+                // the same keys in opposite order, the locks must not be acquired in the order of the batch
+                List<List<Object>> batch = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    batch.add(Arrays.asList("k" + i, i, i % 10));
+                }
+                List<List<Object>> reversed = new ArrayList<>(batch);
+                Collections.reverse(reversed);
+                String upsert = "UPSERT INTO mytable (id,n1,n2) values(?,?,?)";
+                ExecutorService threads = Executors.newFixedThreadPool(2);
+                try {
+                    for (int attempt = 0; attempt < 20; attempt++) {
+                        Future<List<DMLResult>> f1 = threads.submit(() -> connection1.executeUpdates(TableSpace.DEFAULT, upsert,
+                                TransactionContext.NOTRANSACTION_ID, false, true, batch));
+                        Future<List<DMLResult>> f2 = threads.submit(() -> connection2.executeUpdates(TableSpace.DEFAULT, upsert,
+                                TransactionContext.NOTRANSACTION_ID, false, true, reversed));
+                        assertEquals(200, f1.get(1, TimeUnit.MINUTES).size());
+                        assertEquals(200, f2.get(1, TimeUnit.MINUTES).size());
+                    }
+                } finally {
+                    threads.shutdown();
+                }
+                assertEquals(200, count(connection1));
+            }
+        }
+    }
+}
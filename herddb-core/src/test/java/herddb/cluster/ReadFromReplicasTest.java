@@ -0,0 +1,194 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.client.ClientConfiguration;
+import herddb.client.GetResult;
+import herddb.client.HDBClient;
+import herddb.client.HDBConnection;
+import herddb.client.ScanResultSet;
+import herddb.core.TestUtils;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.NotLeaderException;
+import herddb.model.ScanResult;
+import herddb.model.StatementExecutionException;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.server.Server;
+import herddb.server.ServerConfiguration;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.ZKTestEnv;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Read-only queries served by followers
+ */
+public class ReadFromReplicasTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ZKTestEnv testEnv;
+
+    @Before
+    public void beforeSetup() throws Exception {
+        testEnv = new ZKTestEnv(folder.newFolder().toPath());
+        testEnv.startBookieAndInitCluster();
+    }
+
+    @After
+    public void afterTeardown() throws Exception {
+        if (testEnv != null) {
+            testEnv.close();
+        }
+    }
+
+    @Test
+    public void testReadsServedByFollower() throws Exception {
+        testReadFromReplicas(true);
+    }
+
+    @Test
+    public void testFollowerRefusesReads() throws Exception {
+        testReadFromReplicas(false);
+    }
+
+    private void testReadFromReplicas(boolean followerReads) throws Exception {
+        ServerConfiguration serverconfig_1 = new ServerConfiguration(folder.newFolder().toPath());
+        serverconfig_1.set(ServerConfiguration.PROPERTY_NODEID, "server1");
+        serverconfig_1.set(ServerConfiguration.PROPERTY_PORT, 7867);
+        serverconfig_1.set(ServerConfiguration.PROPERTY_MODE, ServerConfiguration.PROPERTY_MODE_CLUSTER);
+        serverconfig_1.set(ServerConfiguration.PROPERTY_ZOOKEEPER_ADDRESS, testEnv.getAddress());
+        serverconfig_1.set(ServerConfiguration.PROPERTY_ZOOKEEPER_PATH, testEnv.getPath());
+        serverconfig_1.set(ServerConfiguration.PROPERTY_ZOOKEEPER_SESSIONTIMEOUT, testEnv.getTimeout());
+        serverconfig_1.set(ServerConfiguration.PROPERTY_READ_FROM_FOLLOWERS, followerReads);
+
+        ServerConfiguration serverconfig_2 = serverconfig_1
+                .copy()
+                .set(ServerConfiguration.PROPERTY_NODEID, "server2")
+                .set(ServerConfiguration.PROPERTY_BASEDIR, folder.newFolder().toPath().toAbsolutePath())
+                .set(ServerConfiguration.PROPERTY_PORT, 7868);
+
+        try (Server server_1 = new Server(serverconfig_1);
+             Server server_2 = new Server(serverconfig_2)) {
+            server_1.start();
+            server_1.waitForStandaloneBoot();
+            server_2.start();
+
+            TestUtils.execute(server_1.getManager(),
+                    "CREATE TABLESPACE 'ttt','leader:" + server_1.getNodeId() + "','replica:" + server_1.getNodeId() + "," + server_2.getNodeId() + "'",
+                    Collections.emptyList());
+            server_1.waitForTableSpaceBoot("ttt", 30000, true);
+            server_2.waitForTableSpaceBoot("ttt", 30000, false);
+
+            ClientConfiguration clientConfiguration = new ClientConfiguration();
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MODE, ClientConfiguration.PROPERTY_MODE_CLUSTER);
+            clientConfiguration.set(ClientConfiguration.PROPERTY_ZOOKEEPER_ADDRESS, testEnv.getAddress());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_ZOOKEEPER_PATH, testEnv.getPath());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_ZOOKEEPER_SESSIONTIMEOUT, testEnv.getTimeout());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_READ_FROM_REPLICAS, true);
+
+            TestStatsProvider statsProvider = new TestStatsProvider();
+            StatsLogger logger = statsProvider.getStatsLogger("ds");
+            try (HDBClient client = new HDBClient(clientConfiguration, logger);
+                 HDBConnection connection = client.openConnection()) {
+                connection.executeUpdate(TableSpace.DEFAULT, "CREATE TABLE ttt.t1(k1 int primary key, n1 int)",
+                        TransactionContext.NOTRANSACTION_ID, false, false, Collections.emptyList());
+                for (int i = 1; i <= 3; i++) {
+                    connection.executeUpdate(TableSpace.DEFAULT, "INSERT INTO ttt.t1(k1,n1) values(?,?)",
+                            TransactionContext.NOTRANSACTION_ID, false, false, Arrays.asList(i, i));
+                }
+                // force BK LAC
+                connection.executeUpdate(TableSpace.DEFAULT, "INSERT INTO ttt.t1(k1,n1) values(100,100)",
+                        TransactionContext.NOTRANSACTION_ID, false, false, Collections.emptyList());
+
+                if (followerReads) {
+                    // wait for data to arrive on server_2
+                    for (int i = 0; i < 100; i++) {
+                        if (scanOnFollower(server_2, "SELECT * FROM ttt.t1 WHERE k1=3").size() == 1) {
+                            break;
+                        }
+                        Thread.sleep(100);
+                    }
+                    assertEquals(1, scanOnFollower(server_2, "SELECT * FROM ttt.t1 WHERE k1=3").size());
+                    try {
+                        scanOnFollower(server_2, "UPDATE ttt.t1 set n1=5 where k1=1");
+                        fail();
+                    } catch (NotLeaderException ok) {
+                    }
+                }
+
+                for (int i = 0; i < 20; i++) {
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM ttt.t1 WHERE k1<=3",
+                            false, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 0)) {
+                        assertEquals(3, scan.consume().size());
+                    }
+                    GetResult get = connection.executeGet(TableSpace.DEFAULT, "SELECT * FROM ttt.t1 where k1=1",
+                            TransactionContext.NOTRANSACTION_ID, false, Collections.emptyList());
+                    assertTrue(get.isFound());
+                    try (ScanResultSet scan = connection.executeScanAsync(TableSpace.DEFAULT, "SELECT * FROM ttt.t1 WHERE k1=2",
+                            false, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 0).get()) {
+                        assertEquals(1, scan.consume().size());
+                    }
+                }
+                // writes always go to the leader
+                assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT, "UPDATE ttt.t1 set n1=3 where k1=1",
+                        TransactionContext.NOTRANSACTION_ID, false, false, Collections.emptyList()).updateCount);
+
+                // the replica has been chosen at least once
+                assertTrue(server_2.getConnectionCount() > 0);
+                long refused = logger.scope("hdbclient").getCounter("replicaReadsRefused").get();
+                if (followerReads) {
+                    assertEquals(0, refused);
+                } else {
+                    assertTrue(refused > 0);
+                }
+            }
+        }
+    }
+
+    private static List<?> scanOnFollower(Server server, String query) throws StatementExecutionException {
+        TranslatedQuery translated = server.getManager().getPlanner().translate("ttt", query,
+                Collections.emptyList(), true, true, false, -1);
+        translated.context.allowFollowerReads(0);
+        ScanResult result = (ScanResult) server.getManager().executePlan(translated.plan, translated.context,
+                TransactionContext.NO_TRANSACTION);
+        try (DataScanner scanner = result.dataScanner) {
+            return scanner.consume();
+        } catch (DataScannerException err) {
+            throw new StatementExecutionException(err);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.index.SecondaryIndexPrefixScan;
+import herddb.index.SecondaryIndexRangeScan;
+import herddb.index.SecondaryIndexSeek;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.Index;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.ScanStatement;
+import herddb.sql.TranslatedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests on BTREE indexes
+ */
+public class BLinkIndexAccessTest extends SecondaryIndexAccessSuite {
+
+    public BLinkIndexAccessTest() {
+        super(Index.TYPE_BTREE);
+    }
+
+    @Test
+    public void indexKeysWhichArePrefixesOfOtherKeys() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_name ON t1(name)", Collections.emptyList());
+            List<String> names = Arrays.asList("a", "ab", "abc", "b", "a\u0000", "ab", "", "\u0000");
+            for (int i = 0; i < names.size(); i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,name) values(?,?)", Arrays.asList(i, names.get(i)));
+            }
+            executeUpdate(manager, "INSERT INTO t1(id,name) values(?,?)", Arrays.asList(100, null));
+
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE name=?", "a", SecondaryIndexSeek.class));
+            assertEquals(2, count(manager, "SELECT * FROM t1 WHERE name=?", "ab", SecondaryIndexSeek.class));
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE name=?", "", SecondaryIndexSeek.class));
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE name=?", "a\u0000", SecondaryIndexSeek.class));
+            assertEquals(0, count(manager, "SELECT * FROM t1 WHERE name=?", "abcd", SecondaryIndexSeek.class));
+            assertEquals(6, count(manager, "SELECT * FROM t1 WHERE name>=?", "a", SecondaryIndexRangeScan.class));
+            assertEquals(6, count(manager, "SELECT * FROM t1 WHERE name<=?", "ab", SecondaryIndexRangeScan.class));
+            assertEquals(4, count(manager, "SELECT * FROM t1 WHERE name>=? and name<=?", Arrays.asList("a", "ab"), SecondaryIndexRangeScan.class));
+
+            executeUpdate(manager, "UPDATE t1 SET name='b' WHERE id=1", Collections.emptyList());
+            executeUpdate(manager, "DELETE FROM t1 WHERE id=0", Collections.emptyList());
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE name=?", "ab", SecondaryIndexSeek.class));
+            assertEquals(2, count(manager, "SELECT * FROM t1 WHERE name=?", "b", SecondaryIndexSeek.class));
+            assertEquals(0, count(manager, "SELECT * FROM t1 WHERE name=?", "a", SecondaryIndexSeek.class));
+        }
+    }
+
+    @Test
+    public void multiColumnPrefixScan() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, c1 string, c2 int)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_c1_c2 ON t1(c1,c2)", Collections.emptyList());
+            for (int i = 0; i < 1000; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,c1,c2) values(?,?,?)", Arrays.asList(i, "k" + (i % 10), i));
+            }
+
+            assertEquals(100, count(manager, "SELECT * FROM t1 WHERE c1=?", "k1", SecondaryIndexPrefixScan.class));
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE c1=? and c2=?", Arrays.asList("k1", 11), SecondaryIndexSeek.class));
+            assertEquals(0, count(manager, "SELECT * FROM t1 WHERE c1=? and c2=?", Arrays.asList("k1", 12), SecondaryIndexSeek.class));
+        }
+    }
+
+    @Test
+    public void rangeScanOnNegativeValues() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, n1 int, l1 long, d1 double, c1 string)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_n1 ON t1(n1)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_l1 ON t1(l1)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_d1 ON t1(d1)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_c1_n1 ON t1(c1,n1)", Collections.emptyList());
+            for (int i = -10; i <= 10; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,n1,l1,d1,c1) values(?,?,?,?,?)", Arrays.asList(i + 100, i, (long) i, i / 2.0, "a"));
+            }
+            executeUpdate(manager, "INSERT INTO t1(id,n1,l1,d1,c1) values(?,?,?,?,?)",
+                    Arrays.asList(1000, Integer.MIN_VALUE, Long.MIN_VALUE, -Double.MAX_VALUE, "a"));
+            executeUpdate(manager, "INSERT INTO t1(id,n1,l1,d1,c1) values(?,?,?,?,?)",
+                    Arrays.asList(1001, Integer.MAX_VALUE, Long.MAX_VALUE, Double.MAX_VALUE, "a"));
+
+            assertEquals(11, count(manager, "SELECT * FROM t1 WHERE n1>=? and n1<=?", Arrays.asList(-5, 5), SecondaryIndexRangeScan.class));
+            assertEquals(11, count(manager, "SELECT * FROM t1 WHERE n1<?", 0, SecondaryIndexRangeScan.class));
+            assertEquals(12, count(manager, "SELECT * FROM t1 WHERE n1>=?", 0, SecondaryIndexRangeScan.class));
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE n1=?", -3, SecondaryIndexSeek.class));
+            assertEquals(11, count(manager, "SELECT * FROM t1 WHERE l1>=? and l1<=?", Arrays.asList(-5L, 5L), SecondaryIndexRangeScan.class));
+            assertEquals(11, count(manager, "SELECT * FROM t1 WHERE l1<?", 0L, SecondaryIndexRangeScan.class));
+            assertEquals(5, count(manager, "SELECT * FROM t1 WHERE d1>=? and d1<=?", Arrays.asList(-1.5, 0.5), SecondaryIndexRangeScan.class));
+            assertEquals(11, count(manager, "SELECT * FROM t1 WHERE d1<?", 0.0, SecondaryIndexRangeScan.class));
+            assertEquals(23, count(manager, "SELECT * FROM t1 WHERE c1=?", "a", SecondaryIndexPrefixScan.class));
+
+            executeUpdate(manager, "UPDATE t1 SET n1=-100 WHERE id=105", Collections.emptyList());
+            executeUpdate(manager, "DELETE FROM t1 WHERE id=95", Collections.emptyList());
+            assertEquals(9, count(manager, "SELECT * FROM t1 WHERE n1>=? and n1<=?", Arrays.asList(-5, 5), SecondaryIndexRangeScan.class));
+            assertEquals(1, count(manager, "SELECT * FROM t1 WHERE n1=?", -100, SecondaryIndexSeek.class));
+        }
+    }
+
+    private static int count(DBManager manager, String query, Object parameter, Class<?> expectedIndexOperation) throws Exception {
+        List<Object> parameters = new ArrayList<>(parameter instanceof List ? (List<?>) parameter : Collections.singletonList(parameter));
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query, parameters, true, true, false, -1);
+        ScanStatement scan = translated.plan.mainStatement.unwrap(ScanStatement.class);
+        assertTrue(expectedIndexOperation.isInstance(scan.getPredicate().getIndexOperation()));
+        try (DataScanner scan1 = manager.scan(scan, translated.context, TransactionContext.NO_TRANSACTION)) {
+            return scan1.consume().size();
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.log.CommitLog;
+import herddb.log.LogEntry;
+import herddb.log.LogEntryFactory;
+import herddb.log.LogEntryType;
+import herddb.model.ColumnTypes;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.Table;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * DML statements which touch many records write batched log entries
+ */
+public class BatchedLogEntriesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSerialization() throws Exception {
+        Table table = Table.builder()
+                .name("t1")
+                .column("id", ColumnTypes.STRING)
+                .primaryKey("id")
+                .build();
+        List<Bytes> keys = Arrays.asList(Bytes.from_string("a"), Bytes.from_string("b"));
+        List<Bytes> values = Arrays.asList(Bytes.from_string("va"), Bytes.from_string("vb"));
+
+        LogEntry update = LogEntry.deserialize(LogEntryFactory.updateBatch(table, keys, values, null).serialize());
+        assertEquals(LogEntryType.UPDATE_BATCH, update.type);
+        assertEquals("t1", update.tableName);
+        assertEquals(0, update.transactionId);
+        assertArrayEquals(keys.toArray(), update.readBatch().keys);
+        assertArrayEquals(values.toArray(), update.readBatch().values);
+
+        LogEntry delete = LogEntry.deserialize(LogEntryFactory.deleteBatch(table, keys, null).serialize());
+        assertEquals(LogEntryType.DELETE_BATCH, delete.type);
+        assertArrayEquals(keys.toArray(), delete.readBatch().keys);
+        assertNull(delete.readBatch().values);
+    }
+
+    @Test
+    public void testUpdateAndDelete() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        String nodeId = "localhost";
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_TXLOG_MAX_BATCH_ENTRY_BYTES, 256);
+
+        int records = 100;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (k1 string primary key, n1 int, s1 string)", Collections.emptyList());
+            execute(manager, "CREATE HASH INDEX ix_n1 ON tblspace1.t1(n1)", Collections.emptyList());
+            for (int i = 0; i < records; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1,s1) values(?,?,?)", Arrays.asList("k" + i, i, "s" + i));
+            }
+
+            CommitLog log = manager.getTableSpaceManager("tblspace1").getLog();
+            long before = log.getLastSequenceNumber().offset;
+            assertEquals(records, executeUpdate(manager, "UPDATE tblspace1.t1 set s1=?", Arrays.asList("changed")).getUpdateCount());
+            long written = log.getLastSequenceNumber().offset - before;
+            assertTrue("written " + written + " entries", written > 1 && written < records);
+
+            long tx = beginTransaction(manager, "tblspace1");
+            assertEquals(records / 2, executeUpdate(manager, "DELETE FROM tblspace1.t1 WHERE n1<?", Arrays.asList(records / 2),
+                    new TransactionContext(tx)).getUpdateCount());
+            commitTransaction(manager, "tblspace1", tx);
+
+            assertEquals(records / 2, executeUpdate(manager, "UPDATE tblspace1.t1 set n1=n1+1000", Collections.emptyList()).getUpdateCount());
+            assertEquals(records / 2, scanCount(manager, "SELECT * FROM tblspace1.t1 WHERE s1='changed'"));
+        }
+
+        // no checkpoint, the batched entries are replayed from the log
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, new ServerConfiguration(), null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            assertEquals(records / 2, scanCount(manager, "SELECT * FROM tblspace1.t1"));
+            assertEquals(records / 2, scanCount(manager, "SELECT * FROM tblspace1.t1 WHERE s1='changed'"));
+            assertEquals(0, scanCount(manager, "SELECT * FROM tblspace1.t1 WHERE n1=10"));
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.t1 WHERE n1=?", Arrays.asList(1070))) {
+                List<DataAccessor> result = scan.consume();
+                assertEquals(1, result.size());
+                assertEquals("k70", result.get(0).get("k1").toString());
+            }
+        }
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        int records = 10;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, new ServerConfiguration(), null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (k1 string primary key, s1 string)", Collections.emptyList());
+            for (int i = 0; i < records; i++) {
+                executeUpdate(manager, "INSERT INTO t1(k1,s1) values(?,?)", Arrays.asList("k" + i, "s" + i));
+            }
+
+            // nodes of older versions must be able to follow the log
+            CommitLog log = manager.getTableSpaceManager(TableSpace.DEFAULT).getLog();
+            long before = log.getLastSequenceNumber().offset;
+            assertEquals(records, executeUpdate(manager, "UPDATE t1 set s1=?", Arrays.asList("changed")).getUpdateCount());
+            assertEquals(records, log.getLastSequenceNumber().offset - before);
+        }
+    }
+
+    private static int scanCount(DBManager manager, String query) throws Exception {
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            return scan.consume().size();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.file.ExtentFileDataStorageManager;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Recovery tests with pages stored in extent files
+ */
+public class ExtentFileDataStorageManagerRestartTest extends RestartTestBase {
+
+    @Override
+    protected DBManager buildDBManager(String nodeId, Path metadataPath, Path dataPath, Path logsPath, Path tmoDir) {
+        return new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new ExtentFileDataStorageManager(dataPath, dataPath.resolve("tmp"),
+                        ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT,
+                        false, true, true, 64 * 1024, new NullStatsLogger()),
+                new FileCommitLogManager(logsPath),
+                tmoDir, null);
+    }
+
+    @Test
+    public void enableExtentFilesOnExistingData() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmoDir = folder.newFolder("tmoDir").toPath();
+        String nodeId = "localhost";
+        // pages stored in a file per page
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmoDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix1 ON tblspace1.t1(name)", Collections.emptyList());
+            for (int i = 0; i < 100; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(i, "n" + i));
+            }
+            manager.checkpoint();
+        }
+        assertTrue(countDataPageFiles(dataPath) > 0);
+
+        try (DBManager manager = buildDBManager(nodeId, metadataPath, dataPath, logsPath, tmoDir)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+
+            assertEquals(100, count(manager, "SELECT * FROM tblspace1.t1"));
+            assertEquals(1, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n10'"));
+            for (int i = 100; i < 200; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(i, "n" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(nodeId, metadataPath, dataPath, logsPath, tmoDir)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+
+            assertEquals(200, count(manager, "SELECT * FROM tblspace1.t1"));
+            assertEquals(1, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n10'"));
+            assertEquals(1, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n150'"));
+
+            // old page files are deleted once they are no more needed
+            executeUpdate(manager, "DELETE FROM tblspace1.t1", Collections.emptyList());
+            manager.checkpoint();
+            assertEquals(0, countDataPageFiles(dataPath));
+            assertEquals(0, count(manager, "SELECT * FROM tblspace1.t1"));
+        }
+    }
+
+    private static int count(DBManager manager, String query) throws Exception {
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            return scan.consume().size();
+        }
+    }
+
+    private static long countDataPageFiles(Path dataPath) throws Exception {
+        try (Stream<Path> files = Files.walk(dataPath)) {
+            return files
+                    .filter(file -> file.getParent().getFileName().toString().endsWith(".table"))
+                    .filter(file -> file.getFileName().toString().endsWith(FileDataStorageManager.FILEEXTENSION_PAGE))
+                    .count();
+        }
+    }
+
+}
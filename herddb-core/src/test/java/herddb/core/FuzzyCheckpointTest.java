@@ -0,0 +1,203 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Statements running while a fuzzy checkpoint is flushing the tables
+ */
+public class FuzzyCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesDuringCheckpoint() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        String nodeId = "localhost";
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_FUZZY, true);
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (k1 string primary key, n1 int)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.t2 (k1 string primary key, n1 int)", Collections.emptyList());
+
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("before" + i, i));
+                executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("before" + i, i));
+            }
+
+            long tx = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("tx", 1), new TransactionContext(tx));
+            executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("tx", 1), new TransactionContext(tx));
+
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager("tblspace1");
+            AtomicInteger tablesDone = new AtomicInteger();
+            tableSpaceManager.setAfterTableCheckPointAction(() -> {
+                // with a blocking checkpoint these statements would wait forever
+                int i = tablesDone.incrementAndGet();
+                try {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("during" + i, i));
+                    executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("during" + i, i));
+                    executeUpdate(manager, "UPDATE tblspace1.t1 set n1=? where k1=?", Arrays.asList(100 + i, "before0"));
+                    executeUpdate(manager, "UPDATE tblspace1.t2 set n1=? where k1=?", Arrays.asList(100 + i, "before0"));
+                    if (i == 1) {
+                        // one table has been flushed with the transaction still running, the other will be flushed after the commit
+                        commitTransaction(manager, "tblspace1", tx);
+                    }
+                } catch (StatementExecutionException err) {
+                    throw new RuntimeException(err);
+                }
+            });
+            manager.checkpoint();
+            tableSpaceManager.setAfterTableCheckPointAction(null);
+            assertEquals(2, tablesDone.get());
+
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("after", 1));
+            executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("after", 1));
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (String table : Arrays.asList("t1", "t2")) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1." + table, Collections.emptyList())) {
+                    assertEquals(14, scan.consume().size());
+                }
+                try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1." + table + " WHERE k1='before0'", Collections.emptyList())) {
+                    assertEquals(102, scan.consume().get(0).get("n1"));
+                }
+                try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1." + table + " WHERE k1='tx'", Collections.emptyList())) {
+                    assertEquals(1, scan.consume().size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void commitsWaitOnlyForTheFlushOfTheirTables() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        String nodeId = "localhost";
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_FUZZY, true);
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (k1 string primary key, n1 int)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.t2 (k1 string primary key, n1 int)", Collections.emptyList());
+
+            long tx1 = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("tx1", 1), new TransactionContext(tx1));
+            long tx2 = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("tx2", 1), new TransactionContext(tx2));
+
+            // the checkpoint holds the lock of a table while it is flushing it
+            StampedLock commitsLock = manager.getTableSpaceManager("tblspace1").getCommitsLock("t1");
+            long stamp = commitsLock.writeLock();
+            CompletableFuture<Void> commit1;
+            try {
+                commitTransaction(manager, "tblspace1", tx2);
+                commit1 = CompletableFuture.runAsync(() -> {
+                    try {
+                        commitTransaction(manager, "tblspace1", tx1);
+                    } catch (StatementExecutionException err) {
+                        throw new RuntimeException(err);
+                    }
+                });
+                try {
+                    commit1.get(1, TimeUnit.SECONDS);
+                } catch (TimeoutException expected) {
+                }
+                assertFalse(commit1.isDone());
+            } finally {
+                commitsLock.unlockWrite(stamp);
+            }
+            commit1.get(1, TimeUnit.MINUTES);
+
+            for (String table : Arrays.asList("t1", "t2")) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1." + table, Collections.emptyList())) {
+                    assertEquals(1, scan.consume().size());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.TableSpace;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Aggregations on integral values, computed using primitive accumulators
+ */
+public class GroupByTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGroupByIntegralColumns() throws Exception {
+        int testSize = 5000;
+        int numGroups = 7;
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, g int, l long, n int, s string)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                // every 100 records the group is NULL
+                Integer g = i % 100 == 0 ? null : i % numGroups;
+                // every 10 records n is NULL
+                Integer n = i % 10 == 0 ? null : i;
+                executeUpdate(manager, "INSERT INTO t1(id,g,l,n,s) values(?,?,?,?,?)", Arrays.asList(i, g, (long) i * 1_000_000L, n, "s" + i));
+            }
+
+            long[] expectedCount = new long[numGroups];
+            long[] expectedSum = new long[numGroups];
+            int[] expectedMin = new int[numGroups];
+            int[] expectedMax = new int[numGroups];
+            Arrays.fill(expectedMin, Integer.MAX_VALUE);
+            Arrays.fill(expectedMax, Integer.MIN_VALUE);
+            long nullGroupCount = 0;
+            for (int i = 0; i < testSize; i++) {
+                if (i % 100 == 0) {
+                    nullGroupCount++;
+                    continue;
+                }
+                int g = i % numGroups;
+                expectedCount[g]++;
+                if (i % 10 != 0) {
+                    expectedSum[g] += i;
+                    expectedMin[g] = Math.min(expectedMin[g], i);
+                    expectedMax[g] = Math.max(expectedMax[g], i);
+                }
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT g, COUNT(*) as cc, SUM(n) as su, MIN(n) as mi, MAX(n) as ma "
+                    + "FROM t1 GROUP BY g", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(numGroups + 1, results.size());
+                for (DataAccessor result : results) {
+                    Object g = result.get("g");
+                    if (g == null) {
+                        assertEquals(nullGroupCount, result.get("cc"));
+                        // all of the values in the NULL group are NULL
+                        assertEquals(0L, result.get("su"));
+                        assertNull(result.get("mi"));
+                        assertNull(result.get("ma"));
+                    } else {
+                        int group = (Integer) g;
+                        assertEquals(expectedCount[group], result.get("cc"));
+                        assertEquals(expectedSum[group], ((Number) result.get("su")).longValue());
+                        assertEquals(Integer.valueOf(expectedMin[group]), result.get("mi"));
+                        assertEquals(Integer.valueOf(expectedMax[group]), result.get("ma"));
+                    }
+                }
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT l, COUNT(*) as cc FROM t1 WHERE id < 10 GROUP BY l ORDER BY l", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(10, results.size());
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(Long.valueOf(i * 1_000_000L), results.get(i).get("l"));
+                    assertEquals(1L, results.get(i).get("cc"));
+                }
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc, SUM(l) as su, MAX(l) as ma FROM t1", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(1, results.size());
+                assertEquals(Long.valueOf(testSize), results.get(0).get("cc"));
+                assertEquals(Long.valueOf(1_000_000L * testSize * (testSize - 1) / 2), results.get(0).get("su"));
+                assertEquals(Long.valueOf((testSize - 1) * 1_000_000L), results.get(0).get("ma"));
+            }
+
+            // no input, one group
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc, MIN(n) as mi FROM t1 WHERE id < 0", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(1, results.size());
+                assertEquals(Long.valueOf(0), results.get(0).get("cc"));
+                assertNull(results.get(0).get("mi"));
+            }
+
+            // no input, no groups
+            try (DataScanner scan = scan(manager, "SELECT g, COUNT(*) as cc FROM t1 WHERE id < 0 GROUP BY g", Collections.emptyList())) {
+                assertEquals(0, scan.consume().size());
+            }
+
+            // not supported by primitive aggregation
+            try (DataScanner scan = scan(manager, "SELECT s, COUNT(*) as cc FROM t1 WHERE id < 10 GROUP BY s", Collections.emptyList())) {
+                assertEquals(10, scan.consume().size());
+            }
+        }
+    }
+
+    @Test
+    public void testGroupBySpillToDisk() throws Exception {
+        int testSize = 3000;
+        int numGroups = 500;
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        ServerConfiguration config = new ServerConfiguration();
+        // a few groups for each partition
+        config.set(ServerConfiguration.PROPERTY_AGGREGATE_MAX_MEMORY, 2048);
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath, tmpDir, 10, false, false, false, true, true, NullStatsLogger.INSTANCE),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, NullStatsLogger.INSTANCE)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, g int, s string, n int)", Collections.emptyList());
+            Map<Integer, Long> expectedCount = new HashMap<>();
+            Map<Integer, Long> expectedSum = new HashMap<>();
+            for (int i = 0; i < testSize; i++) {
+                int g = (i * 7) % numGroups;
+                executeUpdate(manager, "INSERT INTO t1(id,g,s,n) values(?,?,?,?)", Arrays.asList(i, g, "group" + g, i));
+                expectedCount.merge(g, 1L, Long::sum);
+                expectedSum.merge(g, (long) i, Long::sum);
+            }
+
+            // primitive aggregation
+            try (DataScanner scan = scan(manager, "SELECT g, COUNT(*) as cc, SUM(n) as su FROM t1 GROUP BY g", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(numGroups, results.size());
+                for (DataAccessor result : results) {
+                    int g = (Integer) result.get("g");
+                    assertEquals(expectedCount.get(g), result.get("cc"));
+                    assertEquals(expectedSum.get(g).longValue(), ((Number) result.get("su")).longValue());
+                }
+            }
+
+            // generic aggregation
+            try (DataScanner scan = scan(manager, "SELECT s, COUNT(*) as cc, MAX(n) as ma FROM t1 GROUP BY s ORDER BY s", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(numGroups, results.size());
+                String previous = "";
+                for (DataAccessor result : results) {
+                    String s = result.get("s").toString();
+                    assertTrue(s.compareTo(previous) > 0);
+                    previous = s;
+                    int g = Integer.parseInt(s.substring("group".length()));
+                    assertEquals(expectedCount.get(g), result.get("cc"));
+                }
+            }
+        }
+    }
+}
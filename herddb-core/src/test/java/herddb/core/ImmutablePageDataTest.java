@@ -0,0 +1,78 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.model.Record;
+import herddb.utils.Bytes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests about packed immutable pages
+ */
+public class ImmutablePageDataTest {
+
+    @Test
+    public void lookupAndScan() {
+        List<Record> records = new ArrayList<>();
+        Map<Bytes, Record> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            // keys and values sharing a bigger buffer, as when read from disk
+            byte[] buffer = ("xxkey" + i + "value" + i + "yy").getBytes();
+            int keyLen = ("key" + i).length();
+            Record record = new Record(Bytes.from_array(buffer, 2, keyLen),
+                    Bytes.from_array(buffer, 2 + keyLen, buffer.length - 4 - keyLen));
+            records.add(record);
+            expected.put(Bytes.from_string("key" + i), new Record(Bytes.from_string("key" + i), Bytes.from_string("value" + i)));
+        }
+        // an empty value
+        records.add(new Record(Bytes.from_string("empty"), Bytes.EMPTY_ARRAY));
+
+        ImmutablePageData packed = ImmutablePageData.build(records);
+        assertEquals(1001, packed.size());
+        for (Map.Entry<Bytes, Record> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), packed.get(entry.getKey()));
+        }
+        assertEquals(0, packed.get(Bytes.from_string("empty")).value.getLength());
+        assertNull(packed.get(Bytes.from_string("key1000")));
+        assertNull(packed.get(Bytes.from_string("key")));
+
+        List<Record> scanned = packed.records();
+        assertEquals(records, scanned);
+        assertTrue(scanned.get(0).key.isShared());
+    }
+
+    @Test
+    public void emptyPage() {
+        ImmutablePageData packed = ImmutablePageData.build(Collections.emptyList());
+        assertEquals(0, packed.size());
+        assertTrue(packed.records().isEmpty());
+        assertNull(packed.get(Bytes.from_string("a")));
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.Index;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.ScanStatement;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+
+/**
+ * Tests on scans which read data only from secondary indexes
+ */
+public class IndexOnlyScanTest {
+
+    @Test
+    public void hashIndex() throws Exception {
+        testIndexOnlyScan(Index.TYPE_HASH);
+    }
+
+    @Test
+    public void btreeIndex() throws Exception {
+        testIndexOnlyScan(Index.TYPE_BTREE);
+    }
+
+    @Test
+    public void hashIndexEntriesOfUpdatedRecords() throws Exception {
+        testIndexEntriesOfUpdatedRecords(Index.TYPE_HASH);
+    }
+
+    @Test
+    public void btreeIndexEntriesOfUpdatedRecords() throws Exception {
+        testIndexEntriesOfUpdatedRecords(Index.TYPE_BTREE);
+    }
+
+    @Test
+    public void brinIndexDoesNotSupportIndexOnlyScans() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE jobs (id int primary key, status string, payload string)", Collections.emptyList());
+            execute(manager, "CREATE BRIN INDEX ix_status ON jobs(status)", Collections.emptyList());
+            executeUpdate(manager, "INSERT INTO jobs(id,status,payload) values(1,'new','a')", Collections.emptyList());
+
+            assertFalse(translate(manager, "SELECT id, status FROM jobs WHERE status=?", "new").isIndexOnlyScan());
+            assertEquals(Collections.singleton("1-new"), query(manager, "SELECT id, status FROM jobs WHERE status=?", "new", TransactionContext.NO_TRANSACTION));
+        }
+    }
+
+    @Test
+    public void multiColumnIndex() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, c1 string, c2 int, payload string)", Collections.emptyList());
+            execute(manager, "CREATE BTREE INDEX ix_c1_c2 ON t1(c1,c2)", Collections.emptyList());
+            for (int i = 0; i < 100; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,c1,c2,payload) values(?,?,?,?)", Arrays.asList(i, "k" + (i % 10), i * 2, "p" + i));
+            }
+
+            String query = "SELECT c2, id FROM t1 WHERE c1=? and c2>=?";
+            assertTrue(translate(manager, query, Arrays.asList("k1", 100)).isIndexOnlyScan());
+            Set<String> expected = new TreeSet<>();
+            for (int i = 51; i < 100; i += 10) {
+                expected.add((i * 2) + "-" + i);
+            }
+            assertEquals(expected, query(manager, query, Arrays.asList("k1", 100), TransactionContext.NO_TRANSACTION));
+
+            assertFalse(translate(manager, "SELECT id, payload FROM t1 WHERE c1=?", "k1").isIndexOnlyScan());
+            assertFalse(translate(manager, "SELECT id FROM t1 WHERE c1=? and payload=?", Arrays.asList("k1", "p1")).isIndexOnlyScan());
+        }
+    }
+
+    private static void testIndexOnlyScan(String indexType) throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE jobs (id int primary key, status string, payload string)", Collections.emptyList());
+            execute(manager, "CREATE " + indexType + " INDEX ix_status ON jobs(status)", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO jobs(id,status,payload) values(?,?,?)", Arrays.asList(i, i % 2 == 0 ? "new" : "done", "payload" + i));
+            }
+
+            String query = "SELECT id, status FROM jobs WHERE status=?";
+            assertTrue(translate(manager, query, "new").isIndexOnlyScan());
+            assertTrue(translate(manager, "SELECT id FROM jobs WHERE status=?", "new").isIndexOnlyScan());
+            assertFalse(translate(manager, "SELECT id, payload FROM jobs WHERE status=?", "new").isIndexOnlyScan());
+            assertFalse(translate(manager, "SELECT * FROM jobs WHERE status=?", "new").isIndexOnlyScan());
+
+            assertEquals(new TreeSet<>(Arrays.asList("0-new", "2-new", "4-new", "6-new", "8-new")),
+                    query(manager, query, "new", TransactionContext.NO_TRANSACTION));
+
+            executeUpdate(manager, "UPDATE jobs SET status='done' WHERE id=0", Collections.emptyList());
+            executeUpdate(manager, "DELETE FROM jobs WHERE id=2", Collections.emptyList());
+            executeUpdate(manager, "UPDATE jobs SET payload='other' WHERE id=4", Collections.emptyList());
+            assertEquals(new TreeSet<>(Arrays.asList("4-new", "6-new", "8-new")),
+                    query(manager, query, "new", TransactionContext.NO_TRANSACTION));
+
+            // inside a transaction the records are read from the data pages
+            long tx = beginTransaction(manager, TableSpace.DEFAULT);
+            executeUpdate(manager, "UPDATE jobs SET status='done' WHERE id=4", Collections.emptyList(), new TransactionContext(tx));
+            executeUpdate(manager, "INSERT INTO jobs(id,status,payload) values(?,?,?)", Arrays.asList(100, "new", "x"), new TransactionContext(tx));
+            assertEquals(new TreeSet<>(Arrays.asList("6-new", "8-new", "100-new")),
+                    query(manager, query, "new", new TransactionContext(tx)));
+            assertEquals(new TreeSet<>(Arrays.asList("4-new", "6-new", "8-new")),
+                    query(manager, query, "new", TransactionContext.NO_TRANSACTION));
+        }
+    }
+
+    /**
+     * Simulates an index update which is still running: the index contains the entries for both the old and the new
+     * value while the data page already contains the new version of the record
+     */
+    private static void testIndexEntriesOfUpdatedRecords(String indexType) throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE jobs (id int primary key, status string, payload string)", Collections.emptyList());
+            execute(manager, "CREATE " + indexType + " INDEX ix_status ON jobs(status)", Collections.emptyList());
+            executeUpdate(manager, "INSERT INTO jobs(id,status,payload) values(1,'done','a')", Collections.emptyList());
+            executeUpdate(manager, "INSERT INTO jobs(id,status,payload) values(2,'new','b')", Collections.emptyList());
+            AbstractIndexManager index = manager.getTableSpaceManager(TableSpace.DEFAULT).getIndexesOnTable("jobs").get("ix_status");
+
+            String query = "SELECT id, status FROM jobs WHERE status>=?";
+            assertTrue(translate(manager, query, "a").isIndexOnlyScan());
+            Bytes key = Bytes.from_int(1);
+            index.recordUpdateStarted(key);
+            index.recordInserted(key, Bytes.from_string("new"));
+            try {
+                assertEquals(Arrays.asList("1-done", "2-new"), queryAsList(manager, query, "a"));
+            } finally {
+                index.recordDeleted(key, Bytes.from_string("new"));
+                index.recordUpdateFinished(key);
+            }
+            assertEquals(Arrays.asList("1-done", "2-new"), queryAsList(manager, query, "a"));
+
+            executeUpdate(manager, "UPDATE jobs SET status='new' WHERE id=1", Collections.emptyList());
+            assertEquals(Arrays.asList("1-new", "2-new"), queryAsList(manager, query, "a"));
+        }
+    }
+
+    private static ScanStatement translate(DBManager manager, String query, Object parameter) throws Exception {
+        return translateQuery(manager, query, parameter).plan.mainStatement.unwrap(ScanStatement.class);
+    }
+
+    private static TranslatedQuery translateQuery(DBManager manager, String query, Object parameter) throws Exception {
+        List<Object> parameters = new ArrayList<>(parameter instanceof List ? (List<?>) parameter : Collections.singletonList(parameter));
+        return manager.getPlanner().translate(TableSpace.DEFAULT, query, parameters, true, true, false, -1);
+    }
+
+    private static Set<String> query(DBManager manager, String query, Object parameter, TransactionContext transactionContext) throws Exception {
+        TranslatedQuery translated = translateQuery(manager, query, parameter);
+        Set<String> result = new TreeSet<>();
+        try (DataScanner scan = manager.scan(translated.plan.mainStatement.unwrap(ScanStatement.class), translated.context, transactionContext)) {
+            for (DataAccessor row : scan.consume()) {
+                result.add(row.get(0) + "-" + row.get(1));
+            }
+        }
+        return result;
+    }
+
+    private static List<String> queryAsList(DBManager manager, String query, Object parameter) throws Exception {
+        TranslatedQuery translated = translateQuery(manager, query, parameter);
+        List<String> result = new ArrayList<>();
+        try (DataScanner scan = manager.scan(translated.plan.mainStatement.unwrap(ScanStatement.class), translated.context, TransactionContext.NO_TRANSACTION)) {
+            for (DataAccessor row : scan.consume()) {
+                result.add(row.get(0) + "-" + row.get(1));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+}
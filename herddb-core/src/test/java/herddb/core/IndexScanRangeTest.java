@@ -60,6 +60,11 @@ public class IndexScanRangeTest {
         secondaryIndexPrefixScan(Index.TYPE_BRIN);
     }
 
+    @Test
+    public void btreeSecondaryIndexPrefixScan() throws Exception {
+        secondaryIndexPrefixScan(Index.TYPE_BTREE);
+    }
+
     @Test
     public void hashSecondaryIndexSeek() throws Exception {
         secondaryIndexSeek(Index.TYPE_HASH);
@@ -70,6 +75,11 @@ public class IndexScanRangeTest {
         secondaryIndexSeek(Index.TYPE_BRIN);
     }
 
+    @Test
+    public void btreeSecondaryIndexSeek() throws Exception {
+        secondaryIndexSeek(Index.TYPE_BTREE);
+    }
+
     @Test
     public void hashsecondaryIndexRangeScan() throws Exception {
         secondaryIndexRangeScan(Index.TYPE_HASH);
@@ -80,6 +90,11 @@ public class IndexScanRangeTest {
         secondaryIndexRangeScan(Index.TYPE_BRIN);
     }
 
+    @Test
+    public void btreeSecondaryIndexRangeScan() throws Exception {
+        secondaryIndexRangeScan(Index.TYPE_BTREE);
+    }
+
     @Test
     public void hashNoIndexOperation() throws Exception {
         noIndexOperation(Index.TYPE_HASH);
@@ -90,6 +105,11 @@ public class IndexScanRangeTest {
         noIndexOperation(Index.TYPE_BRIN);
     }
 
+    @Test
+    public void btreeNoIndexOperation() throws Exception {
+        noIndexOperation(Index.TYPE_BTREE);
+    }
+
     private void secondaryIndexPrefixScan(String indexType) throws Exception {
 
         String nodeId = "localhost";
@@ -0,0 +1,337 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.core.stats.TableManagerStats;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about memory quotas for data pages
+ */
+public class MemoryQuotaTest {
+
+    private static final long PAGE_SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class TestOwner implements Page.Owner {
+
+        private final Set<Long> loaded = new HashSet<>();
+
+        @Override
+        public void unload(long pageId) {
+            loaded.remove(pageId);
+        }
+
+        TestPage load(PageReplacementPolicy policy, long pageId) {
+            TestPage page = new TestPage(this, pageId);
+            loaded.add(pageId);
+            Page.Metadata unload = policy.add(page);
+            if (unload != null) {
+                unload.owner.unload(unload.pageId);
+            }
+            return page;
+        }
+    }
+
+    private static final class TestPage extends Page<TestOwner> {
+
+        TestPage(TestOwner owner, long pageId) {
+            super(owner, pageId);
+        }
+    }
+
+    @Test
+    public void testQuotaPolicy() throws Exception {
+        PageReplacementPolicy shared = new RandomPageReplacementPolicy(4);
+        QuotaPageReplacementPolicy quota = new QuotaPageReplacementPolicy("q", 2, 3, shared);
+        TestOwner partitionOwner = new TestOwner();
+        TestOwner sharedOwner = new TestOwner();
+
+        partitionOwner.load(quota, 1);
+        partitionOwner.load(quota, 2);
+        assertEquals(0, shared.size());
+        assertEquals(0, quota.getBorrowedPages());
+
+        // borrowed from the shared policy
+        partitionOwner.load(quota, 3);
+        assertEquals(1, shared.size());
+        assertEquals(1, quota.getBorrowedPages());
+
+        // max reached, pages of the partition are evicted
+        partitionOwner.load(quota, 4);
+        assertEquals(3, quota.size());
+        assertEquals(3, partitionOwner.loaded.size());
+        assertEquals(1, shared.size());
+
+        // other pages take back the borrowed slot, reserved pages are kept
+        for (long i = 0; i < 100; i++) {
+            sharedOwner.load(shared, i);
+        }
+        assertEquals(4, shared.size());
+        assertEquals(2, quota.size());
+        assertEquals(2, partitionOwner.loaded.size());
+        assertEquals(0, quota.getBorrowedPages());
+        assertEquals(4, sharedOwner.loaded.size());
+
+        // removing pages releases the borrowed slots
+        TestPage page = partitionOwner.load(quota, 5);
+        assertEquals(1, quota.getBorrowedPages());
+        assertTrue(quota.remove(page));
+        assertEquals(0, quota.getBorrowedPages());
+        assertEquals(2, quota.size());
+
+        quota.clear();
+        assertEquals(0, quota.size());
+    }
+
+    /**
+     * Page with the same equality of DataPage, which only looks at the page id
+     */
+    private static final class SameIdPage extends Page<TestOwner> {
+
+        SameIdPage(TestOwner owner, long pageId) {
+            super(owner, pageId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(pageId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SameIdPage && ((SameIdPage) obj).pageId == pageId;
+        }
+    }
+
+    @Test
+    public void testQuotaPolicySharedByOwners() throws Exception {
+        PageReplacementPolicy shared = new RandomPageReplacementPolicy(10);
+        QuotaPageReplacementPolicy quota = new QuotaPageReplacementPolicy("q", 0, 3, shared);
+        TestOwner owner1 = new TestOwner();
+        TestOwner owner2 = new TestOwner();
+
+        // same page ids on different owners are different pages
+        assertNull(quota.add(new SameIdPage(owner1, 1)));
+        assertNull(quota.add(new SameIdPage(owner2, 1)));
+        assertNull(quota.add(new SameIdPage(owner1, 2)));
+        assertEquals(3, quota.size());
+        Page.Metadata unload = quota.add(new SameIdPage(owner2, 2));
+        assertNotNull(unload);
+        assertSame(owner1, unload.owner);
+        assertEquals(1, unload.pageId);
+        assertEquals(3, quota.size());
+
+        // removing a page does not touch the page with the same id of the other owner
+        assertTrue(quota.remove(new SameIdPage(owner2, 2)));
+        assertFalse(quota.remove(new SameIdPage(owner1, 1)));
+        assertEquals(2, quota.size());
+        assertTrue(quota.remove(new SameIdPage(owner1, 2)));
+        assertTrue(quota.remove(new SameIdPage(owner2, 1)));
+        assertEquals(0, quota.size());
+        assertEquals(0, quota.getBorrowedPages());
+    }
+
+    @Test
+    public void testQuotaLookup() throws Exception {
+        MemoryManager.Quota quota = MemoryManager.Quota.parse("32768");
+        assertEquals(32768, quota.getReservedMemory());
+        assertEquals(32768, quota.getMaxMemory());
+        quota = MemoryManager.Quota.parse("0, 65536");
+        assertEquals(0, quota.getReservedMemory());
+        assertEquals(65536, quota.getMaxMemory());
+        try {
+            MemoryManager.Quota.parse("10,1");
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+
+        Map<String, MemoryManager.Quota> quotas = new HashMap<>();
+        quotas.put("ts1", quota);
+        quotas.put("ts2.t1", MemoryManager.Quota.parse(String.valueOf(2 * PAGE_SIZE)));
+        MemoryManager memoryManager = new MemoryManager(10 * PAGE_SIZE, 10 * PAGE_SIZE, PAGE_SIZE, quotas);
+        PageReplacementPolicy ts1 = memoryManager.getDataPageReplacementPolicy("ts1", "t1");
+        assertSame(ts1, memoryManager.getDataPageReplacementPolicy("ts1", "t2"));
+        assertEquals(4, ts1.capacity());
+        PageReplacementPolicy t1 = memoryManager.getDataPageReplacementPolicy("ts2", "t1");
+        assertEquals(2, t1.capacity());
+        assertSame(memoryManager.getDataPageReplacementPolicy(), memoryManager.getDataPageReplacementPolicy("ts2", "t2"));
+        assertEquals(8, memoryManager.getDataPageReplacementPolicy().capacity());
+
+        try {
+            new MemoryManager(10 * PAGE_SIZE, 10 * PAGE_SIZE, PAGE_SIZE,
+                    Collections.singletonMap("ts1", MemoryManager.Quota.parse(String.valueOf(10 * PAGE_SIZE))));
+            fail();
+        } catch (IllegalArgumentException ok) {
+        }
+    }
+
+    @Test
+    public void testReservedTableStaysResident() throws Exception {
+        int testSize = 5000;
+        Path baseDir = folder.newFolder().toPath();
+        try (DBManager manager = buildDBManager(baseDir)) {
+            execute(manager, "CREATE TABLE session (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE big (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE big2 (id int primary key, name string)", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO session(id,name) values(?,?)", Arrays.asList(i, "session" + i));
+            }
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO big(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+                executeUpdate(manager, "INSERT INTO big2(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(baseDir)) {
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager(TableSpace.DEFAULT);
+            TableManagerStats session = tableSpaceManager.getTableManager("session").getStats();
+            TableManagerStats big = tableSpaceManager.getTableManager("big").getStats();
+            TableManagerStats big2 = tableSpaceManager.getTableManager("big2").getStats();
+
+            // reads with locks always use the page buffer
+            long tx = beginTransaction(manager, TableSpace.DEFAULT);
+            try (DataScanner scan = scan(manager, "SELECT * FROM session WHERE id=3", Collections.emptyList(), new TransactionContext(tx))) {
+                assertEquals(1, scan.consume().size());
+            }
+            int sessionLoadedPages = session.getLoadedpages();
+            assertTrue(sessionLoadedPages > 0);
+            try (DataScanner scan = scan(manager, "SELECT * FROM big", Collections.emptyList(), new TransactionContext(tx))) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            try (DataScanner scan = scan(manager, "SELECT * FROM big2", Collections.emptyList(), new TransactionContext(tx))) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            commitTransaction(manager, TableSpace.DEFAULT, tx);
+
+            assertEquals(sessionLoadedPages, session.getLoadedpages());
+            assertTrue(big.getLoadedpages() <= 5);
+            assertTrue(big2.getUnloadedPagesCount() > 0);
+
+            try (DataScanner scan = scan(manager, "SELECT table_name, cachereservedmemory, cachemaxmemory FROM systablestats ORDER BY table_name", Collections.emptyList())) {
+                List<DataAccessor> records = scan.consume();
+                assertEquals(3, records.size());
+                assertEquals("big", records.get(0).get("table_name").toString());
+                assertEquals(0L, records.get(0).get("cachereservedmemory"));
+                assertEquals(5 * PAGE_SIZE, records.get(0).get("cachemaxmemory"));
+                assertEquals("big2", records.get(1).get("table_name").toString());
+                assertEquals(0L, records.get(1).get("cachereservedmemory"));
+                assertEquals(0L, records.get(1).get("cachemaxmemory"));
+                assertEquals("session", records.get(2).get("table_name").toString());
+                assertEquals(4 * PAGE_SIZE, records.get(2).get("cachereservedmemory"));
+                assertEquals(4 * PAGE_SIZE, records.get(2).get("cachemaxmemory"));
+            }
+        }
+    }
+
+    @Test
+    public void testTableSpaceQuotaSharedByTables() throws Exception {
+        int testSize = 5000;
+        Path baseDir = folder.newFolder().toPath();
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX + TableSpace.DEFAULT, "0," + 6 * PAGE_SIZE);
+        try (DBManager manager = buildDBManager(baseDir, config)) {
+            execute(manager, "CREATE TABLE t1 (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE t2 (id int primary key, name string)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+                executeUpdate(manager, "INSERT INTO t2(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(baseDir, config)) {
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager(TableSpace.DEFAULT);
+            TableManagerStats t1 = tableSpaceManager.getTableManager("t1").getStats();
+            TableManagerStats t2 = tableSpaceManager.getTableManager("t2").getStats();
+
+            // both tables have pages with the same ids, all of them count against the quota
+            long tx = beginTransaction(manager, TableSpace.DEFAULT);
+            for (int round = 0; round < 2; round++) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM t1", Collections.emptyList(), new TransactionContext(tx))) {
+                    assertEquals(testSize, scan.consume().size());
+                }
+                try (DataScanner scan = scan(manager, "SELECT * FROM t2", Collections.emptyList(), new TransactionContext(tx))) {
+                    assertEquals(testSize, scan.consume().size());
+                }
+            }
+            commitTransaction(manager, TableSpace.DEFAULT, tx);
+            assertTrue(t1.getLoadedpages() + t2.getLoadedpages() <= 6);
+            assertTrue(t1.getUnloadedPagesCount() > 0);
+            assertTrue(t2.getUnloadedPagesCount() > 0);
+        }
+    }
+
+    private static DBManager buildDBManager(Path baseDir) throws Exception {
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX + TableSpace.DEFAULT + ".session", 4 * PAGE_SIZE);
+        config.set(ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_QUOTA_PREFIX + TableSpace.DEFAULT + ".big", "0," + 5 * PAGE_SIZE);
+        return buildDBManager(baseDir, config);
+    }
+
+    private static DBManager buildDBManager(Path baseDir, ServerConfiguration config) throws Exception {
+        DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(baseDir.resolve("metadata")),
+                new FileDataStorageManager(baseDir.resolve("data")),
+                new FileCommitLogManager(baseDir.resolve("logs")),
+                baseDir.resolve("tmp"), null, config, NullStatsLogger.INSTANCE);
+        manager.setMaxLogicalPageSize(PAGE_SIZE);
+        manager.setMaxDataUsedMemory(20 * PAGE_SIZE);
+        manager.start();
+        assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+        return manager;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checkpoint of tables and indexes on the checkpoint pool
+ */
+public class ParallelCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParallelCheckpoint() throws Exception {
+        testParallelCheckpoint(false);
+    }
+
+    @Test
+    public void testParallelFuzzyCheckpoint() throws Exception {
+        testParallelCheckpoint(true);
+    }
+
+    private void testParallelCheckpoint(boolean fuzzy) throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        String nodeId = "localhost";
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_PARALLELISM, 4);
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_FUZZY, fuzzy);
+
+        int tables = 5;
+        int records = 100;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            assertNotNull(manager.getCheckpointPool());
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (int t = 0; t < tables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (k1 string primary key, n1 int, s1 string)", Collections.emptyList());
+                execute(manager, "CREATE HASH INDEX ix_n1_" + t + " ON tblspace1.t" + t + "(n1)", Collections.emptyList());
+                execute(manager, "CREATE BRIN INDEX ix_s1_" + t + " ON tblspace1.t" + t + "(s1)", Collections.emptyList());
+                for (int i = 0; i < records; i++) {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(k1,n1,s1) values(?,?,?)", Arrays.asList("k" + i, i, "s" + i));
+                }
+            }
+            manager.checkpoint();
+
+            for (int t = 0; t < tables; t++) {
+                executeUpdate(manager, "UPDATE tblspace1.t" + t + " set s1=? where k1=?", Arrays.asList("changed", "k0"));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, new ServerConfiguration(), null)) {
+            manager.start();
+            assertNull(manager.getCheckpointPool());
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (int t = 0; t < tables; t++) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.t" + t, Collections.emptyList())) {
+                    assertEquals(records, scan.consume().size());
+                }
+                try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.t" + t + " WHERE n1=?", Arrays.asList(7))) {
+                    assertEquals("k7", scan.consume().get(0).get("k1").toString());
+                }
+                try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.t" + t + " WHERE s1=?", Arrays.asList("changed"))) {
+                    assertEquals("k0", scan.consume().get(0).get("k1").toString());
+                }
+            }
+        }
+    }
+
+}
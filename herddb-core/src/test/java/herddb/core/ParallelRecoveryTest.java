@@ -0,0 +1,149 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Recovery of the transaction log using many threads
+ */
+public class ParallelRecoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] QUERIES = {
+        "SELECT * FROM tblspace1.t0 ORDER BY id",
+        "SELECT * FROM tblspace1.t1 ORDER BY id",
+        "SELECT * FROM tblspace1.t2 ORDER BY id",
+        "SELECT * FROM tblspace1.t3 ORDER BY id",
+        "SELECT id FROM tblspace1.t1 WHERE name='n3'",
+        "SELECT table_name FROM tblspace1.systables WHERE table_name LIKE 't%' ORDER BY table_name"
+    };
+
+    @Test
+    public void recoveryWithManyTables() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.set(ServerConfiguration.PROPERTY_BOOT_RECOVERY_PARALLELISM, 4);
+
+        String nodeId = "localhost";
+        List<List<String>> expected = new ArrayList<>();
+        try (DBManager manager = new DBManager(nodeId, new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath), new FileCommitLogManager(logsPath), tmpDir, null,
+                configuration, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            for (int t = 0; t < 5; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (id int primary key, name string, counter int)", Collections.emptyList());
+            }
+            for (int i = 0; i < 1000; i++) {
+                String table = "tblspace1.t" + (i % 5);
+                executeUpdate(manager, "INSERT INTO " + table + "(id,name,counter) values(?,?,?)", Arrays.asList(i, "n" + (i % 7), 0));
+                if (i % 3 == 0) {
+                    executeUpdate(manager, "UPDATE " + table + " SET counter=counter+1 WHERE id=?", Arrays.asList(i));
+                }
+                if (i % 11 == 0) {
+                    executeUpdate(manager, "DELETE FROM " + table + " WHERE id=?", Arrays.asList(i));
+                }
+                if (i == 500) {
+                    // DDL in the middle of the log
+                    execute(manager, "CREATE INDEX ix_name ON tblspace1.t1(name)", Collections.emptyList());
+                    execute(manager, "TRUNCATE TABLE tblspace1.t2", Collections.emptyList());
+                }
+            }
+
+            // transactions which touch many tables
+            long tx = beginTransaction(manager, "tblspace1");
+            for (int t = 0; t < 4; t++) {
+                executeUpdate(manager, "UPDATE tblspace1.t" + t + " SET counter=counter+100", Collections.emptyList(), new TransactionContext(tx));
+                executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(id,name,counter) values(?,?,?)", Arrays.asList(5000, "tx", 0), new TransactionContext(tx));
+            }
+            commitTransaction(manager, "tblspace1", tx);
+
+            long tx2 = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "DELETE FROM tblspace1.t0", Collections.emptyList(), new TransactionContext(tx2));
+            executeUpdate(manager, "UPDATE tblspace1.t3 SET name='rolledback'", Collections.emptyList(), new TransactionContext(tx2));
+            execute(manager, "ROLLBACK TRANSACTION 'tblspace1'," + tx2, Collections.emptyList());
+
+            execute(manager, "DROP TABLE tblspace1.t4", Collections.emptyList());
+            for (int i = 0; i < 100; i++) {
+                executeUpdate(manager, "UPDATE tblspace1.t" + (i % 4) + " SET counter=counter+1 WHERE id=?", Arrays.asList(5000));
+            }
+
+            for (String query : QUERIES) {
+                expected.add(query(manager, query));
+            }
+        }
+
+        // no checkpoint, the whole log is replayed
+        try (DBManager manager = new DBManager(nodeId, new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath), new FileCommitLogManager(logsPath), tmpDir, null,
+                configuration, null)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            for (int i = 0; i < QUERIES.length; i++) {
+                assertEquals(QUERIES[i], expected.get(i), query(manager, QUERIES[i]));
+            }
+        }
+    }
+
+    private static List<String> query(DBManager manager, String query) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            for (DataAccessor row : scan.consume()) {
+                result.add(Arrays.toString(row.getValues()));
+            }
+        }
+        return result;
+    }
+
+}
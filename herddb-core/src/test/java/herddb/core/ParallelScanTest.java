@@ -0,0 +1,112 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.TableSpace;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Scans over tables with many pages, executed on the parallel scan pool
+ */
+public class ParallelScanTest {
+
+    @Test
+    public void testParallelScan() throws Exception {
+        int testSize = 5000;
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_PARALLEL_SCAN_THREADS, 4);
+        config.set(ServerConfiguration.PROPERTY_PARALLEL_SCAN_MIN_TABLE_SIZE, 100);
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(),
+                null, null, config, NullStatsLogger.INSTANCE)) {
+            manager.setMaxLogicalPageSize(16 * 1024);
+            manager.start();
+            assertNotNull(manager.getParallelScanPool());
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, name string, n1 int)", Collections.emptyList());
+            execute(manager, "CREATE INDEX ixn1 ON t1(n1)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,name,n1) values(?,?,?)", Arrays.asList(i, "name" + i, i % 10));
+            }
+            manager.checkpoint();
+
+            TableManager tableManager = (TableManager) manager.getTableSpaceManager(TableSpace.DEFAULT).getTableManager("t1");
+            assertTrue(tableManager.getStats().getLoadedpages() > 1);
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1", Collections.emptyList())) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            // workers are started lazily
+            assertTrue(manager.getParallelScanPool().getPoolSize() > 0);
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 WHERE name LIKE 'name1%'", Collections.emptyList())) {
+                assertEquals(1111, scan.consume().size());
+            }
+
+            // secondary index scan
+            try (DataScanner scan = scan(manager, "SELECT id FROM t1 WHERE n1=3", Collections.emptyList())) {
+                List<DataAccessor> records = scan.consume();
+                assertEquals(testSize / 10, records.size());
+                for (DataAccessor record : records) {
+                    assertEquals(3, ((Integer) record.get("id")) % 10);
+                }
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT id FROM t1 ORDER BY name DESC LIMIT 3", Collections.emptyList())) {
+                List<DataAccessor> records = scan.consume();
+                assertEquals(3, records.size());
+                assertEquals(999, records.get(0).get("id"));
+                assertEquals(998, records.get(1).get("id"));
+                assertEquals(997, records.get(2).get("id"));
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 WHERE n1=5 LIMIT 7", Collections.emptyList())) {
+                assertEquals(7, scan.consume().size());
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) FROM t1 WHERE id >= 1000", Collections.emptyList())) {
+                assertEquals(4000L, ((Number) scan.consume().get(0).get(0)).longValue());
+            }
+
+            // locks are required, the scan must fall back to the calling thread
+            assertEquals(testSize / 10, executeUpdate(manager, "UPDATE t1 set name='changed' WHERE n1=7", Collections.emptyList()).getUpdateCount());
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 WHERE name='changed'", Collections.emptyList())) {
+                assertEquals(testSize / 10, scan.consume().size());
+            }
+        }
+    }
+}
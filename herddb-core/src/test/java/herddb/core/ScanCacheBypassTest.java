@@ -0,0 +1,136 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Large scans must not evict the working set from the page buffer
+ */
+public class ScanCacheBypassTest {
+
+    private static final long PAGE_SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLargeScanDoesNotUsePageBuffer() throws Exception {
+        int testSize = 5000;
+        Path baseDir = folder.newFolder().toPath();
+        try (DBManager manager = buildDBManager(baseDir)) {
+            execute(manager, "CREATE TABLE hot (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE big (id int primary key, name string)", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO hot(id,name) values(?,?)", Arrays.asList(i, "hot" + i));
+            }
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO big(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(baseDir)) {
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager(TableSpace.DEFAULT);
+            TableManagerStats hot = tableSpaceManager.getTableManager("hot").getStats();
+            TableManagerStats big = tableSpaceManager.getTableManager("big").getStats();
+            int hotLoadedPages = hot.getLoadedpages();
+            int bigLoadedPages = big.getLoadedpages();
+
+            // working set, reads with locks always use the page buffer
+            long tx = beginTransaction(manager, TableSpace.DEFAULT);
+            for (int i = 0; i < 2; i++) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM hot WHERE id=3", Collections.emptyList(), new TransactionContext(tx))) {
+                    assertEquals(1, scan.consume().size());
+                }
+            }
+            commitTransaction(manager, TableSpace.DEFAULT, tx);
+            assertEquals(hotLoadedPages + 1, hot.getLoadedpages());
+            assertEquals(1, hot.getPageCacheMisses());
+            assertEquals(1, hot.getPageCacheHits());
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM big", Collections.emptyList())) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) FROM big WHERE name LIKE 'name1%'", Collections.emptyList())) {
+                assertEquals(1111L, ((Number) scan.consume().get(0).get(0)).longValue());
+            }
+            assertEquals(bigLoadedPages, big.getLoadedpages());
+            assertEquals(0, big.getPageCacheHits());
+            assertTrue(big.getPageCacheMisses() > 10);
+            assertEquals(hotLoadedPages + 1, hot.getLoadedpages());
+
+            // reads with locks still use the page buffer
+            tx = beginTransaction(manager, TableSpace.DEFAULT);
+            try (DataScanner scan = scan(manager, "SELECT * FROM big WHERE id=7", Collections.emptyList(), new TransactionContext(tx))) {
+                assertEquals(1, scan.consume().size());
+            }
+            commitTransaction(manager, TableSpace.DEFAULT, tx);
+            assertEquals(bigLoadedPages + 1, big.getLoadedpages());
+
+            try (DataScanner scan = scan(manager, "SELECT pagecachehits, pagecachemisses FROM systablestats WHERE table_name='hot'", Collections.emptyList())) {
+                List<DataAccessor> records = scan.consume();
+                assertEquals(1, records.size());
+                assertEquals(1L, records.get(0).get("pagecachehits"));
+                assertEquals(1L, records.get(0).get("pagecachemisses"));
+            }
+        }
+    }
+
+    private static DBManager buildDBManager(Path baseDir) throws Exception {
+        ServerConfiguration config = new ServerConfiguration();
+        DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(baseDir.resolve("metadata")),
+                new FileDataStorageManager(baseDir.resolve("data")),
+                new FileCommitLogManager(baseDir.resolve("logs")),
+                baseDir.resolve("tmp"), null, config, NullStatsLogger.INSTANCE);
+        manager.setMaxLogicalPageSize(PAGE_SIZE);
+        // 40 pages, full scans of tables with at least 10 pages do not use the buffer
+        manager.setMaxDataUsedMemory(40 * PAGE_SIZE);
+        manager.start();
+        assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+        return manager;
+    }
+
+}
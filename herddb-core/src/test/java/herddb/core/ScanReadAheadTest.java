@@ -0,0 +1,162 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.TableSpace;
+import herddb.server.ServerConfiguration;
+import herddb.storage.DataStorageManagerException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about read-ahead of pages during scans
+ */
+public class ScanReadAheadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSequentialDetection() throws Exception {
+        List<Long> loaded = new ArrayList<>();
+        Map<Long, DataPage> pages = new HashMap<>();
+        PageReadAhead readAhead = new PageReadAhead(pageId -> {
+            loaded.add(pageId);
+            DataPage page = new DataPage(null, pageId, 0, 0, new HashMap<>(), true);
+            pages.put(pageId, page);
+            return page;
+        }, pageId -> pageId != 6, Runnable::run, 3);
+
+        // first access, nothing to detect
+        assertNull(readAhead.access(1));
+        assertTrue(loaded.isEmpty());
+
+        // sequential
+        assertNull(readAhead.access(2));
+        assertTrue(readAhead.isSequential());
+        assertEquals(Arrays.asList(3L, 4L, 5L), loaded);
+
+        assertSame(pages.get(3L), readAhead.access(3));
+        // page 6 is not to be read
+        assertEquals(Arrays.asList(3L, 4L, 5L), loaded);
+
+        // page 4 skipped by the scan
+        assertSame(pages.get(5L), readAhead.access(5));
+        assertEquals(Arrays.asList(3L, 4L, 5L, 7L, 8L), loaded);
+        assertNull(readAhead.access(6));
+
+        // jump, read-ahead stops
+        assertNull(readAhead.access(100));
+        assertFalse(readAhead.isSequential());
+        assertNull(readAhead.access(7));
+        assertEquals(2, readAhead.getPrefetchedPages());
+        readAhead.close();
+    }
+
+    @Test
+    public void testFailedReadAhead() throws Exception {
+        PageReadAhead readAhead = new PageReadAhead(pageId -> {
+            throw new DataStorageManagerException("error on " + pageId);
+        }, pageId -> true, Runnable::run, 2);
+        assertNull(readAhead.access(1));
+        assertNull(readAhead.access(2));
+        // the scan must read the page by itself
+        assertNull(readAhead.access(3));
+        assertEquals(0, readAhead.getPrefetchedPages());
+        readAhead.close();
+    }
+
+    @Test
+    public void testColdScan() throws Exception {
+        int testSize = 5000;
+        Path baseDir = folder.newFolder().toPath();
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_SCAN_READAHEAD_THREADS, 2);
+        config.set(ServerConfiguration.PROPERTY_SCAN_READAHEAD_PAGES, 4);
+        try (DBManager manager = buildDBManager(baseDir, config)) {
+            manager.setMaxLogicalPageSize(16 * 1024);
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, name string)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO t1(id,name) values(?,?)", Arrays.asList(i, "name" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(baseDir, config)) {
+            manager.setMaxLogicalPageSize(16 * 1024);
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+            assertNotNull(manager.getReadAheadPool());
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1", Collections.emptyList())) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 WHERE name LIKE 'name1%'", Collections.emptyList())) {
+                assertEquals(1111, scan.consume().size());
+            }
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 LIMIT 7", Collections.emptyList())) {
+                assertEquals(7, scan.consume().size());
+            }
+            assertTrue(((ThreadPoolExecutor) manager.getReadAheadPool()).getCompletedTaskCount() > 0);
+
+            // locks are required, no read-ahead
+            assertEquals(testSize, executeUpdate(manager, "UPDATE t1 set name='changed'", Collections.emptyList()).getUpdateCount());
+            try (DataScanner scan = scan(manager, "SELECT * FROM t1 WHERE name='changed'", Collections.emptyList())) {
+                assertEquals(testSize, scan.consume().size());
+            }
+        }
+    }
+
+    private static DBManager buildDBManager(Path baseDir, ServerConfiguration config) {
+        return new DBManager("localhost",
+                new FileMetadataStorageManager(baseDir.resolve("metadata")),
+                new FileDataStorageManager(baseDir.resolve("data")),
+                new FileCommitLogManager(baseDir.resolve("logs")),
+                baseDir.resolve("tmp"), null, config, NullStatsLogger.INSTANCE);
+    }
+
+}
@@ -21,9 +21,11 @@
 package herddb.core;
 
 import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
 import static herddb.core.TestUtils.scan;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeThat;
 import herddb.file.FileCommitLogManager;
@@ -37,6 +39,7 @@ import herddb.model.StatementEvaluationContext;
 import herddb.model.TableSpace;
 import herddb.model.TransactionContext;
 import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
 import herddb.sql.CalcitePlanner;
 import herddb.utils.DataAccessor;
 import herddb.utils.MapUtils;
@@ -44,7 +47,10 @@ import herddb.utils.RawString;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -970,5 +976,116 @@ public class SimpleJoinTest {
             }
         }
     }
-}
 
+    @Test
+    public void testHashJoinSpillToDisk() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        ServerConfiguration config = new ServerConfiguration();
+        // force partitioning of both sides of the join
+        config.set(ServerConfiguration.PROPERTY_JOIN_MAX_MEMORY, 4096);
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath, tmpDir, 10, false, false, false, true, true, NullStatsLogger.INSTANCE),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, NullStatsLogger.INSTANCE)) {
+            assumeThat(manager.getPlanner(), instanceOf(CalcitePlanner.class));
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE t1 (id int primary key, k int, s string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE t2 (k2 int primary key, name string)", Collections.emptyList());
+            int testSize = 2000;
+            int numKeys = 400;
+            int expectedMatches = 0;
+            int expectedMatchesWithCondition = 0;
+            int expectedMatchesHighKeys = 0;
+            Set<Integer> matchedKeys = new HashSet<>();
+            for (int i = 0; i < testSize; i++) {
+                // every 100 records the key is NULL
+                Integer k = i % 100 == 0 ? null : i % numKeys;
+                executeUpdate(manager, "INSERT INTO t1(id,k,s) values(?,?,?)", Arrays.asList(i, k, k == null ? null : "name" + k));
+                if (k != null && k % 4 != 3) {
+                    expectedMatches++;
+                    if (i > k) {
+                        expectedMatchesWithCondition++;
+                    }
+                    if (k >= 300) {
+                        expectedMatchesHighKeys++;
+                    }
+                    matchedKeys.add(k);
+                }
+            }
+            for (int k = 0; k < numKeys; k++) {
+                if (k % 4 != 3) {
+                    executeUpdate(manager, "INSERT INTO t2(k2,name) values(?,?)", Arrays.asList(k, "name" + k));
+                }
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t1.k, t2.k2 FROM t1 JOIN t2 ON t1.k = t2.k2", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(expectedMatches, results.size());
+                for (DataAccessor result : results) {
+                    assertEquals(result.get("k"), result.get("k2"));
+                }
+            }
+
+            // join on strings, values read back from the swap are RawStrings
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t2.k2 FROM t1 JOIN t2 ON t1.s = t2.name", Collections.emptyList())) {
+                assertEquals(expectedMatches, scan.consume().size());
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t2.k2 FROM t1 JOIN t2 ON t1.k = t2.k2 AND t1.id > t2.k2", Collections.emptyList())) {
+                assertEquals(expectedMatchesWithCondition, scan.consume().size());
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t1.k, t2.k2 FROM t1 LEFT JOIN t2 ON t1.k = t2.k2", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(testSize, results.size());
+                int unmatched = 0;
+                for (DataAccessor result : results) {
+                    if (result.get("k2") == null) {
+                        unmatched++;
+                    } else {
+                        assertEquals(result.get("k"), result.get("k2"));
+                    }
+                }
+                assertEquals(testSize - expectedMatches, unmatched);
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t2.k2 FROM t2 LEFT JOIN t1 ON t1.k = t2.k2 WHERE t2.k2 >= 300", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                int expectedUnmatched = 0;
+                for (int k = 300; k < numKeys; k++) {
+                    if (k % 4 != 3 && !matchedKeys.contains(k)) {
+                        expectedUnmatched++;
+                    }
+                }
+                assertTrue(expectedUnmatched > 0);
+                assertEquals(expectedMatchesHighKeys + expectedUnmatched, results.size());
+                int unmatched = 0;
+                for (DataAccessor result : results) {
+                    assertTrue(((Integer) result.get("k2")) >= 300);
+                    if (result.get("id") == null) {
+                        unmatched++;
+                    }
+                }
+                assertEquals(expectedUnmatched, unmatched);
+            }
+
+            // no matches
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t2.k2 FROM t1 RIGHT JOIN t2 ON t1.k = t2.k2 WHERE t2.k2 < 0", Collections.emptyList())) {
+                assertEquals(0, scan.consume().size());
+            }
+            try (DataScanner scan = scan(manager, "SELECT t1.id, t2.k2 FROM t1 RIGHT JOIN t2 ON t1.k = t2.k2 + 1000", Collections.emptyList())) {
+                List<DataAccessor> results = scan.consume();
+                assertEquals(numKeys - numKeys / 4, results.size());
+                for (DataAccessor result : results) {
+                    assertNull(result.get("id"));
+                }
+            }
+        }
+    }
+}
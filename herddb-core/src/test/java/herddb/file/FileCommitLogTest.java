@@ -25,14 +25,24 @@ import static herddb.utils.TestUtils.NOOP;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import herddb.log.CommitLog;
 import herddb.log.CommitLogResult;
 import herddb.log.LogEntry;
 import herddb.log.LogEntryFactory;
+import herddb.log.LogNotAvailableException;
 import herddb.log.LogSequenceNumber;
 import herddb.server.ServerConfiguration;
 import herddb.utils.TestUtils;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -288,6 +298,212 @@ public class FileCommitLogTest {
         }
     }
 
+    @Test
+    public void testPreallocatedSegments() throws Exception {
+        TestStatsProvider testStatsProvider = new TestStatsProvider();
+        TestStatsProvider.TestStatsLogger statsLogger = testStatsProvider.getStatsLogger("test");
+        Path directory = folder.newFolder().toPath();
+        long maxFileSize = 1024 * 2;
+
+        try (FileCommitLogManager manager = new FileCommitLogManager(
+                directory,
+                maxFileSize,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_SYNC_TIME_DEFAULT,
+                true,
+                false, /* O_DIRECT */
+                ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT,
+                statsLogger)) {
+            manager.setPreallocateSegments(true);
+            manager.start();
+
+            LogSequenceNumber lastWritten;
+            try (FileCommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting();
+                for (int i = 0; i < 500; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+                lastWritten = log.getLastSequenceNumber();
+                // every segment has the same size, no matter how many bytes have been written
+                Path txlogDirectory = directory.resolve("tt.txlog");
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(txlogDirectory, "*" + FileCommitLog.LOGFILEEXTENSION)) {
+                    for (Path file : files) {
+                        assertEquals(maxFileSize * 2, Files.size(file));
+                    }
+                }
+
+                // segments of old ledgers are recycled
+                log.dropOldLedgers(lastWritten);
+                TestUtils.waitForCondition(() -> {
+                    return log.getFreeSegments() >= 2;
+                }, TestUtils.NOOP, 100);
+
+                for (int i = 0; i < 500; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+            }
+            // stale entries in recycled segments must not be read
+            AtomicInteger readCount = new AtomicInteger();
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(lastWritten, (LogSequenceNumber t, LogEntry u) -> {
+                    assertTrue(t.after(lastWritten));
+                    readCount.incrementAndGet();
+                }, true);
+            }
+            assertEquals(500, readCount.get());
+        }
+    }
+
+    @Test
+    public void testPreallocatedSegmentBrokenEntry() throws Exception {
+        try (FileCommitLogManager manager = new FileCommitLogManager(folder.newFolder().toPath())) {
+            manager.setPreallocateSegments(true);
+            manager.start();
+            int writeCount = 0;
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting();
+                for (int i = 0; i < 100; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                    writeCount++;
+                }
+                // the rest of the segment is zeroed
+                writeTornEntry((FileCommitLog) log);
+            }
+            for (int attempt = 0; attempt < 2; attempt++) {
+                AtomicInteger readCount = new AtomicInteger();
+                try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                    log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                        readCount.incrementAndGet();
+                    }, true);
+                }
+                assertEquals(writeCount, readCount.get());
+            }
+        }
+    }
+
+    @Test
+    public void testPreallocatedSegmentBrokenEntryNotInLastLedger() throws Exception {
+        try (FileCommitLogManager manager = new FileCommitLogManager(folder.newFolder().toPath())) {
+            manager.setPreallocateSegments(true);
+            manager.start();
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting();
+                for (int i = 0; i < 10; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+                writeTornEntry((FileCommitLog) log);
+            }
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                }, true);
+                log.startWriting();
+                for (int i = 0; i < 10; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+            }
+            // a torn write can only be at the end of the last ledger
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                }, true);
+                fail("recovery must fail");
+            } catch (LogNotAvailableException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testPreallocatedSegmentBrokenEntryFollowedByData() throws Exception {
+        try (FileCommitLogManager manager = new FileCommitLogManager(folder.newFolder().toPath())) {
+            manager.setPreallocateSegments(true);
+            manager.start();
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting();
+                for (int i = 0; i < 10; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+                FileCommitLog fileCommitLog = (FileCommitLog) log;
+                writeTornEntry(fileCommitLog);
+                fileCommitLog.getWriter().out.write(new byte[1024]);
+                fileCommitLog.getWriter().out.write(ENTRY_START);
+                fileCommitLog.getWriter().out.flush();
+            }
+            // the rest of the segment is not zeroed, this is not a torn write
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                }, true);
+                fail("recovery must fail");
+            } catch (LogNotAvailableException expected) {
+            }
+        }
+    }
+
+    /**
+     * Simulates a crash in the middle of a write
+     */
+    private static void writeTornEntry(FileCommitLog fileCommitLog) throws Exception {
+        byte[] dummyEntry = LogEntryFactory.beginTransaction(0).serialize();
+        fileCommitLog.getWriter().out.write(ENTRY_START);
+        fileCommitLog.getWriter().out.writeLong(0);
+        fileCommitLog.getWriter().out.write(dummyEntry, 0, dummyEntry.length / 2);
+        fileCommitLog.getWriter().out.flush();
+    }
+
+    @Test
+    public void testAdaptiveGroupCommit() throws Exception {
+        TestStatsProvider testStatsProvider = new TestStatsProvider();
+        TestStatsProvider.TestStatsLogger statsLogger = testStatsProvider.getStatsLogger("test");
+
+        try (FileCommitLogManager manager = new FileCommitLogManager(
+                folder.newFolder().toPath(),
+                ServerConfiguration.PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_SYNC_TIME_DEFAULT,
+                true,
+                false, /* O_DIRECT */
+                ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT,
+                statsLogger)) {
+            manager.setAdaptiveGroupCommit(true);
+            manager.start();
+
+            int numThreads = 8;
+            int writesPerThread = 500;
+            try (FileCommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting();
+                // light load, one write at a time
+                for (int i = 0; i < 10; i++) {
+                    log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                }
+                // heavy load, concurrent writers
+                ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int t = 0; t < numThreads; t++) {
+                        futures.add(threadPool.submit(() -> {
+                            for (int i = 0; i < writesPerThread; i++) {
+                                log.log(LogEntryFactory.beginTransaction(0), true).getLogSequenceNumber();
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> f : futures) {
+                        f.get();
+                    }
+                } finally {
+                    threadPool.shutdown();
+                }
+            }
+            AtomicInteger readCount = new AtomicInteger();
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                    readCount.incrementAndGet();
+                }, true);
+            }
+            assertEquals(10 + numThreads * writesPerThread, readCount.get());
+            assertTrue(((TestStatsProvider.TestOpStatsLogger) statsLogger.scope("aa").getOpStatsLogger("fsync")).getSuccessCount() > 0);
+        }
+    }
 
     @Test
     public void testLogMultiFiles_O_DIRECT() throws Exception {
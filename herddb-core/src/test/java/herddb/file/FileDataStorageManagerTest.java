@@ -22,10 +22,15 @@ package herddb.file;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import herddb.model.Record;
 import herddb.utils.Bytes;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -63,4 +68,64 @@ public class FileDataStorageManagerTest {
         }
     }
 
+    @Test
+    public void testCompressedPages() throws Exception {
+        try (FileDataStorageManager man = new FileDataStorageManager(folder.newFolder().toPath())) {
+            man.setPageCodec("compressed", PageCodec.LZ4);
+            List<Record> page = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                page.add(new Record(Bytes.from_string("key" + i), Bytes.from_string("a rather repetitive value " + i)));
+            }
+            for (String tableSpace : Arrays.asList("plain", "compressed")) {
+                man.initTable(tableSpace, "table1");
+                man.writePage(tableSpace, "table1", 1L, page);
+                assertEquals(page, man.readPage(tableSpace, "table1", 1L));
+
+                man.initIndex(tableSpace, "index1");
+                man.writeIndexPage(tableSpace, "index1", 1L, (out) -> {
+                    for (Record record : page) {
+                        out.writeArray(record.value);
+                    }
+                });
+                List<Bytes> values = man.readIndexPage(tableSpace, "index1", 1L, in -> {
+                    List<Bytes> result = new ArrayList<>();
+                    for (int i = 0; i < page.size(); i++) {
+                        result.add(in.readBytes());
+                    }
+                    return result;
+                });
+                for (int i = 0; i < page.size(); i++) {
+                    assertEquals(page.get(i).value, values.get(i));
+                }
+            }
+            Path plainFile = FileDataStorageManager.getPageFile(man.getTableDirectory("plain", "table1"), 1L);
+            Path compressedFile = FileDataStorageManager.getPageFile(man.getTableDirectory("compressed", "table1"), 1L);
+            assertTrue(Files.size(compressedFile) < Files.size(plainFile) / 2);
+            assertEquals(page, FileDataStorageManager.rawReadDataPage(compressedFile));
+            Path plainIndexFile = FileDataStorageManager.getPageFile(man.getIndexDirectory("plain", "index1"), 1L);
+            Path compressedIndexFile = FileDataStorageManager.getPageFile(man.getIndexDirectory("compressed", "index1"), 1L);
+            assertTrue(Files.size(compressedIndexFile) < Files.size(plainIndexFile) / 2);
+
+            // compressed pages can be read after compression has been disabled
+            man.setPageCodec("compressed", PageCodec.NONE);
+            assertEquals(page, man.readPage("compressed", "table1", 1L));
+        }
+    }
+
+    @Test
+    public void testIncompressiblePage() throws Exception {
+        try (FileDataStorageManager man = new FileDataStorageManager(folder.newFolder().toPath())) {
+            man.setPageCodec("test1", PageCodec.LZ4);
+            byte[] value = new byte[4096];
+            new Random(7).nextBytes(value);
+            List<Record> page = Arrays.asList(new Record(Bytes.from_int(1), Bytes.from_array(value)));
+            man.initTable("test1", "table1");
+            man.writePage("test1", "table1", 1L, page);
+            assertEquals(page, man.readPage("test1", "table1", 1L));
+            // stored uncompressed
+            byte[] data = Files.readAllBytes(FileDataStorageManager.getPageFile(man.getTableDirectory("test1", "table1"), 1L));
+            assertEquals(0, data[1]);
+        }
+    }
+
 }
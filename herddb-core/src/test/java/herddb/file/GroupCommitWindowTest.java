@@ -0,0 +1,88 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import static org.junit.Assert.assertEquals;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Tests about the sizing of the group commit window
+ */
+public class GroupCommitWindowTest {
+
+    private static final long MAX_WINDOW = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    public void noWaitWithoutFsyncStats() {
+        GroupCommitWindow window = new GroupCommitWindow(MAX_WINDOW);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            window.entryArrived(now);
+            now += 1000;
+        }
+        assertEquals(0, window.getWindowNanos());
+    }
+
+    @Test
+    public void noWaitUnderLightLoad() {
+        GroupCommitWindow window = new GroupCommitWindow(MAX_WINDOW);
+        long fsync = TimeUnit.MILLISECONDS.toNanos(1);
+        window.fsyncCompleted(fsync);
+        long now = 0;
+        // one entry every 20 ms
+        for (int i = 0; i < 100; i++) {
+            window.entryArrived(now);
+            now += TimeUnit.MILLISECONDS.toNanos(20);
+        }
+        assertEquals(0, window.getWindowNanos());
+    }
+
+    @Test
+    public void waitForFsyncDurationUnderHeavyLoad() {
+        GroupCommitWindow window = new GroupCommitWindow(MAX_WINDOW);
+        long fsync = TimeUnit.MILLISECONDS.toNanos(2);
+        for (int i = 0; i < 100; i++) {
+            window.fsyncCompleted(fsync);
+        }
+        long now = 0;
+        // one entry every 20 us
+        for (int i = 0; i < 1000; i++) {
+            window.entryArrived(now);
+            now += TimeUnit.MICROSECONDS.toNanos(20);
+        }
+        assertEquals(fsync, window.getWindowNanos());
+
+        // slow disk, the window is bounded
+        for (int i = 0; i < 100; i++) {
+            window.fsyncCompleted(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(MAX_WINDOW, window.getWindowNanos());
+
+        // load goes away, one entry every 100 ms
+        for (int i = 0; i < 100; i++) {
+            window.entryArrived(now);
+            now += TimeUnit.MILLISECONDS.toNanos(100);
+        }
+        assertEquals(0, window.getWindowNanos());
+    }
+
+}
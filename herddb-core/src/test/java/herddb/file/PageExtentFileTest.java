@@ -0,0 +1,163 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about the single file page store
+ */
+public class PageExtentFileTest {
+
+    private static final long EXTENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] page(long pageId, int size) {
+        byte[] data = new byte[size];
+        new Random(pageId).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void writeReadReleaseAndReopen() throws Exception {
+        Path file = folder.newFolder().toPath().resolve(PageExtentFile.FILENAME);
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            for (long pageId = 1; pageId <= 100; pageId++) {
+                byte[] data = page(pageId, (int) pageId * 100);
+                pages.write(pageId, data, data.length);
+            }
+            assertEquals(100, pages.getNumPages());
+            // the file grows by extents
+            assertEquals(0, Files.size(file) % EXTENT_SIZE);
+            for (long pageId = 1; pageId <= 100; pageId++) {
+                assertArrayEquals(page(pageId, (int) pageId * 100), pages.read(pageId));
+            }
+
+            long sizeBeforeRelease = pages.getFileSize();
+            assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L),
+                    sorted(pages.release(pageId -> pageId <= 10)));
+            try {
+                pages.read(1);
+                fail();
+            } catch (NoSuchFileException expected) {
+            }
+            // released blocks are reused
+            for (long pageId = 101; pageId <= 110; pageId++) {
+                byte[] data = page(pageId, 100);
+                pages.write(pageId, data, data.length);
+            }
+            assertEquals(sizeBeforeRelease, pages.getFileSize());
+        }
+
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            assertEquals(100, pages.getNumPages());
+            assertFalse(pages.contains(1));
+            for (long pageId = 11; pageId <= 100; pageId++) {
+                assertArrayEquals(page(pageId, (int) pageId * 100), pages.read(pageId));
+            }
+            for (long pageId = 101; pageId <= 110; pageId++) {
+                assertArrayEquals(page(pageId, 100), pages.read(pageId));
+            }
+            long used = 0;
+            for (long pageId = 11; pageId <= 110; pageId++) {
+                used += pages.read(pageId).length;
+            }
+            assertTrue(pages.getFreeBytes() <= pages.getFileSize() - used);
+        }
+    }
+
+    @Test
+    public void rewriteSamePage() throws Exception {
+        Path file = folder.newFolder().toPath().resolve(PageExtentFile.FILENAME);
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            byte[] first = page(1, 10000);
+            pages.write(1, first, first.length);
+            byte[] second = page(2, 20000);
+            pages.write(1, second, second.length);
+            assertArrayEquals(second, pages.read(1));
+            assertEquals(1, pages.getNumPages());
+        }
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            assertArrayEquals(page(2, 20000), pages.read(1));
+            assertEquals(Collections.singletonList(1L), pages.getPageIds(pageId -> true));
+        }
+    }
+
+    @Test
+    public void bigPage() throws Exception {
+        Path file = folder.newFolder().toPath().resolve(PageExtentFile.FILENAME);
+        byte[] data = page(7, (int) EXTENT_SIZE * 3);
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            pages.write(7, data, data.length);
+            assertArrayEquals(data, pages.read(7));
+        }
+        try (PageExtentFile pages = PageExtentFile.open(file, EXTENT_SIZE, false)) {
+            assertArrayEquals(data, pages.read(7));
+        }
+    }
+
+    @Test
+    public void extentsGrowGeometrically() throws Exception {
+        Path file = folder.newFolder().toPath().resolve(PageExtentFile.FILENAME);
+        long initial = PageExtentFile.INITIAL_EXTENT_SIZE;
+        try (PageExtentFile pages = PageExtentFile.open(file, 4 * initial, false)) {
+            List<Long> sizes = new ArrayList<>();
+            long pageId = 1;
+            while (pages.getFileSize() < 16 * initial) {
+                byte[] data = page(pageId, 100000);
+                pages.write(pageId++, data, data.length);
+                if (sizes.isEmpty() || sizes.get(sizes.size() - 1) != pages.getFileSize()) {
+                    sizes.add(pages.getFileSize());
+                }
+            }
+            // doubles up to the maximum extent size
+            assertEquals(Arrays.asList(initial, 2 * initial, 4 * initial, 8 * initial, 12 * initial, 16 * initial), sizes);
+            assertEquals(pages.getFileSize(), Files.size(file));
+        }
+        try (PageExtentFile pages = PageExtentFile.open(file, 4 * initial, false)) {
+            assertEquals(16 * initial, pages.getFileSize());
+            assertArrayEquals(page(1, 100000), pages.read(1));
+        }
+    }
+
+    private static <T extends Comparable<T>> java.util.List<T> sorted(java.util.List<T> list) {
+        Collections.sort(list);
+        return list;
+    }
+
+}
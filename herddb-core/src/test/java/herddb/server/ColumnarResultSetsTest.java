@@ -0,0 +1,128 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import herddb.client.ClientConfiguration;
+import herddb.client.HDBClient;
+import herddb.client.HDBConnection;
+import herddb.model.TableSpace;
+import herddb.utils.RawString;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Result sets column by column, negotiated between client and server
+ */
+public class ColumnarResultSetsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testColumnar() throws Exception {
+        test(true, true);
+    }
+
+    @Test
+    public void testClientWithoutColumnarSupport() throws Exception {
+        test(false, true);
+    }
+
+    @Test
+    public void testServerWithoutColumnarSupport() throws Exception {
+        test(true, false);
+    }
+
+    private void test(boolean clientColumnar, boolean serverColumnar) throws Exception {
+        ServerConfiguration serverConfiguration = new ServerConfiguration(folder.newFolder().toPath());
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_COLUMNAR_RESULTSETS, serverColumnar);
+        try (Server server = new Server(serverConfiguration)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_COLUMNAR_RESULTSETS, clientColumnar);
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, n1 long, d1 double, t1 timestamp, s1 string, b1 boolean)", 0, false, true,
+                        Collections.emptyList());
+                int size = 250;
+                for (int i = 0; i < size; i++) {
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,n1,d1,t1,s1,b1) values(?,?,?,?,?,?)", 0, false, true,
+                            Arrays.asList(i, i % 3 == 0 ? null : (long) i, i / 4.0,
+                                    new Timestamp(1000L * i), i % 5 == 0 ? null : "country" + (i % 4), i % 2 == 0));
+                }
+
+                // many chunks
+                List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable ORDER BY id", true, Collections.emptyList(), 0, 0, 17).consume();
+                assertEquals(size, records.size());
+                for (int i = 0; i < size; i++) {
+                    Map<String, Object> record = records.get(i);
+                    assertEquals(i, record.get("id"));
+                    assertEquals(i % 3 == 0 ? null : (long) i, record.get("n1"));
+                    assertEquals(i / 4.0, record.get("d1"));
+                    assertEquals(new Timestamp(1000L * i), record.get("t1"));
+                    assertEquals(i % 5 == 0 ? null : RawString.of("country" + (i % 4)), record.get("s1"));
+                    assertEquals(i % 2 == 0, record.get("b1"));
+                }
+
+                // only nulls
+                records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT id, s1 FROM mytable WHERE id=0 or id=5", true, Collections.emptyList(), 0, 0, 10).consume();
+                assertEquals(2, records.size());
+                assertNull(records.get(0).get("s1"));
+                assertNull(records.get(1).get("s1"));
+
+                // string primary key, values are recycled by the scanner
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE words (k string primary key, n int)", 0, false, true, Collections.emptyList());
+                for (int i = 0; i < 100; i++) {
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO words (k,n) values(?,?)", 0, false, true, Arrays.asList("word" + i, i));
+                }
+                records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM words", true, Collections.emptyList(), 0, 0, 30).consume();
+                assertEquals(100, records.size());
+                for (Map<String, Object> record : records) {
+                    assertEquals(RawString.of("word" + record.get("n")), record.get("k"));
+                }
+
+                // aggregates
+                records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT s1, count(*) as cc FROM mytable GROUP BY s1 ORDER BY s1", true, Collections.emptyList(), 0, 0, 10).consume();
+                assertEquals(5, records.size());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.client.ClientConfiguration;
+import herddb.client.HDBClient;
+import herddb.client.HDBConnection;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.TableSpace;
+import herddb.utils.DataAccessor;
+import herddb.utils.MapDataAccessor;
+import herddb.utils.TestUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Adaptive fetch size and prefetch of the next chunk of data of scanners
+ */
+public class ServerSideScannerPeerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class CountingDataScanner extends DataScanner {
+
+        private final int size;
+        private int current;
+
+        CountingDataScanner(int size) {
+            super(null, new String[]{"n"}, new Column[]{Column.column("n", ColumnTypes.INTEGER)});
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() throws DataScannerException {
+            return current < size;
+        }
+
+        @Override
+        public DataAccessor next() throws DataScannerException {
+            return new MapDataAccessor(Collections.singletonMap("n", current++), getFieldNames());
+        }
+    }
+
+    @Test
+    public void testFetchSizeGrowsWithFastClient() throws Exception {
+        try (ServerSideScannerPeer peer = new ServerSideScannerPeer(new CountingDataScanner(1000), true, 80, 1024 * 1024)) {
+            int expected = 0;
+            for (int size : new int[]{10, 20, 40, 80, 80}) {
+                List<DataAccessor> chunk = peer.nextChunk(10);
+                assertEquals(size, chunk.size());
+                for (DataAccessor record : chunk) {
+                    assertEquals(expected++, record.get("n"));
+                }
+                peer.chunkSent(chunk.size(), chunk.size() * 10);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkBytesLimit() throws Exception {
+        try (ServerSideScannerPeer peer = new ServerSideScannerPeer(new CountingDataScanner(1000), true, 1000, 250)) {
+            List<DataAccessor> chunk = peer.nextChunk(10);
+            assertEquals(10, chunk.size());
+            peer.chunkSent(chunk.size(), chunk.size() * 10);
+            // 25 records of 10 bytes fit into the chunk
+            assertEquals(20, peer.nextChunk(10).size());
+            peer.chunkSent(20, 200);
+            assertEquals(25, peer.nextChunk(10).size());
+        }
+    }
+
+    @Test
+    public void testFixedFetchSize() throws Exception {
+        try (ServerSideScannerPeer peer = new ServerSideScannerPeer(new CountingDataScanner(35))) {
+            for (int size : new int[]{10, 10, 10, 5}) {
+                List<DataAccessor> chunk = peer.nextChunk(10);
+                assertEquals(size, chunk.size());
+                peer.chunkSent(chunk.size(), chunk.size() * 10);
+            }
+            assertTrue(peer.isFinished());
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSideScannerPeer peer = new ServerSideScannerPeer(new CountingDataScanner(95), true, 1000, 1024 * 1024)) {
+            int expected = 0;
+            while (true) {
+                List<DataAccessor> chunk = peer.nextChunk(10);
+                for (DataAccessor record : chunk) {
+                    assertEquals(expected++, record.get("n"));
+                }
+                if (peer.isFinished()) {
+                    break;
+                }
+                peer.chunkSent(chunk.size(), chunk.size() * 10);
+                peer.prefetch(executor, 10);
+            }
+            assertEquals(95, expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseWithPendingPrefetch() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountingDataScanner scanner = new CountingDataScanner(1000);
+            ServerSideScannerPeer peer = new ServerSideScannerPeer(scanner, true, 1000, 1024 * 1024);
+            assertEquals(10, peer.nextChunk(10).size());
+            peer.prefetch(executor, 10);
+            peer.close();
+            assertTrue(scanner.isClosed());
+            assertTrue(peer.isFinished());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchWhilePrefetchIsStarting() throws Exception {
+        ServerConfiguration serverConfiguration = new ServerConfiguration(folder.newFolder().toPath());
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE, false);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS, 4);
+        try (Server server = new Server(serverConfiguration)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true,
+                        Collections.emptyList());
+                int size = 100;
+                for (int i = 0; i < size; i++) {
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,s1) values(?,?)", 0, false, true,
+                            Arrays.asList(i, "value" + i));
+                }
+
+                // with one record per chunk the client asks for the next chunk, which is
+                // handled by another thread, while the server is starting the prefetch
+                ExecutorService clients = Executors.newFixedThreadPool(4);
+                try {
+                    List<Future<?>> scans = new ArrayList<>();
+                    for (int i = 0; i < 20; i++) {
+                        scans.add(clients.submit(() -> {
+                            List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT,
+                                    "SELECT * FROM mytable ORDER BY id", true, Collections.emptyList(), 0, 0, 1).consume();
+                            assertEquals(size, records.size());
+                            for (int j = 0; j < size; j++) {
+                                assertEquals(j, records.get(j).get("id"));
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> scan : scans) {
+                        scan.get(1, TimeUnit.MINUTES);
+                    }
+                } finally {
+                    clients.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveScan() throws Exception {
+        test(true, 4);
+    }
+
+    @Test
+    public void testAdaptiveScanWithoutPrefetch() throws Exception {
+        test(true, 0);
+    }
+
+    @Test
+    public void testFixedFetchSizeScanWithPrefetch() throws Exception {
+        test(false, 4);
+    }
+
+    private void test(boolean adaptive, int prefetchThreads) throws Exception {
+        ServerConfiguration serverConfiguration = new ServerConfiguration(folder.newFolder().toPath());
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_SCANNER_ADAPTIVE_FETCHSIZE, adaptive);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_SCANNER_PREFETCH_THREADS, prefetchThreads);
+        try (Server server = new Server(serverConfiguration)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true,
+                        Collections.emptyList());
+                int size = 1000;
+                for (int i = 0; i < size; i++) {
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,s1) values(?,?)", 0, false, true,
+                            Arrays.asList(i, "value" + i));
+                }
+
+                List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable ORDER BY id", true, Collections.emptyList(), 0, 0, 7).consume();
+                assertEquals(size, records.size());
+                for (int i = 0; i < size; i++) {
+                    assertEquals(i, records.get(i).get("id"));
+                }
+
+                // inside a transaction, no prefetch
+                long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                records = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable", true, Collections.emptyList(), tx, 0, 7).consume();
+                assertEquals(size, records.size());
+                connection.commitTransaction(TableSpace.DEFAULT, tx);
+
+                // scanner closed by the client before the end of data
+                connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM mytable", true, Collections.emptyList(), 0, 0, 7).close();
+                TestUtils.waitForCondition(() -> {
+                    for (ServerSideConnectionPeer peer : server.getConnections().values()) {
+                        if (!peer.getScanners().isEmpty()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }, TestUtils.NOOP, 100, "there is at least one scanner");
+            }
+        }
+    }
+
+}
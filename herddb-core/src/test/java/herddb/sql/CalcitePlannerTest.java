@@ -21,12 +21,15 @@
 package herddb.sql;
 
 import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
 import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
 import static herddb.core.TestUtils.scan;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -56,7 +59,9 @@ import herddb.model.commands.SQLPlannedOperationStatement;
 import herddb.model.commands.ScanStatement;
 import herddb.model.planner.BindableTableScanOp;
 import herddb.model.planner.DeleteOp;
+import herddb.model.planner.IndexLookupJoinOp;
 import herddb.model.planner.InsertOp;
+import herddb.model.planner.JoinOp;
 import herddb.model.planner.LimitedSortedBindableTableScanOp;
 import herddb.model.planner.PlannerOp;
 import herddb.model.planner.ProjectOp.IdentityProjection;
@@ -453,6 +458,75 @@ public class CalcitePlannerTest {
         }
     }
 
+    @Test
+    public void indexLookupJoinPlansTests() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            assumeThat(manager.getPlanner(), instanceOf(CalcitePlanner.class));
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+
+            execute(manager, "CREATE TABLE customers (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE TABLE orders (id int primary key, customer_id int, amount int)", Collections.emptyList());
+            execute(manager, "CREATE HASH INDEX ix_customer ON orders(customer_id)", Collections.emptyList());
+            for (int i = 0; i < 1000; i++) {
+                executeUpdate(manager, "INSERT INTO customers(id,name) values(?,?)", Arrays.asList(i, "c" + i));
+                // every 50 orders the customer is NULL, only the first 500 customers have orders
+                executeUpdate(manager, "INSERT INTO orders(id,customer_id,amount) values(?,?,?)", Arrays.asList(i, i % 50 == 0 ? null : i % 500, i));
+            }
+
+            // lookup by primary key
+            String query = "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id WHERE o.id = 7";
+            assertNotNull(plan(manager, query).unwrap(IndexLookupJoinOp.class));
+            List<DataAccessor> tuples = scan(manager, query, Collections.emptyList()).consumeAndClose();
+            assertEquals(1, tuples.size());
+            assertEquals(7, tuples.get(0).get("id"));
+            assertEquals(RawString.of("c7"), tuples.get(0).get("name"));
+
+            // lookup using the secondary index, outer join
+            query = "SELECT c.id, o.id as oid FROM customers c LEFT JOIN orders o ON o.customer_id = c.id WHERE c.name = ?";
+            assertNotNull(plan(manager, query).unwrap(IndexLookupJoinOp.class));
+            tuples = scan(manager, query, Arrays.asList("c7")).consumeAndClose();
+            assertEquals(2, tuples.size());
+            assertTrue(tuples.stream().anyMatch(t -> t.get(1).equals(7)));
+            assertTrue(tuples.stream().anyMatch(t -> t.get(1).equals(507)));
+            tuples = scan(manager, query, Arrays.asList("c600")).consumeAndClose();
+            assertEquals(1, tuples.size());
+            assertEquals(600, tuples.get(0).get("id"));
+            assertNull(tuples.get(0).get(1));
+
+            // NULL keys never match
+            query = "SELECT o.id, c.id as cid FROM orders o LEFT JOIN customers c ON o.customer_id = c.id WHERE o.id = 50";
+            assertNotNull(plan(manager, query).unwrap(IndexLookupJoinOp.class));
+            tuples = scan(manager, query, Collections.emptyList()).consumeAndClose();
+            assertEquals(1, tuples.size());
+            assertEquals(50, tuples.get(0).get("id"));
+            assertNull(tuples.get(0).get(1));
+
+            // additional conditions
+            query = "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id AND c.id >= o.amount WHERE o.id = 7";
+            assertEquals(1, scan(manager, query, Collections.emptyList()).consumeAndClose().size());
+            query = "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id AND o.amount > 10 WHERE o.id = 7";
+            assertEquals(0, scan(manager, query, Collections.emptyList()).consumeAndClose().size());
+
+            // the outer side is too big
+            assertNull(plan(manager, "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id").unwrap(IndexLookupJoinOp.class));
+            assertNotNull(plan(manager, "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id").unwrap(JoinOp.class));
+
+            // lookups see the changes of the transaction
+            long tx = beginTransaction(manager, TableSpace.DEFAULT);
+            executeUpdate(manager, "UPDATE customers SET name='changed' WHERE id=7", Collections.emptyList(), new TransactionContext(tx));
+            executeUpdate(manager, "INSERT INTO orders(id,customer_id,amount) values(?,?,?)", Arrays.asList(2000, 7, 1), new TransactionContext(tx));
+            tuples = scan(manager, "SELECT o.id, c.name FROM orders o JOIN customers c ON o.customer_id = c.id WHERE o.id = 7",
+                    Collections.emptyList(), new TransactionContext(tx)).consumeAndClose();
+            assertEquals(1, tuples.size());
+            assertEquals(RawString.of("changed"), tuples.get(0).get("name"));
+            tuples = scan(manager, "SELECT c.id, o.id as oid FROM customers c LEFT JOIN orders o ON o.customer_id = c.id WHERE c.name = ?",
+                    Arrays.asList("changed"), new TransactionContext(tx)).consumeAndClose();
+            assertEquals(3, tuples.size());
+            commitTransaction(manager, TableSpace.DEFAULT, tx);
+        }
+    }
+
     @Test
     public void explainPlanTest() throws Exception {
         String nodeId = "localhost";
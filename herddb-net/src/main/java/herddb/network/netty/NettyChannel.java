@@ -206,7 +206,11 @@ public class NettyChannel extends Channel {
             public void messageSent(Throwable error) {
                 if (error != null) {
                     LOGGER.log(Level.SEVERE, this + ": error while sending reply message to " + message, error);
-                    callback.responseReceived(null, new Exception(this + ": error while sending reply message to " + message, error));
+                    // the callback must not be notified again on close or on timeout
+                    pendingReplyMessagesDeadline.remove(id);
+                    if (callbacks.remove(id) != null) {
+                        callback.responseReceived(null, new Exception(this + ": error while sending reply message to " + message, error));
+                    }
                 }
             }
         });
@@ -0,0 +1,139 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * {@link PageReplacementPolicy} split in independent shards.
+ * <p>
+ * Every page is always handled by the same shard, choosen by an hash of its
+ * owner and page id; each shard is a complete policy with its own lock, so
+ * concurrent page hits and loads of different pages rarely contend on the same
+ * lock. The price is that the victim is choosen within the shard of the new
+ * page and not among all the pages.
+ */
+public class ShardedPageReplacementPolicy implements PageReplacementPolicy {
+
+    private final PageReplacementPolicy[] shards;
+    private final int capacity;
+
+    /**
+     * @param capacity total number of pages
+     * @param shards   number of shards, lowered to the capacity if greater
+     * @param factory  builds a shard, given its capacity
+     */
+    public ShardedPageReplacementPolicy(int capacity, int shards, IntFunction<PageReplacementPolicy> factory) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Invalid number of shards " + shards);
+        }
+        int count = Math.max(1, Math.min(shards, capacity));
+        this.shards = new PageReplacementPolicy[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            /* Spread the remainder on the first shards */
+            int shardCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            this.shards[i] = factory.apply(shardCapacity);
+            total += this.shards[i].capacity();
+        }
+        this.capacity = total;
+    }
+
+    private int shardIndex(Page<?> page) {
+        int h = 31 * System.identityHashCode(page.owner) + Long.hashCode(page.pageId);
+        h ^= h >>> 16;
+        return Math.floorMod(h, shards.length);
+    }
+
+    private PageReplacementPolicy shard(Page<?> page) {
+        return shards[shardIndex(page)];
+    }
+
+    public int getShards() {
+        return shards.length;
+    }
+
+    @Override
+    public Page.Metadata add(Page<?> page) {
+        return shard(page).add(page);
+    }
+
+    @Override
+    public boolean remove(Page<?> page) {
+        return shard(page).remove(page);
+    }
+
+    @Override
+    public <P extends Page<?>> void remove(Collection<P> pages) {
+        if (shards.length == 1) {
+            shards[0].remove(pages);
+            return;
+        }
+        /* Group by shard to take each shard lock only once */
+        List<List<P>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (P page : pages) {
+            byShard.get(shardIndex(page)).add(page);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (!byShard.get(i).isEmpty()) {
+                shards[i].remove(byShard.get(i));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (PageReplacementPolicy shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void clear() {
+        for (PageReplacementPolicy shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void pageHit(Page<?> page) {
+        shard(page).pageHit(page);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedPageReplacementPolicy{" + "shards=" + shards.length + ", capacity=" + capacity + '}';
+    }
+
+}
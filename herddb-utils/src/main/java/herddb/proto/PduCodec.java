@@ -35,6 +35,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -51,6 +53,12 @@ public abstract class PduCodec {
 
     public static final byte VERSION_3 = 3;
 
+    /**
+     * Features supported by the client, sent during the handshake
+     */
+    public static final int CLIENT_FEATURE_COLUMNAR_RESULTSETS = 1;
+    public static final int CLIENT_FEATURE_READ_FROM_FOLLOWERS = 2;
+
     public static Pdu decodePdu(ByteBuf in) throws IOException {
         byte version = in.getByte(0);
         if (version == VERSION_3) {
@@ -264,6 +272,23 @@ public abstract class PduCodec {
     public abstract static class SaslTokenMessageRequest {
 
         public static ByteBuf write(long messageId, String saslMech, byte[] firstToken) {
+            return write(messageId, saslMech, firstToken, 0);
+        }
+
+        /**
+         * @param clientFeatures features supported by the client, servers which
+         *                       do not know this field just ignore it
+         */
+        public static ByteBuf write(long messageId, String saslMech, byte[] firstToken, int clientFeatures) {
+            return write(messageId, saslMech, firstToken, clientFeatures, 0);
+        }
+
+        /**
+         * @param followerReadsMaxStaleness max staleness accepted for reads
+         *                                  served by followers, written only
+         *                                  with {@link #CLIENT_FEATURE_READ_FROM_FOLLOWERS}
+         */
+        public static ByteBuf write(long messageId, String saslMech, byte[] firstToken, int clientFeatures, long followerReadsMaxStaleness) {
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
                             VERSION_SIZE
@@ -277,9 +302,53 @@ public abstract class PduCodec {
             byteBuf.writeLong(messageId);
             ByteBufUtils.writeString(byteBuf, saslMech);
             ByteBufUtils.writeArray(byteBuf, firstToken);
+            if (clientFeatures != 0) {
+                byteBuf.writeInt(clientFeatures);
+                if ((clientFeatures & CLIENT_FEATURE_READ_FROM_FOLLOWERS) != 0) {
+                    byteBuf.writeLong(followerReadsMaxStaleness);
+                }
+            }
             return byteBuf;
         }
 
+        /**
+         * @return features supported by the client, 0 for old clients
+         */
+        public static int readClientFeatures(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(0);
+            buffer.skipBytes(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE);
+            ByteBufUtils.skipArray(buffer);
+            ByteBufUtils.skipArray(buffer);
+            if (buffer.readableBytes() >= ONE_INT) {
+                return buffer.readInt();
+            }
+            return 0;
+        }
+
+        /**
+         * @return max staleness accepted by the client for reads served by
+         * followers, 0 means no bound
+         */
+        public static long readFollowerReadsMaxStaleness(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(0);
+            buffer.skipBytes(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE);
+            ByteBufUtils.skipArray(buffer);
+            ByteBufUtils.skipArray(buffer);
+            if (buffer.readableBytes() >= ONE_INT + ONE_LONG) {
+                buffer.skipBytes(ONE_INT);
+                return buffer.readLong();
+            }
+            return 0;
+        }
+
         public static String readMech(Pdu pdu) {
             ByteBuf buffer = pdu.buffer;
             buffer.readerIndex(0);
@@ -828,6 +897,295 @@ public abstract class PduCodec {
         }
     }
 
+    /**
+     * Result set chunk encoded column by column, sent only to clients which
+     * declared {@link #CLIENT_FEATURE_COLUMNAR_RESULTSETS}. The header is the
+     * same of {@link ResultSetChunk}.
+     * <p>
+     * Each column starts with the runs of non null and null values, then the
+     * non null values follow: numbers and timestamps as fixed width arrays,
+     * strings as a dictionary plus the index of each value when the chunk
+     * contains repeated strings, other types value by value.
+     */
+    public static class ColumnarResultSetChunk {
+
+        private static final byte COLUMN_NULL = 0;
+        private static final byte COLUMN_LONG = 1;
+        private static final byte COLUMN_INTEGER = 2;
+        private static final byte COLUMN_DOUBLE = 3;
+        private static final byte COLUMN_TIMESTAMP = 4;
+        private static final byte COLUMN_STRING = 5;
+        private static final byte COLUMN_STRING_DICTIONARY = 6;
+        private static final byte COLUMN_OBJECT = 7;
+
+        public static ByteBuf write(long messageId, TuplesList tuplesList, boolean last, long tx) {
+            int numColumns = tuplesList.columnNames.length;
+            int numRecords = tuplesList.tuples.size();
+            Object[][] columns = new Object[numColumns][numRecords];
+            int row = 0;
+            for (DataAccessor da : tuplesList.tuples) {
+                final int currentRow = row++;
+                IntHolder currentColumn = new IntHolder();
+                da.forEach((String key, Object value) -> {
+                    // nulls are not returned for some special accessors, like DataAccessorForFullRecord
+                    while (!key.equals(tuplesList.columnNames[currentColumn.value])) {
+                        currentColumn.value++;
+                    }
+                    if (value instanceof RawString) {
+                        // the accessor may recycle the RawString as soon as we return
+                        RawString string = (RawString) value;
+                        value = RawString.newUnpooledRawString(string.getData(), string.getOffset(), string.getLength());
+                    }
+                    columns[currentColumn.value][currentRow] = value;
+                    currentColumn.value++;
+                });
+            }
+
+            ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
+                    .directBuffer(
+                            VERSION_SIZE
+                                    + FLAGS_SIZE
+                                    + TYPE_SIZE
+                                    + MSGID_SIZE
+                                    + ONE_LONG
+                                    + ONE_BYTE
+                                    + numRecords * numColumns * 16 + numColumns * 64);
+            byteBuf.writeByte(VERSION_3);
+            byteBuf.writeByte(Pdu.FLAGS_ISRESPONSE);
+            byteBuf.writeByte(Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR);
+            byteBuf.writeLong(messageId);
+            byteBuf.writeLong(tx);
+            byteBuf.writeByte(last ? 1 : 0);
+
+            byteBuf.writeInt(numColumns);
+            for (String columnName : tuplesList.columnNames) {
+                ByteBufUtils.writeString(byteBuf, columnName);
+            }
+            byteBuf.writeInt(numRecords);
+            for (Object[] column : columns) {
+                writeColumn(byteBuf, column);
+            }
+            return byteBuf;
+        }
+
+        private static void writeColumn(ByteBuf byteBuf, Object[] values) {
+            int nonNulls = 0;
+            Class<?> type = null;
+            boolean mixed = false;
+            for (Object value : values) {
+                if (value != null) {
+                    nonNulls++;
+                    Class<?> valueType = value instanceof String ? RawString.class
+                            : value instanceof java.util.Date ? java.util.Date.class
+                            : value.getClass();
+                    if (type == null) {
+                        type = valueType;
+                    } else if (type != valueType) {
+                        mixed = true;
+                    }
+                }
+            }
+            if (nonNulls == 0) {
+                byteBuf.writeByte(COLUMN_NULL);
+                return;
+            }
+            if (mixed) {
+                byteBuf.writeByte(COLUMN_OBJECT);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        writeObject(byteBuf, value);
+                    }
+                }
+            } else if (type == Long.class) {
+                byteBuf.writeByte(COLUMN_LONG);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        byteBuf.writeLong((Long) value);
+                    }
+                }
+            } else if (type == Integer.class) {
+                byteBuf.writeByte(COLUMN_INTEGER);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        byteBuf.writeInt((Integer) value);
+                    }
+                }
+            } else if (type == Double.class) {
+                byteBuf.writeByte(COLUMN_DOUBLE);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        byteBuf.writeDouble((Double) value);
+                    }
+                }
+            } else if (type == java.util.Date.class) {
+                byteBuf.writeByte(COLUMN_TIMESTAMP);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        byteBuf.writeLong(((java.util.Date) value).getTime());
+                    }
+                }
+            } else if (type == RawString.class) {
+                writeStringColumn(byteBuf, values, nonNulls);
+            } else {
+                byteBuf.writeByte(COLUMN_OBJECT);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value != null) {
+                        writeObject(byteBuf, value);
+                    }
+                }
+            }
+        }
+
+        private static void writeStringColumn(ByteBuf byteBuf, Object[] values, int nonNulls) {
+            Map<RawString, Integer> dictionary = new HashMap<>();
+            int[] indexes = new int[nonNulls];
+            int i = 0;
+            for (Object value : values) {
+                if (value != null) {
+                    RawString string = value instanceof RawString ? (RawString) value : RawString.of((String) value);
+                    Integer index = dictionary.get(string);
+                    if (index == null) {
+                        index = dictionary.size();
+                        dictionary.put(string, index);
+                    }
+                    indexes[i++] = index;
+                }
+            }
+            if (dictionary.size() * 2 > nonNulls) {
+                // mostly distinct values, the dictionary would not save space
+                byteBuf.writeByte(COLUMN_STRING);
+                writeNullRuns(byteBuf, values);
+                for (Object value : values) {
+                    if (value instanceof RawString) {
+                        ByteBufUtils.writeRawString(byteBuf, (RawString) value);
+                    } else if (value != null) {
+                        ByteBufUtils.writeString(byteBuf, (String) value);
+                    }
+                }
+                return;
+            }
+            byteBuf.writeByte(COLUMN_STRING_DICTIONARY);
+            writeNullRuns(byteBuf, values);
+            RawString[] entries = new RawString[dictionary.size()];
+            dictionary.forEach((string, index) -> entries[index] = string);
+            ByteBufUtils.writeVInt(byteBuf, entries.length);
+            for (RawString entry : entries) {
+                ByteBufUtils.writeRawString(byteBuf, entry);
+            }
+            for (int index : indexes) {
+                ByteBufUtils.writeVInt(byteBuf, index);
+            }
+        }
+
+        /**
+         * Writes the lengths of the runs of non null and null values,
+         * alternating, starting from non null values
+         */
+        private static void writeNullRuns(ByteBuf byteBuf, Object[] values) {
+            int numRuns = 0;
+            boolean nulls = false;
+            for (Object value : values) {
+                if ((value == null) != nulls) {
+                    nulls = !nulls;
+                    numRuns++;
+                }
+            }
+            ByteBufUtils.writeVInt(byteBuf, numRuns + 1);
+            nulls = false;
+            int run = 0;
+            for (Object value : values) {
+                if ((value == null) != nulls) {
+                    ByteBufUtils.writeVInt(byteBuf, run);
+                    nulls = !nulls;
+                    run = 0;
+                }
+                run++;
+            }
+            ByteBufUtils.writeVInt(byteBuf, run);
+        }
+
+        /**
+         * Decodes the columns of a chunk, the buffer must be positioned after
+         * the number of records
+         *
+         * @return values, column by column
+         */
+        public static Object[][] readColumns(ByteBuf buffer, int numColumns, int numRecords) {
+            Object[][] columns = new Object[numColumns][];
+            for (int i = 0; i < numColumns; i++) {
+                columns[i] = readColumn(buffer, numRecords);
+            }
+            return columns;
+        }
+
+        private static Object[] readColumn(ByteBuf buffer, int numRecords) {
+            Object[] values = new Object[numRecords];
+            byte encoding = buffer.readByte();
+            if (encoding == COLUMN_NULL) {
+                return values;
+            }
+            boolean[] present = readNullRuns(buffer, numRecords);
+            RawString[] dictionary = null;
+            if (encoding == COLUMN_STRING_DICTIONARY) {
+                dictionary = new RawString[ByteBufUtils.readVInt(buffer)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = ByteBufUtils.readUnpooledRawString(buffer);
+                }
+            }
+            for (int i = 0; i < numRecords; i++) {
+                if (!present[i]) {
+                    continue;
+                }
+                switch (encoding) {
+                    case COLUMN_LONG:
+                        values[i] = buffer.readLong();
+                        break;
+                    case COLUMN_INTEGER:
+                        values[i] = buffer.readInt();
+                        break;
+                    case COLUMN_DOUBLE:
+                        values[i] = buffer.readDouble();
+                        break;
+                    case COLUMN_TIMESTAMP:
+                        values[i] = new java.sql.Timestamp(buffer.readLong());
+                        break;
+                    case COLUMN_STRING:
+                        values[i] = ByteBufUtils.readUnpooledRawString(buffer);
+                        break;
+                    case COLUMN_STRING_DICTIONARY:
+                        values[i] = dictionary[ByteBufUtils.readVInt(buffer)];
+                        break;
+                    case COLUMN_OBJECT:
+                        values[i] = readObject(buffer);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("bad column encoding " + encoding);
+                }
+            }
+            return values;
+        }
+
+        private static boolean[] readNullRuns(ByteBuf buffer, int numRecords) {
+            boolean[] present = new boolean[numRecords];
+            int numRuns = ByteBufUtils.readVInt(buffer);
+            int pos = 0;
+            for (int i = 0; i < numRuns; i++) {
+                int run = ByteBufUtils.readVInt(buffer);
+                if (i % 2 == 0) {
+                    Arrays.fill(present, pos, pos + run, true);
+                }
+                pos += run;
+            }
+            return present;
+        }
+    }
+
     public static class FetchScannerData {
 
         public static ByteBuf write(long messageId, long scannerId, int fetchSize) {
@@ -0,0 +1,148 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+/**
+ * Open addressing hash map from primitive long keys to non negative int
+ * values, with linear probing. It does not create any object per entry.
+ * <p>
+ * Not thread safe.
+ */
+public final class LongIntOpenHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    /**
+     * value + 1, 0 means that the slot is free
+     */
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntOpenHashMap() {
+        this(16);
+    }
+
+    public LongIntOpenHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        // murmur3 64 bit finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Lookup a value
+     *
+     * @param key
+     * @return the value or -1 if the key is not mapped
+     */
+    public int get(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int value = values[slot];
+            if (value == 0) {
+                return -1;
+            }
+            if (keys[slot] == key) {
+                return value - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Lookup a value and map the key to the given value if the key is not
+     * mapped yet
+     *
+     * @param key
+     * @param value a non negative value
+     * @return the current value, or the given value if the key was not mapped
+     */
+    public int getOrPut(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be non negative: " + value);
+        }
+        int slot = hash(key) & mask;
+        while (true) {
+            int current = values[slot];
+            if (current == 0) {
+                keys[slot] = key;
+                values[slot] = value + 1;
+                if (++size > resizeThreshold) {
+                    rehash();
+                }
+                return value;
+            }
+            if (keys[slot] == key) {
+                return current - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int value = oldValues[i];
+            if (value != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = value;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Estimated memory used by this map
+     *
+     * @return the size in bytes
+     */
+    public long getUsedMemory() {
+        return keys.length * (long) (Long.BYTES + Integer.BYTES);
+    }
+
+}
@@ -43,6 +43,10 @@ public class RecordsBatch {
     private DataAccessor next;
     private boolean finished;
     public Map<String, Integer> columnNameToPosition;
+    /**
+     * Values column by column, for chunks in columnar format
+     */
+    private final Object[][] columns;
 
     public RecordsBatch(Pdu message) {
         this.buffer = message.buffer;
@@ -58,6 +62,11 @@ public class RecordsBatch {
         if (numRecords == 0) {
             finished = true;
         }
+        if (message.type == Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR) {
+            this.columns = PduCodec.ColumnarResultSetChunk.readColumns(buffer, numColumns, numRecords);
+        } else {
+            this.columns = null;
+        }
     }
 
     private void ensureColumnNameToPosition() {
@@ -111,6 +120,12 @@ public class RecordsBatch {
 
     private DataAccessor readRecordAtCurrentPosition() {
         Object[] values = new Object[columnNames.length];
+        if (columns != null) {
+            for (int i = 0; i < columnNames.length; i++) {
+                values[i] = columns[i][currentRecordIndex];
+            }
+            return new RowDataAccessor(values);
+        }
         for (int i = 0; i < columnNames.length; i++) {
             values[i] = PduCodec.readObject(buffer);
         }
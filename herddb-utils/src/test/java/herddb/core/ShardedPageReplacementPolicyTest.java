@@ -0,0 +1,141 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Test;
+
+public class ShardedPageReplacementPolicyTest {
+
+    private static final class MyOwner implements Page.Owner {
+
+        final Set<Long> loaded = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void unload(long pageId) {
+            if (!loaded.remove(pageId)) {
+                throw new IllegalStateException("page " + pageId + " not loaded");
+            }
+        }
+
+        MyPage load(PageReplacementPolicy policy, long pageId) {
+            MyPage page = new MyPage(this, pageId);
+            loaded.add(pageId);
+            Page.Metadata unload = policy.add(page);
+            if (unload != null) {
+                unload.owner.unload(unload.pageId);
+            }
+            return page;
+        }
+    }
+
+    private static final class MyPage extends Page<MyOwner> {
+
+        MyPage(MyOwner owner, long pageId) {
+            super(owner, pageId);
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        ShardedPageReplacementPolicy policy = new ShardedPageReplacementPolicy(10, 4, ClockProPolicy::new);
+        assertEquals(4, policy.getShards());
+        assertEquals(10, policy.capacity());
+
+        policy = new ShardedPageReplacementPolicy(3, 8, ClockProPolicy::new);
+        assertEquals(3, policy.getShards());
+        assertEquals(3, policy.capacity());
+    }
+
+    @Test
+    public void testAddRemove() {
+        ShardedPageReplacementPolicy policy = new ShardedPageReplacementPolicy(100, 4, ClockAdaptiveReplacement::new);
+        MyOwner owner = new MyOwner();
+        List<MyPage> pages = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            pages.add(owner.load(policy, i));
+            policy.pageHit(pages.get(pages.size() - 1));
+            assertTrue(policy.size() <= policy.capacity());
+        }
+        assertEquals(owner.loaded.size(), policy.size());
+        assertTrue(policy.size() > 90);
+
+        MyPage last = pages.get(pages.size() - 1);
+        assertTrue(policy.remove(last));
+        assertFalse(policy.remove(last));
+        owner.loaded.remove(last.pageId);
+
+        List<MyPage> loaded = new ArrayList<>();
+        for (MyPage page : pages) {
+            if (owner.loaded.contains(page.pageId)) {
+                loaded.add(page);
+            }
+        }
+        policy.remove(loaded);
+        assertEquals(0, policy.size());
+
+        assertNull(policy.add(last));
+        policy.clear();
+        assertEquals(0, policy.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        ShardedPageReplacementPolicy policy = new ShardedPageReplacementPolicy(256, 8, ClockProPolicy::new);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                MyOwner owner = new MyOwner();
+                results.add(executor.submit(() -> {
+                    List<MyPage> hot = new ArrayList<>();
+                    for (long i = 0; i < 10000; i++) {
+                        MyPage page = owner.load(policy, i);
+                        if (i % 10 == 0) {
+                            hot.add(page);
+                        }
+                        MyPage hit = hot.get(ThreadLocalRandom.current().nextInt(hot.size()));
+                        policy.pageHit(hit);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(policy.capacity(), policy.size());
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import herddb.utils.DataAccessor;
+import herddb.utils.MapDataAccessor;
+import herddb.utils.RawString;
+import herddb.utils.RecordsBatch;
+import herddb.utils.TuplesList;
+import io.netty.buffer.ByteBuf;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Result set chunks column by column must decode to the same values of chunks
+ * row by row
+ */
+public class ColumnarResultSetChunkTest {
+
+    private static final String[] COLUMNS = {"id", "n", "d", "ts", "s", "u", "b", "mixed", "nulls"};
+
+    private static TuplesList buildTuples(int size) {
+        List<DataAccessor> tuples = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i);
+            if (i % 3 != 0) {
+                record.put("n", (long) i * 1000);
+            }
+            record.put("d", i / 2.0);
+            if (i % 5 < 2) {
+                record.put("ts", new Timestamp(1000000L + i));
+            }
+            if (i % 7 != 0) {
+                record.put("s", i % 2 == 0 ? "even" : RawString.of("odd"));
+            }
+            record.put("u", "unique" + i);
+            record.put("b", i % 2 == 0);
+            record.put("mixed", i % 2 == 0 ? (Object) i : (Object) ("m" + i));
+            tuples.add(new MapDataAccessor(record, COLUMNS));
+        }
+        return new TuplesList(COLUMNS, tuples);
+    }
+
+    private static List<Object[]> decode(ByteBuf buffer, byte expectedType, boolean expectedLast, long expectedTx) throws Exception {
+        try (Pdu pdu = PduCodec.decodePdu(buffer)) {
+            assertEquals(expectedType, pdu.type);
+            assertEquals(expectedLast, PduCodec.ResultSetChunk.readIsLast(pdu));
+            assertEquals(expectedTx, PduCodec.ResultSetChunk.readTx(pdu));
+            RecordsBatch batch = PduCodec.ResultSetChunk.startReadingData(pdu);
+            assertArrayEquals(COLUMNS, batch.columnNames);
+            List<Object[]> result = new ArrayList<>();
+            while (batch.hasNext()) {
+                DataAccessor next = batch.next();
+                Object[] values = new Object[COLUMNS.length];
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    values[i] = next.get(COLUMNS[i]);
+                }
+                result.add(values);
+            }
+            return result;
+        }
+    }
+
+    @Test
+    public void testSameValuesOfRowFormat() throws Exception {
+        TuplesList tuples = buildTuples(1000);
+        List<Object[]> rows = decode(PduCodec.ResultSetChunk.write(1, tuples, true, 5),
+                Pdu.TYPE_RESULTSET_CHUNK, true, 5);
+        ByteBuf columnarBuffer = PduCodec.ColumnarResultSetChunk.write(1, tuples, true, 5);
+        int columnarSize = columnarBuffer.readableBytes();
+        List<Object[]> columns = decode(columnarBuffer, Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR, true, 5);
+        assertEquals(1000, rows.size());
+        assertEquals(rows.size(), columns.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), columns.get(i));
+        }
+
+        ByteBuf rowBuffer = PduCodec.ResultSetChunk.write(1, tuples, true, 5);
+        try {
+            assertTrue(columnarSize < rowBuffer.readableBytes());
+        } finally {
+            rowBuffer.release();
+        }
+    }
+
+    @Test
+    public void testDictionaryEntriesAreShared() throws Exception {
+        List<Object[]> columns = decode(PduCodec.ColumnarResultSetChunk.write(1, buildTuples(10), false, 0),
+                Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR, false, 0);
+        int s = 4;
+        assertEquals(RawString.of("even"), columns.get(2)[s]);
+        assertSame(columns.get(2)[s], columns.get(4)[s]);
+        assertSame(columns.get(1)[s], columns.get(3)[s]);
+        assertEquals(null, columns.get(0)[s]);
+        assertEquals(null, columns.get(7)[s]);
+    }
+
+    @Test
+    public void testEmptyChunk() throws Exception {
+        List<Object[]> columns = decode(PduCodec.ColumnarResultSetChunk.write(1,
+                new TuplesList(COLUMNS, Collections.emptyList()), true, 0),
+                Pdu.TYPE_RESULTSET_CHUNK_COLUMNAR, true, 0);
+        assertTrue(columns.isEmpty());
+    }
+
+    @Test
+    public void testClientFeatures() throws Exception {
+        try (Pdu pdu = PduCodec.decodePdu(PduCodec.SaslTokenMessageRequest.write(1, "mech", new byte[]{1, 2}))) {
+            assertEquals(0, PduCodec.SaslTokenMessageRequest.readClientFeatures(pdu));
+            assertEquals("mech", PduCodec.SaslTokenMessageRequest.readMech(pdu));
+        }
+        try (Pdu pdu = PduCodec.decodePdu(PduCodec.SaslTokenMessageRequest.write(1, "mech", new byte[]{1, 2},
+                PduCodec.CLIENT_FEATURE_COLUMNAR_RESULTSETS))) {
+            assertEquals(PduCodec.CLIENT_FEATURE_COLUMNAR_RESULTSETS, PduCodec.SaslTokenMessageRequest.readClientFeatures(pdu));
+            assertEquals("mech", PduCodec.SaslTokenMessageRequest.readMech(pdu));
+            assertArrayEquals(new byte[]{1, 2}, PduCodec.SaslTokenMessageRequest.readToken(pdu));
+            assertEquals(0, PduCodec.SaslTokenMessageRequest.readFollowerReadsMaxStaleness(pdu));
+        }
+        int features = PduCodec.CLIENT_FEATURE_COLUMNAR_RESULTSETS | PduCodec.CLIENT_FEATURE_READ_FROM_FOLLOWERS;
+        try (Pdu pdu = PduCodec.decodePdu(PduCodec.SaslTokenMessageRequest.write(1, "mech", new byte[]{1, 2},
+                features, 5000))) {
+            assertEquals(features, PduCodec.SaslTokenMessageRequest.readClientFeatures(pdu));
+            assertEquals(5000, PduCodec.SaslTokenMessageRequest.readFollowerReadsMaxStaleness(pdu));
+            assertArrayEquals(new byte[]{1, 2}, PduCodec.SaslTokenMessageRequest.readToken(pdu));
+        }
+    }
+
+}
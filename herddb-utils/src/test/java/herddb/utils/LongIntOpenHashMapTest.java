@@ -0,0 +1,74 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import static org.junit.Assert.assertEquals;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test on {@link LongIntOpenHashMap}
+ */
+public class LongIntOpenHashMapTest {
+
+    @Test
+    public void testGetOrPut() {
+        LongIntOpenHashMap map = new LongIntOpenHashMap(2);
+        assertEquals(-1, map.get(0));
+        assertEquals(0, map.getOrPut(0, 0));
+        assertEquals(0, map.getOrPut(0, 5));
+        assertEquals(1, map.getOrPut(Long.MIN_VALUE, 1));
+        assertEquals(2, map.getOrPut(Long.MAX_VALUE, 2));
+        assertEquals(3, map.getOrPut(-1, 3));
+        assertEquals(0, map.get(0));
+        assertEquals(1, map.get(Long.MIN_VALUE));
+        assertEquals(2, map.get(Long.MAX_VALUE));
+        assertEquals(3, map.get(-1));
+        assertEquals(-1, map.get(1));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void testRehash() {
+        LongIntOpenHashMap map = new LongIntOpenHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(50_000) * 31L;
+            int value = map.getOrPut(key, expected.size());
+            Integer previous = expected.putIfAbsent(key, value);
+            if (previous != null) {
+                assertEquals(previous.intValue(), value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new LongIntOpenHashMap().getOrPut(1, -1);
+    }
+}
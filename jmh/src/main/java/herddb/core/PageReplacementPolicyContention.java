@@ -0,0 +1,122 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Page buffer accesses from many threads: 80% of the accesses go to 20% of
+ * the pages, a missing page is added to the policy and the victim is unloaded.
+ * Run with different thread counts ({@code -t}) to see the lock contention.
+ */
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PageReplacementPolicyContention {
+
+    private static final int CAPACITY = 10_000;
+    private static final int PAGES = 4 * CAPACITY;
+    private static final int HOT_PAGES = PAGES / 5;
+
+    @Param({"cp", "car", "random", "sharded"})
+    public String policyType;
+
+    @Param({"16"})
+    public int shards;
+
+    PageReplacementPolicy policy;
+    BenchOwner owner;
+
+    private static final class BenchOwner implements Page.Owner {
+
+        /**
+         * 0 not loaded, 1 loaded
+         */
+        final AtomicIntegerArray loaded = new AtomicIntegerArray(PAGES);
+        final BenchPage[] pages = new BenchPage[PAGES];
+
+        BenchOwner() {
+            for (int i = 0; i < PAGES; i++) {
+                pages[i] = new BenchPage(this, i);
+            }
+        }
+
+        @Override
+        public void unload(long pageId) {
+            loaded.set((int) pageId, 0);
+        }
+    }
+
+    private static final class BenchPage extends Page<BenchOwner> {
+
+        BenchPage(BenchOwner owner, long pageId) {
+            super(owner, pageId);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        switch (policyType) {
+            case "cp":
+                policy = new ClockProPolicy(CAPACITY);
+                break;
+            case "car":
+                policy = new ClockAdaptiveReplacement(CAPACITY);
+                break;
+            case "random":
+                policy = new RandomPageReplacementPolicy(CAPACITY);
+                break;
+            case "sharded":
+                policy = new ShardedPageReplacementPolicy(CAPACITY, shards, ClockProPolicy::new);
+                break;
+            default:
+                throw new IllegalArgumentException(policyType);
+        }
+        owner = new BenchOwner();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void access() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int pageId = random.nextInt(5) < 4 ? random.nextInt(HOT_PAGES) : random.nextInt(PAGES);
+        BenchPage page = owner.pages[pageId];
+        if (owner.loaded.get(pageId) == 1) {
+            policy.pageHit(page);
+        } else if (owner.loaded.compareAndSet(pageId, 0, 1)) {
+            Page.Metadata unload = policy.add(page);
+            if (unload != null) {
+                unload.owner.unload(unload.pageId);
+            }
+        }
+    }
+
+}